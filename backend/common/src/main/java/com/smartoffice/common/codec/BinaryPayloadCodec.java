@@ -0,0 +1,187 @@
+package com.smartoffice.common.codec;
+
+import com.smartoffice.common.dto.AlarmMessageDTO;
+import com.smartoffice.common.dto.SensorDataDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 二进制负载编解码（DTO形式，格式定义见 {@link BinaryPayloadFormat}）
+ */
+public final class BinaryPayloadCodec {
+
+    private BinaryPayloadCodec() {
+    }
+
+    /**
+     * 编码单条传感器读数
+     */
+    public static byte[] encodeSensorData(SensorDataDTO data) {
+        BinaryPayloadWriter writer = new BinaryPayloadWriter().writeHeader(BinaryPayloadFormat.TYPE_SENSOR);
+        writeSensorData(writer, data);
+        return writer.toByteArray();
+    }
+
+    /**
+     * 编码批量传感器读数
+     */
+    public static byte[] encodeSensorBatch(List<SensorDataDTO> readings) {
+        if (readings.size() > 0xFFFF) {
+            throw new IllegalArgumentException("单批读数超过65535条");
+        }
+        BinaryPayloadWriter writer = new BinaryPayloadWriter(16 + readings.size() * 40)
+                .writeHeader(BinaryPayloadFormat.TYPE_SENSOR_BATCH)
+                .writeU16(readings.size());
+        for (SensorDataDTO data : readings) {
+            writeSensorData(writer, data);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * 解码传感器读数（单条或批量均返回列表）
+     */
+    public static List<SensorDataDTO> decodeSensorData(byte[] payload) {
+        BinaryPayloadReader reader = new BinaryPayloadReader(payload);
+        int type = BinaryPayloadFormat.readHeader(reader);
+        List<SensorDataDTO> readings = new ArrayList<>();
+        if (type == BinaryPayloadFormat.TYPE_SENSOR) {
+            readings.add(readSensorData(reader));
+        } else if (type == BinaryPayloadFormat.TYPE_SENSOR_BATCH) {
+            int count = reader.readU16();
+            for (int i = 0; i < count; i++) {
+                readings.add(readSensorData(reader));
+            }
+        } else {
+            throw new IllegalArgumentException("不是传感器数据帧: type=" + type);
+        }
+        reader.requireEnd();
+        return readings;
+    }
+
+    /**
+     * 编码告警消息
+     */
+    public static byte[] encodeAlarm(AlarmMessageDTO alarm) {
+        return new BinaryPayloadWriter()
+                .writeHeader(BinaryPayloadFormat.TYPE_ALARM)
+                .writeString(alarm.getDeviceId())
+                .writeString(alarm.getAlarmType())
+                .writeString(alarm.getLevel())
+                .writeLongString(alarm.getMessage())
+                .writeI64(alarm.getTimestamp() != null ? alarm.getTimestamp() : 0L)
+                .toByteArray();
+    }
+
+    /**
+     * 解码告警消息
+     */
+    public static AlarmMessageDTO decodeAlarm(byte[] payload) {
+        BinaryPayloadReader reader = new BinaryPayloadReader(payload);
+        int type = BinaryPayloadFormat.readHeader(reader);
+        if (type != BinaryPayloadFormat.TYPE_ALARM) {
+            throw new IllegalArgumentException("不是告警帧: type=" + type);
+        }
+        AlarmMessageDTO alarm = new AlarmMessageDTO();
+        alarm.setDeviceId(reader.readString());
+        alarm.setAlarmType(reader.readString());
+        alarm.setLevel(reader.readString());
+        alarm.setMessage(reader.readLongString());
+        long timestamp = reader.readI64();
+        alarm.setTimestamp(timestamp != 0 ? timestamp : null);
+        reader.requireEnd();
+        return alarm;
+    }
+
+    /**
+     * 读取帧中的设备编号（单条读数、告警帧，以及批量帧的第一条读数），无法读取时返回null
+     */
+    public static String peekDeviceId(byte[] payload) {
+        try {
+            BinaryPayloadReader reader = new BinaryPayloadReader(payload);
+            int type = BinaryPayloadFormat.readHeader(reader);
+            if (type == BinaryPayloadFormat.TYPE_SENSOR_BATCH) {
+                if (reader.readU16() == 0) {
+                    return null;
+                }
+            } else if (type != BinaryPayloadFormat.TYPE_SENSOR && type != BinaryPayloadFormat.TYPE_ALARM) {
+                return null;
+            }
+            return reader.readString();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeSensorData(BinaryPayloadWriter writer, SensorDataDTO data) {
+        int fields = 0;
+        int flags = 0;
+        if (data.getLight() != null) {
+            fields |= BinaryPayloadFormat.FIELD_LIGHT;
+        }
+        if (data.getTemperature() != null) {
+            fields |= BinaryPayloadFormat.FIELD_TEMPERATURE;
+        }
+        if (data.getHumidity() != null) {
+            fields |= BinaryPayloadFormat.FIELD_HUMIDITY;
+        }
+        if (data.getFlame() != null) {
+            fields |= BinaryPayloadFormat.FIELD_FLAME;
+            flags |= data.getFlame() ? BinaryPayloadFormat.FLAG_FLAME : 0;
+        }
+        if (data.getRgbStatus() != null) {
+            fields |= BinaryPayloadFormat.FIELD_RGB_STATUS;
+            flags |= data.getRgbStatus() ? BinaryPayloadFormat.FLAG_RGB_STATUS : 0;
+        }
+        if (data.getBuzzerStatus() != null) {
+            fields |= BinaryPayloadFormat.FIELD_BUZZER_STATUS;
+            flags |= data.getBuzzerStatus() ? BinaryPayloadFormat.FLAG_BUZZER_STATUS : 0;
+        }
+        if (data.getTimestamp() != null) {
+            fields |= BinaryPayloadFormat.FIELD_TIMESTAMP;
+        }
+        writer.writeString(data.getDeviceId()).writeU8(fields).writeU8(flags);
+        if (data.getLight() != null) {
+            writer.writeFixed(data.getLight());
+        }
+        if (data.getTemperature() != null) {
+            writer.writeFixed(data.getTemperature());
+        }
+        if (data.getHumidity() != null) {
+            writer.writeFixed(data.getHumidity());
+        }
+        if (data.getTimestamp() != null) {
+            writer.writeI64(data.getTimestamp());
+        }
+    }
+
+    private static SensorDataDTO readSensorData(BinaryPayloadReader reader) {
+        SensorDataDTO data = new SensorDataDTO();
+        data.setDeviceId(reader.readString());
+        int fields = reader.readU8();
+        int flags = reader.readU8();
+        if ((fields & BinaryPayloadFormat.FIELD_LIGHT) != 0) {
+            data.setLight(reader.readFixed());
+        }
+        if ((fields & BinaryPayloadFormat.FIELD_TEMPERATURE) != 0) {
+            data.setTemperature(reader.readFixed());
+        }
+        if ((fields & BinaryPayloadFormat.FIELD_HUMIDITY) != 0) {
+            data.setHumidity(reader.readFixed());
+        }
+        if ((fields & BinaryPayloadFormat.FIELD_FLAME) != 0) {
+            data.setFlame((flags & BinaryPayloadFormat.FLAG_FLAME) != 0);
+        }
+        if ((fields & BinaryPayloadFormat.FIELD_RGB_STATUS) != 0) {
+            data.setRgbStatus((flags & BinaryPayloadFormat.FLAG_RGB_STATUS) != 0);
+        }
+        if ((fields & BinaryPayloadFormat.FIELD_BUZZER_STATUS) != 0) {
+            data.setBuzzerStatus((flags & BinaryPayloadFormat.FLAG_BUZZER_STATUS) != 0);
+        }
+        if ((fields & BinaryPayloadFormat.FIELD_TIMESTAMP) != 0) {
+            data.setTimestamp(reader.readI64());
+        }
+        return data;
+    }
+}
@@ -0,0 +1,76 @@
+package com.smartoffice.common.codec;
+
+/**
+ * 紧凑二进制负载格式（与JSON负载共用同一主题）
+ * <p>
+ * 所有多字节整数均为大端序，字符串为UTF-8。首字节为魔数 {@link #MAGIC}，
+ * JSON负载不可能以该字节开头，接收端据此区分二进制和JSON，无需额外协商。
+ * <pre>
+ * 帧头：     u8 magic(0xB5) | u8 version(1) | u8 type
+ *
+ * 传感器读数（type=1，单条）：帧头 + 读数
+ * 批量读数（type=3）：       帧头 + u16 count + count * 读数
+ * 读数：     u8 len + deviceId
+ *            u8 fields  字段是否出现，见 FIELD_*
+ *            u8 flags   布尔值，见 FLAG_*
+ *            [i32 light * 100] [i32 temperature * 100] [i32 humidity * 100] [i64 timestamp]（按fields依次出现）
+ *
+ * 告警（type=2）：帧头 + u8 len + deviceId + u8 len + alarmType + u8 len + level
+ *                 + u16 len + message + i64 timestamp（0表示无）
+ * </pre>
+ * 数值以0.01为单位的定点整数传输，超出i32范围的数值不能编码。格式变化时递增版本号，接收端拒绝不认识的版本；
+ * 帧内容必须正好占满整个负载，截断或末尾有多余数据均视为格式错误。
+ */
+public final class BinaryPayloadFormat {
+
+    public static final byte MAGIC = (byte) 0xB5;
+
+    public static final int VERSION_1 = 1;
+
+    public static final int HEADER_LENGTH = 3;
+
+    public static final int TYPE_SENSOR = 1;
+    public static final int TYPE_ALARM = 2;
+    public static final int TYPE_SENSOR_BATCH = 3;
+
+    public static final int FIELD_LIGHT = 1;
+    public static final int FIELD_TEMPERATURE = 1 << 1;
+    public static final int FIELD_HUMIDITY = 1 << 2;
+    public static final int FIELD_FLAME = 1 << 3;
+    public static final int FIELD_RGB_STATUS = 1 << 4;
+    public static final int FIELD_BUZZER_STATUS = 1 << 5;
+    public static final int FIELD_TIMESTAMP = 1 << 6;
+
+    public static final int FLAG_FLAME = 1;
+    public static final int FLAG_RGB_STATUS = 1 << 1;
+    public static final int FLAG_BUZZER_STATUS = 1 << 2;
+
+    /**
+     * 定点数缩放倍数（保留两位小数）
+     */
+    public static final int SCALE = 100;
+
+    private BinaryPayloadFormat() {
+    }
+
+    /**
+     * 负载是否为二进制格式
+     */
+    public static boolean isBinary(byte[] payload) {
+        return payload != null && payload.length >= HEADER_LENGTH && payload[0] == MAGIC;
+    }
+
+    /**
+     * 校验帧头并返回帧类型
+     */
+    public static int readHeader(BinaryPayloadReader reader) {
+        if (reader.readU8() != (MAGIC & 0xFF)) {
+            throw new IllegalArgumentException("不是二进制负载");
+        }
+        int version = reader.readU8();
+        if (version != VERSION_1) {
+            throw new IllegalArgumentException("不支持的二进制负载版本: " + version);
+        }
+        return reader.readU8();
+    }
+}
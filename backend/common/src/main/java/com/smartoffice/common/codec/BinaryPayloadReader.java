@@ -0,0 +1,102 @@
+package com.smartoffice.common.codec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 二进制负载读取游标（大端序），数据不足时抛出IllegalArgumentException
+ */
+public class BinaryPayloadReader {
+
+    private final byte[] buf;
+
+    private int pos;
+
+    public BinaryPayloadReader(byte[] buf) {
+        this(buf, 0);
+    }
+
+    public BinaryPayloadReader(byte[] buf, int offset) {
+        this.buf = buf;
+        this.pos = offset;
+    }
+
+    public int readU8() {
+        require(1);
+        return buf[pos++] & 0xFF;
+    }
+
+    public int readU16() {
+        require(2);
+        int value = ((buf[pos] & 0xFF) << 8) | (buf[pos + 1] & 0xFF);
+        pos += 2;
+        return value;
+    }
+
+    public int readI32() {
+        require(4);
+        int value = ((buf[pos] & 0xFF) << 24) | ((buf[pos + 1] & 0xFF) << 16)
+                | ((buf[pos + 2] & 0xFF) << 8) | (buf[pos + 3] & 0xFF);
+        pos += 4;
+        return value;
+    }
+
+    public long readI64() {
+        long high = readI32() & 0xFFFFFFFFL;
+        long low = readI32() & 0xFFFFFFFFL;
+        return (high << 32) | low;
+    }
+
+    /**
+     * 读取定点数（0.01为单位）
+     */
+    public double readFixed() {
+        return readI32() / (double) BinaryPayloadFormat.SCALE;
+    }
+
+    /**
+     * 读取u8长度前缀的字符串，长度为0时返回null
+     */
+    public String readString() {
+        return readBytesAsString(readU8());
+    }
+
+    /**
+     * 读取u16长度前缀的字符串，长度为0时返回null
+     */
+    public String readLongString() {
+        return readBytesAsString(readU16());
+    }
+
+    private String readBytesAsString(int length) {
+        if (length == 0) {
+            return null;
+        }
+        require(length);
+        String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return value;
+    }
+
+    /**
+     * 校验已读到帧末尾（多余数据说明帧长度与内容不符）
+     */
+    public void requireEnd() {
+        if (pos != buf.length) {
+            throw new IllegalArgumentException("二进制负载末尾有多余数据: position=" + pos + ", length=" + buf.length);
+        }
+    }
+
+    public int position() {
+        return pos;
+    }
+
+    public int remaining() {
+        return buf.length - pos;
+    }
+
+    private void require(int bytes) {
+        if (buf.length - pos < bytes) {
+            throw new IllegalArgumentException("二进制负载长度不足: position=" + pos + ", need=" + bytes);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.smartoffice.common.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 二进制负载写入器（大端序，自动扩容）
+ */
+public class BinaryPayloadWriter {
+
+    private byte[] buf;
+
+    private int size;
+
+    public BinaryPayloadWriter() {
+        this(64);
+    }
+
+    public BinaryPayloadWriter(int initialCapacity) {
+        this.buf = new byte[initialCapacity];
+    }
+
+    public BinaryPayloadWriter writeHeader(int type) {
+        writeU8(BinaryPayloadFormat.MAGIC & 0xFF);
+        writeU8(BinaryPayloadFormat.VERSION_1);
+        return writeU8(type);
+    }
+
+    public BinaryPayloadWriter writeU8(int value) {
+        ensure(1);
+        buf[size++] = (byte) value;
+        return this;
+    }
+
+    public BinaryPayloadWriter writeU16(int value) {
+        ensure(2);
+        buf[size++] = (byte) (value >>> 8);
+        buf[size++] = (byte) value;
+        return this;
+    }
+
+    public BinaryPayloadWriter writeI32(int value) {
+        ensure(4);
+        buf[size++] = (byte) (value >>> 24);
+        buf[size++] = (byte) (value >>> 16);
+        buf[size++] = (byte) (value >>> 8);
+        buf[size++] = (byte) value;
+        return this;
+    }
+
+    public BinaryPayloadWriter writeI64(long value) {
+        writeI32((int) (value >>> 32));
+        return writeI32((int) value);
+    }
+
+    /**
+     * 写入定点数（0.01为单位），NaN、无穷大或超出i32范围时抛出IllegalArgumentException
+     */
+    public BinaryPayloadWriter writeFixed(double value) {
+        long scaled = Math.round(value * BinaryPayloadFormat.SCALE);
+        if (Double.isNaN(value) || scaled < Integer.MIN_VALUE || scaled > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("定点数超出范围: " + value);
+        }
+        return writeI32((int) scaled);
+    }
+
+    /**
+     * 写入u8长度前缀的字符串（最长255字节，null写为空串）
+     */
+    public BinaryPayloadWriter writeString(String value) {
+        byte[] bytes = toBytes(value);
+        if (bytes.length > 0xFF) {
+            throw new IllegalArgumentException("字符串超过255字节: " + value);
+        }
+        writeU8(bytes.length);
+        return writeBytes(bytes);
+    }
+
+    /**
+     * 写入u16长度前缀的字符串（最长65535字节，null写为空串）
+     */
+    public BinaryPayloadWriter writeLongString(String value) {
+        byte[] bytes = toBytes(value);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("字符串超过65535字节");
+        }
+        writeU16(bytes.length);
+        return writeBytes(bytes);
+    }
+
+    private BinaryPayloadWriter writeBytes(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, size, bytes.length);
+        size += bytes.length;
+        return this;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+
+    private static byte[] toBytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+
+    private void ensure(int bytes) {
+        if (size + bytes > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + bytes));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.smartoffice.common.entity;
+
+import lombok.Data;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 传感器数据汇总实体类（按分钟/小时/天，对应 sensor_rollup_minute/hour/day 三张表）
+ */
+@Data
+public class SensorRollup implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 设备编号
+     */
+    private String deviceId;
+
+    /**
+     * 时间桶起始时间
+     */
+    private LocalDateTime bucketTime;
+
+    /**
+     * 样本数
+     */
+    private Integer sampleCount;
+
+    private BigDecimal temperatureMin;
+
+    private BigDecimal temperatureMax;
+
+    /**
+     * 温度累加值（与temperatureCount一起计算平均值）
+     */
+    private BigDecimal temperatureSum;
+
+    /**
+     * 有温度值的样本数
+     */
+    private Integer temperatureCount;
+
+    private BigDecimal humidityMin;
+
+    private BigDecimal humidityMax;
+
+    private BigDecimal humiditySum;
+
+    private Integer humidityCount;
+
+    private BigDecimal lightMin;
+
+    private BigDecimal lightMax;
+
+    private BigDecimal lightSum;
+
+    private Integer lightCount;
+
+    /**
+     * 桶内最后一个样本的值
+     */
+    private BigDecimal lastTemperature;
+
+    private BigDecimal lastHumidity;
+
+    private BigDecimal lastLight;
+
+    /**
+     * 桶内最后一个样本的采集时间
+     */
+    private LocalDateTime lastTime;
+}
@@ -0,0 +1,220 @@
+package com.smartoffice.common.codec;
+
+import com.smartoffice.common.dto.AlarmMessageDTO;
+import com.smartoffice.common.dto.SensorDataDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryPayloadCodecTest {
+
+    @Test
+    void sensorDataRoundTrip() {
+        SensorDataDTO data = reading("W601_001", 456.78, -12.5, 58.2, 1704074400000L);
+        data.setFlame(true);
+        data.setRgbStatus(false);
+        data.setBuzzerStatus(true);
+
+        byte[] payload = BinaryPayloadCodec.encodeSensorData(data);
+
+        assertTrue(BinaryPayloadFormat.isBinary(payload));
+        assertEquals(BinaryPayloadFormat.VERSION_1, payload[1]);
+        assertEquals(BinaryPayloadFormat.TYPE_SENSOR, payload[2]);
+        assertEquals(Collections.singletonList(data), BinaryPayloadCodec.decodeSensorData(payload));
+        assertEquals("W601_001", BinaryPayloadCodec.peekDeviceId(payload));
+    }
+
+    @Test
+    void absentFieldsStayAbsent() {
+        SensorDataDTO data = new SensorDataDTO();
+        data.setDeviceId("W601_001");
+        data.setHumidity(40.0);
+
+        SensorDataDTO decoded = BinaryPayloadCodec.decodeSensorData(BinaryPayloadCodec.encodeSensorData(data)).get(0);
+
+        assertEquals(data, decoded);
+        assertNull(decoded.getLight());
+        assertNull(decoded.getFlame());
+        assertNull(decoded.getTimestamp());
+    }
+
+    @Test
+    void fixedPointKeepsTwoDecimals() {
+        SensorDataDTO data = reading("W601_001", 0.004, 0.006, -0.016, null);
+
+        SensorDataDTO decoded = BinaryPayloadCodec.decodeSensorData(BinaryPayloadCodec.encodeSensorData(data)).get(0);
+
+        assertEquals(0.0, decoded.getLight());
+        assertEquals(0.01, decoded.getTemperature());
+        assertEquals(-0.02, decoded.getHumidity());
+    }
+
+    @Test
+    void rejectsValuesOutsideFixedPointRange() {
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryPayloadCodec.encodeSensorData(reading("A", 21474836.48, null, null, null)));
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryPayloadCodec.encodeSensorData(reading("A", null, Double.NaN, null, null)));
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryPayloadCodec.encodeSensorData(reading("A", null, null, Double.NEGATIVE_INFINITY, null)));
+
+        SensorDataDTO max = reading("A", 21474836.47, -21474836.48, null, null);
+        assertEquals(max, BinaryPayloadCodec.decodeSensorData(BinaryPayloadCodec.encodeSensorData(max)).get(0));
+    }
+
+    @Test
+    void batchRoundTrip() {
+        List<SensorDataDTO> readings = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            readings.add(reading("设备-" + i, i * 1.5, (2000 + i) / 100.0, null, 1704074400000L + i));
+        }
+
+        byte[] payload = BinaryPayloadCodec.encodeSensorBatch(readings);
+
+        assertEquals(BinaryPayloadFormat.TYPE_SENSOR_BATCH, payload[2]);
+        assertEquals(readings, BinaryPayloadCodec.decodeSensorData(payload));
+        assertEquals("设备-0", BinaryPayloadCodec.peekDeviceId(payload));
+        assertEquals(Collections.emptyList(),
+                BinaryPayloadCodec.decodeSensorData(BinaryPayloadCodec.encodeSensorBatch(Collections.emptyList())));
+    }
+
+    @Test
+    void alarmRoundTrip() {
+        AlarmMessageDTO alarm = new AlarmMessageDTO("W601_001", "FIRE", "CRITICAL", "检测到火焰！");
+        alarm.setTimestamp(1704074400000L);
+
+        byte[] payload = BinaryPayloadCodec.encodeAlarm(alarm);
+
+        assertEquals(BinaryPayloadFormat.TYPE_ALARM, payload[2]);
+        assertEquals(alarm, BinaryPayloadCodec.decodeAlarm(payload));
+        assertEquals("W601_001", BinaryPayloadCodec.peekDeviceId(payload));
+
+        AlarmMessageDTO noTimestamp = new AlarmMessageDTO("W601_001", "TEMP", "WARNING", null);
+        assertEquals(noTimestamp, BinaryPayloadCodec.decodeAlarm(BinaryPayloadCodec.encodeAlarm(noTimestamp)));
+    }
+
+    @Test
+    void rejectsOversizedStringsAndBatches() {
+        char[] longId = new char[256];
+        Arrays.fill(longId, 'x');
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryPayloadCodec.encodeSensorData(reading(new String(longId), null, null, null, null)));
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryPayloadCodec.encodeSensorBatch(Collections.nCopies(0x10000, reading("A", null, null, null, null))));
+    }
+
+    @Test
+    void rejectsEveryTruncation() {
+        SensorDataDTO data = reading("W601_001", 456.78, 26.3, 58.2, 1704074400000L);
+        data.setFlame(false);
+        byte[] single = BinaryPayloadCodec.encodeSensorData(data);
+        byte[] batch = BinaryPayloadCodec.encodeSensorBatch(Arrays.asList(data, data));
+        byte[] alarm = BinaryPayloadCodec.encodeAlarm(new AlarmMessageDTO("W601_001", "FIRE", "CRITICAL", "火焰"));
+
+        for (int length = 0; length < single.length; length++) {
+            byte[] truncated = Arrays.copyOf(single, length);
+            assertThrows(IllegalArgumentException.class, () -> BinaryPayloadCodec.decodeSensorData(truncated));
+        }
+        for (int length = 0; length < batch.length; length++) {
+            byte[] truncated = Arrays.copyOf(batch, length);
+            assertThrows(IllegalArgumentException.class, () -> BinaryPayloadCodec.decodeSensorData(truncated));
+        }
+        for (int length = 0; length < alarm.length; length++) {
+            byte[] truncated = Arrays.copyOf(alarm, length);
+            assertThrows(IllegalArgumentException.class, () -> BinaryPayloadCodec.decodeAlarm(truncated));
+        }
+    }
+
+    @Test
+    void rejectsTrailingBytesAndOverstatedCount() {
+        byte[] single = BinaryPayloadCodec.encodeSensorData(reading("W601_001", 1.0, null, null, null));
+        byte[] padded = Arrays.copyOf(single, single.length + 1);
+        assertThrows(IllegalArgumentException.class, () -> BinaryPayloadCodec.decodeSensorData(padded));
+
+        byte[] batch = BinaryPayloadCodec.encodeSensorBatch(Arrays.asList(reading("A", 1.0, null, null, null)));
+        batch[4] = 2;
+        assertThrows(IllegalArgumentException.class, () -> BinaryPayloadCodec.decodeSensorData(batch));
+
+        byte[] alarm = BinaryPayloadCodec.encodeAlarm(new AlarmMessageDTO("A", "FIRE", "CRITICAL", "m"));
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryPayloadCodec.decodeAlarm(Arrays.copyOf(alarm, alarm.length + 3)));
+    }
+
+    @Test
+    void rejectsWrongMagicVersionAndType() {
+        byte[] payload = BinaryPayloadCodec.encodeSensorData(reading("W601_001", 1.0, null, null, null));
+
+        byte[] wrongMagic = payload.clone();
+        wrongMagic[0] = '{';
+        assertFalse(BinaryPayloadFormat.isBinary(wrongMagic));
+        assertThrows(IllegalArgumentException.class, () -> BinaryPayloadCodec.decodeSensorData(wrongMagic));
+
+        for (int version : new int[]{0, 2, 0xFF}) {
+            byte[] wrongVersion = payload.clone();
+            wrongVersion[1] = (byte) version;
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> BinaryPayloadCodec.decodeSensorData(wrongVersion));
+            assertTrue(e.getMessage().contains("版本"));
+            assertNull(BinaryPayloadCodec.peekDeviceId(wrongVersion));
+        }
+
+        byte[] unknownType = payload.clone();
+        unknownType[2] = 9;
+        assertThrows(IllegalArgumentException.class, () -> BinaryPayloadCodec.decodeSensorData(unknownType));
+        assertNull(BinaryPayloadCodec.peekDeviceId(unknownType));
+
+        byte[] alarm = BinaryPayloadCodec.encodeAlarm(new AlarmMessageDTO("A", "FIRE", "CRITICAL", "m"));
+        assertThrows(IllegalArgumentException.class, () -> BinaryPayloadCodec.decodeSensorData(alarm));
+        assertThrows(IllegalArgumentException.class, () -> BinaryPayloadCodec.decodeAlarm(payload));
+    }
+
+    @Test
+    void detectsBinaryPayloads() {
+        assertFalse(BinaryPayloadFormat.isBinary(null));
+        assertFalse(BinaryPayloadFormat.isBinary(new byte[]{BinaryPayloadFormat.MAGIC, 1}));
+        assertFalse(BinaryPayloadFormat.isBinary("{\"deviceId\":\"A\"}".getBytes()));
+        assertTrue(BinaryPayloadFormat.isBinary(new byte[]{BinaryPayloadFormat.MAGIC, 1, 1}));
+        assertNull(BinaryPayloadCodec.peekDeviceId(new byte[]{BinaryPayloadFormat.MAGIC, 1, 3, 0, 0}));
+    }
+
+    @Test
+    void writerAndReaderAgreeOnIntegerBoundaries() {
+        byte[] bytes = new BinaryPayloadWriter(1)
+                .writeU8(0xFF).writeU16(0xFFFF).writeI32(Integer.MIN_VALUE).writeI32(-1)
+                .writeI64(Long.MIN_VALUE).writeI64(Long.MAX_VALUE).writeI64(-2L)
+                .writeString(null).writeLongString("长字符串")
+                .toByteArray();
+
+        BinaryPayloadReader reader = new BinaryPayloadReader(bytes);
+        assertEquals(0xFF, reader.readU8());
+        assertEquals(0xFFFF, reader.readU16());
+        assertEquals(Integer.MIN_VALUE, reader.readI32());
+        assertEquals(-1, reader.readI32());
+        assertEquals(Long.MIN_VALUE, reader.readI64());
+        assertEquals(Long.MAX_VALUE, reader.readI64());
+        assertEquals(-2L, reader.readI64());
+        assertNull(reader.readString());
+        assertEquals("长字符串", reader.readLongString());
+        assertEquals(0, reader.remaining());
+        reader.requireEnd();
+    }
+
+    private static SensorDataDTO reading(String deviceId, Double light, Double temperature, Double humidity, Long timestamp) {
+        SensorDataDTO data = new SensorDataDTO();
+        data.setDeviceId(deviceId);
+        data.setLight(light);
+        data.setTemperature(temperature);
+        data.setHumidity(humidity);
+        data.setTimestamp(timestamp);
+        return data;
+    }
+}
@@ -3,12 +3,14 @@ package com.smartoffice.device;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * 设备管理服务启动类
  */
 @SpringBootApplication(scanBasePackages = {"com.smartoffice.device", "com.smartoffice.common"})
 @MapperScan("com.smartoffice.device.mapper")
+@EnableScheduling
 public class DeviceServiceApplication {
 
     public static void main(String[] args) {
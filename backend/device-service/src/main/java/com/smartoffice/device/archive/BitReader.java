@@ -0,0 +1,40 @@
+package com.smartoffice.device.archive;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 从字节缓冲的指定区域按位读取（高位在前），只使用绝对位置读取，多个读取器可共享同一缓冲
+ */
+final class BitReader {
+
+    private final ByteBuffer buffer;
+
+    private final int offset;
+
+    private long bitIndex;
+
+    BitReader(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    boolean readBit() {
+        return readBits(1) != 0;
+    }
+
+    /**
+     * 读取bits位（不超过64），作为无符号值返回
+     */
+    long readBits(int bits) {
+        long value = 0;
+        while (bits > 0) {
+            int used = (int) (bitIndex & 7);
+            int n = Math.min(8 - used, bits);
+            int current = buffer.get(offset + (int) (bitIndex >>> 3)) & 0xFF;
+            value = (value << n) | ((current >>> (8 - used - n)) & ((1 << n) - 1));
+            bitIndex += n;
+            bits -= n;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,59 @@
+package com.smartoffice.device.archive;
+
+import java.util.Arrays;
+
+/**
+ * 按位写入的字节缓冲（高位在前），可复用
+ */
+final class BitWriter {
+
+    private byte[] buffer = new byte[4096];
+
+    private int bytePosition;
+
+    /**
+     * 当前字节已写入的位数
+     */
+    private int bitPosition;
+
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * 写入value的低bits位（bits不超过64）
+     */
+    void writeBits(long value, int bits) {
+        while (bits > 0) {
+            int free = 8 - bitPosition;
+            int n = Math.min(free, bits);
+            int chunk = (int) ((value >>> (bits - n)) & ((1 << n) - 1));
+            buffer[bytePosition] |= (byte) (chunk << (free - n));
+            bitPosition += n;
+            bits -= n;
+            if (bitPosition == 8) {
+                bitPosition = 0;
+                if (++bytePosition == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+        }
+    }
+
+    /**
+     * 已写入的字节数（最后一个字节不足8位也计入）
+     */
+    int length() {
+        return bytePosition + (bitPosition > 0 ? 1 : 0);
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    void reset() {
+        Arrays.fill(buffer, 0, length(), (byte) 0);
+        bytePosition = 0;
+        bitPosition = 0;
+    }
+}
@@ -0,0 +1,253 @@
+package com.smartoffice.device.archive;
+
+import com.smartoffice.common.entity.SensorData;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * 单台设备一段连续读数的列式数据块
+ * <p>
+ * 编码（逐点交错写入同一位流）：采集时间（秒）和数据ID按二阶差分（delta-of-delta）变长编码，
+ * 温度、湿度、光照按与前值异或（XOR）后只写有效位，火焰、RGB状态各2位。第一个点的时间、ID、数值写原始64位。
+ * 缺失的数值以NaN表示，DECIMAL(…,2)的数值转为double后可按两位小数无损还原。
+ */
+final class ColdBlock {
+
+    private static final int FLAG_NULL = 3;
+
+    final long[] times;
+
+    final long[] ids;
+
+    final double[] temperature;
+
+    final double[] humidity;
+
+    final double[] light;
+
+    final byte[] flame;
+
+    final byte[] rgbStatus;
+
+    int count;
+
+    ColdBlock(int capacity) {
+        times = new long[capacity];
+        ids = new long[capacity];
+        temperature = new double[capacity];
+        humidity = new double[capacity];
+        light = new double[capacity];
+        flame = new byte[capacity];
+        rgbStatus = new byte[capacity];
+    }
+
+    boolean isFull() {
+        return count == times.length;
+    }
+
+    void add(SensorData row) {
+        times[count] = toEpochSecond(row.getDataTime());
+        ids[count] = row.getId();
+        temperature[count] = toDouble(row.getTemperature());
+        humidity[count] = toDouble(row.getHumidity());
+        light[count] = toDouble(row.getLight());
+        flame[count] = toFlag(row.getFlame());
+        rgbStatus[count] = toFlag(row.getRgbStatus());
+        count++;
+    }
+
+    /**
+     * 把第i个点填入target（调用方复用同一个实例）
+     */
+    void copyTo(int i, String deviceId, SensorData target) {
+        target.setId(ids[i]);
+        target.setDeviceId(deviceId);
+        target.setDataTime(toDateTime(times[i]));
+        target.setTemperature(toDecimal(temperature[i]));
+        target.setHumidity(toDecimal(humidity[i]));
+        target.setLight(toDecimal(light[i]));
+        target.setFlame(flame[i] == FLAG_NULL ? null : (int) flame[i]);
+        target.setRgbStatus(rgbStatus[i] == FLAG_NULL ? null : (int) rgbStatus[i]);
+        target.setCreateTime(null);
+    }
+
+    void encode(BitWriter out) {
+        XorState t = new XorState();
+        XorState h = new XorState();
+        XorState l = new XorState();
+        long previousTimeDelta = 0;
+        long previousIdDelta = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                out.writeBits(times[0], 64);
+                out.writeBits(ids[0], 64);
+            } else {
+                long timeDelta = times[i] - times[i - 1];
+                writeDeltaOfDelta(out, timeDelta - previousTimeDelta);
+                previousTimeDelta = timeDelta;
+                long idDelta = ids[i] - ids[i - 1];
+                writeDeltaOfDelta(out, idDelta - previousIdDelta);
+                previousIdDelta = idDelta;
+            }
+            t.write(out, temperature[i], i == 0);
+            h.write(out, humidity[i], i == 0);
+            l.write(out, light[i], i == 0);
+            out.writeBits(flame[i], 2);
+            out.writeBits(rgbStatus[i], 2);
+        }
+    }
+
+    static ColdBlock decode(BitReader in, int count) {
+        ColdBlock block = new ColdBlock(count);
+        XorState t = new XorState();
+        XorState h = new XorState();
+        XorState l = new XorState();
+        long timeDelta = 0;
+        long idDelta = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                block.times[0] = in.readBits(64);
+                block.ids[0] = in.readBits(64);
+            } else {
+                timeDelta += readDeltaOfDelta(in);
+                block.times[i] = block.times[i - 1] + timeDelta;
+                idDelta += readDeltaOfDelta(in);
+                block.ids[i] = block.ids[i - 1] + idDelta;
+            }
+            block.temperature[i] = t.read(in, i == 0);
+            block.humidity[i] = h.read(in, i == 0);
+            block.light[i] = l.read(in, i == 0);
+            block.flame[i] = (byte) in.readBits(2);
+            block.rgbStatus[i] = (byte) in.readBits(2);
+        }
+        block.count = count;
+        return block;
+    }
+
+    void clear() {
+        count = 0;
+    }
+
+    static long toEpochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static LocalDateTime toDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    private static void writeDeltaOfDelta(BitWriter out, long value) {
+        if (value == 0) {
+            out.writeBits(0, 1);
+        } else if (value >= -63 && value <= 64) {
+            out.writeBits(0b10, 2);
+            out.writeBits(value + 63, 7);
+        } else if (value >= -255 && value <= 256) {
+            out.writeBits(0b110, 3);
+            out.writeBits(value + 255, 9);
+        } else if (value >= -2047 && value <= 2048) {
+            out.writeBits(0b1110, 4);
+            out.writeBits(value + 2047, 12);
+        } else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            out.writeBits(0b11110, 5);
+            out.writeBits(value, 32);
+        } else {
+            out.writeBits(0b11111, 5);
+            out.writeBits(value, 64);
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader in) {
+        if (!in.readBit()) {
+            return 0;
+        }
+        if (!in.readBit()) {
+            return in.readBits(7) - 63;
+        }
+        if (!in.readBit()) {
+            return in.readBits(9) - 255;
+        }
+        if (!in.readBit()) {
+            return in.readBits(12) - 2047;
+        }
+        if (!in.readBit()) {
+            return (int) in.readBits(32);
+        }
+        return in.readBits(64);
+    }
+
+    private static double toDouble(BigDecimal value) {
+        return value == null ? Double.NaN : value.doubleValue();
+    }
+
+    private static BigDecimal toDecimal(double value) {
+        return Double.isNaN(value) ? null : BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static byte toFlag(Integer value) {
+        return value == null ? FLAG_NULL : (byte) (value != 0 ? 1 : 0);
+    }
+
+    /**
+     * 单个数值列的异或编码状态
+     */
+    private static final class XorState {
+
+        private long previous;
+
+        /**
+         * 上一个非零异或值的前导零、末尾零位数，-1表示还没有
+         */
+        private int leading = -1;
+
+        private int trailing;
+
+        void write(BitWriter out, double value, boolean first) {
+            long bits = Double.doubleToLongBits(value);
+            if (first) {
+                out.writeBits(bits, 64);
+                previous = bits;
+                return;
+            }
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.writeBit(false);
+                return;
+            }
+            out.writeBit(true);
+            int lead = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trail = Long.numberOfTrailingZeros(xor);
+            if (leading >= 0 && lead >= leading && trail >= trailing) {
+                // 有效位落在上一个窗口内，沿用窗口
+                out.writeBit(false);
+                out.writeBits(xor >>> trailing, 64 - leading - trailing);
+            } else {
+                int meaningful = 64 - lead - trail;
+                out.writeBit(true);
+                out.writeBits(lead, 5);
+                out.writeBits(meaningful - 1, 6);
+                out.writeBits(xor >>> trail, meaningful);
+                leading = lead;
+                trailing = trail;
+            }
+        }
+
+        double read(BitReader in, boolean first) {
+            if (first) {
+                previous = in.readBits(64);
+            } else if (in.readBit()) {
+                if (in.readBit()) {
+                    leading = (int) in.readBits(5);
+                    int meaningful = (int) in.readBits(6) + 1;
+                    trailing = 64 - leading - meaningful;
+                }
+                previous ^= in.readBits(64 - leading - trailing) << trailing;
+            }
+            return Double.longBitsToDouble(previous);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.smartoffice.device.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 冷存储段文件（只读，内存映射）
+ * <p>
+ * 文件格式：8字节头（魔数、版本）+ 连续的数据块 + 块索引（块数，每块：设备编号、起止时间、点数、偏移、长度）
+ * + 12字节尾（索引偏移、魔数）。打开时只把索引读入内存，数据块在查询时从映射区解码。
+ */
+final class ColdSegment {
+
+    static final String SUFFIX = ".seg";
+
+    private static final int MAGIC = 0x53435331;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final int FOOTER_SIZE = 12;
+
+    final String name;
+
+    final long fileBytes;
+
+    long minTime = Long.MAX_VALUE;
+
+    long maxTime = Long.MIN_VALUE;
+
+    long pointCount;
+
+    int blockCount;
+
+    /**
+     * 设备编号 -> 按时间排列的块
+     */
+    final Map<String, List<BlockRef>> blocks = new HashMap<>();
+
+    private final MappedByteBuffer buffer;
+
+    private ColdSegment(String name, long fileBytes, MappedByteBuffer buffer) {
+        this.name = name;
+        this.fileBytes = fileBytes;
+        this.buffer = buffer;
+    }
+
+    static ColdSegment open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + FOOTER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("段文件大小异常: " + file.getName());
+            }
+            // 映射在通道关闭后仍然有效
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt((int) size - 4) != MAGIC) {
+                throw new IOException("段文件格式错误: " + file.getName());
+            }
+            ColdSegment segment = new ColdSegment(file.getName(), size, buffer);
+            int position = (int) buffer.getLong((int) size - FOOTER_SIZE);
+            int count = buffer.getInt(position);
+            position += 4;
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[buffer.getShort(position)];
+                position += 2;
+                for (int j = 0; j < name.length; j++) {
+                    name[j] = buffer.get(position + j);
+                }
+                position += name.length;
+                BlockRef ref = new BlockRef(segment, buffer.getLong(position), buffer.getLong(position + 8),
+                        buffer.getInt(position + 16), buffer.getInt(position + 20), buffer.getInt(position + 24));
+                position += 28;
+                segment.blocks.computeIfAbsent(new String(name, StandardCharsets.UTF_8), k -> new ArrayList<>()).add(ref);
+                segment.minTime = Math.min(segment.minTime, ref.minTime);
+                segment.maxTime = Math.max(segment.maxTime, ref.maxTime);
+                segment.pointCount += ref.count;
+                segment.blockCount++;
+            }
+            return segment;
+        }
+    }
+
+    ColdBlock decode(BlockRef ref) {
+        return ColdBlock.decode(new BitReader(buffer, ref.offset), ref.count);
+    }
+
+    /**
+     * 段内的一个数据块
+     */
+    static final class BlockRef {
+
+        final ColdSegment segment;
+
+        final long minTime;
+
+        final long maxTime;
+
+        final int count;
+
+        final int offset;
+
+        final int length;
+
+        private BlockRef(ColdSegment segment, long minTime, long maxTime, int count, int offset, int length) {
+            this.segment = segment;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.count = count;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * 段文件写入器，单个文件超过上限时续写到下一个文件（name-0.seg、name-1.seg ...）。
+     * 先写临时文件并落盘，{@link #finish()} 时再重命名，中途失败不会留下不完整的段文件。
+     */
+    static final class Writer {
+
+        private final File dir;
+
+        private final String name;
+
+        private final long maxBytes;
+
+        private final BitWriter bits = new BitWriter();
+
+        private final List<File> temporaryFiles = new ArrayList<>();
+
+        private final List<IndexEntry> index = new ArrayList<>();
+
+        private FileOutputStream file;
+
+        private DataOutputStream out;
+
+        private long position;
+
+        long blockCount;
+
+        long pointCount;
+
+        long byteCount;
+
+        Writer(File dir, String name, long maxBytes) {
+            this.dir = dir;
+            this.name = name;
+            this.maxBytes = maxBytes;
+        }
+
+        void write(String deviceId, ColdBlock block) throws IOException {
+            if (block.count == 0) {
+                return;
+            }
+            bits.reset();
+            block.encode(bits);
+            int length = bits.length();
+            if (out != null && position + length > maxBytes) {
+                closePart();
+            }
+            if (out == null) {
+                openPart();
+            }
+            out.write(bits.buffer(), 0, length);
+            index.add(new IndexEntry(deviceId, block.times[0], block.times[block.count - 1], block.count, (int) position, length));
+            position += length;
+            blockCount++;
+            pointCount += block.count;
+        }
+
+        /**
+         * 完成写入，返回生成的段文件
+         */
+        List<File> finish() throws IOException {
+            if (out != null) {
+                closePart();
+            }
+            List<File> files = new ArrayList<>(temporaryFiles.size());
+            for (File temporary : temporaryFiles) {
+                File target = new File(dir, temporary.getName().substring(0, temporary.getName().length() - 4));
+                Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                files.add(target);
+            }
+            return files;
+        }
+
+        /**
+         * 放弃写入，删除临时文件
+         */
+        void abort() {
+            try {
+                if (out != null) {
+                    out.close();
+                }
+            } catch (IOException ignored) {
+                // 只是清理
+            }
+            for (File temporary : temporaryFiles) {
+                if (!temporary.delete()) {
+                    temporary.deleteOnExit();
+                }
+            }
+            temporaryFiles.clear();
+        }
+
+        private void openPart() throws IOException {
+            File temporary = new File(dir, name + "-" + temporaryFiles.size() + SUFFIX + ".tmp");
+            temporaryFiles.add(temporary);
+            file = new FileOutputStream(temporary);
+            out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            position = HEADER_SIZE;
+        }
+
+        private void closePart() throws IOException {
+            long indexOffset = position;
+            out.writeInt(index.size());
+            for (IndexEntry entry : index) {
+                byte[] deviceId = entry.deviceId.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(deviceId.length);
+                out.write(deviceId);
+                out.writeLong(entry.minTime);
+                out.writeLong(entry.maxTime);
+                out.writeInt(entry.count);
+                out.writeInt(entry.offset);
+                out.writeInt(entry.length);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(MAGIC);
+            out.flush();
+            file.getFD().sync();
+            byteCount += out.size() & 0xFFFFFFFFL;
+            out.close();
+            out = null;
+            index.clear();
+        }
+    }
+
+    private static final class IndexEntry {
+
+        private final String deviceId;
+
+        private final long minTime;
+
+        private final long maxTime;
+
+        private final int count;
+
+        private final int offset;
+
+        private final int length;
+
+        private IndexEntry(String deviceId, long minTime, long maxTime, int count, int offset, int length) {
+            this.deviceId = deviceId;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.count = count;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    static List<File> list(File dir) {
+        File[] files = dir.listFiles((d, n) -> n.endsWith(SUFFIX));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        List<File> result = new ArrayList<>(files.length);
+        Collections.addAll(result, files);
+        return result;
+    }
+}
@@ -0,0 +1,326 @@
+package com.smartoffice.device.archive;
+
+import com.smartoffice.common.entity.SensorData;
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.config.MqttProperties;
+import com.smartoffice.device.mapper.SensorDataPartitionMapper;
+import com.smartoffice.device.storage.PartitionRetentionPolicy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * 传感器数据冷存储
+ * <p>
+ * 过期分区（或已交换出的归档表）按设备、时间顺序流式读出，每台设备每 blockPoints 个点压缩为一个数据块
+ * （见 {@link ColdBlock}），写成本地段文件后再删除分区。段文件只读并内存映射，启动时加载块索引；
+ * 查询先按块的起止时间筛选，只解码命中的块。冷存储中的数据都早于数据库中仍保留的分区。
+ * <p>
+ * 段文件只写在本实例，集群模式下其他实例查不到，因此集群模式不支持写入冷存储，配置 COLD 策略时启动失败。
+ */
+@Slf4j
+@Component
+public class SensorColdArchive {
+
+    private static final Pattern ARCHIVE_TABLE = Pattern.compile("sensor_data_archive_p\\w+");
+
+    /**
+     * 块在同一设备内的顺序：起始时间，其次为写入顺序
+     */
+    private static final Comparator<ColdSegment.BlockRef> BLOCK_ORDER =
+            Comparator.<ColdSegment.BlockRef>comparingLong(ref -> ref.minTime).thenComparingLong(ref -> ref.offset);
+
+    @Autowired
+    private IngestionProperties ingestionProperties;
+
+    @Autowired
+    private SensorDataPartitionMapper sensorDataPartitionMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    private final List<ColdSegment> segments = new CopyOnWriteArrayList<>();
+
+    private final LongAdder archivedCount = new LongAdder();
+    private final LongAdder archivedRows = new LongAdder();
+    private final LongAdder queryCount = new LongAdder();
+    private final LongAdder decodedBlocks = new LongAdder();
+    private volatile String lastArchived;
+    private volatile long lastArchiveMillis;
+
+    @PostConstruct
+    public void init() {
+        if (mqttProperties.getCluster().isEnabled() && ingestionProperties.getPartition().isEnabled()
+                && ingestionProperties.getPartition().getRetentionPolicy() == PartitionRetentionPolicy.COLD) {
+            throw new IllegalStateException("集群模式（mqtt.cluster.enabled）不支持 ingestion.partition.retention-policy: COLD，"
+                    + "冷存储只写在本实例，请改用 DROP 或 ARCHIVE");
+        }
+        File dir = new File(ingestionProperties.getColdArchive().getDir());
+        for (File file : ColdSegment.list(dir)) {
+            try {
+                segments.add(ColdSegment.open(file));
+            } catch (IOException e) {
+                log.error("加载冷存储段文件失败: {}", file.getAbsolutePath(), e);
+            }
+        }
+        if (!segments.isEmpty()) {
+            log.info("冷存储已加载: {}个段文件, {}个点", segments.size(), segments.stream().mapToLong(s -> s.pointCount).sum());
+        }
+    }
+
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * 把 sensor_data 的一个分区写入冷存储（需在事务内调用，遍历期间占用当前连接），返回行数；已写过时返回-1
+     */
+    public long archivePartition(String partition) throws IOException {
+        if (exists(partition)) {
+            return -1;
+        }
+        return write(partition, () -> sensorDataPartitionMapper.streamPartition(partition));
+    }
+
+    /**
+     * 把 ARCHIVE 策略交换出的归档表写入冷存储，返回行数；已写过时返回-1（归档表保留，确认后可手工删除）
+     */
+    public long importTable(String table) throws IOException {
+        if (mqttProperties.getCluster().isEnabled()) {
+            throw new IllegalArgumentException("集群模式下不能写入本地冷存储");
+        }
+        if (!ARCHIVE_TABLE.matcher(table).matches()) {
+            throw new IllegalArgumentException("只能导入 sensor_data_archive_p* 归档表");
+        }
+        if (sensorDataPartitionMapper.countTable(table) == 0) {
+            throw new IllegalArgumentException("归档表不存在: " + table);
+        }
+        String name = table.substring("sensor_data_archive_".length());
+        if (exists(name)) {
+            return -1;
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    return write(name, () -> sensorDataPartitionMapper.streamTable(table));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long write(String name, Supplier<Cursor<SensorData>> source) throws IOException {
+        if (mqttProperties.getCluster().isEnabled()) {
+            throw new IOException("集群模式下不能写入本地冷存储");
+        }
+        IngestionProperties.ColdArchive config = ingestionProperties.getColdArchive();
+        File dir = new File(config.getDir());
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("无法创建冷存储目录: " + dir.getAbsolutePath());
+        }
+        long start = System.nanoTime();
+        ColdSegment.Writer writer = new ColdSegment.Writer(dir, name, config.getMaxSegmentBytes());
+        ColdBlock block = new ColdBlock(Math.max(16, config.getBlockPoints()));
+        String deviceId = null;
+        List<File> files;
+        try (Cursor<SensorData> cursor = source.get()) {
+            for (SensorData row : cursor) {
+                if (row.getDataTime() == null || row.getId() == null) {
+                    continue;
+                }
+                if (block.isFull() || !row.getDeviceId().equals(deviceId)) {
+                    writer.write(deviceId, block);
+                    block.clear();
+                    deviceId = row.getDeviceId();
+                }
+                block.add(row);
+            }
+            writer.write(deviceId, block);
+            files = writer.finish();
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+        for (File file : files) {
+            segments.add(ColdSegment.open(file));
+        }
+        archivedCount.increment();
+        archivedRows.add(writer.pointCount);
+        lastArchived = name;
+        lastArchiveMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("{}已写入冷存储: {}行, {}个块, {}字节, 耗时{}ms", name, writer.pointCount, writer.blockCount,
+                writer.byteCount, lastArchiveMillis);
+        return writer.pointCount;
+    }
+
+    /**
+     * 按 (采集时间, ID) 倒序取最多limit行：时间在[from, to)内（可为空），且早于游标 (beforeTime, beforeId)（可为空）
+     */
+    public List<SensorData> selectPage(String deviceId, LocalDateTime from, LocalDateTime to,
+                                       LocalDateTime beforeTime, Long beforeId, int limit) {
+        List<SensorData> result = new ArrayList<>();
+        if (segments.isEmpty() || limit <= 0) {
+            return result;
+        }
+        queryCount.increment();
+        long lower = from == null ? Long.MIN_VALUE : ColdBlock.toEpochSecond(from);
+        long upper = to == null ? Long.MAX_VALUE : ColdBlock.toEpochSecond(to);
+        long cursorTime = beforeTime == null ? Long.MAX_VALUE : ColdBlock.toEpochSecond(beforeTime);
+        long cursorId = beforeId == null ? Long.MAX_VALUE : beforeId;
+        List<ColdSegment.BlockRef> refs = blocksOf(deviceId, lower, Math.min(upper - 1, cursorTime));
+        for (int b = refs.size() - 1; b >= 0 && result.size() < limit; b--) {
+            ColdSegment.BlockRef ref = refs.get(b);
+            ColdBlock block = decode(ref);
+            for (int i = block.count - 1; i >= 0 && result.size() < limit; i--) {
+                long time = block.times[i];
+                if (time < lower || time >= upper || time > cursorTime || (time == cursorTime && block.ids[i] >= cursorId)) {
+                    continue;
+                }
+                SensorData row = new SensorData();
+                block.copyTo(i, deviceId, row);
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 统计时间范围内的行数（完全落在范围内的块直接取块点数）
+     */
+    public long count(String deviceId, LocalDateTime from, LocalDateTime to) {
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        long lower = from == null ? Long.MIN_VALUE : ColdBlock.toEpochSecond(from);
+        long upper = to == null ? Long.MAX_VALUE : ColdBlock.toEpochSecond(to);
+        long total = 0;
+        for (ColdSegment.BlockRef ref : blocksOf(deviceId, lower, upper - 1)) {
+            if (ref.minTime >= lower && ref.maxTime < upper) {
+                total += ref.count;
+                continue;
+            }
+            ColdBlock block = decode(ref);
+            for (int i = 0; i < block.count; i++) {
+                if (block.times[i] >= lower && block.times[i] < upper) {
+                    total++;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 按 (采集时间, ID) 顺序遍历时间范围 [from, to) 内的行，回调参数为复用的同一个实例，不得持有
+     */
+    public void forEach(String deviceId, LocalDateTime from, LocalDateTime to, Consumer<SensorData> consumer) {
+        if (segments.isEmpty()) {
+            return;
+        }
+        long lower = ColdBlock.toEpochSecond(from);
+        long upper = ColdBlock.toEpochSecond(to);
+        SensorData row = new SensorData();
+        for (ColdSegment.BlockRef ref : blocksOf(deviceId, lower, upper - 1)) {
+            ColdBlock block = decode(ref);
+            for (int i = 0; i < block.count; i++) {
+                if (block.times[i] >= lower && block.times[i] < upper) {
+                    block.copyTo(i, deviceId, row);
+                    consumer.accept(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取冷存储统计
+     */
+    public Map<String, Object> getStats() {
+        long points = 0;
+        long bytes = 0;
+        long blocks = 0;
+        for (ColdSegment segment : segments) {
+            points += segment.pointCount;
+            bytes += segment.fileBytes;
+            blocks += segment.blockCount;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("dir", ingestionProperties.getColdArchive().getDir());
+        stats.put("segments", segments.size());
+        stats.put("blocks", blocks);
+        stats.put("points", points);
+        stats.put("bytes", bytes);
+        stats.put("bytesPerPoint", points > 0 ? Math.round(bytes * 100.0 / points) / 100.0 : 0);
+        stats.put("archived", archivedCount.sum());
+        stats.put("archivedRows", archivedRows.sum());
+        stats.put("lastArchived", lastArchived);
+        stats.put("lastArchiveMillis", lastArchiveMillis);
+        stats.put("queries", queryCount.sum());
+        stats.put("decodedBlocks", decodedBlocks.sum());
+        return stats;
+    }
+
+    private boolean exists(String name) {
+        String prefix = name + "-";
+        for (ColdSegment segment : segments) {
+            if (segment.name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 设备在 [lower, upper] 秒内可能有数据的块，按时间顺序
+     */
+    private List<ColdSegment.BlockRef> blocksOf(String deviceId, long lower, long upper) {
+        List<ColdSegment.BlockRef> result = new ArrayList<>();
+        for (ColdSegment segment : segments) {
+            if (segment.maxTime < lower || segment.minTime > upper) {
+                continue;
+            }
+            List<ColdSegment.BlockRef> refs = segment.blocks.get(deviceId);
+            if (refs == null) {
+                continue;
+            }
+            for (ColdSegment.BlockRef ref : refs) {
+                if (ref.maxTime >= lower && ref.minTime <= upper) {
+                    result.add(ref);
+                }
+            }
+        }
+        if (result.size() > 1) {
+            Collections.sort(result, BLOCK_ORDER);
+        }
+        return result;
+    }
+
+    private ColdBlock decode(ColdSegment.BlockRef ref) {
+        decodedBlocks.increment();
+        return ref.segment.decode(ref);
+    }
+}
@@ -0,0 +1,476 @@
+package com.smartoffice.device.cache;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.smartoffice.common.codec.BinaryPayloadCodec;
+import com.smartoffice.common.dto.SensorDataDTO;
+import com.smartoffice.common.entity.SensorData;
+import com.smartoffice.device.config.CacheProperties;
+import com.smartoffice.device.config.MqttProperties;
+import com.smartoffice.device.mapper.SensorDataMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 最新传感器数据两级缓存
+ * <p>
+ * 一级为进程内Map，由接入路径直接写入；二级为Redis（{@code sensor:state:<设备编号>}），多实例共享。
+ * 读取依次查一级、二级、数据库，从二级或数据库读回的数据在进程内只保留有限时间。
+ * <p>
+ * 二级使用 {@link BinaryPayloadCodec} 的紧凑二进制编码。接入写入只登记到待写表，
+ * 定时把各设备最新一条合并为一次管道批量写入，同一间隔内的多次上报只写一次。
+ * 集群接入模式下每台设备只由一个实例处理，写入Redis后再广播失效通知，其余实例丢弃各自的一级副本。
+ */
+@Slf4j
+@Component
+public class LatestSensorCache {
+
+    public static final String KEY_PREFIX = "sensor:state:";
+
+    /**
+     * 单条失效通知最多携带的设备数
+     */
+    private static final int MAX_IDS_PER_MESSAGE = 500;
+
+    private static final Expiration REDIS_EXPIRATION = Expiration.from(24, TimeUnit.HOURS);
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired(required = false)
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private SensorDataMapper sensorDataMapper;
+
+    @Autowired
+    private CacheProperties cacheProperties;
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    /**
+     * 本实例标识，忽略自己发出的失效通知
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final Map<String, Entry> local = new ConcurrentHashMap<>();
+
+    /**
+     * 待写入Redis的最新数据
+     */
+    private final Map<String, SensorDataDTO> pendingWrites = new ConcurrentHashMap<>();
+
+    /**
+     * 待广播失效的设备（删除设备）
+     */
+    private final Set<String> pendingInvalidations = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 上次清理过期读回数据的时间
+     */
+    private volatile long lastSweepAt;
+
+    private final LongAdder localHitCount = new LongAdder();
+    private final LongAdder redisHitCount = new LongAdder();
+    private final LongAdder databaseLoadCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder putCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder redisWriteCount = new LongAdder();
+    private final LongAdder redisWriteBytes = new LongAdder();
+    private final LongAdder pipelineCount = new LongAdder();
+    private final LongAdder invalidationSentCount = new LongAdder();
+    private final LongAdder invalidationReceivedCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (redisMessageListenerContainer != null && clustered()) {
+            redisMessageListenerContainer.addMessageListener(this::onInvalidation,
+                    new ChannelTopic(cacheProperties.getLatest().getInvalidationChannel()));
+            log.info("最新数据缓存已订阅失效通知: channel={}, instanceId={}",
+                    cacheProperties.getLatest().getInvalidationChannel(), instanceId);
+        }
+    }
+
+    /**
+     * 接入路径写入最新数据（一级常驻，Redis合并后批量写入）
+     * <p>
+     * 一级已满时先清理过期的读回数据，仍然没有空位则丢弃新设备的数据（只入库，不缓存），
+     * 防止伪造的设备编号无限撑大进程内缓存和待写表。
+     */
+    public void put(SensorDataDTO data) {
+        String deviceId = data.getDeviceId();
+        if (!local.containsKey(deviceId) && !hasRoom()) {
+            rejectedCount.increment();
+            return;
+        }
+        local.put(deviceId, new Entry(data, 0L));
+        putCount.increment();
+        if (redisTemplate != null) {
+            pendingWrites.put(deviceId, data);
+        }
+    }
+
+    /**
+     * 读取设备最新数据，没有任何数据时返回null
+     */
+    public Map<String, Object> get(String deviceId) {
+        long now = System.currentTimeMillis();
+        Entry entry = local.get(deviceId);
+        if (entry != null && !entry.isExpired(now)) {
+            localHitCount.increment();
+            return toView(entry.value);
+        }
+
+        SensorDataDTO value = null;
+        if (redisTemplate != null) {
+            try {
+                byte[] bytes = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(key(deviceId)));
+                value = decode(bytes);
+            } catch (Exception e) {
+                log.warn("Redis获取数据失败，从数据库获取: {}", e.getMessage());
+            }
+        }
+        if (value != null) {
+            redisHitCount.increment();
+        } else {
+            value = loadFromDatabase(deviceId);
+            if (value != null) {
+                databaseLoadCount.increment();
+            } else {
+                missCount.increment();
+            }
+        }
+        cacheLoaded(deviceId, value, now);
+        return toView(value);
+    }
+
+    /**
+     * 批量读取设备最新数据，结果按入参顺序，没有数据的设备值为null
+     * <p>
+     * 一级未命中的设备合并为一次Redis MGET，不再逐台回查数据库。
+     */
+    public Map<String, Object> getAll(Collection<String> deviceIds) {
+        Map<String, SensorDataDTO> data = getAllData(deviceIds);
+        Map<String, Object> result = new LinkedHashMap<>(data.size() * 2);
+        for (Map.Entry<String, SensorDataDTO> entry : data.entrySet()) {
+            result.put(entry.getKey(), toView(entry.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * 批量读取设备最新数据（原始DTO），结果按入参顺序，没有数据的设备值为null
+     */
+    public Map<String, SensorDataDTO> getAllData(Collection<String> deviceIds) {
+        long now = System.currentTimeMillis();
+        Map<String, SensorDataDTO> result = new LinkedHashMap<>(deviceIds.size() * 2);
+        List<String> misses = new ArrayList<>();
+        for (String deviceId : deviceIds) {
+            Entry entry = local.get(deviceId);
+            if (entry != null && !entry.isExpired(now)) {
+                localHitCount.increment();
+                result.put(deviceId, entry.value);
+            } else {
+                result.put(deviceId, null);
+                misses.add(deviceId);
+            }
+        }
+        if (misses.isEmpty() || redisTemplate == null) {
+            missCount.add(misses.size());
+            return result;
+        }
+        byte[][] keys = new byte[misses.size()][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(misses.get(i));
+        }
+        try {
+            List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) connection -> connection.mGet(keys));
+            for (int i = 0; i < misses.size(); i++) {
+                SensorDataDTO value = values != null ? decode(values.get(i)) : null;
+                if (value != null) {
+                    redisHitCount.increment();
+                    result.put(misses.get(i), value);
+                    cacheLoaded(misses.get(i), value, now);
+                } else {
+                    missCount.increment();
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Redis批量获取数据失败: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 移除设备缓存（删除设备后调用）
+     */
+    public void evict(String deviceId) {
+        local.remove(deviceId);
+        pendingWrites.remove(deviceId);
+        if (clustered()) {
+            pendingInvalidations.add(deviceId);
+        }
+    }
+
+    /**
+     * 把待写数据管道批量写入Redis，写入后再广播失效通知，保证其他实例重新读取时拿到新值
+     */
+    @Scheduled(fixedDelayString = "${cache.latest.flush-interval-ms:100}")
+    public void flush() {
+        if (redisTemplate == null || pendingWrites.isEmpty() && pendingInvalidations.isEmpty()) {
+            return;
+        }
+        List<String> written = new ArrayList<>(pendingWrites.size());
+        List<byte[]> keys = new ArrayList<>(pendingWrites.size());
+        List<byte[]> values = new ArrayList<>(pendingWrites.size());
+        for (String deviceId : pendingWrites.keySet()) {
+            // 逐个原子取出，取出后到达的新数据留到下一次
+            SensorDataDTO data = pendingWrites.remove(deviceId);
+            if (data == null) {
+                continue;
+            }
+            byte[] value;
+            try {
+                value = BinaryPayloadCodec.encodeSensorData(data);
+            } catch (IllegalArgumentException e) {
+                log.warn("最新数据编码失败: deviceId={}, reason={}", deviceId, e.getMessage());
+                continue;
+            }
+            written.add(deviceId);
+            keys.add(key(deviceId));
+            values.add(value);
+        }
+        if (!keys.isEmpty()) {
+            try {
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (int i = 0; i < keys.size(); i++) {
+                        connection.set(keys.get(i), values.get(i), REDIS_EXPIRATION, RedisStringCommands.SetOption.upsert());
+                    }
+                    return null;
+                });
+                pipelineCount.increment();
+                redisWriteCount.add(keys.size());
+                for (byte[] value : values) {
+                    redisWriteBytes.add(value.length);
+                }
+            } catch (Exception e) {
+                log.warn("Redis缓存失败，继续执行: {}", e.getMessage());
+            }
+        }
+        if (clustered()) {
+            publishInvalidations(written);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 获取缓存统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long localHits = localHitCount.sum();
+        long total = localHits + redisHitCount.sum() + databaseLoadCount.sum() + missCount.sum();
+        long puts = putCount.sum();
+        long writes = redisWriteCount.sum();
+        stats.put("entries", local.size());
+        stats.put("localHits", localHits);
+        stats.put("redisHits", redisHitCount.sum());
+        stats.put("databaseLoads", databaseLoadCount.sum());
+        stats.put("misses", missCount.sum());
+        stats.put("localHitRate", total > 0 ? (double) localHits / total : 0);
+        stats.put("puts", puts);
+        stats.put("rejectedPuts", rejectedCount.sum());
+        stats.put("redisWrites", writes);
+        stats.put("redisPipelines", pipelineCount.sum());
+        stats.put("writeCoalesceRatio", writes > 0 ? (double) puts / writes : 0);
+        stats.put("avgValueBytes", writes > 0 ? (double) redisWriteBytes.sum() / writes : 0);
+        stats.put("pendingWrites", pendingWrites.size());
+        stats.put("invalidationsSent", invalidationSentCount.sum());
+        stats.put("invalidationsReceived", invalidationReceivedCount.sum());
+        return stats;
+    }
+
+    /**
+     * 合并广播失效通知，格式：{@code <实例标识>|<设备编号>,<设备编号>...}
+     */
+    private void publishInvalidations(List<String> written) {
+        List<String> deviceIds = new ArrayList<>(written);
+        for (Iterator<String> iterator = pendingInvalidations.iterator(); iterator.hasNext(); ) {
+            deviceIds.add(iterator.next());
+            iterator.remove();
+        }
+        if (deviceIds.isEmpty()) {
+            return;
+        }
+        byte[] channel = cacheProperties.getLatest().getInvalidationChannel().getBytes(StandardCharsets.UTF_8);
+        for (int from = 0; from < deviceIds.size(); from += MAX_IDS_PER_MESSAGE) {
+            List<String> chunk = deviceIds.subList(from, Math.min(from + MAX_IDS_PER_MESSAGE, deviceIds.size()));
+            byte[] body = (instanceId + '|' + String.join(",", chunk)).getBytes(StandardCharsets.UTF_8);
+            try {
+                redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(channel, body));
+                invalidationSentCount.add(chunk.size());
+            } catch (Exception e) {
+                log.warn("发送缓存失效通知失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void onInvalidation(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('|');
+        if (separator < 0 || instanceId.equals(body.substring(0, separator))) {
+            return;
+        }
+        int start = separator + 1;
+        while (start < body.length()) {
+            int end = body.indexOf(',', start);
+            if (end < 0) {
+                end = body.length();
+            }
+            local.remove(body.substring(start, end));
+            invalidationReceivedCount.increment();
+            start = end + 1;
+        }
+    }
+
+    /**
+     * 缓存读回的数据（包括不存在的结果），不覆盖接入路径写入的常驻数据
+     */
+    private void cacheLoaded(String deviceId, SensorDataDTO value, long now) {
+        if (local.size() >= cacheProperties.getLatest().getMaxEntries() && !local.containsKey(deviceId)) {
+            return;
+        }
+        long expiresAt = now + cacheProperties.getLatest().getTtlSeconds() * 1000L;
+        local.compute(deviceId, (k, current) ->
+                current != null && current.expiresAt == 0L ? current : new Entry(value, expiresAt));
+    }
+
+    /**
+     * 一级是否还能放入新设备，已满时每个有效期内最多清理一次过期的读回数据
+     */
+    private boolean hasRoom() {
+        int maxEntries = cacheProperties.getLatest().getMaxEntries();
+        if (local.size() < maxEntries) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        long sweepInterval = cacheProperties.getLatest().getTtlSeconds() * 1000L;
+        if (now - lastSweepAt < sweepInterval) {
+            return false;
+        }
+        lastSweepAt = now;
+        local.values().removeIf(entry -> entry.isExpired(now));
+        return local.size() < maxEntries;
+    }
+
+    private SensorDataDTO loadFromDatabase(String deviceId) {
+        SensorData sensorData = sensorDataMapper.selectOne(
+                new LambdaQueryWrapper<SensorData>()
+                        .eq(SensorData::getDeviceId, deviceId)
+                        .orderByDesc(SensorData::getDataTime)
+                        .last("LIMIT 1")
+        );
+        if (sensorData == null) {
+            return null;
+        }
+        SensorDataDTO data = new SensorDataDTO();
+        data.setDeviceId(sensorData.getDeviceId());
+        data.setLight(sensorData.getLight() != null ? sensorData.getLight().doubleValue() : null);
+        data.setTemperature(sensorData.getTemperature() != null ? sensorData.getTemperature().doubleValue() : null);
+        data.setHumidity(sensorData.getHumidity() != null ? sensorData.getHumidity().doubleValue() : null);
+        data.setFlame(sensorData.getFlame() != null && sensorData.getFlame() == 1);
+        data.setRgbStatus(sensorData.getRgbStatus() != null && sensorData.getRgbStatus() == 1);
+        data.setTimestamp(sensorData.getDataTime() != null
+                ? sensorData.getDataTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : System.currentTimeMillis());
+        return data;
+    }
+
+    /**
+     * 转换为前端期望的格式
+     */
+    private static Map<String, Object> toView(SensorDataDTO data) {
+        if (data == null) {
+            return null;
+        }
+        Map<String, Object> view = new HashMap<>(16);
+        view.put("deviceId", data.getDeviceId());
+        view.put("light", data.getLight());
+        view.put("temperature", data.getTemperature());
+        view.put("humidity", data.getHumidity());
+        view.put("flame", Boolean.TRUE.equals(data.getFlame()));
+        view.put("rgbStatus", Boolean.TRUE.equals(data.getRgbStatus()));
+        view.put("timestamp", data.getTimestamp());
+        return view;
+    }
+
+    private static SensorDataDTO decode(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            List<SensorDataDTO> readings = BinaryPayloadCodec.decodeSensorData(bytes);
+            return readings.isEmpty() ? null : readings.get(0);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static byte[] key(String deviceId) {
+        return (KEY_PREFIX + deviceId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private boolean clustered() {
+        return mqttProperties.getCluster().isEnabled();
+    }
+
+    private static final class Entry {
+
+        private final SensorDataDTO value;
+
+        /**
+         * 过期时间，0表示接入路径写入的常驻数据
+         */
+        private final long expiresAt;
+
+        private Entry(SensorDataDTO value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return expiresAt != 0L && expiresAt <= now;
+        }
+    }
+}
@@ -0,0 +1,506 @@
+package com.smartoffice.device.cache;
+
+import com.smartoffice.device.config.CacheProperties;
+import com.smartoffice.device.ingest.SensorReading;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 最近读数堆外存储
+ * <p>
+ * 每台设备一段固定大小的环形区域，按时间槽（默认10秒）存放该槽内最后一条读数，槽位由采集时间直接算出，
+ * 超出保留时长的槽被新数据覆盖。数据以基本类型写在内存映射文件中，不占用Java堆，重启后直接映射回来即可查询。
+ * <p>
+ * 文件格式：32字节头（魔数、版本、槽宽、每设备槽数、设备数上限、已分配目录项数）
+ * + 设备目录（每项64字节：2字节长度 + 设备编号UTF-8（最长54字节）+ 最后写入的采集时间毫秒）
+ * + 各设备数据区（每条记录24字节：采集时间毫秒、温度、湿度、光照（float，缺失为NaN）、标志位）。
+ * 头部参数与配置不一致时重建文件。加载时回收最后写入已超出保留时长的目录项，停止上报的设备不会一直占用区域。
+ * <p>
+ * 数据区按整台设备切成不超过 {@link #CHUNK_BYTES} 的大块，用到时整块映射，映射数只随设备数按块增长，
+ * 不受 {@code vm.max_map_count} 限制。
+ * <p>
+ * 集群模式下其他实例处理的设备由 {@link com.smartoffice.device.push.SensorPushAggregator} 随推送转发的读数写入，
+ * 每个推送帧每台设备一条，足以填满各时间槽；网关批量补报的历史读数只有处理实例能查到每一条。
+ */
+@Slf4j
+@Component
+public class RecentReadingStore {
+
+    public static final String FILE_NAME = "readings.ring";
+
+    private static final int MAGIC = 0x52525331;
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 32;
+
+    private static final int DEVICE_COUNT_OFFSET = 20;
+
+    private static final int ENTRY_SIZE = 64;
+
+    private static final int LAST_TIME_OFFSET = 56;
+
+    private static final int MAX_NAME_BYTES = LAST_TIME_OFFSET - 2;
+
+    private static final int RECORD_SIZE = 24;
+
+    private static final int TEMPERATURE_OFFSET = 8;
+
+    private static final int HUMIDITY_OFFSET = 12;
+
+    private static final int LIGHT_OFFSET = 16;
+
+    private static final int FLAGS_OFFSET = 20;
+
+    private static final int FLAG_FLAME = 1;
+
+    private static final int FLAG_RGB_STATUS = 1 << 1;
+
+    /**
+     * 单次映射的最大字节数
+     */
+    private static final long CHUNK_BYTES = 1L << 30;
+
+    @Autowired
+    private CacheProperties cacheProperties;
+
+    private RandomAccessFile file;
+
+    private FileChannel channel;
+
+    /**
+     * 文件头和设备目录
+     */
+    private MappedByteBuffer directory;
+
+    private long resolutionMillis;
+
+    private int slots;
+
+    private int maxDevices;
+
+    private long regionBytes;
+
+    private long dataOffset;
+
+    private int devicesPerChunk;
+
+    /**
+     * 已映射的数据块，按需映射
+     */
+    private MappedByteBuffer[] chunks;
+
+    private final Map<String, Region> regions = new ConcurrentHashMap<>();
+
+    /**
+     * 已删除设备空出的目录项
+     */
+    private final Deque<Integer> freeIndexes = new ArrayDeque<>();
+
+    private int allocated;
+
+    private boolean fullWarned;
+
+    private volatile boolean available;
+
+    private final LongAdder appendCount = new LongAdder();
+    private final LongAdder staleCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private volatile int reclaimedOnLoad;
+
+    @PostConstruct
+    public void init() {
+        CacheProperties.Recent config = cacheProperties.getRecent();
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            open(config);
+            available = true;
+            log.info("最近读数存储已加载: {}台设备, 回收{}台过期设备, 每台{}个槽({}秒)",
+                    regions.size(), reclaimedOnLoad, slots, config.getResolutionSeconds());
+        } catch (Exception e) {
+            log.error("最近读数存储初始化失败，最近数据查询不可用", e);
+        }
+    }
+
+    private void open(CacheProperties.Recent config) throws IOException {
+        resolutionMillis = config.getResolutionSeconds() * 1000L;
+        slots = (int) (config.getWindowHours() * 3600L / config.getResolutionSeconds());
+        maxDevices = config.getMaxDevices();
+        regionBytes = (long) slots * RECORD_SIZE;
+        dataOffset = HEADER_SIZE + (long) maxDevices * ENTRY_SIZE;
+        if (regionBytes > CHUNK_BYTES) {
+            throw new IOException("单台设备数据区超过" + CHUNK_BYTES + "字节，请缩短保留时长或增大槽宽");
+        }
+        devicesPerChunk = (int) Math.min(maxDevices, CHUNK_BYTES / regionBytes);
+        chunks = new MappedByteBuffer[(maxDevices + devicesPerChunk - 1) / devicesPerChunk];
+
+        File dir = new File(config.getDir());
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("无法创建目录: " + dir.getAbsolutePath());
+        }
+        file = new RandomAccessFile(new File(dir, FILE_NAME), "rw");
+        channel = file.getChannel();
+        boolean compatible = false;
+        if (file.length() >= HEADER_SIZE) {
+            file.seek(0);
+            compatible = file.readInt() == MAGIC && file.readInt() == VERSION
+                    && file.readInt() == config.getResolutionSeconds() && file.readInt() == slots
+                    && file.readInt() == maxDevices;
+            if (!compatible) {
+                log.warn("最近读数文件格式或配置已变化，重建文件");
+            }
+        }
+        if (!compatible) {
+            file.setLength(0);
+        }
+        // 稀疏文件，只有写过的页占用磁盘
+        file.setLength(dataOffset + maxDevices * regionBytes);
+        directory = channel.map(FileChannel.MapMode.READ_WRITE, 0, dataOffset);
+        if (!compatible) {
+            directory.putInt(0, MAGIC);
+            directory.putInt(4, VERSION);
+            directory.putInt(8, config.getResolutionSeconds());
+            directory.putInt(12, slots);
+            directory.putInt(16, maxDevices);
+            directory.putInt(DEVICE_COUNT_OFFSET, 0);
+        }
+
+        allocated = directory.getInt(DEVICE_COUNT_OFFSET);
+        long expiredBefore = System.currentTimeMillis() - getWindowMillis();
+        byte[] name = new byte[ENTRY_SIZE];
+        int reclaimed = 0;
+        for (int index = 0; index < allocated; index++) {
+            int position = HEADER_SIZE + index * ENTRY_SIZE;
+            int length = directory.getShort(position);
+            if (length > 0 && directory.getLong(position + LAST_TIME_OFFSET) < expiredBefore) {
+                // 窗口内已没有数据，区域中的旧记录按槽时间过滤，复用时无需清零
+                directory.putShort(position, (short) 0);
+                reclaimed++;
+                length = 0;
+            }
+            if (length <= 0) {
+                freeIndexes.add(index);
+                continue;
+            }
+            for (int i = 0; i < length; i++) {
+                name[i] = directory.get(position + 2 + i);
+            }
+            regions.put(new String(name, 0, length, StandardCharsets.UTF_8), mapRegion(index));
+        }
+        reclaimedOnLoad = reclaimed;
+    }
+
+    /**
+     * 写入一条读数（接入路径调用，同一设备的读数由同一线程按顺序写入）
+     * <p>
+     * 首次写入的设备会占用一个区域，调用方只写入已登记设备的读数。
+     */
+    public void append(SensorReading reading, long time) {
+        if (!available || reading.getDeviceId() == null) {
+            return;
+        }
+        Region region = regionOf(reading.getDeviceId());
+        if (region == null) {
+            rejectedCount.increment();
+            return;
+        }
+        int position = region.base + slotPosition(time / resolutionMillis);
+        MappedByteBuffer buffer = region.buffer;
+        synchronized (region) {
+            // 同一槽内保留最后一条；槽中是更晚的数据说明本条已超出保留时长或迟到
+            if (time < buffer.getLong(position)) {
+                staleCount.increment();
+                return;
+            }
+            buffer.putFloat(position + TEMPERATURE_OFFSET, reading.hasTemperature() ? (float) reading.getTemperature() : Float.NaN);
+            buffer.putFloat(position + HUMIDITY_OFFSET, reading.hasHumidity() ? (float) reading.getHumidity() : Float.NaN);
+            buffer.putFloat(position + LIGHT_OFFSET, reading.hasLight() ? (float) reading.getLight() : Float.NaN);
+            buffer.putInt(position + FLAGS_OFFSET, (reading.isFlame() ? FLAG_FLAME : 0) | (reading.isRgbStatus() ? FLAG_RGB_STATUS : 0));
+            buffer.putLong(position, time);
+            int lastTimePosition = HEADER_SIZE + region.index * ENTRY_SIZE + LAST_TIME_OFFSET;
+            if (time > directory.getLong(lastTimePosition)) {
+                directory.putLong(lastTimePosition, time);
+            }
+        }
+        appendCount.increment();
+    }
+
+    /**
+     * 查询时间范围内的读数（含from不含to，毫秒），按时间升序
+     */
+    public List<Map<String, Object>> range(String deviceId, long from, long to) {
+        Region region = available ? regions.get(deviceId) : null;
+        if (region == null || to <= from) {
+            return new ArrayList<>();
+        }
+        long firstBucket = Math.max(from / resolutionMillis, (System.currentTimeMillis() / resolutionMillis) - slots + 1);
+        long lastBucket = (to - 1) / resolutionMillis;
+        List<Map<String, Object>> result = new ArrayList<>();
+        MappedByteBuffer buffer = region.buffer;
+        synchronized (region) {
+            for (long bucket = firstBucket; bucket <= lastBucket; bucket++) {
+                int position = region.base + slotPosition(bucket);
+                long time = buffer.getLong(position);
+                if (time / resolutionMillis != bucket || time < from || time >= to) {
+                    continue;
+                }
+                int flags = buffer.getInt(position + FLAGS_OFFSET);
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("timestamp", time);
+                item.put("temperature", value(buffer.getFloat(position + TEMPERATURE_OFFSET)));
+                item.put("humidity", value(buffer.getFloat(position + HUMIDITY_OFFSET)));
+                item.put("light", value(buffer.getFloat(position + LIGHT_OFFSET)));
+                item.put("flame", (flags & FLAG_FLAME) != 0);
+                item.put("rgbStatus", (flags & FLAG_RGB_STATUS) != 0);
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按固定步长取指标平均值（迷你图），从from开始共points个点，没有数据的点为null
+     *
+     * @param stepMillis 步长，需为槽宽的整数倍
+     */
+    public List<Double> sparkline(String deviceId, String metric, long from, long stepMillis, int points) {
+        int offset = metricOffset(metric);
+        List<Double> values = new ArrayList<>(points);
+        Region region = available ? regions.get(deviceId) : null;
+        if (region == null) {
+            for (int i = 0; i < points; i++) {
+                values.add(null);
+            }
+            return values;
+        }
+        long oldestBucket = System.currentTimeMillis() / resolutionMillis - slots + 1;
+        long bucketsPerStep = Math.max(1, stepMillis / resolutionMillis);
+        MappedByteBuffer buffer = region.buffer;
+        synchronized (region) {
+            for (int i = 0; i < points; i++) {
+                long firstBucket = (from + i * stepMillis) / resolutionMillis;
+                double sum = 0;
+                int count = 0;
+                for (long bucket = Math.max(firstBucket, oldestBucket); bucket < firstBucket + bucketsPerStep; bucket++) {
+                    int position = region.base + slotPosition(bucket);
+                    if (buffer.getLong(position) / resolutionMillis != bucket) {
+                        continue;
+                    }
+                    float value = buffer.getFloat(position + offset);
+                    if (!Float.isNaN(value)) {
+                        sum += value;
+                        count++;
+                    }
+                }
+                values.add(count == 0 ? null : BigDecimal.valueOf(sum / count).setScale(2, RoundingMode.HALF_UP).doubleValue());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 设备删除后释放其区域
+     */
+    public void forget(String deviceId) {
+        Region region = regions.remove(deviceId);
+        if (region == null) {
+            return;
+        }
+        synchronized (region) {
+            for (int position = region.base; position < region.base + regionBytes; position += 8) {
+                region.buffer.putLong(position, 0L);
+            }
+        }
+        synchronized (this) {
+            directory.putShort(HEADER_SIZE + region.index * ENTRY_SIZE, (short) 0);
+            directory.putLong(HEADER_SIZE + region.index * ENTRY_SIZE + LAST_TIME_OFFSET, 0L);
+            freeIndexes.push(region.index);
+        }
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public long getWindowMillis() {
+        return slots * resolutionMillis;
+    }
+
+    public long getResolutionMillis() {
+        return resolutionMillis;
+    }
+
+    public static boolean isSupportedMetric(String metric) {
+        return "temperature".equals(metric) || "humidity".equals(metric) || "light".equals(metric);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!available) {
+            return;
+        }
+        available = false;
+        try {
+            for (MappedByteBuffer chunk : chunks) {
+                if (chunk != null) {
+                    chunk.force();
+                }
+            }
+            directory.force();
+            channel.close();
+            file.close();
+        } catch (IOException e) {
+            log.error("关闭最近读数存储失败", e);
+        }
+    }
+
+    /**
+     * 获取存储统计
+     */
+    public Map<String, Object> getStats() {
+        CacheProperties.Recent config = cacheProperties.getRecent();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isEnabled());
+        stats.put("available", available);
+        stats.put("devices", regions.size());
+        stats.put("maxDevices", config.getMaxDevices());
+        stats.put("slotsPerDevice", slots);
+        stats.put("resolutionSeconds", config.getResolutionSeconds());
+        long mappedBytes = 0;
+        int mappedChunks = 0;
+        if (available) {
+            mappedBytes = dataOffset;
+            for (MappedByteBuffer chunk : chunks) {
+                if (chunk != null) {
+                    mappedBytes += chunk.capacity();
+                    mappedChunks++;
+                }
+            }
+        }
+        stats.put("mappedBytes", mappedBytes);
+        stats.put("mappedChunks", mappedChunks);
+        stats.put("appends", appendCount.sum());
+        stats.put("staleDrops", staleCount.sum());
+        stats.put("rejected", rejectedCount.sum());
+        stats.put("reclaimedOnLoad", reclaimedOnLoad);
+        return stats;
+    }
+
+    private Region regionOf(String deviceId) {
+        Region region = regions.get(deviceId);
+        if (region != null) {
+            return region;
+        }
+        synchronized (this) {
+            region = regions.get(deviceId);
+            if (region != null) {
+                return region;
+            }
+            byte[] name = deviceId.getBytes(StandardCharsets.UTF_8);
+            if (name.length > MAX_NAME_BYTES) {
+                return null;
+            }
+            Integer index = freeIndexes.poll();
+            if (index == null) {
+                if (allocated >= maxDevices) {
+                    if (!fullWarned) {
+                        fullWarned = true;
+                        log.warn("最近读数存储已满（{}台设备），新设备不再写入，请调大 cache.recent.max-devices", maxDevices);
+                    }
+                    return null;
+                }
+                index = allocated++;
+                directory.putInt(DEVICE_COUNT_OFFSET, allocated);
+            }
+            try {
+                region = mapRegion(index);
+            } catch (IOException e) {
+                log.error("映射最近读数区域失败: deviceId={}", deviceId, e);
+                freeIndexes.push(index);
+                return null;
+            }
+            int position = HEADER_SIZE + index * ENTRY_SIZE;
+            for (int i = 0; i < name.length; i++) {
+                directory.put(position + 2 + i, name[i]);
+            }
+            directory.putLong(position + LAST_TIME_OFFSET, 0L);
+            directory.putShort(position, (short) name.length);
+            regions.put(deviceId, region);
+            return region;
+        }
+    }
+
+    /**
+     * 定位设备所在数据块，数据块未映射时整块映射（调用方持有本对象锁或处于初始化阶段）
+     */
+    private Region mapRegion(int index) throws IOException {
+        int chunk = index / devicesPerChunk;
+        if (chunks[chunk] == null) {
+            int first = chunk * devicesPerChunk;
+            long size = Math.min(devicesPerChunk, maxDevices - first) * regionBytes;
+            chunks[chunk] = channel.map(FileChannel.MapMode.READ_WRITE, dataOffset + first * regionBytes, size);
+        }
+        return new Region(index, chunks[chunk], (int) ((index - chunk * devicesPerChunk) * regionBytes));
+    }
+
+    private int slotPosition(long bucket) {
+        return (int) (bucket % slots) * RECORD_SIZE;
+    }
+
+    private static int metricOffset(String metric) {
+        switch (metric) {
+            case "temperature":
+                return TEMPERATURE_OFFSET;
+            case "humidity":
+                return HUMIDITY_OFFSET;
+            case "light":
+                return LIGHT_OFFSET;
+            default:
+                throw new IllegalArgumentException("不支持的指标: " + metric);
+        }
+    }
+
+    private static Double value(float value) {
+        return Float.isNaN(value) ? null : BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    /**
+     * 单台设备的数据区（所在数据块及块内起始位置）
+     */
+    private static final class Region {
+
+        private final int index;
+
+        private final MappedByteBuffer buffer;
+
+        private final int base;
+
+        private Region(int index, MappedByteBuffer buffer, int base) {
+            this.index = index;
+            this.buffer = buffer;
+            this.base = base;
+        }
+    }
+}
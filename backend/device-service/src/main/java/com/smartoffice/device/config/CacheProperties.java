@@ -0,0 +1,77 @@
+package com.smartoffice.device.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 进程内缓存配置属性
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache")
+public class CacheProperties {
+
+    private Latest latest = new Latest();
+
+    private Recent recent = new Recent();
+
+    /**
+     * 最新传感器数据近端缓存
+     */
+    @Data
+    public static class Latest {
+
+        /**
+         * 进程内最多缓存的设备数（含接入写入的设备），超出时不再缓存读回的数据，也不再接纳新设备的接入写入
+         */
+        private int maxEntries = 120000;
+
+        /**
+         * 从Redis或数据库读回的数据在进程内的有效期（秒），本实例接入写入的数据不受此限制
+         */
+        private long ttlSeconds = 30;
+
+        /**
+         * 跨实例失效通知的Redis频道
+         */
+        private String invalidationChannel = "sensor:latest:invalidate";
+
+        /**
+         * 最新数据合并写入Redis（及广播失效通知）的间隔（毫秒）
+         */
+        private long flushIntervalMs = 100;
+    }
+
+    /**
+     * 最近读数堆外存储（内存映射文件）
+     */
+    @Data
+    public static class Recent {
+
+        /**
+         * 是否启用
+         */
+        private boolean enabled = true;
+
+        /**
+         * 映射文件所在目录
+         */
+        private String dir = "data/recent";
+
+        /**
+         * 保留时长（小时）
+         */
+        private int windowHours = 24;
+
+        /**
+         * 时间槽宽度（秒），每台设备每个时间槽保留最后一条读数
+         */
+        private int resolutionSeconds = 10;
+
+        /**
+         * 最多存储的设备数，决定映射文件大小（每台设备 保留时长/槽宽 × 24字节），超出后新设备不再写入
+         */
+        private int maxDevices = 100000;
+    }
+}
@@ -0,0 +1,57 @@
+package com.smartoffice.device.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 设备联动控制配置属性
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "control")
+public class ControlProperties {
+
+    /**
+     * 设备影子配置
+     */
+    private Shadow shadow = new Shadow();
+
+    /**
+     * 控制命令下发配置
+     */
+    private Command command = new Command();
+
+    @Data
+    public static class Shadow {
+
+        /**
+         * 温度回差（℃）：空调开启后需回到阈值内侧该幅度才关闭
+         */
+        private double temperatureHysteresis = 0.5;
+
+        /**
+         * 同一执行器两次自动切换之间的最短驻留时间（秒），蜂鸣器告警不受限制
+         */
+        private int minDwellSeconds = 60;
+
+        /**
+         * RGB灯上报状态与期望状态不一致时的重发间隔（秒），0表示不重发
+         */
+        private int rgbResyncSeconds = 30;
+    }
+
+    @Data
+    public static class Command {
+
+        /**
+         * 已发布未确认（QoS1等待PUBACK）的命令数上限
+         */
+        private int maxInflight = 32;
+
+        /**
+         * 控制命令QoS
+         */
+        private int qos = 1;
+    }
+}
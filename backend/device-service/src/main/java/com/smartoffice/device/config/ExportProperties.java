@@ -0,0 +1,24 @@
+package com.smartoffice.device.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 传感器数据导出配置属性
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "export")
+public class ExportProperties {
+
+    /**
+     * 同时进行的导出数上限，每个导出在整个过程中占用一个数据库连接，超出时直接拒绝
+     */
+    private int maxConcurrent = 2;
+
+    /**
+     * 单次导出的最大设备数
+     */
+    private int maxDevices = 5000;
+}
@@ -0,0 +1,216 @@
+package com.smartoffice.device.config;
+
+import com.smartoffice.device.ingest.BackpressurePolicy;
+import com.smartoffice.device.storage.PartitionRetentionPolicy;
+import com.smartoffice.device.storage.PartitionUnit;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 数据接入配置属性
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "ingestion")
+public class IngestionProperties {
+
+    /**
+     * 接入流水线配置
+     */
+    private Pipeline pipeline = new Pipeline();
+
+    /**
+     * 传感器数据异步批量写库配置
+     */
+    private WriteBehind writeBehind = new WriteBehind();
+
+    /**
+     * 设备注册表配置
+     */
+    private Registry registry = new Registry();
+
+    /**
+     * 分钟/小时/天汇总配置
+     */
+    private Rollup rollup = new Rollup();
+
+    /**
+     * sensor_data 分区维护与数据保留配置
+     */
+    private Partition partition = new Partition();
+
+    /**
+     * 冷存储配置（分区保留策略为COLD时使用）
+     */
+    private ColdArchive coldArchive = new ColdArchive();
+
+    @Data
+    public static class Pipeline {
+
+        /**
+         * 内存队列容量
+         */
+        private int queueCapacity = 10000;
+
+        /**
+         * 处理通道（线程）数，0表示使用CPU核数；同一设备的消息固定在一条通道上按顺序处理
+         */
+        private int workers = 0;
+
+        /**
+         * 已分发到处理通道但尚未处理完的消息上限，超出后暂停从队列分发
+         */
+        private int maxInFlight = 10000;
+
+        /**
+         * 处理通道每次连续处理同一设备消息的最大条数，避免单个高频设备占住通道
+         */
+        private int laneBatchSize = 32;
+
+        /**
+         * 单条消息中批量上报的最大读数条数，超出的消息整条丢弃
+         */
+        private int maxBatchReadings = 1000;
+
+        /**
+         * 批量上报读数时间戳早于服务器时间的最大秒数，更早的视为设备时钟异常或重放，改用服务器时间；0表示不限制
+         */
+        private long maxReadingAgeSeconds = 86400;
+
+        /**
+         * 队列满时的背压策略：BLOCK-阻塞回调线程, DROP_OLDEST-丢弃最旧消息, SPILL-溢写到本地磁盘
+         */
+        private BackpressurePolicy policy = BackpressurePolicy.BLOCK;
+
+        /**
+         * SPILL策略的溢写目录
+         */
+        private String spillDir = "data/spill";
+
+        /**
+         * 溢写文件中未回放数据的最大字节数，超出后丢弃新消息
+         */
+        private long spillMaxBytes = 256L * 1024 * 1024;
+
+        /**
+         * 停机时等待队列排空的最长时间（秒）
+         */
+        private int shutdownTimeoutSeconds = 30;
+    }
+
+    @Data
+    public static class WriteBehind {
+
+        /**
+         * 每批最大行数（同时受MySQL max_allowed_packet限制）
+         */
+        private int batchSize = 500;
+
+        /**
+         * 最长攒批时间（毫秒），到时即使不满一批也写库
+         */
+        private long flushIntervalMs = 200;
+
+        /**
+         * 缓冲区容量，写满后阻塞生产者
+         */
+        private int capacity = 50000;
+
+        /**
+         * 写库线程数
+         */
+        private int flushThreads = 2;
+    }
+
+    @Data
+    public static class Registry {
+
+        /**
+         * 在线状态变更批量写库间隔（毫秒）
+         */
+        private long flushIntervalMs = 1000;
+
+        /**
+         * 超过该时间未上报判定为离线（秒），0表示不做离线判定
+         */
+        private int offlineTimeoutSeconds = 300;
+
+        /**
+         * 从数据库全量校准设备列表的间隔（秒），用于同步其他实例的增删改
+         */
+        private int reloadIntervalSeconds = 300;
+    }
+
+    @Data
+    public static class Rollup {
+
+        /**
+         * 是否随写库增量维护汇总表
+         */
+        private boolean enabled = true;
+
+        /**
+         * 内存中的分钟汇总合并写库间隔（毫秒）
+         */
+        private long flushIntervalMs = 10000;
+
+        /**
+         * 每条INSERT ... ON DUPLICATE KEY UPDATE的最大行数
+         */
+        private int upsertBatchSize = 500;
+
+        /**
+         * 分钟汇总保留天数，0表示不清理（小时、天汇总不清理）
+         */
+        private int minuteRetentionDays = 14;
+    }
+
+    @Data
+    public static class Partition {
+
+        /**
+         * 是否由服务维护分区（表未分区时自动跳过）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 分区粒度：DAY-按天, MONTH-按月
+         */
+        private PartitionUnit unit = PartitionUnit.DAY;
+
+        /**
+         * 提前创建的分区数（不含当前分区）
+         */
+        private int aheadPartitions = 7;
+
+        /**
+         * 原始数据保留天数，分区内数据全部早于该期限时整个分区过期，0表示不清理
+         */
+        private int retentionDays = 90;
+
+        /**
+         * 过期分区的处理方式：DROP-删除, ARCHIVE-交换到归档表, COLD-压缩写入本地冷存储
+         */
+        private PartitionRetentionPolicy retentionPolicy = PartitionRetentionPolicy.DROP;
+    }
+
+    @Data
+    public static class ColdArchive {
+
+        /**
+         * 段文件目录
+         */
+        private String dir = "data/cold";
+
+        /**
+         * 每个数据块最多包含的点数（同一设备），越大压缩率越高，查询时解码的无关数据也越多
+         */
+        private int blockPoints = 1024;
+
+        /**
+         * 单个段文件的最大字节数，超出后续写到下一个文件（不能超过2GB）
+         */
+        private long maxSegmentBytes = 1024L * 1024 * 1024;
+    }
+}
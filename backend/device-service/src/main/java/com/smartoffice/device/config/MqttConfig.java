@@ -2,6 +2,7 @@ package com.smartoffice.device.config;
 
 import com.smartoffice.device.mqtt.MqttMessageCallback;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
@@ -21,6 +22,9 @@ public class MqttConfig {
     @Autowired
     private MqttProperties mqttProperties;
 
+    @Autowired
+    private ControlProperties controlProperties;
+
     @Autowired
     private ApplicationContext applicationContext;
 
@@ -77,11 +81,11 @@ public class MqttConfig {
                 log.error("❌ 设置MQTT回调失败", e);
             }
 
-            // 订阅主题
+            // 订阅主题（集群模式下为共享订阅）
             String[] topics = {
-                    mqttProperties.getTopics().getSensorData(),
-                    mqttProperties.getTopics().getAlarm(),
-                    mqttProperties.getTopics().getDeviceStatus()
+                    mqttProperties.subscription(mqttProperties.getTopics().getSensorData()),
+                    mqttProperties.subscription(mqttProperties.getTopics().getAlarm()),
+                    mqttProperties.subscription(mqttProperties.getTopics().getDeviceStatus())
             };
             int[] qos = {mqttProperties.getQos(), mqttProperties.getQos(), mqttProperties.getQos()};
             mqttClient.subscribe(topics, qos);
@@ -102,4 +106,35 @@ public class MqttConfig {
 
         return mqttClient;
     }
+
+    /**
+     * 控制命令发布用的异步客户端（独立连接，不占用接收消息的客户端）
+     */
+    @Bean
+    public MqttAsyncClient mqttAsyncClient() {
+        String clientId = mqttProperties.getClientId() + "-pub";
+        try {
+            MqttAsyncClient client = new MqttAsyncClient(mqttProperties.getBrokerUrl(), clientId, new MemoryPersistence());
+
+            MqttConnectOptions options = new MqttConnectOptions();
+            options.setCleanSession(true);
+            options.setConnectionTimeout(mqttProperties.getTimeout());
+            options.setKeepAliveInterval(mqttProperties.getKeepalive());
+            options.setAutomaticReconnect(true);
+            options.setMaxInflight(Math.max(1, controlProperties.getCommand().getMaxInflight()));
+            if (mqttProperties.getUsername() != null && !mqttProperties.getUsername().isEmpty()) {
+                options.setUserName(mqttProperties.getUsername());
+            }
+            if (mqttProperties.getPassword() != null && !mqttProperties.getPassword().isEmpty()) {
+                options.setPassword(mqttProperties.getPassword().toCharArray());
+            }
+
+            client.connect(options).waitForCompletion(mqttProperties.getTimeout() * 1000L);
+            log.info("控制命令发布客户端已连接: clientId={}", clientId);
+            return client;
+        } catch (MqttException e) {
+            log.error("控制命令发布客户端连接失败，无法下发控制命令: {}", e.getMessage());
+            return null;
+        }
+    }
 }
@@ -52,10 +52,39 @@ public class MqttProperties {
      */
     private Integer keepalive = 60;
 
+    /**
+     * 集群接入配置
+     */
+    private Cluster cluster = new Cluster();
+
+    /**
+     * 返回实际订阅的主题：集群模式下使用共享订阅，由Broker在同组实例间分摊消息
+     */
+    public String subscription(String topic) {
+        if (cluster.isEnabled()) {
+            return "$share/" + cluster.getGroup() + "/" + topic;
+        }
+        return topic;
+    }
+
     @Data
     public static class Topics {
         private String sensorData;
         private String alarm;
         private String deviceStatus;
     }
+
+    @Data
+    public static class Cluster {
+
+        /**
+         * 是否启用集群接入（多实例共享订阅，每条消息只投递给组内一个实例）
+         */
+        private boolean enabled = false;
+
+        /**
+         * 共享订阅组名，同一组内的实例分摊消息
+         */
+        private String group = "device-service";
+    }
 }
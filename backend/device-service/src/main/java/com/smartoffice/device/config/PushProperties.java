@@ -0,0 +1,24 @@
+package com.smartoffice.device.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * WebSocket实时推送配置属性
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "push")
+public class PushProperties {
+
+    /**
+     * 传感器数据推送帧间隔（毫秒），间隔内同一设备只推送最新一条
+     */
+    private long frameIntervalMs = 250;
+
+    /**
+     * 集群模式下实例间转发推送帧、告警和设备影子的Redis频道
+     */
+    private String relayChannel = "push:relay";
+}
@@ -0,0 +1,231 @@
+package com.smartoffice.device.control;
+
+import com.alibaba.fastjson2.JSON;
+import com.smartoffice.common.constants.MqttTopicConstants;
+import com.smartoffice.common.dto.ControlCommandDTO;
+import com.smartoffice.device.config.ControlProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 控制命令异步下发器
+ * <p>
+ * 调用方（接入处理线程、Controller）只登记命令立即返回，由发送线程通过异步客户端发布，
+ * 不再在处理线程上同步等待Broker确认。已发布未确认的命令数受窗口限制；
+ * 同一设备同一执行器尚未发出的命令只保留最新一条。
+ */
+@Slf4j
+@Component
+public class CommandDispatcher {
+
+    @Autowired(required = false)
+    private MqttAsyncClient mqttAsyncClient;
+
+    @Autowired
+    private ControlProperties controlProperties;
+
+    /**
+     * 待发送命令，key为设备编号+执行器
+     */
+    private final Map<String, PendingCommand> pending = new ConcurrentHashMap<>();
+
+    private final LinkedBlockingQueue<String> ready = new LinkedBlockingQueue<>();
+
+    private final IMqttActionListener deliveryListener = new DeliveryListener();
+
+    private Semaphore window;
+
+    private int maxInflight;
+
+    private Thread sender;
+
+    private volatile boolean running;
+
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder deliveredCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder ackNanos = new LongAdder();
+    private final AtomicLong maxAckNanos = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        maxInflight = Math.max(1, controlProperties.getCommand().getMaxInflight());
+        window = new Semaphore(maxInflight);
+        running = true;
+        sender = new Thread(this::sendLoop, "command-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * 登记控制命令（不阻塞）
+     */
+    public void submit(String deviceId, String action) {
+        if (mqttAsyncClient == null) {
+            log.warn("MQTT客户端未连接，无法发送控制命令: deviceId={}, action={}", deviceId, action);
+            failedCount.increment();
+            return;
+        }
+        submittedCount.increment();
+        int actuator = DeviceShadow.actuatorOf(action);
+        String key = deviceId + '|' + (actuator >= 0 ? DeviceShadow.nameOf(actuator) : action);
+        pending.compute(key, (k, existing) -> {
+            if (existing == null) {
+                ready.offer(k);
+                return new PendingCommand(deviceId, action, System.nanoTime());
+            }
+            // 尚未发出，直接替换为最新命令
+            existing.action = action;
+            coalescedCount.increment();
+            return existing;
+        });
+    }
+
+    /**
+     * 发送线程：先占用窗口再取出命令，等待窗口期间到达的同类命令继续合并
+     */
+    private void sendLoop() {
+        while (running || !ready.isEmpty()) {
+            try {
+                String key = ready.poll(200, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    continue;
+                }
+                window.acquire();
+                PendingCommand command = pending.remove(key);
+                if (command == null) {
+                    window.release();
+                    continue;
+                }
+                publish(command);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void publish(PendingCommand command) {
+        long now = System.nanoTime();
+        waitNanos.add(now - command.submittedNanos);
+        command.publishedNanos = now;
+        try {
+            MqttMessage message = new MqttMessage(JSON.toJSONBytes(new ControlCommandDTO(command.deviceId, command.action)));
+            message.setQos(controlProperties.getCommand().getQos());
+            mqttAsyncClient.publish(MqttTopicConstants.TOPIC_CONTROL_CMD, message, command, deliveryListener);
+            publishedCount.increment();
+        } catch (MqttException e) {
+            window.release();
+            failedCount.increment();
+            log.error("发送控制命令失败: deviceId={}, action={}, reason={}",
+                    command.deviceId, command.action, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            sender.join(5000);
+            // 等待已发布的命令确认
+            if (!window.tryAcquire(maxInflight, 5, TimeUnit.SECONDS)) {
+                log.warn("停机时仍有控制命令未确认: {}", maxInflight - window.availablePermits());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (mqttAsyncClient != null) {
+            try {
+                mqttAsyncClient.disconnect();
+            } catch (MqttException e) {
+                log.warn("断开控制命令发布客户端失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 获取下发统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long published = publishedCount.sum();
+        long delivered = deliveredCount.sum();
+        stats.put("connected", mqttAsyncClient != null && mqttAsyncClient.isConnected());
+        stats.put("pending", pending.size());
+        stats.put("inFlight", maxInflight - window.availablePermits());
+        stats.put("maxInflight", maxInflight);
+        stats.put("submitted", submittedCount.sum());
+        stats.put("coalesced", coalescedCount.sum());
+        stats.put("published", published);
+        stats.put("delivered", delivered);
+        stats.put("failed", failedCount.sum());
+        stats.put("avgWaitMillis", published > 0 ? waitNanos.sum() / published / 1_000_000.0 : 0);
+        stats.put("avgAckMillis", delivered > 0 ? ackNanos.sum() / delivered / 1_000_000.0 : 0);
+        stats.put("maxAckMillis", maxAckNanos.get() / 1_000_000.0);
+        return stats;
+    }
+
+    /**
+     * 发布结果回调（在Paho回调线程上执行，只做计数和释放窗口）
+     */
+    private class DeliveryListener implements IMqttActionListener {
+
+        @Override
+        public void onSuccess(IMqttToken token) {
+            PendingCommand command = (PendingCommand) token.getUserContext();
+            long elapsed = System.nanoTime() - command.publishedNanos;
+            ackNanos.add(elapsed);
+            maxAckNanos.accumulateAndGet(elapsed, Math::max);
+            deliveredCount.increment();
+            window.release();
+            log.info("发送控制命令成功: deviceId={}, action={}", command.deviceId, command.action);
+        }
+
+        @Override
+        public void onFailure(IMqttToken token, Throwable exception) {
+            PendingCommand command = (PendingCommand) token.getUserContext();
+            failedCount.increment();
+            window.release();
+            log.error("发送控制命令失败: deviceId={}, action={}, reason={}",
+                    command.deviceId, command.action, exception != null ? exception.getMessage() : "unknown");
+        }
+    }
+
+    private static final class PendingCommand {
+
+        private final String deviceId;
+
+        private volatile String action;
+
+        private final long submittedNanos;
+
+        private volatile long publishedNanos;
+
+        private PendingCommand(String deviceId, String action, long submittedNanos) {
+            this.deviceId = deviceId;
+            this.action = action;
+            this.submittedNanos = submittedNanos;
+        }
+    }
+}
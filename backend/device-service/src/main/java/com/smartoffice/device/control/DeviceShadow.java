@@ -0,0 +1,219 @@
+package com.smartoffice.device.control;
+
+import com.smartoffice.common.constants.SystemConstants;
+
+/**
+ * 设备影子：记录单台设备各执行器的期望状态和上报状态
+ * <p>
+ * 期望状态只在真正变化时才需要下发控制命令；状态值-1表示未知。
+ * 同一设备的数据由调用方在该对象上加锁后串行处理。
+ */
+public class DeviceShadow {
+
+    public static final int RGB = 0;
+    public static final int AC = 1;
+    public static final int HUMIDIFIER = 2;
+    public static final int BUZZER = 3;
+
+    public static final int UNKNOWN = -1;
+    public static final int OFF = 0;
+    public static final int ON = 1;
+    public static final int AC_HEAT = 1;
+    public static final int AC_COOL = 2;
+
+    private static final String[] NAMES = {"rgb", "ac", "humidifier", "buzzer"};
+
+    private final String deviceId;
+
+    private final int[] desired = {UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN};
+
+    private final int[] reported = {UNKNOWN, UNKNOWN, UNKNOWN, UNKNOWN};
+
+    private final long[] changedAt = new long[4];
+
+    private final long[] emittedAt = new long[4];
+
+    private int flame = UNKNOWN;
+
+    /**
+     * 期望状态或上报状态每变化一次加一，用于判断是否需要同步到其他实例
+     */
+    private int version;
+
+    public DeviceShadow(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    /**
+     * 记录设备上报的执行器状态，首次上报时以上报值作为期望值，避免启动时误发命令
+     */
+    public void report(int actuator, boolean state) {
+        int value = state ? ON : OFF;
+        if (reported[actuator] != value) {
+            reported[actuator] = value;
+            version++;
+        }
+        if (desired[actuator] == UNKNOWN) {
+            desired[actuator] = value;
+        }
+    }
+
+    /**
+     * 记录火焰检测结果，返回是否为上升沿（无火焰变为有火焰）
+     */
+    public boolean reportFlame(boolean detected) {
+        boolean risingEdge = detected && flame != ON;
+        flame = detected ? ON : OFF;
+        return risingEdge;
+    }
+
+    /**
+     * 设置期望状态
+     *
+     * @param minDwellMillis 距上次切换不足该时间时不切换（首次设置不受限制）
+     * @return 期望状态是否发生变化（即是否需要下发命令）
+     */
+    public boolean desire(int actuator, int state, long now, long minDwellMillis) {
+        int current = desired[actuator];
+        if (current == state) {
+            return false;
+        }
+        if (current != UNKNOWN && changedAt[actuator] > 0 && now - changedAt[actuator] < minDwellMillis) {
+            return false;
+        }
+        desired[actuator] = state;
+        changedAt[actuator] = now;
+        emittedAt[actuator] = now;
+        version++;
+        return true;
+    }
+
+    /**
+     * 上报状态与期望状态不一致且距上次下发已超过重发间隔时返回true
+     */
+    public boolean needsResync(int actuator, long now, long resyncMillis) {
+        if (resyncMillis <= 0 || desired[actuator] == UNKNOWN || reported[actuator] == UNKNOWN
+                || desired[actuator] == reported[actuator] || now - emittedAt[actuator] < resyncMillis) {
+            return false;
+        }
+        emittedAt[actuator] = now;
+        return true;
+    }
+
+    /**
+     * 手动控制命令同步到期望状态，自动控制需等待驻留时间后才会覆盖
+     */
+    public void applyManual(String action, long now) {
+        int actuator;
+        int state;
+        switch (action) {
+            case SystemConstants.ACTION_RGB_ON:
+                actuator = RGB;
+                state = ON;
+                break;
+            case SystemConstants.ACTION_RGB_OFF:
+                actuator = RGB;
+                state = OFF;
+                break;
+            case SystemConstants.ACTION_AC_HEAT:
+                actuator = AC;
+                state = AC_HEAT;
+                break;
+            case SystemConstants.ACTION_AC_COOL:
+                actuator = AC;
+                state = AC_COOL;
+                break;
+            case SystemConstants.ACTION_AC_OFF:
+                actuator = AC;
+                state = OFF;
+                break;
+            case SystemConstants.ACTION_HUMIDIFIER_ON:
+                actuator = HUMIDIFIER;
+                state = ON;
+                break;
+            case SystemConstants.ACTION_HUMIDIFIER_OFF:
+                actuator = HUMIDIFIER;
+                state = OFF;
+                break;
+            case SystemConstants.ACTION_BUZZER_ON:
+                actuator = BUZZER;
+                state = ON;
+                break;
+            case SystemConstants.ACTION_BUZZER_OFF:
+                actuator = BUZZER;
+                state = OFF;
+                break;
+            default:
+                return;
+        }
+        desired[actuator] = state;
+        changedAt[actuator] = now;
+        emittedAt[actuator] = now;
+        version++;
+    }
+
+    /**
+     * 合并其他实例同步来的状态：期望状态按切换时间取较新者，上报状态（由处理该设备的实例同步）直接覆盖
+     *
+     * @param reported 为null时不更新上报状态
+     */
+    public void merge(int[] desired, long[] changedAt, int[] reported) {
+        for (int actuator = RGB; actuator <= BUZZER; actuator++) {
+            if (changedAt[actuator] > this.changedAt[actuator]) {
+                this.desired[actuator] = desired[actuator];
+                this.changedAt[actuator] = changedAt[actuator];
+                this.emittedAt[actuator] = changedAt[actuator];
+            }
+            if (reported != null) {
+                this.reported[actuator] = reported[actuator];
+            }
+        }
+    }
+
+    public int getDesired(int actuator) {
+        return desired[actuator];
+    }
+
+    public int getReported(int actuator) {
+        return reported[actuator];
+    }
+
+    public long getChangedAt(int actuator) {
+        return changedAt[actuator];
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * 命令对应的执行器，不是执行器开关命令时返回-1
+     */
+    public static int actuatorOf(String action) {
+        switch (action) {
+            case SystemConstants.ACTION_RGB_ON:
+            case SystemConstants.ACTION_RGB_OFF:
+                return RGB;
+            case SystemConstants.ACTION_AC_HEAT:
+            case SystemConstants.ACTION_AC_COOL:
+            case SystemConstants.ACTION_AC_OFF:
+                return AC;
+            case SystemConstants.ACTION_HUMIDIFIER_ON:
+            case SystemConstants.ACTION_HUMIDIFIER_OFF:
+                return HUMIDIFIER;
+            case SystemConstants.ACTION_BUZZER_ON:
+            case SystemConstants.ACTION_BUZZER_OFF:
+                return BUZZER;
+            default:
+                return -1;
+        }
+    }
+
+    public static String nameOf(int actuator) {
+        return NAMES[actuator];
+    }
+}
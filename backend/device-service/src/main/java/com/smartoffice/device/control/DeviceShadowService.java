@@ -0,0 +1,138 @@
+package com.smartoffice.device.control;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.smartoffice.device.config.ControlProperties;
+import com.smartoffice.device.push.ClusterRelay;
+import com.smartoffice.device.registry.DeviceRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 设备影子管理
+ * <p>
+ * 集群模式下设备影子变化经 {@link ClusterRelay} 同步到其他实例：处理该设备的实例同步期望状态和上报状态，
+ * 其他实例收到的手动控制命令只同步期望状态，期望状态按切换时间取较新者。
+ * <p>
+ * 只为设备注册表中已登记的设备创建影子，未登记的设备编号不占内存，也不会触发初始命令。
+ */
+@Component
+public class DeviceShadowService {
+
+    @Autowired
+    private ControlProperties controlProperties;
+
+    @Autowired
+    private ClusterRelay clusterRelay;
+
+    @Autowired
+    private DeviceRegistry deviceRegistry;
+
+    private final Map<String, DeviceShadow> shadows = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        clusterRelay.subscribe(ClusterRelay.SHADOW, this::onRemoteShadow);
+    }
+
+    /**
+     * 获取设备影子，不存在时创建；设备未登记时返回null
+     */
+    public DeviceShadow getOrCreate(String deviceId) {
+        if (deviceId == null) {
+            return null;
+        }
+        DeviceShadow shadow = shadows.get(deviceId);
+        if (shadow != null || deviceRegistry.get(deviceId) == null) {
+            return shadow;
+        }
+        return shadows.computeIfAbsent(deviceId, DeviceShadow::new);
+    }
+
+    public DeviceShadow get(String deviceId) {
+        return shadows.get(deviceId);
+    }
+
+    public void remove(String deviceId) {
+        shadows.remove(deviceId);
+    }
+
+    /**
+     * 把设备影子同步到其他实例（未开启集群转发时忽略）
+     *
+     * @param withReported 是否同步上报状态（只有处理该设备的实例才有准确的上报状态）
+     */
+    public void publish(DeviceShadow shadow, boolean withReported) {
+        if (!clusterRelay.enabled()) {
+            return;
+        }
+        int[] desired = new int[DeviceShadow.BUZZER + 1];
+        long[] changedAt = new long[DeviceShadow.BUZZER + 1];
+        int[] reported = withReported ? new int[DeviceShadow.BUZZER + 1] : null;
+        synchronized (shadow) {
+            for (int actuator = DeviceShadow.RGB; actuator <= DeviceShadow.BUZZER; actuator++) {
+                desired[actuator] = shadow.getDesired(actuator);
+                changedAt[actuator] = shadow.getChangedAt(actuator);
+                if (reported != null) {
+                    reported[actuator] = shadow.getReported(actuator);
+                }
+            }
+        }
+        JSONObject state = new JSONObject();
+        state.put("deviceId", shadow.getDeviceId());
+        state.put("desired", desired);
+        state.put("changedAt", changedAt);
+        state.put("reported", reported);
+        clusterRelay.publish(ClusterRelay.SHADOW, state.toJSONString());
+    }
+
+    private void onRemoteShadow(String json) {
+        JSONObject state = JSON.parseObject(json);
+        DeviceShadow shadow = getOrCreate(state.getString("deviceId"));
+        if (shadow == null) {
+            return;
+        }
+        int[] desired = state.getObject("desired", int[].class);
+        long[] changedAt = state.getObject("changedAt", long[].class);
+        int[] reported = state.getObject("reported", int[].class);
+        synchronized (shadow) {
+            shadow.merge(desired, changedAt, reported);
+        }
+    }
+
+    public ControlProperties.Shadow getConfig() {
+        return controlProperties.getShadow();
+    }
+
+    /**
+     * 导出设备影子（期望状态、上报状态和最后切换时间）
+     */
+    public Map<String, Object> describe(String deviceId) {
+        DeviceShadow shadow = shadows.get(deviceId);
+        if (shadow == null) {
+            return null;
+        }
+        Map<String, Object> desired = new LinkedHashMap<>();
+        Map<String, Object> reported = new LinkedHashMap<>();
+        Map<String, Object> changedAt = new LinkedHashMap<>();
+        synchronized (shadow) {
+            for (int actuator = DeviceShadow.RGB; actuator <= DeviceShadow.BUZZER; actuator++) {
+                String name = DeviceShadow.nameOf(actuator);
+                desired.put(name, shadow.getDesired(actuator));
+                reported.put(name, shadow.getReported(actuator));
+                changedAt.put(name, shadow.getChangedAt(actuator));
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("deviceId", deviceId);
+        result.put("desired", desired);
+        result.put("reported", reported);
+        result.put("changedAt", changedAt);
+        return result;
+    }
+}
@@ -0,0 +1,92 @@
+package com.smartoffice.device.control;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.smartoffice.common.entity.SystemConfig;
+import com.smartoffice.device.mapper.SystemConfigMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 进程内阈值持有者
+ * <p>
+ * 启动时从system_config加载并解析为 {@link ThresholdSnapshot}，配置修改后整体替换快照；
+ * 另外定期从数据库刷新，以同步其他实例上的修改。
+ */
+@Slf4j
+@Component
+public class ThresholdHolder {
+
+    @Autowired
+    private SystemConfigMapper systemConfigMapper;
+
+    @Value("${threshold.light.low:300}")
+    private double defaultLightLow;
+
+    @Value("${threshold.light.high:350}")
+    private double defaultLightHigh;
+
+    @Value("${threshold.temperature.low:18}")
+    private double defaultTempLow;
+
+    @Value("${threshold.temperature.high:28}")
+    private double defaultTempHigh;
+
+    @Value("${threshold.humidity.low:40}")
+    private double defaultHumidityLow;
+
+    @Value("${threshold.humidity.high:70}")
+    private double defaultHumidityHigh;
+
+    private volatile ThresholdSnapshot snapshot;
+
+    @PostConstruct
+    public void init() {
+        snapshot = defaults();
+        reload();
+    }
+
+    /**
+     * 获取当前阈值快照
+     */
+    public ThresholdSnapshot current() {
+        return snapshot;
+    }
+
+    /**
+     * 从数据库重新加载阈值，失败时保留当前快照
+     */
+    public void reload() {
+        try {
+            Map<String, String> values = new HashMap<>();
+            systemConfigMapper.selectList(
+                    new LambdaQueryWrapper<SystemConfig>()
+                            .eq(SystemConfig::getConfigType, "THRESHOLD")
+            ).forEach(config -> values.put(config.getConfigKey(), config.getConfigValue()));
+
+            ThresholdSnapshot updated = ThresholdSnapshot.of(values, defaults());
+            if (!updated.toString().equals(snapshot.toString())) {
+                log.info("阈值快照已更新: {}", updated);
+            }
+            snapshot = updated;
+        } catch (Exception e) {
+            log.error("加载阈值配置失败，继续使用当前阈值: {}", snapshot, e);
+        }
+    }
+
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void scheduledReload() {
+        reload();
+    }
+
+    private ThresholdSnapshot defaults() {
+        return new ThresholdSnapshot(defaultLightLow, defaultLightHigh, defaultTempLow, defaultTempHigh,
+                defaultHumidityLow, defaultHumidityHigh);
+    }
+}
@@ -0,0 +1,95 @@
+package com.smartoffice.device.control;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+
+/**
+ * 阈值快照（不可变，预先解析为基本类型）
+ * <p>
+ * 联动规则每条数据都要读取阈值，这里一次性解析好，热路径上不做任何IO和对象分配。
+ */
+@Slf4j
+public final class ThresholdSnapshot {
+
+    public static final String KEY_LIGHT_LOW = "light.threshold.low";
+    public static final String KEY_LIGHT_HIGH = "light.threshold.high";
+    public static final String KEY_TEMP_LOW = "temperature.threshold.low";
+    public static final String KEY_TEMP_HIGH = "temperature.threshold.high";
+    public static final String KEY_HUMIDITY_LOW = "humidity.threshold.low";
+    public static final String KEY_HUMIDITY_HIGH = "humidity.threshold.high";
+
+    private final double lightLow;
+    private final double lightHigh;
+    private final double tempLow;
+    private final double tempHigh;
+    private final double humidityLow;
+    private final double humidityHigh;
+
+    public ThresholdSnapshot(double lightLow, double lightHigh, double tempLow, double tempHigh,
+                             double humidityLow, double humidityHigh) {
+        this.lightLow = lightLow;
+        this.lightHigh = lightHigh;
+        this.tempLow = tempLow;
+        this.tempHigh = tempHigh;
+        this.humidityLow = humidityLow;
+        this.humidityHigh = humidityHigh;
+    }
+
+    /**
+     * 用配置表中的值覆盖默认阈值，无法解析的值保留默认
+     */
+    public static ThresholdSnapshot of(Map<String, String> values, ThresholdSnapshot defaults) {
+        return new ThresholdSnapshot(
+                parse(values, KEY_LIGHT_LOW, defaults.lightLow),
+                parse(values, KEY_LIGHT_HIGH, defaults.lightHigh),
+                parse(values, KEY_TEMP_LOW, defaults.tempLow),
+                parse(values, KEY_TEMP_HIGH, defaults.tempHigh),
+                parse(values, KEY_HUMIDITY_LOW, defaults.humidityLow),
+                parse(values, KEY_HUMIDITY_HIGH, defaults.humidityHigh)
+        );
+    }
+
+    private static double parse(Map<String, String> values, String key, double defaultValue) {
+        String value = values.get(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("阈值配置格式错误，使用默认值: {}={}, 默认={}", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public double getLightLow() {
+        return lightLow;
+    }
+
+    public double getLightHigh() {
+        return lightHigh;
+    }
+
+    public double getTempLow() {
+        return tempLow;
+    }
+
+    public double getTempHigh() {
+        return tempHigh;
+    }
+
+    public double getHumidityLow() {
+        return humidityLow;
+    }
+
+    public double getHumidityHigh() {
+        return humidityHigh;
+    }
+
+    @Override
+    public String toString() {
+        return "light=[" + lightLow + ", " + lightHigh + "], temperature=[" + tempLow + ", " + tempHigh
+                + "], humidity=[" + humidityLow + ", " + humidityHigh + "]";
+    }
+}
@@ -2,16 +2,15 @@ package com.smartoffice.device.controller;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
-import com.smartoffice.common.constants.SystemConstants;
 import com.smartoffice.common.entity.AlarmLog;
 import com.smartoffice.common.vo.Result;
 import com.smartoffice.device.mapper.AlarmLogMapper;
+import com.smartoffice.device.service.AlarmStatisticsService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -24,9 +23,17 @@ import java.util.Map;
 @CrossOrigin
 public class AlarmController {
 
+    /**
+     * 状态被并发改变时的最大重试次数
+     */
+    private static final int MAX_UPDATE_ATTEMPTS = 3;
+
     @Autowired
     private AlarmLogMapper alarmLogMapper;
 
+    @Autowired
+    private AlarmStatisticsService alarmStatisticsService;
+
     /**
      * 分页查询告警列表
      */
@@ -62,41 +69,12 @@ public class AlarmController {
     }
 
     /**
-     * 获取告警统计信息
+     * 获取告警统计信息（读取内存计数器）
      */
     @GetMapping("/statistics")
     public Result<Map<String, Object>> getStatistics() {
         try {
-            Map<String, Object> stats = new HashMap<>();
-
-            // 未处理告警数量
-            Long unhandledCount = alarmLogMapper.selectCount(
-                    new LambdaQueryWrapper<AlarmLog>()
-                            .eq(AlarmLog::getStatus, SystemConstants.ALARM_STATUS_UNHANDLED)
-            );
-            stats.put("unhandledCount", unhandledCount);
-
-            // 今日告警数量
-            LocalDateTime todayStart = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0);
-            Long todayCount = alarmLogMapper.selectCount(
-                    new LambdaQueryWrapper<AlarmLog>()
-                            .ge(AlarmLog::getAlarmTime, todayStart)
-            );
-            stats.put("todayCount", todayCount);
-
-            // 按类型统计
-            Map<String, Long> typeStats = new HashMap<>();
-            for (String type : new String[]{"FIRE", "TEMP", "HUMIDITY", "LIGHT"}) {
-                Long count = alarmLogMapper.selectCount(
-                        new LambdaQueryWrapper<AlarmLog>()
-                                .eq(AlarmLog::getAlarmType, type)
-                                .ge(AlarmLog::getAlarmTime, todayStart)
-                );
-                typeStats.put(type, count);
-            }
-            stats.put("typeStats", typeStats);
-
-            return Result.success(stats);
+            return Result.success(alarmStatisticsService.getStatistics());
         } catch (Exception e) {
             log.error("获取告警统计失败", e);
             return Result.fail("获取告警统计失败");
@@ -111,18 +89,9 @@ public class AlarmController {
             @PathVariable Long id,
             @RequestBody Map<String, Object> params) {
         try {
-            AlarmLog alarm = alarmLogMapper.selectById(id);
-            if (alarm == null) {
+            if (!updateStatus(id, params)) {
                 return Result.fail("告警记录不存在");
             }
-
-            alarm.setStatus((String) params.get("status"));
-            alarm.setHandleRemark((String) params.get("handleRemark"));
-            alarm.setHandleTime(LocalDateTime.now());
-            // 这里应该从Token中获取用户ID，暂时写死
-            alarm.setHandlerId(1L);
-
-            alarmLogMapper.updateById(alarm);
             log.info("告警已处理: id={}", id);
 
             return Result.success("告警已处理");
@@ -140,18 +109,9 @@ public class AlarmController {
             @PathVariable Long id,
             @RequestBody Map<String, Object> params) {
         try {
-            AlarmLog alarm = alarmLogMapper.selectById(id);
-            if (alarm == null) {
+            if (!updateStatus(id, params)) {
                 return Result.fail("告警记录不存在");
             }
-
-            alarm.setStatus((String) params.get("status"));
-            alarm.setHandleRemark((String) params.get("handleRemark"));
-            alarm.setHandleTime(LocalDateTime.now());
-            // 这里应该从Token中获取用户ID，暂时写死
-            alarm.setHandlerId(1L);
-
-            alarmLogMapper.updateById(alarm);
             log.info("告警状态已更新: id={}, status={}", id, params.get("status"));
 
             return Result.success("告警状态已更新");
@@ -161,6 +121,30 @@ public class AlarmController {
         }
     }
 
+    /**
+     * 按读取到的状态条件更新，状态已被并发请求改变时重新读取，只有确实改变了状态的更新计入统计
+     *
+     * @return 告警是否存在
+     */
+    private boolean updateStatus(Long id, Map<String, Object> params) {
+        String status = (String) params.get("status");
+        String handleRemark = (String) params.get("handleRemark");
+        for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+            AlarmLog alarm = alarmLogMapper.selectById(id);
+            if (alarm == null) {
+                return false;
+            }
+            String previousStatus = alarm.getStatus();
+            // 这里应该从Token中获取用户ID，暂时写死
+            if (alarmLogMapper.updateStatusIfUnchanged(id, previousStatus, status, handleRemark,
+                    LocalDateTime.now(), 1L) > 0) {
+                alarmStatisticsService.onStatusChanged(previousStatus, status);
+                return true;
+            }
+        }
+        throw new IllegalStateException("告警状态并发更新冲突: id=" + id);
+    }
+
     /**
      * 获取最新告警
      */
@@ -192,6 +176,7 @@ public class AlarmController {
 
             int result = alarmLogMapper.deleteById(id);
             if (result > 0) {
+                alarmStatisticsService.onDeleted(alarm);
                 log.info("告警已删除: id={}", id);
                 return Result.success("删除成功");
             } else {
@@ -211,6 +196,7 @@ public class AlarmController {
         try {
             // 删除所有告警记录
             int result = alarmLogMapper.delete(new LambdaQueryWrapper<>());
+            alarmStatisticsService.onCleared();
             log.info("已清空所有告警, 共删除{}条记录", result);
             return Result.success("已清空所有告警，共删除" + result + "条记录");
         } catch (Exception e) {
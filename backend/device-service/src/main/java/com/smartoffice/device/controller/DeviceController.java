@@ -1,20 +1,35 @@
 package com.smartoffice.device.controller;
 
+import com.alibaba.fastjson2.JSON;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.smartoffice.common.dto.ControlCommandDTO;
 import com.smartoffice.common.entity.DeviceInfo;
-import com.smartoffice.common.entity.SensorData;
 import com.smartoffice.common.vo.Result;
+import com.smartoffice.device.cache.LatestSensorCache;
+import com.smartoffice.device.cache.RecentReadingStore;
+import com.smartoffice.device.config.ExportProperties;
+import com.smartoffice.device.control.DeviceShadowService;
 import com.smartoffice.device.mapper.DeviceInfoMapper;
-import com.smartoffice.device.mapper.SensorDataMapper;
+import com.smartoffice.device.push.SensorPushAggregator;
+import com.smartoffice.device.registry.DeviceRegistry;
 import com.smartoffice.device.service.DeviceDataService;
+import com.smartoffice.device.service.SensorExportService;
+import com.smartoffice.device.service.SensorHistoryService;
+import com.smartoffice.device.service.SensorSeriesService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -27,17 +42,47 @@ import java.util.Map;
 @CrossOrigin
 public class DeviceController {
 
+    /**
+     * 批量查询最新数据、按范围查询时间序列单次最多设备数
+     */
+    private static final int MAX_LATEST_BATCH = 5000;
+
+    private static final int MAX_SPARKLINE_POINTS = 500;
+
+    private static final DateTimeFormatter EXPORT_FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
     @Autowired
     private DeviceInfoMapper deviceInfoMapper;
 
     @Autowired
-    private SensorDataMapper sensorDataMapper;
+    private DeviceDataService deviceDataService;
+
+    @Autowired
+    private DeviceRegistry deviceRegistry;
 
     @Autowired
-    private DeviceDataService deviceDataService;
+    private DeviceShadowService deviceShadowService;
 
-    @Autowired(required = false)  // Redis是可选的
-    private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private SensorPushAggregator sensorPushAggregator;
+
+    @Autowired
+    private LatestSensorCache latestSensorCache;
+
+    @Autowired
+    private SensorSeriesService sensorSeriesService;
+
+    @Autowired
+    private SensorHistoryService sensorHistoryService;
+
+    @Autowired
+    private SensorExportService sensorExportService;
+
+    @Autowired
+    private RecentReadingStore recentReadingStore;
+
+    @Autowired
+    private ExportProperties exportProperties;
 
     /**
      * 获取所有设备列表
@@ -46,6 +91,7 @@ public class DeviceController {
     public Result<List<DeviceInfo>> getDeviceList() {
         try {
             List<DeviceInfo> devices = deviceInfoMapper.selectList(null);
+            deviceRegistry.applyRuntimeState(devices);
             return Result.success(devices);
         } catch (Exception e) {
             log.error("获取设备列表失败", e);
@@ -63,6 +109,7 @@ public class DeviceController {
                     new LambdaQueryWrapper<DeviceInfo>()
                             .eq(DeviceInfo::getOfficeId, officeId)
             );
+            deviceRegistry.applyRuntimeState(devices);
             return Result.success(devices);
         } catch (Exception e) {
             log.error("获取办公室设备列表失败", e);
@@ -80,6 +127,7 @@ public class DeviceController {
                     new LambdaQueryWrapper<DeviceInfo>()
                             .eq(DeviceInfo::getWorkAreaId, workAreaId)
             );
+            deviceRegistry.applyRuntimeState(devices);
             return Result.success(devices);
         } catch (Exception e) {
             log.error("获取办公区设备列表失败", e);
@@ -97,6 +145,7 @@ public class DeviceController {
                     new LambdaQueryWrapper<DeviceInfo>()
                             .eq(DeviceInfo::getDeviceType, deviceType)
             );
+            deviceRegistry.applyRuntimeState(devices);
             return Result.success(devices);
         } catch (Exception e) {
             log.error("获取设备类型列表失败", e);
@@ -114,6 +163,7 @@ public class DeviceController {
                     new LambdaQueryWrapper<DeviceInfo>()
                             .eq(DeviceInfo::getDeviceId, deviceId)
             );
+            deviceRegistry.applyRuntimeState(device);
             return Result.success(device);
         } catch (Exception e) {
             log.error("获取设备信息失败", e);
@@ -127,67 +177,258 @@ public class DeviceController {
     @GetMapping("/{deviceId}/latest")
     public Result<Object> getLatestSensorData(@PathVariable String deviceId) {
         try {
-            // 优先从Redis获取
-            if (redisTemplate != null) {
-                try {
-                    Object cachedData = redisTemplate.opsForValue().get("sensor:latest:" + deviceId);
-                    if (cachedData != null) {
-                        return Result.success(cachedData);
-                    }
-                } catch (Exception e) {
-                    log.warn("Redis获取数据失败，从数据库获取: {}", e.getMessage());
+            // 依次查进程内缓存、Redis、数据库
+            return Result.success(latestSensorCache.get(deviceId));
+        } catch (Exception e) {
+            log.error("获取最新传感器数据失败", e);
+            return Result.fail("获取最新传感器数据失败");
+        }
+    }
+
+    /**
+     * 批量获取设备最新传感器数据：指定设备编号（逗号分隔），或按办公室、办公区、楼层筛选
+     */
+    @GetMapping("/latest")
+    public Result<Map<String, Object>> getLatestSensorDataBatch(@RequestParam(required = false) List<String> deviceIds,
+                                                                @RequestParam(required = false) Long officeId,
+                                                                @RequestParam(required = false) Long workAreaId,
+                                                                @RequestParam(required = false) Integer floor) {
+        try {
+            if (deviceIds == null || deviceIds.isEmpty()) {
+                if (officeId == null && workAreaId == null && floor == null) {
+                    return Result.fail("请指定设备编号或办公室、办公区、楼层");
                 }
+                deviceIds = deviceRegistry.findDeviceIds(officeId, workAreaId, floor);
             }
+            return getLatestSensorDataBatch(deviceIds);
+        } catch (Exception e) {
+            log.error("批量获取最新传感器数据失败", e);
+            return Result.fail("批量获取最新传感器数据失败");
+        }
+    }
 
-            // Redis没有则从数据库获取
-            SensorData sensorData = sensorDataMapper.selectOne(
-                    new LambdaQueryWrapper<SensorData>()
-                            .eq(SensorData::getDeviceId, deviceId)
-                            .orderByDesc(SensorData::getDataTime)
-                            .last("LIMIT 1")
-            );
-            
-            if (sensorData != null) {
-                // 转换为前端期望的格式，添加timestamp字段
-                Map<String, Object> result = new HashMap<>();
-                result.put("deviceId", sensorData.getDeviceId());
-                result.put("light", sensorData.getLight());
-                result.put("temperature", sensorData.getTemperature());
-                result.put("humidity", sensorData.getHumidity());
-                result.put("flame", sensorData.getFlame() != null && sensorData.getFlame() == 1);
-                result.put("rgbStatus", sensorData.getRgbStatus() != null && sensorData.getRgbStatus() == 1);
-                // 将dataTime转换为timestamp（毫秒）
-                if (sensorData.getDataTime() != null) {
-                    result.put("timestamp", sensorData.getDataTime().atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli());
-                } else {
-                    // 如果dataTime为空，使用当前时间
-                    result.put("timestamp", System.currentTimeMillis());
-                }
-                return Result.success(result);
+    /**
+     * 批量获取设备最新传感器数据（设备编号较多时使用请求体传入）
+     */
+    @PostMapping("/latest")
+    public Result<Map<String, Object>> getLatestSensorDataBatch(@RequestBody List<String> deviceIds) {
+        try {
+            if (deviceIds.size() > MAX_LATEST_BATCH) {
+                return Result.fail("单次最多查询" + MAX_LATEST_BATCH + "台设备");
             }
-            
-            return Result.success(null);
+            return Result.success(latestSensorCache.getAll(new LinkedHashSet<>(deviceIds)));
         } catch (Exception e) {
-            log.error("获取最新传感器数据失败", e);
-            return Result.fail("获取最新传感器数据失败");
+            log.error("批量获取最新传感器数据失败", e);
+            return Result.fail("批量获取最新传感器数据失败");
+        }
+    }
+
+    /**
+     * 按汇总表查询时间序列：指定设备编号，或按办公室、办公区、楼层合并
+     */
+    @GetMapping("/series")
+    public Result<Map<String, Object>> getSensorSeries(
+            @RequestParam(required = false) String deviceId,
+            @RequestParam(required = false) Long officeId,
+            @RequestParam(required = false) Long workAreaId,
+            @RequestParam(required = false) Integer floor,
+            @RequestParam String metric,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime from,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime to,
+            @RequestParam(required = false) String interval,
+            @RequestParam(required = false) Integer maxPoints) {
+        try {
+            List<String> deviceIds;
+            if (deviceId != null) {
+                deviceIds = Collections.singletonList(deviceId);
+            } else if (officeId != null || workAreaId != null || floor != null) {
+                deviceIds = deviceRegistry.findDeviceIds(officeId, workAreaId, floor);
+            } else {
+                return Result.fail("请指定设备编号或办公室、办公区、楼层");
+            }
+            if (deviceIds.size() > MAX_LATEST_BATCH) {
+                return Result.fail("单次最多查询" + MAX_LATEST_BATCH + "台设备");
+            }
+            return Result.success(sensorSeriesService.query(deviceIds, metric, from, to, interval, maxPoints));
+        } catch (IllegalArgumentException e) {
+            return Result.fail(e.getMessage());
+        } catch (Exception e) {
+            log.error("查询传感器时间序列失败", e);
+            return Result.fail("查询传感器时间序列失败");
+        }
+    }
+
+    /**
+     * 流式导出传感器历史数据（CSV或NDJSON），客户端支持时gzip压缩
+     */
+    @GetMapping("/export")
+    public void exportSensorData(
+            @RequestParam(required = false) String deviceId,
+            @RequestParam(required = false) Long officeId,
+            @RequestParam(required = false) Long workAreaId,
+            @RequestParam(required = false) Integer floor,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime from,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime to,
+            @RequestParam(defaultValue = SensorExportService.FORMAT_CSV) String format,
+            @RequestParam(required = false) Boolean gzip,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        List<String> deviceIds;
+        if (deviceId != null) {
+            deviceIds = Collections.singletonList(deviceId);
+        } else if (officeId != null || workAreaId != null || floor != null) {
+            deviceIds = deviceRegistry.findDeviceIds(officeId, workAreaId, floor);
+        } else {
+            writeError(response, HttpServletResponse.SC_BAD_REQUEST, "请指定设备编号或办公室、办公区、楼层");
+            return;
+        }
+        String error = null;
+        if (deviceIds.isEmpty()) {
+            error = "范围内没有设备";
+        } else if (deviceIds.size() > exportProperties.getMaxDevices()) {
+            error = "单次最多导出" + exportProperties.getMaxDevices() + "台设备";
+        } else if (!to.isAfter(from)) {
+            error = "结束时间必须晚于开始时间";
+        } else if (!SensorExportService.isSupportedFormat(format)) {
+            error = "不支持的导出格式: " + format;
+        }
+        if (error != null) {
+            writeError(response, HttpServletResponse.SC_BAD_REQUEST, error);
+            return;
+        }
+        if (!sensorExportService.tryAcquire()) {
+            writeError(response, 429, "导出任务过多，请稍后再试");
+            return;
+        }
+        try {
+            String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+            boolean compress = gzip != null ? gzip : acceptEncoding != null && acceptEncoding.contains("gzip");
+            boolean csv = SensorExportService.FORMAT_CSV.equals(format);
+            response.setContentType(csv ? "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=sensor_data_"
+                    + from.format(EXPORT_FILE_TIME) + "_" + to.format(EXPORT_FILE_TIME) + "." + format);
+            if (compress) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            long rows = sensorExportService.export(deviceIds, from, to, format, compress, response.getOutputStream());
+            log.info("导出传感器数据: {}台设备, {}行, {} ~ {}", deviceIds.size(), rows, from, to);
+        } catch (IOException e) {
+            // 客户端中途断开
+            log.warn("导出传感器数据中断: {}", e.getMessage());
+        } catch (Exception e) {
+            log.error("导出传感器数据失败", e);
+            if (!response.isCommitted()) {
+                response.reset();
+                writeError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "导出传感器数据失败");
+            }
+        } finally {
+            sensorExportService.release();
+        }
+    }
+
+    private void writeError(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().write(JSON.toJSONString(Result.fail(message)));
+    }
+
+    /**
+     * 获取设备影子（执行器期望状态与上报状态）
+     */
+    @GetMapping("/{deviceId}/shadow")
+    public Result<Map<String, Object>> getDeviceShadow(@PathVariable String deviceId) {
+        return Result.success(deviceShadowService.describe(deviceId));
+    }
+
+    /**
+     * 获取最近一段时间的读数（堆外存储，不查数据库），按时间升序
+     */
+    @GetMapping("/{deviceId}/recent")
+    public Result<Map<String, Object>> getRecentReadings(@PathVariable String deviceId,
+                                                         @RequestParam(defaultValue = "60") Integer minutes) {
+        if (!recentReadingStore.isAvailable()) {
+            return Result.fail("最近读数存储不可用");
+        }
+        long windowMillis = minutes * 60_000L;
+        if (minutes < 1 || windowMillis > recentReadingStore.getWindowMillis()) {
+            return Result.fail("时间范围为1-" + recentReadingStore.getWindowMillis() / 60_000L + "分钟");
+        }
+        long now = System.currentTimeMillis();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("deviceId", deviceId);
+        result.put("from", now - windowMillis);
+        result.put("to", now);
+        result.put("resolutionSeconds", recentReadingStore.getResolutionMillis() / 1000);
+        result.put("readings", recentReadingStore.range(deviceId, now - windowMillis, now + 1));
+        return Result.success(result);
+    }
+
+    /**
+     * 批量获取最近一段时间的指标迷你图（每个点为步长内的平均值，最后一个点包含当前时刻）
+     */
+    @GetMapping("/sparkline")
+    public Result<Map<String, Object>> getSparklines(@RequestParam(required = false) List<String> deviceIds,
+                                                     @RequestParam(required = false) Long officeId,
+                                                     @RequestParam(required = false) Long workAreaId,
+                                                     @RequestParam(required = false) Integer floor,
+                                                     @RequestParam String metric,
+                                                     @RequestParam(defaultValue = "1440") Integer minutes,
+                                                     @RequestParam(defaultValue = "96") Integer points) {
+        if (!recentReadingStore.isAvailable()) {
+            return Result.fail("最近读数存储不可用");
+        }
+        if (!RecentReadingStore.isSupportedMetric(metric)) {
+            return Result.fail("不支持的指标: " + metric);
+        }
+        long windowMillis = minutes * 60_000L;
+        if (minutes < 1 || windowMillis > recentReadingStore.getWindowMillis()) {
+            return Result.fail("时间范围为1-" + recentReadingStore.getWindowMillis() / 60_000L + "分钟");
+        }
+        if (points < 1 || points > MAX_SPARKLINE_POINTS) {
+            return Result.fail("点数范围为1-" + MAX_SPARKLINE_POINTS);
+        }
+        List<String> ids;
+        if (deviceIds != null && !deviceIds.isEmpty()) {
+            ids = deviceIds;
+        } else if (officeId != null || workAreaId != null || floor != null) {
+            ids = deviceRegistry.findDeviceIds(officeId, workAreaId, floor);
+        } else {
+            return Result.fail("请指定设备编号或办公室、办公区、楼层");
+        }
+        if (ids.size() > MAX_LATEST_BATCH) {
+            return Result.fail("单次最多查询" + MAX_LATEST_BATCH + "台设备");
+        }
+        // 步长取槽宽的整数倍，并按步长对齐
+        long resolution = recentReadingStore.getResolutionMillis();
+        long step = ((windowMillis + points - 1) / points + resolution - 1) / resolution * resolution;
+        long from = (System.currentTimeMillis() / step + 1) * step - points * step;
+        Map<String, List<Double>> series = new LinkedHashMap<>();
+        for (String id : ids) {
+            series.put(id, recentReadingStore.sparkline(id, metric, from, step, points));
         }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("metric", metric);
+        result.put("from", from);
+        result.put("stepSeconds", step / 1000);
+        result.put("series", series);
+        return Result.success(result);
     }
 
     /**
-     * 分页查询传感器历史数据
+     * 游标翻页查询传感器历史数据（按采集时间倒序）
      */
     @GetMapping("/{deviceId}/history")
-    public Result<Page<SensorData>> getSensorDataHistory(
+    public Result<Map<String, Object>> getSensorDataHistory(
             @PathVariable String deviceId,
-            @RequestParam(defaultValue = "1") Integer pageNum,
-            @RequestParam(defaultValue = "20") Integer pageSize) {
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") Integer pageSize,
+            @RequestParam(defaultValue = "approx") String count,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime to) {
         try {
-            Page<SensorData> page = new Page<>(pageNum, pageSize);
-            LambdaQueryWrapper<SensorData> wrapper = new LambdaQueryWrapper<>();
-            wrapper.eq(SensorData::getDeviceId, deviceId)
-                    .orderByDesc(SensorData::getDataTime);
-            sensorDataMapper.selectPage(page, wrapper);
-            return Result.success(page);
+            return Result.success(sensorHistoryService.query(deviceId, from, to, cursor, pageSize, count));
+        } catch (IllegalArgumentException e) {
+            return Result.fail(e.getMessage());
         } catch (Exception e) {
             log.error("查询传感器历史数据失败", e);
             return Result.fail("查询传感器历史数据失败");
@@ -234,6 +475,7 @@ public class DeviceController {
             }
             
             deviceInfoMapper.insert(deviceInfo);
+            deviceRegistry.register(deviceInfo);
             log.info("[后端] 设备添加成功: {} (设备编号: {})", deviceInfo.getDeviceName(), deviceId);
             
             return Result.success("设备添加成功，设备编号：" + deviceId);
@@ -299,6 +541,7 @@ public class DeviceController {
             log.info("[后端] 更新设备请求: {}", deviceInfo.getDeviceName());
             
             deviceInfoMapper.updateById(deviceInfo);
+            deviceRegistry.register(deviceInfoMapper.selectById(deviceInfo.getId()));
             log.info("[后端] 设备更新成功: {}", deviceInfo.getDeviceName());
             
             return Result.success("设备更新成功");
@@ -326,6 +569,11 @@ public class DeviceController {
             }
             
             deviceInfoMapper.deleteById(device.getId());
+            deviceRegistry.remove(deviceId);
+            deviceShadowService.remove(deviceId);
+            sensorPushAggregator.forget(deviceId);
+            latestSensorCache.evict(deviceId);
+            recentReadingStore.forget(deviceId);
             log.info("[后端] 设备删除成功: {}", device.getDeviceName());
             
             return Result.success("设备删除成功");
@@ -0,0 +1,224 @@
+package com.smartoffice.device.controller;
+
+import com.smartoffice.common.vo.Result;
+import com.smartoffice.device.archive.SensorColdArchive;
+import com.smartoffice.device.cache.LatestSensorCache;
+import com.smartoffice.device.cache.RecentReadingStore;
+import com.smartoffice.device.control.CommandDispatcher;
+import com.smartoffice.device.ingest.IngestionPipeline;
+import com.smartoffice.device.push.SensorPushAggregator;
+import com.smartoffice.device.service.AlarmStatisticsService;
+import com.smartoffice.device.service.SensorExportService;
+import com.smartoffice.device.push.SensorSnapshotSender;
+import com.smartoffice.device.push.SubscriptionTracker;
+import com.smartoffice.device.storage.SensorDataPartitionManager;
+import com.smartoffice.device.storage.SensorDataWriteBuffer;
+import com.smartoffice.device.storage.SensorRollupAggregator;
+import com.smartoffice.device.storage.SensorRollupBackfill;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * 运行监控Controller
+ */
+@Slf4j
+@RestController
+@RequestMapping("/monitor")
+@CrossOrigin
+public class MonitorController {
+
+    @Autowired
+    private IngestionPipeline ingestionPipeline;
+
+    @Autowired
+    private SensorDataWriteBuffer sensorDataWriteBuffer;
+
+    @Autowired
+    private CommandDispatcher commandDispatcher;
+
+    @Autowired
+    private SensorPushAggregator sensorPushAggregator;
+
+    @Autowired
+    private SensorSnapshotSender sensorSnapshotSender;
+
+    @Autowired
+    private SubscriptionTracker subscriptionTracker;
+
+    @Autowired
+    private LatestSensorCache latestSensorCache;
+
+    @Autowired
+    private RecentReadingStore recentReadingStore;
+
+    @Autowired
+    private SensorRollupAggregator sensorRollupAggregator;
+
+    @Autowired
+    private SensorRollupBackfill sensorRollupBackfill;
+
+    @Autowired
+    private SensorDataPartitionManager sensorDataPartitionManager;
+
+    @Autowired
+    private SensorExportService sensorExportService;
+
+    @Autowired
+    private SensorColdArchive sensorColdArchive;
+
+    @Autowired
+    private AlarmStatisticsService alarmStatisticsService;
+
+    /**
+     * 获取接入流水线统计
+     */
+    @GetMapping("/ingestion")
+    public Result<Map<String, Object>> getIngestionStats() {
+        return Result.success(ingestionPipeline.getStats());
+    }
+
+    /**
+     * 获取传感器数据批量写库统计
+     */
+    @GetMapping("/write-behind")
+    public Result<Map<String, Object>> getWriteBehindStats() {
+        return Result.success(sensorDataWriteBuffer.getStats());
+    }
+
+    /**
+     * 获取控制命令下发统计
+     */
+    @GetMapping("/commands")
+    public Result<Map<String, Object>> getCommandStats() {
+        return Result.success(commandDispatcher.getStats());
+    }
+
+    /**
+     * 获取WebSocket推送统计
+     */
+    @GetMapping("/push")
+    public Result<Map<String, Object>> getPushStats() {
+        Map<String, Object> stats = sensorPushAggregator.getStats();
+        stats.put("snapshots", sensorSnapshotSender.getSnapshotCount());
+        stats.put("snapshotReadings", sensorSnapshotSender.getSnapshotReadingCount());
+        stats.put("sessions", subscriptionTracker.getSessionCount());
+        stats.put("subscriptions", subscriptionTracker.snapshot());
+        return Result.success(stats);
+    }
+
+    /**
+     * 获取最新数据近端缓存统计
+     */
+    @GetMapping("/latest-cache")
+    public Result<Map<String, Object>> getLatestCacheStats() {
+        return Result.success(latestSensorCache.getStats());
+    }
+
+    /**
+     * 获取最近读数堆外存储统计
+     */
+    @GetMapping("/recent-store")
+    public Result<Map<String, Object>> getRecentStoreStats() {
+        return Result.success(recentReadingStore.getStats());
+    }
+
+    /**
+     * 获取汇总表维护统计与回填进度
+     */
+    @GetMapping("/rollup")
+    public Result<Map<String, Object>> getRollupStats() {
+        Map<String, Object> stats = sensorRollupAggregator.getStats();
+        stats.put("backfill", sensorRollupBackfill.getStatus());
+        return Result.success(stats);
+    }
+
+    /**
+     * 从原始数据回填汇总表（按天执行，包含起止日期）
+     */
+    @PostMapping("/rollup/backfill")
+    public Result<Map<String, Object>> backfillRollup(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (to.isBefore(from)) {
+            return Result.fail("结束日期不能早于开始日期");
+        }
+        if (!sensorRollupBackfill.start(from, to)) {
+            return Result.fail("已有回填任务在运行");
+        }
+        return Result.success(sensorRollupBackfill.getStatus());
+    }
+
+    /**
+     * 获取sensor_data分区维护统计
+     */
+    @GetMapping("/partitions")
+    public Result<Map<String, Object>> getPartitionStats() {
+        return Result.success(sensorDataPartitionManager.getStats());
+    }
+
+    /**
+     * 立即执行一次分区维护（提前建分区、清理过期分区）
+     */
+    @PostMapping("/partitions/maintain")
+    public Result<Map<String, Object>> maintainPartitions() {
+        sensorDataPartitionManager.maintain();
+        return Result.success(sensorDataPartitionManager.getStats());
+    }
+
+    /**
+     * 获取传感器数据导出统计
+     */
+    @GetMapping("/export")
+    public Result<Map<String, Object>> getExportStats() {
+        return Result.success(sensorExportService.getStats());
+    }
+
+    /**
+     * 获取冷存储统计
+     */
+    @GetMapping("/cold-archive")
+    public Result<Map<String, Object>> getColdArchiveStats() {
+        return Result.success(sensorColdArchive.getStats());
+    }
+
+    /**
+     * 把ARCHIVE策略交换出的归档表写入冷存储（归档表保留，确认后可手工删除）
+     */
+    @PostMapping("/cold-archive/import")
+    public Result<Map<String, Object>> importColdArchive(@RequestParam String table) {
+        try {
+            long rows = sensorColdArchive.importTable(table);
+            if (rows < 0) {
+                return Result.fail("该归档表已写入冷存储");
+            }
+            return Result.success(sensorColdArchive.getStats());
+        } catch (IllegalArgumentException e) {
+            return Result.fail(e.getMessage());
+        } catch (Exception e) {
+            log.error("归档表写入冷存储失败: {}", table, e);
+            return Result.fail("归档表写入冷存储失败");
+        }
+    }
+
+    /**
+     * 获取告警统计计数器
+     */
+    @GetMapping("/alarm-statistics")
+    public Result<Map<String, Object>> getAlarmStatistics() {
+        return Result.success(alarmStatisticsService.getStats());
+    }
+
+    /**
+     * 立即以数据库重新校准告警统计
+     */
+    @PostMapping("/alarm-statistics/reconcile")
+    public Result<Map<String, Object>> reconcileAlarmStatistics() {
+        alarmStatisticsService.reconcile();
+        return Result.success(alarmStatisticsService.getStats());
+    }
+}
@@ -3,6 +3,7 @@ package com.smartoffice.device.controller;
 import com.smartoffice.common.entity.Office;
 import com.smartoffice.common.entity.WorkArea;
 import com.smartoffice.common.vo.Result;
+import com.smartoffice.device.registry.DeviceRegistry;
 import com.smartoffice.device.service.OfficeService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,6 +25,9 @@ public class OfficeController {
     @Autowired
     private OfficeService officeService;
 
+    @Autowired
+    private DeviceRegistry deviceRegistry;
+
     /**
      * 获取所有办公室
      */
@@ -94,6 +98,7 @@ public class OfficeController {
             log.info("更新办公室请求: {}", office.getOfficeName());
             boolean success = officeService.updateOffice(office);
             if (success) {
+                deviceRegistry.refreshOffice(office.getId());
                 return Result.success("办公室更新成功");
             } else {
                 return Result.fail("办公室更新失败");
@@ -113,6 +118,7 @@ public class OfficeController {
             log.info("删除办公室请求: {}", id);
             boolean success = officeService.deleteOffice(id);
             if (success) {
+                deviceRegistry.refreshOffice(id);
                 return Result.success("办公室删除成功");
             } else {
                 return Result.fail("办公室下还有办公区，无法删除");
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.smartoffice.common.constants.MqttTopicConstants;
 import com.smartoffice.common.entity.SystemConfig;
 import com.smartoffice.common.vo.Result;
+import com.smartoffice.device.control.ThresholdHolder;
 import com.smartoffice.device.mapper.SystemConfigMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.paho.client.mqttv3.MqttClient;
@@ -34,6 +35,9 @@ public class SystemConfigController {
     @Autowired(required = false)
     private MqttClient mqttClient;
 
+    @Autowired
+    private ThresholdHolder thresholdHolder;
+
     /**
      * 获取所有阈值配置
      */
@@ -99,6 +103,9 @@ public class SystemConfigController {
                     }
                 }
 
+                // 替换进程内阈值快照
+                thresholdHolder.reload();
+
                 log.info("更新配置: {}={}", config.getConfigKey(), config.getConfigValue());
                 
                 // 如果是采集间隔配置，推送到硬件设备
@@ -143,6 +150,9 @@ public class SystemConfigController {
                     }
                 }
 
+                // 替换进程内阈值快照
+                thresholdHolder.reload();
+
                 log.info("更新阈值配置: {}={}", configKey, configValue);
                 return Result.success("配置已更新");
             } else {
@@ -0,0 +1,22 @@
+package com.smartoffice.device.ingest;
+
+/**
+ * 接入队列满时的背压策略
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * 阻塞MQTT回调线程，直到队列有空位（压力通过TCP传导到Broker）
+     */
+    BLOCK,
+
+    /**
+     * 丢弃队列中最旧的消息，保证新数据优先
+     */
+    DROP_OLDEST,
+
+    /**
+     * 溢写到本地磁盘文件，队列有空位后按顺序回放
+     */
+    SPILL
+}
@@ -0,0 +1,61 @@
+package com.smartoffice.device.ingest;
+
+import com.smartoffice.common.codec.BinaryPayloadFormat;
+import com.smartoffice.common.codec.BinaryPayloadReader;
+
+/**
+ * 二进制传感器负载解码（格式见 {@link BinaryPayloadFormat}），直接写入池化的 {@link SensorBatch}
+ */
+public final class BinarySensorDecoder {
+
+    private BinarySensorDecoder() {
+    }
+
+    /**
+     * 解码单条或批量读数帧，格式错误时抛出IllegalArgumentException
+     */
+    public static void decode(byte[] payload, SensorBatch out) {
+        out.reset();
+        BinaryPayloadReader reader = new BinaryPayloadReader(payload);
+        int type = BinaryPayloadFormat.readHeader(reader);
+        if (type == BinaryPayloadFormat.TYPE_SENSOR) {
+            readReading(reader, out.getHead());
+            out.markSingle();
+        } else if (type == BinaryPayloadFormat.TYPE_SENSOR_BATCH) {
+            int count = reader.readU16();
+            for (int i = 0; i < count; i++) {
+                readReading(reader, out.add());
+            }
+        } else {
+            throw new IllegalArgumentException("不是传感器数据帧: type=" + type);
+        }
+        reader.requireEnd();
+    }
+
+    private static void readReading(BinaryPayloadReader reader, SensorReading reading) {
+        reading.setDeviceId(reader.readString());
+        int fields = reader.readU8();
+        int flags = reader.readU8();
+        if ((fields & BinaryPayloadFormat.FIELD_LIGHT) != 0) {
+            reading.setLight(reader.readFixed());
+        }
+        if ((fields & BinaryPayloadFormat.FIELD_TEMPERATURE) != 0) {
+            reading.setTemperature(reader.readFixed());
+        }
+        if ((fields & BinaryPayloadFormat.FIELD_HUMIDITY) != 0) {
+            reading.setHumidity(reader.readFixed());
+        }
+        if ((fields & BinaryPayloadFormat.FIELD_FLAME) != 0) {
+            reading.setFlame((flags & BinaryPayloadFormat.FLAG_FLAME) != 0);
+        }
+        if ((fields & BinaryPayloadFormat.FIELD_RGB_STATUS) != 0) {
+            reading.setRgbStatus((flags & BinaryPayloadFormat.FLAG_RGB_STATUS) != 0);
+        }
+        if ((fields & BinaryPayloadFormat.FIELD_BUZZER_STATUS) != 0) {
+            reading.setBuzzerStatus((flags & BinaryPayloadFormat.FLAG_BUZZER_STATUS) != 0);
+        }
+        if ((fields & BinaryPayloadFormat.FIELD_TIMESTAMP) != 0) {
+            reading.setTimestamp(reader.readI64());
+        }
+    }
+}
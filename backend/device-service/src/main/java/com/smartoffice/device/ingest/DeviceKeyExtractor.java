@@ -0,0 +1,64 @@
+package com.smartoffice.device.ingest;
+
+import com.smartoffice.common.codec.BinaryPayloadCodec;
+import com.smartoffice.common.codec.BinaryPayloadFormat;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 从MQTT负载中快速取出设备编号，用作分区键
+ * <p>
+ * 只扫描 {@code "deviceId":"..."} 这一段，不做完整解析；取不到时返回null，
+ * 由调用方按无序任务处理（这类消息在后续解析中同样会失败或被忽略）。
+ * 二进制负载直接读取帧中的设备编号字段。
+ */
+public final class DeviceKeyExtractor {
+
+    private static final byte[] KEY = "\"deviceId\"".getBytes(StandardCharsets.US_ASCII);
+
+    private DeviceKeyExtractor() {
+    }
+
+    public static String extract(byte[] payload) {
+        if (BinaryPayloadFormat.isBinary(payload)) {
+            return BinaryPayloadCodec.peekDeviceId(payload);
+        }
+        int limit = payload.length - KEY.length;
+        outer:
+        for (int i = 0; i <= limit; i++) {
+            for (int j = 0; j < KEY.length; j++) {
+                if (payload[i + j] != KEY[j]) {
+                    continue outer;
+                }
+            }
+            int pos = skipWhitespace(payload, i + KEY.length);
+            if (pos >= payload.length || payload[pos] != ':') {
+                continue;
+            }
+            pos = skipWhitespace(payload, pos + 1);
+            if (pos >= payload.length || payload[pos] != '"') {
+                return null;
+            }
+            int start = ++pos;
+            while (pos < payload.length && payload[pos] != '"') {
+                if (payload[pos] == '\\') {
+                    return null;
+                }
+                pos++;
+            }
+            return pos < payload.length ? new String(payload, start, pos - start, StandardCharsets.UTF_8) : null;
+        }
+        return null;
+    }
+
+    private static int skipWhitespace(byte[] payload, int pos) {
+        while (pos < payload.length) {
+            byte c = payload[pos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,31 @@
+package com.smartoffice.device.ingest;
+
+import lombok.Getter;
+
+/**
+ * 待处理的MQTT入站消息
+ */
+@Getter
+public class InboundMessage {
+
+    /**
+     * 消息主题
+     */
+    private final String topic;
+
+    /**
+     * 原始负载
+     */
+    private final byte[] payload;
+
+    /**
+     * 接收时间（纳秒，用于统计排队耗时）
+     */
+    private final long receivedNanos;
+
+    public InboundMessage(String topic, byte[] payload, long receivedNanos) {
+        this.topic = topic;
+        this.payload = payload;
+        this.receivedNanos = receivedNanos;
+    }
+}
@@ -0,0 +1,305 @@
+package com.smartoffice.device.ingest;
+
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.mqtt.MqttMessageDispatcher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MQTT消息接入流水线
+ * <p>
+ * MQTT回调线程只负责把消息放入有界队列，由工作线程池异步完成入库、缓存、联动控制等处理，
+ * 避免下游处理变慢拖住Paho唯一的回调线程。队列满时按配置的背压策略处理。
+ * <p>
+ * 分发线程从队列取出消息后按设备编号交给 {@link PartitionedExecutor}，
+ * 同一设备的消息始终按接收顺序串行处理，不同设备之间并行。
+ */
+@Slf4j
+@Component
+public class IngestionPipeline {
+
+    @Autowired
+    private IngestionProperties ingestionProperties;
+
+    @Autowired
+    private MqttMessageDispatcher messageDispatcher;
+
+    private BlockingQueue<InboundMessage> queue;
+
+    private PartitionedExecutor executor;
+
+    private Thread router;
+
+    private Thread spillReplayer;
+
+    private SpillFile spillFile;
+
+    private BackpressurePolicy policy;
+
+    private final Object spillLock = new Object();
+
+    private volatile boolean running;
+
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder processedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder spilledCount = new LongAdder();
+    private final LongAdder submitNanos = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        IngestionProperties.Pipeline config = ingestionProperties.getPipeline();
+        this.policy = config.getPolicy();
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+
+        if (policy == BackpressurePolicy.SPILL) {
+            try {
+                spillFile = new SpillFile(config.getSpillDir(), config.getSpillMaxBytes());
+                if (!spillFile.isEmpty()) {
+                    log.info("发现上次未回放的溢写数据: {} 字节", spillFile.size());
+                }
+            } catch (IOException e) {
+                log.error("初始化溢写文件失败，降级为BLOCK策略", e);
+                policy = BackpressurePolicy.BLOCK;
+            }
+        }
+
+        int workerCount = config.getWorkers() > 0 ? config.getWorkers() : Runtime.getRuntime().availableProcessors();
+        executor = new PartitionedExecutor("ingest-lane", workerCount,
+                config.getMaxInFlight(), config.getLaneBatchSize());
+        running = true;
+        router = new Thread(this::routeLoop, "ingest-router");
+        router.setDaemon(true);
+        router.start();
+
+        if (spillFile != null) {
+            spillReplayer = new Thread(this::replayLoop, "ingest-spill-replayer");
+            spillReplayer.setDaemon(true);
+            spillReplayer.start();
+        }
+
+        log.info("接入流水线已启动: lanes={}, queueCapacity={}, maxInFlight={}, policy={}",
+                workerCount, config.getQueueCapacity(), config.getMaxInFlight(), policy);
+    }
+
+    /**
+     * 提交消息（在MQTT回调线程上执行，必须保持轻量）
+     *
+     * @return 消息是否被接收（进入队列或溢写文件）
+     */
+    public boolean submit(String topic, byte[] payload) {
+        long start = System.nanoTime();
+        InboundMessage message = new InboundMessage(topic, payload, start);
+        boolean accepted;
+        if (!running) {
+            accepted = spillFile != null && spill(message);
+            if (!accepted) {
+                droppedCount.increment();
+                log.warn("接入流水线已停止，丢弃消息: topic={}", topic);
+            }
+            return accepted;
+        }
+
+        switch (policy) {
+            case DROP_OLDEST:
+                accepted = offerDropOldest(message);
+                break;
+            case SPILL:
+                accepted = offerOrSpill(message);
+                break;
+            case BLOCK:
+            default:
+                accepted = putBlocking(message);
+                break;
+        }
+        if (accepted) {
+            submittedCount.increment();
+        }
+        submitNanos.add(System.nanoTime() - start);
+        return accepted;
+    }
+
+    private boolean putBlocking(InboundMessage message) {
+        try {
+            queue.put(message);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            droppedCount.increment();
+            return false;
+        }
+    }
+
+    private boolean offerDropOldest(InboundMessage message) {
+        while (!queue.offer(message)) {
+            if (queue.poll() != null) {
+                droppedCount.increment();
+            }
+        }
+        return true;
+    }
+
+    private boolean offerOrSpill(InboundMessage message) {
+        synchronized (spillLock) {
+            // 溢写文件非空时新消息也必须溢写，保证回放顺序
+            if (spillFile.isEmpty() && queue.offer(message)) {
+                return true;
+            }
+            return spill(message);
+        }
+    }
+
+    private boolean spill(InboundMessage message) {
+        try {
+            if (spillFile.append(message)) {
+                spilledCount.increment();
+                return true;
+            }
+            log.warn("溢写文件已达上限，丢弃消息: topic={}", message.getTopic());
+        } catch (IOException e) {
+            log.error("写入溢写文件失败", e);
+        }
+        droppedCount.increment();
+        return false;
+    }
+
+    /**
+     * 分发线程：按设备编号把消息交给分区执行器，停止后仍会把队列中剩余消息分发完
+     */
+    private void routeLoop() {
+        while (running || !queue.isEmpty()) {
+            InboundMessage message;
+            try {
+                message = queue.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (message == null) {
+                continue;
+            }
+            try {
+                executor.execute(DeviceKeyExtractor.extract(message.getPayload()), () -> process(message));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 在处理通道内把拆分出的任务交给对应设备的通道（如网关批量上报中各设备的读数）
+     */
+    public void executeForDevice(String deviceId, Runnable task) {
+        executor.executeNested(deviceId, task);
+    }
+
+    private void process(InboundMessage message) {
+        queueWaitNanos.add(System.nanoTime() - message.getReceivedNanos());
+        try {
+            messageDispatcher.dispatch(message.getTopic(), message.getPayload());
+        } catch (Exception e) {
+            log.error("处理MQTT消息失败: topic={}", message.getTopic(), e);
+        }
+        processedCount.increment();
+    }
+
+    /**
+     * 溢写回放线程：队列有空位时按顺序把溢写数据搬回队列
+     */
+    private void replayLoop() {
+        while (running) {
+            boolean moved = false;
+            try {
+                synchronized (spillLock) {
+                    while (queue.remainingCapacity() > 0 && !spillFile.isEmpty()) {
+                        InboundMessage message = spillFile.poll();
+                        if (message == null) {
+                            break;
+                        }
+                        queue.offer(message);
+                        moved = true;
+                    }
+                }
+            } catch (IOException e) {
+                log.error("回放溢写数据失败", e);
+            }
+            if (!moved) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        log.info("接入流水线停止中，剩余待处理消息: {}", queue.size());
+        if (spillReplayer != null) {
+            spillReplayer.interrupt();
+        }
+        try {
+            int timeout = ingestionProperties.getPipeline().getShutdownTimeoutSeconds();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+            router.join(TimeUnit.SECONDS.toMillis(timeout));
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            if (router.isAlive() || !executor.shutdown(remaining, TimeUnit.NANOSECONDS)) {
+                log.warn("接入流水线未能在{}秒内排空，放弃剩余消息: queued={}, inFlight={}",
+                        timeout, queue.size(), executor.getInFlight());
+                router.interrupt();
+                executor.shutdown(0, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            router.interrupt();
+            Thread.currentThread().interrupt();
+        }
+        if (spillFile != null) {
+            if (!spillFile.isEmpty()) {
+                log.info("溢写文件保留 {} 字节，下次启动时回放", spillFile.size());
+            }
+            spillFile.close();
+        }
+        log.info("接入流水线已停止");
+    }
+
+    /**
+     * 获取运行统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long submitted = submittedCount.sum();
+        long processed = processedCount.sum();
+        stats.put("policy", policy);
+        stats.put("queueSize", queue.size());
+        stats.put("queueRemaining", queue.remainingCapacity());
+        stats.put("submitted", submitted);
+        stats.put("processed", processed);
+        stats.put("dropped", droppedCount.sum());
+        stats.put("spilled", spilledCount.sum());
+        stats.put("spillBytes", spillFile != null ? spillFile.size() : 0);
+        stats.put("spillFileBytes", spillFile != null ? spillFile.fileSize() : 0);
+        stats.put("spillCompactions", spillFile != null ? spillFile.getCompactedCount() : 0);
+        stats.put("spillQuarantined", spillFile != null ? spillFile.getQuarantinedCount() : 0);
+        stats.put("avgSubmitMicros", submitted > 0 ? submitNanos.sum() / submitted / 1000.0 : 0);
+        stats.put("avgQueueWaitMillis", processed > 0 ? queueWaitNanos.sum() / processed / 1_000_000.0 : 0);
+        stats.put("inFlight", executor.getInFlight());
+        stats.put("activeDevices", executor.getActiveMailboxes());
+        stats.put("lanes", executor.getLaneStats());
+        return stats;
+    }
+}
@@ -0,0 +1,316 @@
+package com.smartoffice.device.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按设备分区的有序执行器
+ * <p>
+ * 每个分区键（设备编号）对应一个邮箱，邮箱按哈希固定归属一条单线程通道。
+ * 同一邮箱任一时刻只会被一个线程处理，因此同一设备的任务严格按提交顺序执行；
+ * 通道空闲时会从其他通道的队尾整体窃取等待中的邮箱，不同设备之间可以并行。
+ * 在途任务总数受信号量限制，超出时提交方阻塞，从而把背压传回上游队列。
+ * 处理任务内部再拆分出的任务通过 {@link #executeNested} 提交，不占用信号量，避免通道线程互相等待。
+ */
+@Slf4j
+public class PartitionedExecutor {
+
+    /**
+     * 空闲通道尝试窃取的间隔（毫秒）
+     */
+    private static final long STEAL_INTERVAL_MS = 10;
+
+    private final Lane[] lanes;
+
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    private final Semaphore inFlight;
+
+    /**
+     * 已提交未执行完的任务数（含内部拆分的任务）
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * 每次处理一个邮箱最多连续执行的任务数，避免单个高频设备占住通道
+     */
+    private final int batchSize;
+
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
+    private volatile boolean running = true;
+
+    public PartitionedExecutor(String name, int laneCount, int maxInFlight, int batchSize) {
+        this.inFlight = new Semaphore(maxInFlight);
+        this.batchSize = Math.max(1, batchSize);
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, name + "-" + (i + 1));
+        }
+        for (Lane lane : lanes) {
+            lane.thread.start();
+        }
+    }
+
+    /**
+     * 提交任务，同一key的任务按提交顺序串行执行；key为null时不保证顺序
+     */
+    public void execute(String key, Runnable task) throws InterruptedException {
+        inFlight.acquire();
+        submit(key, () -> {
+            try {
+                task.run();
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * 在通道线程内提交拆分出的任务：同样按key保序，但不受在途上限约束，不会阻塞
+     */
+    public void executeNested(String key, Runnable task) {
+        submit(key, task);
+    }
+
+    private void submit(String key, Runnable task) {
+        pending.incrementAndGet();
+        if (key == null) {
+            Mailbox mailbox = new Mailbox(null, lanes[Math.floorMod(roundRobin.getAndIncrement(), lanes.length)]);
+            mailbox.enqueue(task);
+            mailbox.home.schedule(mailbox);
+            return;
+        }
+        while (true) {
+            Mailbox mailbox = mailboxes.computeIfAbsent(key, k -> new Mailbox(k, laneOf(k)));
+            int result = mailbox.enqueue(task);
+            if (result == Mailbox.RETIRED) {
+                // 邮箱刚被回收，重新获取
+                continue;
+            }
+            if (result == Mailbox.NEEDS_SCHEDULE) {
+                mailbox.home.schedule(mailbox);
+            }
+            return;
+        }
+    }
+
+    private Lane laneOf(String key) {
+        int h = key.hashCode();
+        return lanes[Math.floorMod(h ^ (h >>> 16), lanes.length)];
+    }
+
+    /**
+     * 执行邮箱中的任务，执行完后邮箱为空则回收，否则重新排到归属通道
+     */
+    private void run(Mailbox mailbox, Lane lane) {
+        for (int i = 0; i < batchSize; i++) {
+            Runnable task = mailbox.poll();
+            if (task == null) {
+                break;
+            }
+            try {
+                task.run();
+            } catch (Throwable e) {
+                log.error("分区任务执行失败: key={}", mailbox.key, e);
+            } finally {
+                pending.decrementAndGet();
+                lane.executed.increment();
+            }
+        }
+        if (mailbox.finishRun()) {
+            mailbox.home.schedule(mailbox);
+        } else if (mailbox.key != null) {
+            mailboxes.remove(mailbox.key, mailbox);
+        }
+    }
+
+    /**
+     * 在途（已提交未执行完）的任务数
+     */
+    public int getInFlight() {
+        return pending.get();
+    }
+
+    /**
+     * 停止接收并等待已提交任务执行完
+     *
+     * @return 是否在超时前全部执行完
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (getInFlight() > 0) {
+            if (System.nanoTime() > deadline) {
+                break;
+            }
+            Thread.sleep(20);
+        }
+        running = false;
+        for (Lane lane : lanes) {
+            lane.thread.interrupt();
+        }
+        return getInFlight() == 0;
+    }
+
+    /**
+     * 各通道统计
+     */
+    public List<Map<String, Object>> getLaneStats() {
+        List<Map<String, Object>> stats = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) {
+            Map<String, Object> laneStats = new LinkedHashMap<>();
+            laneStats.put("lane", lane.index);
+            laneStats.put("queuedMailboxes", lane.runQueue.size());
+            laneStats.put("queuedTasks", lane.queuedTasks());
+            laneStats.put("executed", lane.executed.sum());
+            laneStats.put("stolen", lane.stolen.sum());
+            stats.add(laneStats);
+        }
+        return stats;
+    }
+
+    public int getActiveMailboxes() {
+        return mailboxes.size();
+    }
+
+    private final class Lane {
+
+        private final int index;
+
+        private final Thread thread;
+
+        /**
+         * 待处理的邮箱，本通道从队头取，其他通道从队尾窃取
+         */
+        private final LinkedBlockingDeque<Mailbox> runQueue = new LinkedBlockingDeque<>();
+
+        private final LongAdder executed = new LongAdder();
+
+        private final LongAdder stolen = new LongAdder();
+
+        private Lane(int index, String threadName) {
+            this.index = index;
+            this.thread = new Thread(this::loop, threadName);
+            this.thread.setDaemon(true);
+        }
+
+        private void schedule(Mailbox mailbox) {
+            runQueue.offerLast(mailbox);
+        }
+
+        private int queuedTasks() {
+            int total = 0;
+            for (Mailbox mailbox : runQueue) {
+                total += mailbox.size();
+            }
+            return total;
+        }
+
+        private void loop() {
+            while (running) {
+                Mailbox mailbox;
+                try {
+                    mailbox = runQueue.pollFirst(STEAL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                    continue;
+                }
+                if (mailbox == null) {
+                    mailbox = steal();
+                    if (mailbox == null) {
+                        continue;
+                    }
+                    stolen.increment();
+                }
+                run(mailbox, this);
+            }
+        }
+
+        private Mailbox steal() {
+            for (int i = 1; i < lanes.length; i++) {
+                Lane victim = lanes[(index + i) % lanes.length];
+                Mailbox mailbox = victim.runQueue.pollLast();
+                if (mailbox != null) {
+                    return mailbox;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 单个分区键的任务队列
+     */
+    private static final class Mailbox {
+
+        private static final int ENQUEUED = 0;
+        private static final int NEEDS_SCHEDULE = 1;
+        private static final int RETIRED = 2;
+
+        private final String key;
+
+        private final Lane home;
+
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        /**
+         * 是否已排入通道或正在执行
+         */
+        private boolean scheduled;
+
+        /**
+         * 已从邮箱表移除，不再接收任务
+         */
+        private boolean retired;
+
+        private Mailbox(String key, Lane home) {
+            this.key = key;
+            this.home = home;
+        }
+
+        private synchronized int enqueue(Runnable task) {
+            if (retired) {
+                return RETIRED;
+            }
+            tasks.addLast(task);
+            if (scheduled) {
+                return ENQUEUED;
+            }
+            scheduled = true;
+            return NEEDS_SCHEDULE;
+        }
+
+        private synchronized Runnable poll() {
+            return tasks.pollFirst();
+        }
+
+        private synchronized int size() {
+            return tasks.size();
+        }
+
+        /**
+         * 一轮执行结束：仍有任务返回true（需要重新排队），否则回收邮箱
+         */
+        private synchronized boolean finishRun() {
+            if (!tasks.isEmpty()) {
+                return true;
+            }
+            scheduled = false;
+            retired = true;
+            return false;
+        }
+    }
+}
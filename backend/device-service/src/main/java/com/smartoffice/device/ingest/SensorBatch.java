@@ -0,0 +1,177 @@
+package com.smartoffice.device.ingest;
+
+import com.alibaba.fastjson2.JSON;
+import com.smartoffice.common.dto.SensorDataDTO;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一条MQTT消息解码出的传感器读数
+ * <p>
+ * 支持三种负载：单个读数对象；读数数组 {@code [{...}, {...}]}；
+ * 网关信封 {@code {"gatewayId": "...", "deviceId": "...", "timestamp": ..., "readings": [{...}]}}，
+ * 信封上的deviceId、timestamp作为其中读数缺省值。
+ * 读数对象按线程池化复用，调用方不得在处理结束后继续持有。
+ */
+public class SensorBatch {
+
+    /**
+     * 顶层对象：单条上报时即为读数本身，信封格式时保存信封上的公共字段
+     */
+    private final SensorReading head = new SensorReading();
+
+    private final List<SensorReading> items = new ArrayList<>();
+
+    private int size;
+
+    private boolean single;
+
+    private boolean envelope;
+
+    private String gatewayId;
+
+    public void reset() {
+        head.reset();
+        size = 0;
+        single = false;
+        envelope = false;
+        gatewayId = null;
+    }
+
+    /**
+     * 解析JSON负载：fastjson直接从字节解析为DTO（不经过String和JSONObject），再填入池化的读数对象
+     */
+    public void parse(byte[] payload) {
+        reset();
+        if (firstByte(payload) == '[') {
+            addAll(JSON.parseArray(payload, SensorDataDTO.class));
+            return;
+        }
+        Envelope envelope = JSON.parseObject(payload, Envelope.class);
+        if (envelope == null) {
+            throw new IllegalArgumentException("不支持的传感器数据格式");
+        }
+        head.fill(envelope);
+        if (envelope.getReadings() != null) {
+            gatewayId = envelope.getGatewayId();
+            addAll(envelope.getReadings());
+            markEnvelope();
+            applyEnvelopeDefaults();
+        } else {
+            markSingle();
+        }
+    }
+
+    private void addAll(List<SensorDataDTO> readings) {
+        if (readings == null) {
+            return;
+        }
+        for (SensorDataDTO dto : readings) {
+            if (dto != null) {
+                add().fill(dto);
+            }
+        }
+    }
+
+    private static byte firstByte(byte[] payload) {
+        for (byte c : payload) {
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    SensorReading getHead() {
+        return head;
+    }
+
+    /**
+     * 追加一条读数（复用池中的对象）
+     */
+    SensorReading add() {
+        if (size == items.size()) {
+            items.add(new SensorReading());
+        }
+        SensorReading reading = items.get(size++);
+        reading.reset();
+        return reading;
+    }
+
+    void markSingle() {
+        single = true;
+    }
+
+    void markEnvelope() {
+        envelope = true;
+    }
+
+    boolean isEnvelope() {
+        return envelope;
+    }
+
+    /**
+     * 信封解析完成后，把信封上的设备编号和时间戳补到缺少这些字段的读数上
+     */
+    void applyEnvelopeDefaults() {
+        for (int i = 0; i < size; i++) {
+            SensorReading reading = items.get(i);
+            if (reading.getDeviceId() == null) {
+                reading.setDeviceId(head.getDeviceId());
+            }
+            if (!reading.hasTimestamp() && head.hasTimestamp()) {
+                reading.setTimestamp(head.getTimestamp());
+            }
+        }
+    }
+
+    /**
+     * 是否为单条读数的普通上报
+     */
+    public boolean isSingle() {
+        return single;
+    }
+
+    /**
+     * 单条上报时的读数
+     */
+    public SensorReading getSingle() {
+        return head;
+    }
+
+    /**
+     * 批量上报的读数条数
+     */
+    public int size() {
+        return size;
+    }
+
+    public SensorReading get(int index) {
+        return items.get(index);
+    }
+
+    public String getGatewayId() {
+        return gatewayId;
+    }
+
+    void setGatewayId(String gatewayId) {
+        this.gatewayId = gatewayId;
+    }
+
+    /**
+     * 顶层对象：读数字段之外可带网关信封字段
+     */
+    @Getter
+    @Setter
+    public static class Envelope extends SensorDataDTO {
+
+        private static final long serialVersionUID = 1L;
+
+        private String gatewayId;
+
+        private List<SensorDataDTO> readings;
+    }
+}
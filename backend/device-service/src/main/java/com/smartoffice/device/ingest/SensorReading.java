@@ -0,0 +1,214 @@
+package com.smartoffice.device.ingest;
+
+import com.smartoffice.common.dto.SensorDataDTO;
+
+/**
+ * 可复用的传感器读数（基本类型字段）
+ * <p>
+ * 由 {@link SensorBatch}（JSON）或 {@link BinarySensorDecoder}（二进制帧）填充，每个处理线程复用同一个实例，
+ * 后续处理只读基本类型字段。调用方不得在处理结束后继续持有该对象。
+ */
+public class SensorReading {
+
+    private static final int HAS_LIGHT = 1;
+    private static final int HAS_TEMPERATURE = 1 << 1;
+    private static final int HAS_HUMIDITY = 1 << 2;
+    private static final int HAS_FLAME = 1 << 3;
+    private static final int HAS_RGB_STATUS = 1 << 4;
+    private static final int HAS_BUZZER_STATUS = 1 << 5;
+    private static final int HAS_TIMESTAMP = 1 << 6;
+
+    private String deviceId;
+
+    private double light;
+
+    private double temperature;
+
+    private double humidity;
+
+    private boolean flame;
+
+    private boolean rgbStatus;
+
+    private boolean buzzerStatus;
+
+    private long timestamp;
+
+    /**
+     * 字段是否出现的位图
+     */
+    private int present;
+
+    public void reset() {
+        deviceId = null;
+        present = 0;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public boolean hasLight() {
+        return (present & HAS_LIGHT) != 0;
+    }
+
+    public double getLight() {
+        return light;
+    }
+
+    public void setLight(double light) {
+        this.light = light;
+        present |= HAS_LIGHT;
+    }
+
+    public boolean hasTemperature() {
+        return (present & HAS_TEMPERATURE) != 0;
+    }
+
+    public double getTemperature() {
+        return temperature;
+    }
+
+    public void setTemperature(double temperature) {
+        this.temperature = temperature;
+        present |= HAS_TEMPERATURE;
+    }
+
+    public boolean hasHumidity() {
+        return (present & HAS_HUMIDITY) != 0;
+    }
+
+    public double getHumidity() {
+        return humidity;
+    }
+
+    public void setHumidity(double humidity) {
+        this.humidity = humidity;
+        present |= HAS_HUMIDITY;
+    }
+
+    public boolean hasFlame() {
+        return (present & HAS_FLAME) != 0;
+    }
+
+    /**
+     * 火焰检测结果，未上报视为无火焰
+     */
+    public boolean isFlame() {
+        return hasFlame() && flame;
+    }
+
+    public void setFlame(boolean flame) {
+        this.flame = flame;
+        present |= HAS_FLAME;
+    }
+
+    public boolean hasRgbStatus() {
+        return (present & HAS_RGB_STATUS) != 0;
+    }
+
+    /**
+     * RGB灯状态，未上报视为关闭
+     */
+    public boolean isRgbStatus() {
+        return hasRgbStatus() && rgbStatus;
+    }
+
+    public void setRgbStatus(boolean rgbStatus) {
+        this.rgbStatus = rgbStatus;
+        present |= HAS_RGB_STATUS;
+    }
+
+    public boolean hasBuzzerStatus() {
+        return (present & HAS_BUZZER_STATUS) != 0;
+    }
+
+    public boolean isBuzzerStatus() {
+        return hasBuzzerStatus() && buzzerStatus;
+    }
+
+    public void setBuzzerStatus(boolean buzzerStatus) {
+        this.buzzerStatus = buzzerStatus;
+        present |= HAS_BUZZER_STATUS;
+    }
+
+    public boolean hasTimestamp() {
+        return (present & HAS_TIMESTAMP) != 0;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+        present |= HAS_TIMESTAMP;
+    }
+
+    /**
+     * 复制一份独立的读数（需要跨线程传递池化对象时使用）
+     */
+    public SensorReading copy() {
+        SensorReading copy = new SensorReading();
+        copy.deviceId = deviceId;
+        copy.light = light;
+        copy.temperature = temperature;
+        copy.humidity = humidity;
+        copy.flame = flame;
+        copy.rgbStatus = rgbStatus;
+        copy.buzzerStatus = buzzerStatus;
+        copy.timestamp = timestamp;
+        copy.present = present;
+        return copy;
+    }
+
+    /**
+     * 从DTO填充
+     */
+    public SensorReading fill(SensorDataDTO dto) {
+        reset();
+        deviceId = dto.getDeviceId();
+        if (dto.getLight() != null) {
+            setLight(dto.getLight());
+        }
+        if (dto.getTemperature() != null) {
+            setTemperature(dto.getTemperature());
+        }
+        if (dto.getHumidity() != null) {
+            setHumidity(dto.getHumidity());
+        }
+        if (dto.getFlame() != null) {
+            setFlame(dto.getFlame());
+        }
+        if (dto.getRgbStatus() != null) {
+            setRgbStatus(dto.getRgbStatus());
+        }
+        if (dto.getBuzzerStatus() != null) {
+            setBuzzerStatus(dto.getBuzzerStatus());
+        }
+        if (dto.getTimestamp() != null) {
+            setTimestamp(dto.getTimestamp());
+        }
+        return this;
+    }
+
+    /**
+     * 转换为DTO（用于需要对象序列化的场景，如WebSocket推送）
+     */
+    public SensorDataDTO toDTO() {
+        SensorDataDTO dto = new SensorDataDTO();
+        dto.setDeviceId(deviceId);
+        dto.setLight(hasLight() ? light : null);
+        dto.setTemperature(hasTemperature() ? temperature : null);
+        dto.setHumidity(hasHumidity() ? humidity : null);
+        dto.setFlame(hasFlame() ? flame : null);
+        dto.setRgbStatus(hasRgbStatus() ? rgbStatus : null);
+        dto.setBuzzerStatus(hasBuzzerStatus() ? buzzerStatus : null);
+        dto.setTimestamp(hasTimestamp() ? timestamp : null);
+        return dto;
+    }
+}
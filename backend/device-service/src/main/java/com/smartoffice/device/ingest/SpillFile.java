@@ -0,0 +1,270 @@
+package com.smartoffice.device.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接入队列的磁盘溢写文件
+ * <p>
+ * 文件格式：16字节头（魔数、版本、读偏移量）+ 顺序追加的记录（接收时间毫秒、主题长度、主题、负载长度、负载）。
+ * 读偏移量随每次读取落盘，重启后从上次位置继续回放；全部读完后截断文件，已读部分超过未读部分时把未读记录前移压缩。
+ * <p>
+ * 打开时逐条校验记录，截掉崩溃时写了一半的末尾记录；读取时发现记录损坏则把文件改名隔离，换一个空文件继续接收。
+ */
+@Slf4j
+public class SpillFile {
+
+    public static final String FILE_NAME = "ingestion.spill";
+
+    private static final int MAGIC = 0x53504C31;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final int READ_POSITION_OFFSET = 8;
+
+    /**
+     * 记录头：接收时间(8) + 主题长度(4) + 负载长度(4)
+     */
+    private static final int RECORD_OVERHEAD = 16;
+
+    /**
+     * MQTT主题最大长度
+     */
+    private static final int MAX_TOPIC_BYTES = 65535;
+
+    /**
+     * 已读部分至少达到该大小才压缩
+     */
+    private static final long MIN_COMPACT_BYTES = 1024 * 1024;
+
+    private final File path;
+
+    private final long maxBytes;
+
+    private RandomAccessFile file;
+
+    private long readPosition;
+
+    private long writePosition;
+
+    private long quarantinedCount;
+
+    private long compactedCount;
+
+    public SpillFile(String dir, long maxBytes) throws IOException {
+        File directory = new File(dir);
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("无法创建溢写目录: " + directory.getAbsolutePath());
+        }
+        this.path = new File(directory, FILE_NAME);
+        this.maxBytes = maxBytes;
+        this.file = new RandomAccessFile(path, "rw");
+        if (file.length() == 0) {
+            reset();
+            return;
+        }
+        file.seek(0);
+        if (file.length() < HEADER_SIZE || file.readInt() != MAGIC || file.readInt() != VERSION) {
+            log.error("溢写文件格式不兼容或已损坏，隔离后重建");
+            quarantine();
+            return;
+        }
+        readPosition = file.readLong();
+        long length = file.length();
+        if (readPosition < HEADER_SIZE || readPosition > length) {
+            log.warn("溢写文件读偏移量异常({})，从头回放", readPosition);
+            readPosition = HEADER_SIZE;
+        }
+        writePosition = lastCompleteRecordEnd(readPosition, length);
+        if (writePosition < length) {
+            log.warn("溢写文件末尾有不完整的记录，截掉{}字节", length - writePosition);
+            file.setLength(writePosition);
+        }
+        writeReadPosition();
+    }
+
+    /**
+     * 追加一条消息，未回放的数据超出容量上限返回false
+     */
+    public synchronized boolean append(InboundMessage message) throws IOException {
+        byte[] topic = message.getTopic().getBytes(StandardCharsets.UTF_8);
+        byte[] payload = message.getPayload();
+        long recordSize = RECORD_OVERHEAD + topic.length + payload.length;
+        if (topic.length > MAX_TOPIC_BYTES || writePosition - readPosition + recordSize > maxBytes) {
+            return false;
+        }
+        // 接收时间换算为墙上时间，回放后排队耗时包含在磁盘上等待的时间
+        long receivedMillis = System.currentTimeMillis()
+                - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - message.getReceivedNanos());
+        file.seek(writePosition);
+        file.writeLong(receivedMillis);
+        file.writeInt(topic.length);
+        file.write(topic);
+        file.writeInt(payload.length);
+        file.write(payload);
+        writePosition += recordSize;
+        return true;
+    }
+
+    /**
+     * 读取下一条消息，没有待回放数据时返回null；记录损坏时隔离文件并返回null
+     */
+    public synchronized InboundMessage poll() throws IOException {
+        if (readPosition >= writePosition) {
+            return null;
+        }
+        long end = recordEnd(readPosition, writePosition);
+        if (end < 0) {
+            log.error("溢写文件在偏移量{}处损坏，隔离后重建，丢弃未回放的{}字节", readPosition, writePosition - readPosition);
+            quarantine();
+            return null;
+        }
+        file.seek(readPosition);
+        long receivedMillis = file.readLong();
+        byte[] topic = new byte[file.readInt()];
+        file.readFully(topic);
+        byte[] payload = new byte[file.readInt()];
+        file.readFully(payload);
+        readPosition = end;
+
+        if (readPosition >= writePosition) {
+            // 全部回放完毕，截断文件
+            file.setLength(HEADER_SIZE);
+            readPosition = HEADER_SIZE;
+            writePosition = HEADER_SIZE;
+        } else {
+            compactIfNeeded();
+        }
+        writeReadPosition();
+        long waitedNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - receivedMillis));
+        return new InboundMessage(new String(topic, StandardCharsets.UTF_8), payload, System.nanoTime() - waitedNanos);
+    }
+
+    public synchronized boolean isEmpty() {
+        return readPosition >= writePosition;
+    }
+
+    public synchronized long size() {
+        return writePosition - readPosition;
+    }
+
+    /**
+     * 文件实际占用的字节数（含已回放、尚未压缩的部分）
+     */
+    public synchronized long fileSize() {
+        return writePosition;
+    }
+
+    public synchronized long getQuarantinedCount() {
+        return quarantinedCount;
+    }
+
+    public synchronized long getCompactedCount() {
+        return compactedCount;
+    }
+
+    public synchronized void close() {
+        try {
+            file.close();
+        } catch (IOException e) {
+            log.warn("关闭溢写文件失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 已读部分不小于未读部分时把未读记录前移（源和目标区域不重叠）
+     * <p>
+     * 先复制、再截断、最后写读偏移量：截断后崩溃时读偏移量超出文件长度，重启从头回放的正是复制后的未读记录。
+     */
+    private void compactIfNeeded() throws IOException {
+        long consumed = readPosition - HEADER_SIZE;
+        long unread = writePosition - readPosition;
+        // 已读部分严格大于未读部分，截断后旧读偏移量一定超出新文件长度
+        if (consumed < Math.max(MIN_COMPACT_BYTES, maxBytes / 4) || consumed <= unread) {
+            return;
+        }
+        byte[] buffer = new byte[(int) Math.min(unread, 1024 * 1024)];
+        for (long copied = 0; copied < unread; ) {
+            int n = (int) Math.min(buffer.length, unread - copied);
+            file.seek(readPosition + copied);
+            file.readFully(buffer, 0, n);
+            file.seek(HEADER_SIZE + copied);
+            file.write(buffer, 0, n);
+            copied += n;
+        }
+        file.getFD().sync();
+        file.setLength(HEADER_SIZE + unread);
+        readPosition = HEADER_SIZE;
+        writePosition = HEADER_SIZE + unread;
+        compactedCount++;
+    }
+
+    private long lastCompleteRecordEnd(long position, long length) throws IOException {
+        while (position < length) {
+            long end = recordEnd(position, length);
+            if (end < 0) {
+                break;
+            }
+            position = end;
+        }
+        return position;
+    }
+
+    /**
+     * 校验从position开始的记录能完整落在limit之内，返回记录结束位置，不完整或长度异常时返回-1
+     */
+    private long recordEnd(long position, long limit) throws IOException {
+        if (limit - position < RECORD_OVERHEAD) {
+            return -1;
+        }
+        file.seek(position + 8);
+        int topicLength = file.readInt();
+        if (topicLength < 0 || topicLength > MAX_TOPIC_BYTES || limit - position - RECORD_OVERHEAD < topicLength) {
+            return -1;
+        }
+        file.seek(position + 12 + topicLength);
+        int payloadLength = file.readInt();
+        long end = position + RECORD_OVERHEAD + topicLength + (long) payloadLength;
+        if (payloadLength < 0 || end > limit) {
+            return -1;
+        }
+        return end;
+    }
+
+    /**
+     * 把当前文件改名隔离，换一个空文件
+     */
+    private void quarantine() throws IOException {
+        file.close();
+        File target = new File(path.getParentFile(), FILE_NAME + ".corrupt-" + System.currentTimeMillis());
+        if (!path.renameTo(target)) {
+            throw new IOException("无法隔离损坏的溢写文件: " + path.getAbsolutePath());
+        }
+        log.error("损坏的溢写文件已隔离为 {}", target.getAbsolutePath());
+        quarantinedCount++;
+        file = new RandomAccessFile(path, "rw");
+        reset();
+    }
+
+    private void reset() throws IOException {
+        file.setLength(0);
+        file.seek(0);
+        file.writeInt(MAGIC);
+        file.writeInt(VERSION);
+        file.writeLong(HEADER_SIZE);
+        readPosition = HEADER_SIZE;
+        writePosition = HEADER_SIZE;
+    }
+
+    private void writeReadPosition() throws IOException {
+        file.seek(READ_POSITION_OFFSET);
+        file.writeLong(readPosition);
+    }
+}
@@ -3,10 +3,38 @@ package com.smartoffice.device.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.smartoffice.common.entity.AlarmLog;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 /**
  * 告警日志Mapper
  */
 @Mapper
 public interface AlarmLogMapper extends BaseMapper<AlarmLog> {
+
+    /**
+     * 按状态、类型、级别、告警日期分组计数，同一查询返回各组最大ID作为统计校准的高水位
+     * <p>
+     * 返回列：status、alarmType、alarmLevel、alarmDate、alarmCount、maxId
+     */
+    @Select("SELECT status, alarm_type AS alarmType, alarm_level AS alarmLevel, " +
+            "DATE(alarm_time) AS alarmDate, COUNT(*) AS alarmCount, MAX(id) AS maxId " +
+            "FROM alarm_log GROUP BY status, alarm_type, alarm_level, DATE(alarm_time)")
+    List<Map<String, Object>> countGrouped();
+
+    /**
+     * 状态仍为 previousStatus 时才更新（status、handleRemark 为空时保持原值），返回影响行数
+     */
+    @Update("UPDATE alarm_log SET status = COALESCE(#{status}, status), " +
+            "handle_remark = COALESCE(#{handleRemark}, handle_remark), " +
+            "handle_time = #{handleTime}, handler_id = #{handlerId} " +
+            "WHERE id = #{id} AND status <=> #{previousStatus}")
+    int updateStatusIfUnchanged(@Param("id") Long id, @Param("previousStatus") String previousStatus,
+                                @Param("status") String status, @Param("handleRemark") String handleRemark,
+                                @Param("handleTime") LocalDateTime handleTime, @Param("handlerId") Long handlerId);
 }
@@ -3,10 +3,40 @@ package com.smartoffice.device.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.smartoffice.common.entity.DeviceInfo;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
 
 /**
  * 设备信息Mapper
  */
 @Mapper
 public interface DeviceInfoMapper extends BaseMapper<DeviceInfo> {
+
+    /**
+     * 批量更新设备在线状态（按id，只更新在线状态、设备状态和最后在线时间）
+     * <p>
+     * 最后在线时间只前进不后退；库中最后在线时间比本次更新新时不写入离线状态，
+     * 避免集群中已不再处理该设备的实例把其他实例刚写入的在线状态覆盖掉。
+     * 注意SET按顺序求值，last_online_time必须最后赋值。
+     */
+    @Update("<script>" +
+            "UPDATE device_info SET " +
+            "online_status = CASE id " +
+            "<foreach collection='list' item='d'>WHEN #{d.id} THEN " +
+            "IF(#{d.onlineStatus} = 0 AND last_online_time &gt; #{d.lastOnlineTime}, online_status, #{d.onlineStatus}) </foreach>" +
+            "END, " +
+            "status = CASE id " +
+            "<foreach collection='list' item='d'>WHEN #{d.id} THEN " +
+            "IF(#{d.onlineStatus} = 0 AND last_online_time &gt; #{d.lastOnlineTime}, status, #{d.status}) </foreach>" +
+            "END, " +
+            "last_online_time = CASE id " +
+            "<foreach collection='list' item='d'>WHEN #{d.id} THEN " +
+            "IF(last_online_time IS NULL OR #{d.lastOnlineTime} &gt; last_online_time, #{d.lastOnlineTime}, last_online_time) </foreach>" +
+            "END " +
+            "WHERE id IN " +
+            "<foreach collection='list' item='d' open='(' separator=',' close=')'>#{d.id}</foreach>" +
+            "</script>")
+    int batchUpdateOnlineState(@Param("list") List<DeviceInfo> list);
 }
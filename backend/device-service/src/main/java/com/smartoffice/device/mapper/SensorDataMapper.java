@@ -2,11 +2,81 @@ package com.smartoffice.device.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.smartoffice.common.entity.SensorData;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * 传感器数据Mapper
  */
 @Mapper
 public interface SensorDataMapper extends BaseMapper<SensorData> {
+
+    /**
+     * 多行批量插入（单条INSERT语句，一次往返一次提交）
+     */
+    @Insert("<script>" +
+            "INSERT INTO sensor_data (device_id, light, temperature, humidity, flame, rgb_status, data_time) VALUES " +
+            "<foreach collection='list' item='item' separator=','>" +
+            "(#{item.deviceId}, #{item.light}, #{item.temperature}, #{item.humidity}, " +
+            "#{item.flame}, #{item.rgbStatus}, #{item.dataTime})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("list") List<SensorData> list);
+
+    /**
+     * 按 (data_time, id) 倒序做游标翻页，走 (device_id, data_time, id) 索引定位，不扫描游标之前的行
+     * <p>
+     * afterTime/afterId 为上一页最后一行，为空时从最新一行开始；from/to 可选（含from不含to）
+     */
+    @Select("<script>" +
+            "SELECT id, device_id, light, temperature, humidity, flame, rgb_status, data_time, create_time " +
+            "FROM sensor_data WHERE device_id = #{deviceId} " +
+            "<if test='from != null'>AND data_time &gt;= #{from} </if>" +
+            "<if test='to != null'>AND data_time &lt; #{to} </if>" +
+            "<if test='afterTime != null'>" +
+            "AND data_time &lt;= #{afterTime} AND (data_time &lt; #{afterTime} OR id &lt; #{afterId}) " +
+            "</if>" +
+            "ORDER BY data_time DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    List<SensorData> selectHistoryPage(@Param("deviceId") String deviceId,
+                                       @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                       @Param("afterTime") LocalDateTime afterTime, @Param("afterId") Long afterId,
+                                       @Param("limit") int limit);
+
+    /**
+     * 精确统计设备的历史数据行数（扫描索引范围，数据量大时较慢）
+     */
+    @Select("<script>" +
+            "SELECT COUNT(*) FROM sensor_data WHERE device_id = #{deviceId} " +
+            "<if test='from != null'>AND data_time &gt;= #{from} </if>" +
+            "<if test='to != null'>AND data_time &lt; #{to} </if>" +
+            "</script>")
+    long countHistory(@Param("deviceId") String deviceId,
+                      @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * 流式读取时间范围内的数据（含from不含to），按设备、采集时间排序
+     * <p>
+     * fetchSize为Integer.MIN_VALUE时MySQL驱动逐行读取结果，不在内存中缓存整个结果集；
+     * 必须在事务内遍历，遍历期间该连接不能执行其他语句
+     */
+    @Select("<script>" +
+            "SELECT id, device_id, light, temperature, humidity, flame, rgb_status, data_time " +
+            "FROM sensor_data WHERE device_id IN " +
+            "<foreach collection='deviceIds' item='id' open='(' separator=',' close=')'>#{id}</foreach> " +
+            "AND data_time &gt;= #{from} AND data_time &lt; #{to} " +
+            "ORDER BY device_id, data_time, id" +
+            "</script>")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<SensorData> streamRange(@Param("deviceIds") Collection<String> deviceIds,
+                                   @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
 }
@@ -0,0 +1,89 @@
+package com.smartoffice.device.mapper;
+
+import com.smartoffice.common.entity.SensorData;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * sensor_data 分区维护Mapper（DDL，表名、分区名由调用方生成，不接受外部输入）
+ */
+@Mapper
+public interface SensorDataPartitionMapper {
+
+    /**
+     * 按顺序列出 sensor_data 的分区，表未分区时返回一行 name 为 null 的记录
+     * <p>
+     * 返回列：name、description（TO_DAYS上界或MAXVALUE）、tableRows（估算行数）
+     */
+    @Select("SELECT PARTITION_NAME AS name, PARTITION_DESCRIPTION AS description, TABLE_ROWS AS tableRows " +
+            "FROM information_schema.PARTITIONS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'sensor_data' " +
+            "ORDER BY PARTITION_ORDINAL_POSITION")
+    List<Map<String, Object>> selectPartitions();
+
+    /**
+     * 获取命名锁（多实例只有一个执行分区维护），立即返回：1-成功, 0-已被占用
+     */
+    @Select("SELECT GET_LOCK(#{name}, 0)")
+    Integer getLock(@Param("name") String name);
+
+    @Select("SELECT RELEASE_LOCK(#{name})")
+    Integer releaseLock(@Param("name") String name);
+
+    /**
+     * 从兜底分区 p_future 中拆出新分区
+     */
+    @Update("ALTER TABLE sensor_data REORGANIZE PARTITION p_future INTO (${definitions})")
+    void reorganizeFuture(@Param("definitions") String definitions);
+
+    @Update("ALTER TABLE sensor_data DROP PARTITION ${partition}")
+    void dropPartition(@Param("partition") String partition);
+
+    @Select("SELECT COUNT(*) FROM (SELECT 1 FROM sensor_data PARTITION (${partition}) LIMIT 1) t")
+    int partitionHasRows(@Param("partition") String partition);
+
+    @Select("SELECT COUNT(*) FROM (SELECT 1 FROM ${table} LIMIT 1) t")
+    int tableHasRows(@Param("table") String table);
+
+    @Select("SELECT COUNT(*) FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = #{table}")
+    int countTable(@Param("table") String table);
+
+    /**
+     * 创建与 sensor_data 结构相同的未分区归档表
+     */
+    @Update("CREATE TABLE ${table} LIKE sensor_data")
+    void createArchiveTable(@Param("table") String table);
+
+    @Update("ALTER TABLE ${table} REMOVE PARTITIONING")
+    void removePartitioning(@Param("table") String table);
+
+    /**
+     * 分区与空的归档表交换数据（只交换表空间，不复制行）
+     */
+    @Update("ALTER TABLE sensor_data EXCHANGE PARTITION ${partition} WITH TABLE ${table}")
+    void exchangePartition(@Param("partition") String partition, @Param("table") String table);
+
+    /**
+     * 按设备、采集时间顺序流式读取一个分区（写入冷存储用，需在事务内遍历）
+     */
+    @Select("SELECT id, device_id, light, temperature, humidity, flame, rgb_status, data_time " +
+            "FROM sensor_data PARTITION (${partition}) ORDER BY device_id, data_time, id")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<SensorData> streamPartition(@Param("partition") String partition);
+
+    /**
+     * 按设备、采集时间顺序流式读取归档表
+     */
+    @Select("SELECT id, device_id, light, temperature, humidity, flame, rgb_status, data_time " +
+            "FROM ${table} ORDER BY device_id, data_time, id")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<SensorData> streamTable(@Param("table") String table);
+}
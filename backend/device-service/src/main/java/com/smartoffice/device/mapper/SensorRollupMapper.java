@@ -0,0 +1,145 @@
+package com.smartoffice.device.mapper;
+
+import com.smartoffice.common.entity.SensorRollup;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 传感器数据汇总Mapper
+ * <p>
+ * 分钟、小时、天三张表结构相同，表名由 {@code RollupGranularity} 传入（只允许枚举中的固定表名）。
+ */
+@Mapper
+public interface SensorRollupMapper {
+
+    String COLUMNS = "device_id, bucket_time, sample_count, " +
+            "temperature_min, temperature_max, temperature_sum, temperature_count, " +
+            "humidity_min, humidity_max, humidity_sum, humidity_count, " +
+            "light_min, light_max, light_sum, light_count, " +
+            "last_temperature, last_humidity, last_light, last_time";
+
+    /**
+     * 覆盖写入（回填重算时使用）
+     */
+    String OVERWRITE = "ON DUPLICATE KEY UPDATE sample_count = VALUES(sample_count), " +
+            "temperature_min = VALUES(temperature_min), temperature_max = VALUES(temperature_max), " +
+            "temperature_sum = VALUES(temperature_sum), temperature_count = VALUES(temperature_count), " +
+            "humidity_min = VALUES(humidity_min), humidity_max = VALUES(humidity_max), " +
+            "humidity_sum = VALUES(humidity_sum), humidity_count = VALUES(humidity_count), " +
+            "light_min = VALUES(light_min), light_max = VALUES(light_max), " +
+            "light_sum = VALUES(light_sum), light_count = VALUES(light_count), " +
+            "last_temperature = VALUES(last_temperature), last_humidity = VALUES(last_humidity), " +
+            "last_light = VALUES(last_light), last_time = VALUES(last_time)";
+
+    /**
+     * 增量合并：样本数与累加值相加，最值取两者极值，最后值取采集时间较新的一方
+     * （last_time 必须最后赋值，前面的判断使用的是更新前的值）
+     */
+    @Insert("<script>" +
+            "INSERT INTO ${table} (" + COLUMNS + ") VALUES " +
+            "<foreach collection='list' item='r' separator=','>" +
+            "(#{r.deviceId}, #{r.bucketTime}, #{r.sampleCount}, " +
+            "#{r.temperatureMin}, #{r.temperatureMax}, #{r.temperatureSum}, #{r.temperatureCount}, " +
+            "#{r.humidityMin}, #{r.humidityMax}, #{r.humiditySum}, #{r.humidityCount}, " +
+            "#{r.lightMin}, #{r.lightMax}, #{r.lightSum}, #{r.lightCount}, " +
+            "#{r.lastTemperature}, #{r.lastHumidity}, #{r.lastLight}, #{r.lastTime})" +
+            "</foreach> " +
+            "ON DUPLICATE KEY UPDATE sample_count = sample_count + VALUES(sample_count), " +
+            "temperature_min = LEAST(COALESCE(temperature_min, VALUES(temperature_min)), COALESCE(VALUES(temperature_min), temperature_min)), " +
+            "temperature_max = GREATEST(COALESCE(temperature_max, VALUES(temperature_max)), COALESCE(VALUES(temperature_max), temperature_max)), " +
+            "temperature_sum = temperature_sum + VALUES(temperature_sum), " +
+            "temperature_count = temperature_count + VALUES(temperature_count), " +
+            "humidity_min = LEAST(COALESCE(humidity_min, VALUES(humidity_min)), COALESCE(VALUES(humidity_min), humidity_min)), " +
+            "humidity_max = GREATEST(COALESCE(humidity_max, VALUES(humidity_max)), COALESCE(VALUES(humidity_max), humidity_max)), " +
+            "humidity_sum = humidity_sum + VALUES(humidity_sum), " +
+            "humidity_count = humidity_count + VALUES(humidity_count), " +
+            "light_min = LEAST(COALESCE(light_min, VALUES(light_min)), COALESCE(VALUES(light_min), light_min)), " +
+            "light_max = GREATEST(COALESCE(light_max, VALUES(light_max)), COALESCE(VALUES(light_max), light_max)), " +
+            "light_sum = light_sum + VALUES(light_sum), " +
+            "light_count = light_count + VALUES(light_count), " +
+            "last_temperature = IF(VALUES(last_time) &gt;= last_time, VALUES(last_temperature), last_temperature), " +
+            "last_humidity = IF(VALUES(last_time) &gt;= last_time, VALUES(last_humidity), last_humidity), " +
+            "last_light = IF(VALUES(last_time) &gt;= last_time, VALUES(last_light), last_light), " +
+            "last_time = GREATEST(last_time, VALUES(last_time))" +
+            "</script>")
+    int upsertBatch(@Param("table") String table, @Param("list") List<SensorRollup> list);
+
+    /**
+     * 从原始数据重算分钟汇总（回填）
+     */
+    @Insert("INSERT INTO sensor_rollup_minute (" + COLUMNS + ") " +
+            "SELECT device_id, DATE_FORMAT(data_time, '%Y-%m-%d %H:%i:00') AS bucket, COUNT(*), " +
+            "MIN(temperature), MAX(temperature), COALESCE(SUM(temperature), 0), COUNT(temperature), " +
+            "MIN(humidity), MAX(humidity), COALESCE(SUM(humidity), 0), COUNT(humidity), " +
+            "MIN(light), MAX(light), COALESCE(SUM(light), 0), COUNT(light), " +
+            "NULLIF(SUBSTRING_INDEX(GROUP_CONCAT(IFNULL(temperature, '') ORDER BY data_time DESC, id DESC), ',', 1), ''), " +
+            "NULLIF(SUBSTRING_INDEX(GROUP_CONCAT(IFNULL(humidity, '') ORDER BY data_time DESC, id DESC), ',', 1), ''), " +
+            "NULLIF(SUBSTRING_INDEX(GROUP_CONCAT(IFNULL(light, '') ORDER BY data_time DESC, id DESC), ',', 1), ''), " +
+            "MAX(data_time) " +
+            "FROM sensor_data WHERE data_time >= #{from} AND data_time < #{to} " +
+            "GROUP BY device_id, bucket " +
+            OVERWRITE)
+    int rebuildMinuteFromRaw(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * 由细粒度汇总重算粗粒度汇总（回填）
+     */
+    @Insert("INSERT INTO ${target} (" + COLUMNS + ") " +
+            "SELECT device_id, DATE_FORMAT(bucket_time, '${format}') AS bucket, SUM(sample_count), " +
+            "MIN(temperature_min), MAX(temperature_max), SUM(temperature_sum), SUM(temperature_count), " +
+            "MIN(humidity_min), MAX(humidity_max), SUM(humidity_sum), SUM(humidity_count), " +
+            "MIN(light_min), MAX(light_max), SUM(light_sum), SUM(light_count), " +
+            "NULLIF(SUBSTRING_INDEX(GROUP_CONCAT(IFNULL(last_temperature, '') ORDER BY bucket_time DESC), ',', 1), ''), " +
+            "NULLIF(SUBSTRING_INDEX(GROUP_CONCAT(IFNULL(last_humidity, '') ORDER BY bucket_time DESC), ',', 1), ''), " +
+            "NULLIF(SUBSTRING_INDEX(GROUP_CONCAT(IFNULL(last_light, '') ORDER BY bucket_time DESC), ',', 1), ''), " +
+            "MAX(last_time) " +
+            "FROM ${source} WHERE bucket_time >= #{from} AND bucket_time < #{to} " +
+            "GROUP BY device_id, bucket " +
+            OVERWRITE)
+    int rebuildFrom(@Param("target") String target, @Param("source") String source, @Param("format") String format,
+                    @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * 按固定步长合并汇总行（步长为所选粒度的整数倍，from已按步长对齐），只返回有数据的桶
+     * <p>
+     * 返回列：idx（桶序号）、minValue、maxValue、sumValue、valueCount
+     */
+    @Select("<script>" +
+            "SELECT FLOOR(TIMESTAMPDIFF(SECOND, #{from}, bucket_time) / #{step}) AS idx, " +
+            "MIN(${metric}_min) AS minValue, MAX(${metric}_max) AS maxValue, " +
+            "SUM(${metric}_sum) AS sumValue, SUM(${metric}_count) AS valueCount " +
+            "FROM ${table} WHERE device_id IN " +
+            "<foreach collection='deviceIds' item='id' open='(' separator=',' close=')'>#{id}</foreach> " +
+            "AND bucket_time &gt;= #{from} AND bucket_time &lt; #{to} " +
+            "GROUP BY idx ORDER BY idx" +
+            "</script>")
+    List<Map<String, Object>> selectSeries(@Param("table") String table, @Param("metric") String metric,
+                                           @Param("deviceIds") Collection<String> deviceIds,
+                                           @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                           @Param("step") long step);
+
+    /**
+     * 汇总表中设备在时间范围内的样本数（from/to 可选，按桶起始时间过滤）
+     */
+    @Select("<script>" +
+            "SELECT COALESCE(SUM(sample_count), 0) FROM ${table} WHERE device_id = #{deviceId} " +
+            "<if test='from != null'>AND bucket_time &gt;= #{from} </if>" +
+            "<if test='to != null'>AND bucket_time &lt; #{to} </if>" +
+            "</script>")
+    long sumSampleCount(@Param("table") String table, @Param("deviceId") String deviceId,
+                        @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * 删除过期汇总（分批删除，避免长事务）
+     */
+    @Delete("DELETE FROM ${table} WHERE bucket_time < #{before} LIMIT #{limit}")
+    int deleteBefore(@Param("table") String table, @Param("before") LocalDateTime before, @Param("limit") int limit);
+}
@@ -1,9 +1,6 @@
 package com.smartoffice.device.mqtt;
 
-import com.alibaba.fastjson2.JSON;
-import com.smartoffice.common.dto.AlarmMessageDTO;
-import com.smartoffice.common.dto.SensorDataDTO;
-import com.smartoffice.device.service.DeviceDataService;
+import com.smartoffice.device.ingest.IngestionPipeline;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
@@ -13,13 +10,15 @@ import org.springframework.stereotype.Component;
 
 /**
  * MQTT消息回调处理器
+ * <p>
+ * 回调线程只把消息交给接入流水线，实际处理见 {@link MqttMessageDispatcher}
  */
 @Slf4j
 @Component
 public class MqttMessageCallback implements MqttCallback {
 
     @Autowired
-    private DeviceDataService deviceDataService;
+    private IngestionPipeline ingestionPipeline;
 
     /**
      * 连接丢失回调
@@ -36,19 +35,12 @@ public class MqttMessageCallback implements MqttCallback {
     @Override
     public void messageArrived(String topic, MqttMessage message) throws Exception {
         try {
-            String payload = new String(message.getPayload(), "UTF-8");
-            log.error("🔔🔔🔔 收到MQTT消息 - Topic: {}, Payload: {}", topic, payload);
-
-            // 根据主题分发处理
-            if (topic.equals("office/sensor/data")) {
-                handleSensorData(payload);
-            } else if (topic.equals("office/alarm")) {
-                handleAlarm(payload);
-            } else if (topic.equals("office/device/status")) {
-                handleDeviceStatus(payload);
+            if (log.isDebugEnabled()) {
+                log.debug("收到MQTT消息 - Topic: {}, {} 字节", topic, message.getPayload().length);
             }
+            ingestionPipeline.submit(topic, message.getPayload());
         } catch (Exception e) {
-            log.error("处理MQTT消息失败", e);
+            log.error("提交MQTT消息失败", e);
         }
     }
 
@@ -59,42 +51,4 @@ public class MqttMessageCallback implements MqttCallback {
     public void deliveryComplete(IMqttDeliveryToken token) {
         log.debug("MQTT消息发送完成");
     }
-
-    /**
-     * 处理传感器数据
-     */
-    private void handleSensorData(String payload) {
-        try {
-            SensorDataDTO sensorData = JSON.parseObject(payload, SensorDataDTO.class);
-            deviceDataService.processSensorData(sensorData);
-            log.info("成功处理传感器数据: {}", sensorData.getDeviceId());
-        } catch (Exception e) {
-            log.error("处理传感器数据失败", e);
-        }
-    }
-
-    /**
-     * 处理告警消息
-     */
-    private void handleAlarm(String payload) {
-        try {
-            AlarmMessageDTO alarmMessage = JSON.parseObject(payload, AlarmMessageDTO.class);
-            deviceDataService.processAlarm(alarmMessage);
-            log.info("成功处理告警消息: {}", alarmMessage.getDeviceId());
-        } catch (Exception e) {
-            log.error("处理告警消息失败", e);
-        }
-    }
-
-    /**
-     * 处理设备状态
-     */
-    private void handleDeviceStatus(String payload) {
-        try {
-            // 这里可以处理设备上下线状态
-            log.info("收到设备状态消息: {}", payload);
-        } catch (Exception e) {
-            log.error("处理设备状态失败", e);
-        }
-    }
 }
@@ -0,0 +1,137 @@
+package com.smartoffice.device.mqtt;
+
+import com.alibaba.fastjson2.JSON;
+import com.smartoffice.common.codec.BinaryPayloadCodec;
+import com.smartoffice.common.codec.BinaryPayloadFormat;
+import com.smartoffice.common.constants.MqttTopicConstants;
+import com.smartoffice.common.dto.AlarmMessageDTO;
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.ingest.BinarySensorDecoder;
+import com.smartoffice.device.ingest.IngestionPipeline;
+import com.smartoffice.device.ingest.SensorBatch;
+import com.smartoffice.device.ingest.SensorReading;
+import com.smartoffice.device.service.DeviceDataService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MQTT消息分发器（在接入流水线的工作线程上执行）
+ */
+@Slf4j
+@Component
+public class MqttMessageDispatcher {
+
+    /**
+     * 每个处理线程复用的读数对象
+     */
+    private static final ThreadLocal<SensorBatch> BATCH = ThreadLocal.withInitial(SensorBatch::new);
+
+    @Autowired
+    private DeviceDataService deviceDataService;
+
+    @Autowired
+    private IngestionPipeline ingestionPipeline;
+
+    @Autowired
+    private IngestionProperties ingestionProperties;
+
+    /**
+     * 根据主题分发处理
+     */
+    public void dispatch(String topic, byte[] payload) {
+        if (MqttTopicConstants.TOPIC_SENSOR_DATA.equals(topic)) {
+            handleSensorData(payload);
+        } else if (MqttTopicConstants.TOPIC_ALARM.equals(topic)) {
+            handleAlarm(payload);
+        } else if (MqttTopicConstants.TOPIC_DEVICE_STATUS.equals(topic)) {
+            handleDeviceStatus(payload);
+        }
+    }
+
+    /**
+     * 处理传感器数据：二进制负载按帧格式解码，JSON由fastjson从字节解析，结果填入线程复用的读数对象
+     */
+    private void handleSensorData(byte[] payload) {
+        try {
+            SensorBatch batch = BATCH.get();
+            if (BinaryPayloadFormat.isBinary(payload)) {
+                BinarySensorDecoder.decode(payload, batch);
+            } else {
+                batch.parse(payload);
+            }
+            if (batch.isSingle()) {
+                deviceDataService.processSensorData(batch.getSingle());
+            } else {
+                handleSensorBatch(batch);
+            }
+        } catch (Exception e) {
+            log.error("处理传感器数据失败", e);
+        }
+    }
+
+    /**
+     * 处理批量上报：整批一次入库，再按设备拆分到各自的处理通道，保证每台设备的读数仍按顺序处理
+     */
+    private void handleSensorBatch(SensorBatch batch) {
+        int maxReadings = ingestionProperties.getPipeline().getMaxBatchReadings();
+        if (batch.size() > maxReadings) {
+            log.warn("批量上报读数过多，丢弃整条消息: gatewayId={}, readings={}, max={}",
+                    batch.getGatewayId(), batch.size(), maxReadings);
+            return;
+        }
+        if (batch.size() == 0) {
+            return;
+        }
+        deviceDataService.persistSensorBatch(batch);
+
+        Map<String, List<SensorReading>> byDevice = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            SensorReading reading = batch.get(i);
+            if (reading.getDeviceId() == null) {
+                continue;
+            }
+            // 池化对象只在当前线程有效，跨通道传递前复制
+            byDevice.computeIfAbsent(reading.getDeviceId(), k -> new ArrayList<>()).add(reading.copy());
+        }
+        for (Map.Entry<String, List<SensorReading>> entry : byDevice.entrySet()) {
+            List<SensorReading> readings = entry.getValue();
+            ingestionPipeline.executeForDevice(entry.getKey(), () -> deviceDataService.applySensorReadings(readings));
+        }
+        log.debug("成功处理批量传感器数据: gatewayId={}, readings={}, devices={}",
+                batch.getGatewayId(), batch.size(), byDevice.size());
+    }
+
+    /**
+     * 处理告警消息
+     */
+    private void handleAlarm(byte[] payload) {
+        try {
+            AlarmMessageDTO alarmMessage = BinaryPayloadFormat.isBinary(payload)
+                    ? BinaryPayloadCodec.decodeAlarm(payload)
+                    : JSON.parseObject(payload, AlarmMessageDTO.class);
+            deviceDataService.processAlarm(alarmMessage);
+            log.info("成功处理告警消息: {}", alarmMessage.getDeviceId());
+        } catch (Exception e) {
+            log.error("处理告警消息失败", e);
+        }
+    }
+
+    /**
+     * 处理设备状态
+     */
+    private void handleDeviceStatus(byte[] payload) {
+        try {
+            // 这里可以处理设备上下线状态
+            log.info("收到设备状态消息: {}", new String(payload, StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            log.error("处理设备状态失败", e);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.smartoffice.device.push;
+
+import com.smartoffice.device.config.MqttProperties;
+import com.smartoffice.device.config.PushProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 集群事件转发
+ * <p>
+ * 集群接入模式下每台设备只由一个实例处理，推送帧、告警和设备影子变化经Redis发布订阅（{@code push.relay-channel}）
+ * 转发给其余实例，连接到任意实例的前端都能收到全部设备的数据。消息格式为 {@code 实例标识|类型|JSON}，
+ * 忽略自己发出的消息。未开启集群模式或未配置Redis时不转发。
+ */
+@Slf4j
+@Component
+public class ClusterRelay {
+
+    /**
+     * 传感器读数（JSON数组）
+     */
+    public static final char READINGS = 'R';
+
+    /**
+     * 告警记录
+     */
+    public static final char ALARM = 'A';
+
+    /**
+     * 设备影子状态
+     */
+    public static final char SHADOW = 'S';
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired(required = false)
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private PushProperties pushProperties;
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    /**
+     * 本实例标识，忽略自己发出的消息
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final Map<Character, Consumer<String>> handlers = new ConcurrentHashMap<>();
+
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder sendFailures = new LongAdder();
+    private final LongAdder receivedCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (enabled()) {
+            redisMessageListenerContainer.addMessageListener(this::onMessage,
+                    new ChannelTopic(pushProperties.getRelayChannel()));
+            log.info("集群事件转发已开启: channel={}, instanceId={}", pushProperties.getRelayChannel(), instanceId);
+        }
+    }
+
+    /**
+     * 是否需要转发（集群模式且已配置Redis）
+     */
+    public boolean enabled() {
+        return redisTemplate != null && redisMessageListenerContainer != null && mqttProperties.getCluster().isEnabled();
+    }
+
+    /**
+     * 登记某类消息的处理器（其他实例发出的消息）
+     */
+    public void subscribe(char type, Consumer<String> handler) {
+        handlers.put(type, handler);
+    }
+
+    /**
+     * 发布消息，失败只记录不抛出
+     */
+    public void publish(char type, String json) {
+        if (!enabled()) {
+            return;
+        }
+        byte[] channel = pushProperties.getRelayChannel().getBytes(StandardCharsets.UTF_8);
+        byte[] body = (instanceId + '|' + type + '|' + json).getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(channel, body));
+            sentCount.increment();
+        } catch (Exception e) {
+            sendFailures.increment();
+            log.warn("转发集群事件失败: type={}, reason={}", type, e.getMessage());
+        }
+    }
+
+    private void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('|');
+        if (separator < 0 || body.length() < separator + 3 || body.charAt(separator + 2) != '|'
+                || instanceId.equals(body.substring(0, separator))) {
+            return;
+        }
+        Consumer<String> handler = handlers.get(body.charAt(separator + 1));
+        if (handler == null) {
+            return;
+        }
+        receivedCount.increment();
+        try {
+            handler.accept(body.substring(separator + 3));
+        } catch (Exception e) {
+            log.warn("处理集群事件失败: type={}, reason={}", body.charAt(separator + 1), e.getMessage());
+        }
+    }
+
+    /**
+     * 获取转发统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled());
+        stats.put("sent", sentCount.sum());
+        stats.put("sendFailures", sendFailures.sum());
+        stats.put("received", receivedCount.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,73 @@
+package com.smartoffice.device.push;
+
+import com.smartoffice.device.registry.DeviceEntry;
+import com.smartoffice.device.registry.DeviceRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 推送目的地路由
+ * <p>
+ * 除全局主题外，每条数据还按设备所在办公室、办公区、楼层以及设备本身路由到分区主题：
+ * {@code <主题>/office/{id}}、{@code <主题>/work-area/{id}}、{@code <主题>/floor/{floor}}、
+ * {@code <主题>/device/{deviceId}}。位置取自设备注册表，只返回当前有订阅者的目的地。
+ */
+@Component
+public class PushRouter {
+
+    public static final String SENSOR_DATA = "/topic/sensor-data";
+
+    public static final String ALARM = "/topic/alarm";
+
+    @Autowired
+    private DeviceRegistry deviceRegistry;
+
+    @Autowired
+    private SubscriptionTracker subscriptionTracker;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    /**
+     * 计算设备数据应推送到的目的地
+     */
+    public List<String> route(String topic, String deviceId) {
+        List<String> targets = destinationsOf(topic, deviceId);
+        targets.removeIf(destination -> !subscriptionTracker.hasSubscribers(destination));
+        return targets;
+    }
+
+    /**
+     * 设备数据是否属于订阅目的地（订阅目的地可以是通配模式）
+     */
+    public boolean matches(String subscription, String topic, String deviceId) {
+        for (String destination : destinationsOf(topic, deviceId)) {
+            if (destination.equals(subscription) || pathMatcher.match(subscription, destination)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<String> destinationsOf(String topic, String deviceId) {
+        List<String> destinations = new ArrayList<>(5);
+        destinations.add(topic);
+        destinations.add(topic + "/device/" + deviceId);
+        DeviceEntry entry = deviceRegistry.get(deviceId);
+        if (entry != null) {
+            if (entry.getOfficeId() > 0) {
+                destinations.add(topic + "/office/" + entry.getOfficeId());
+            }
+            if (entry.getWorkAreaId() > 0) {
+                destinations.add(topic + "/work-area/" + entry.getWorkAreaId());
+            }
+            if (entry.getFloor() != 0) {
+                destinations.add(topic + "/floor/" + entry.getFloor());
+            }
+        }
+        return destinations;
+    }
+}
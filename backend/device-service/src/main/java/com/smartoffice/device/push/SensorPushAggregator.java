@@ -0,0 +1,230 @@
+package com.smartoffice.device.push;
+
+import com.alibaba.fastjson2.JSON;
+import com.smartoffice.common.dto.SensorDataDTO;
+import com.smartoffice.device.cache.RecentReadingStore;
+import com.smartoffice.device.ingest.SensorReading;
+import com.smartoffice.device.registry.DeviceRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 传感器数据推送合并
+ * <p>
+ * 处理线程只登记每台设备的最新读数，定时按帧把上一帧之后有新数据的设备合并成一条消息推送到
+ * {@code /topic/sensor-data}。推送频率与设备上报频率无关，每帧每个目的地只序列化一次，
+ * 订阅者增多时服务端开销只随帧数增长。
+ * <p>
+ * 同一帧还按 {@link PushRouter} 拆分到办公室、办公区、楼层、设备分区主题，无人订阅的目的地不推送。
+ * <p>
+ * 集群模式下本实例处理的读数每帧经 {@link ClusterRelay} 合并转发一次，其他实例转发来的读数进入本实例的下一帧，
+ * 并写入本实例的 {@link RecentReadingStore}，任意实例都能查询全部设备的最近读数。
+ */
+@Slf4j
+@Component
+public class SensorPushAggregator {
+
+    /**
+     * 单条转发消息最多携带的读数
+     */
+    private static final int MAX_READINGS_PER_RELAY = 500;
+
+    @Autowired(required = false)
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private PushRouter pushRouter;
+
+    @Autowired
+    private ClusterRelay clusterRelay;
+
+    @Autowired
+    private RecentReadingStore recentReadingStore;
+
+    @Autowired
+    private DeviceRegistry deviceRegistry;
+
+    /**
+     * 上一帧之后有新数据的设备及其最新读数
+     */
+    private final Map<String, SensorDataDTO> dirty = new ConcurrentHashMap<>();
+
+    /**
+     * 每台设备最近一条读数，用于订阅时下发快照
+     */
+    private final Map<String, SensorDataDTO> latest = new ConcurrentHashMap<>();
+
+    /**
+     * 上一帧之后本实例处理、待转发给其他实例的读数
+     */
+    private final Map<String, SensorDataDTO> relayPending = new ConcurrentHashMap<>();
+
+    private final LongAdder offeredCount = new LongAdder();
+    private final LongAdder frameCount = new LongAdder();
+    private final LongAdder pushedReadingCount = new LongAdder();
+    private final LongAdder scopedFrameCount = new LongAdder();
+    private final LongAdder remoteReadingCount = new LongAdder();
+    private final AtomicLong maxFrameSize = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        clusterRelay.subscribe(ClusterRelay.READINGS, this::onRemoteReadings);
+    }
+
+    /**
+     * 登记设备最新读数，等待下一帧推送
+     */
+    public void offer(SensorDataDTO reading) {
+        if (reading.getDeviceId() == null) {
+            return;
+        }
+        if (clusterRelay.enabled()) {
+            relayPending.put(reading.getDeviceId(), reading);
+        }
+        if (messagingTemplate == null) {
+            return;
+        }
+        latest.put(reading.getDeviceId(), reading);
+        dirty.put(reading.getDeviceId(), reading);
+        offeredCount.increment();
+    }
+
+    /**
+     * 其他实例转发来的读数，已登记设备的写入最近读数存储，并在本实例推送，不再转发
+     */
+    private void onRemoteReadings(String json) {
+        List<SensorDataDTO> readings = JSON.parseArray(json, SensorDataDTO.class);
+        if (readings == null) {
+            return;
+        }
+        SensorReading record = new SensorReading();
+        for (SensorDataDTO reading : readings) {
+            if (reading == null || reading.getDeviceId() == null) {
+                continue;
+            }
+            remoteReadingCount.increment();
+            if (reading.getTimestamp() != null && deviceRegistry.get(reading.getDeviceId()) != null) {
+                recentReadingStore.append(record.fill(reading), reading.getTimestamp());
+            }
+            if (messagingTemplate != null) {
+                latest.put(reading.getDeviceId(), reading);
+                dirty.put(reading.getDeviceId(), reading);
+            }
+        }
+    }
+
+    /**
+     * 预热最新读数（已有更新的读数时忽略）
+     */
+    public void preload(SensorDataDTO reading) {
+        if (reading.getDeviceId() != null) {
+            latest.putIfAbsent(reading.getDeviceId(), reading);
+        }
+    }
+
+    /**
+     * 设备最近一条读数
+     */
+    public Collection<SensorDataDTO> latestReadings() {
+        return latest.values();
+    }
+
+    public void forget(String deviceId) {
+        latest.remove(deviceId);
+        dirty.remove(deviceId);
+        relayPending.remove(deviceId);
+    }
+
+    @Scheduled(fixedDelayString = "${push.frame-interval-ms:250}")
+    public void flush() {
+        relay();
+        if (dirty.isEmpty()) {
+            return;
+        }
+        // 目的地 -> 本帧读数
+        Map<String, List<SensorDataDTO>> frames = new HashMap<>();
+        for (String deviceId : dirty.keySet()) {
+            // 逐个原子取出，取出后到达的新读数留到下一帧
+            SensorDataDTO reading = dirty.remove(deviceId);
+            if (reading == null) {
+                continue;
+            }
+            for (String destination : pushRouter.route(PushRouter.SENSOR_DATA, deviceId)) {
+                frames.computeIfAbsent(destination, k -> new ArrayList<>()).add(reading);
+            }
+        }
+        long timestamp = System.currentTimeMillis();
+        for (Map.Entry<String, List<SensorDataDTO>> entry : frames.entrySet()) {
+            List<SensorDataDTO> readings = entry.getValue();
+            try {
+                Map<String, Object> frame = new LinkedHashMap<>();
+                frame.put("timestamp", timestamp);
+                frame.put("readings", readings);
+                messagingTemplate.convertAndSend(entry.getKey(), frame);
+                if (PushRouter.SENSOR_DATA.equals(entry.getKey())) {
+                    frameCount.increment();
+                    pushedReadingCount.add(readings.size());
+                    maxFrameSize.accumulateAndGet(readings.size(), Math::max);
+                } else {
+                    scopedFrameCount.increment();
+                }
+            } catch (Exception e) {
+                log.warn("推送传感器数据帧失败: destination={}, reason={}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 把上一帧之后本实例处理的读数转发给其他实例
+     */
+    private void relay() {
+        if (relayPending.isEmpty()) {
+            return;
+        }
+        List<SensorDataDTO> readings = new ArrayList<>(relayPending.size());
+        for (String deviceId : relayPending.keySet()) {
+            SensorDataDTO reading = relayPending.remove(deviceId);
+            if (reading != null) {
+                readings.add(reading);
+            }
+        }
+        for (int from = 0; from < readings.size(); from += MAX_READINGS_PER_RELAY) {
+            clusterRelay.publish(ClusterRelay.READINGS,
+                    JSON.toJSONString(readings.subList(from, Math.min(from + MAX_READINGS_PER_RELAY, readings.size()))));
+        }
+    }
+
+    /**
+     * 获取推送统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long frames = frameCount.sum();
+        long pushed = pushedReadingCount.sum();
+        stats.put("pendingDevices", dirty.size());
+        stats.put("knownDevices", latest.size());
+        stats.put("offered", offeredCount.sum());
+        stats.put("frames", frames);
+        stats.put("pushedReadings", pushed);
+        stats.put("avgFrameSize", frames > 0 ? (double) pushed / frames : 0);
+        stats.put("maxFrameSize", maxFrameSize.get());
+        stats.put("scopedFrames", scopedFrameCount.sum());
+        stats.put("remoteReadings", remoteReadingCount.sum());
+        stats.put("relay", clusterRelay.getStats());
+        return stats;
+    }
+}
@@ -0,0 +1,135 @@
+package com.smartoffice.device.push;
+
+import com.smartoffice.common.dto.SensorDataDTO;
+import com.smartoffice.device.cache.LatestSensorCache;
+import com.smartoffice.device.registry.DeviceEntry;
+import com.smartoffice.device.registry.DeviceRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 订阅时下发状态快照
+ * <p>
+ * 客户端订阅传感器数据主题（含分区主题）时，立即只向该订阅发送一帧快照，包含范围内每台设备
+ * 最近一条读数，格式与实时帧相同并带 {@code snapshot: true}。快照取自进程内的最新读数，
+ * 页面加载不再需要逐台设备请求最新数据。启动时从最新数据缓存（Redis）预热一次。
+ */
+@Slf4j
+@Component
+public class SensorSnapshotSender {
+
+    @Autowired(required = false)
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired(required = false)
+    @Qualifier("clientOutboundChannel")
+    private MessageChannel clientOutboundChannel;
+
+    @Autowired
+    private LatestSensorCache latestSensorCache;
+
+    @Autowired
+    private SensorPushAggregator sensorPushAggregator;
+
+    @Autowired
+    private PushRouter pushRouter;
+
+    @Autowired
+    private DeviceRegistry deviceRegistry;
+
+    private final LongAdder snapshotCount = new LongAdder();
+    private final LongAdder snapshotReadingCount = new LongAdder();
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        if (messagingTemplate == null || clientOutboundChannel == null) {
+            return;
+        }
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (destination == null || !(destination.equals(PushRouter.SENSOR_DATA)
+                || destination.startsWith(PushRouter.SENSOR_DATA + "/"))) {
+            return;
+        }
+        List<SensorDataDTO> readings = new ArrayList<>();
+        for (SensorDataDTO reading : sensorPushAggregator.latestReadings()) {
+            if (deviceRegistry.get(reading.getDeviceId()) != null
+                    && pushRouter.matches(destination, PushRouter.SENSOR_DATA, reading.getDeviceId())) {
+                readings.add(reading);
+            }
+        }
+        try {
+            Map<String, Object> frame = new LinkedHashMap<>();
+            frame.put("timestamp", System.currentTimeMillis());
+            frame.put("snapshot", true);
+            frame.put("readings", readings);
+
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            headers.setSessionId(accessor.getSessionId());
+            headers.setSubscriptionId(accessor.getSubscriptionId());
+            headers.setDestination(destination);
+            headers.setLeaveMutable(true);
+            Message<?> message = messagingTemplate.getMessageConverter().toMessage(frame, headers.getMessageHeaders());
+            if (message != null) {
+                // 直接发往该会话，不经过消息代理广播
+                clientOutboundChannel.send(message);
+                snapshotCount.increment();
+                snapshotReadingCount.add(readings.size());
+            }
+        } catch (Exception e) {
+            log.warn("下发订阅快照失败: sessionId={}, destination={}, reason={}",
+                    accessor.getSessionId(), destination, e.getMessage());
+        }
+    }
+
+    /**
+     * 启动后从Redis最新数据缓存预热进程内快照
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        try {
+            List<String> deviceIds = new ArrayList<>();
+            for (DeviceEntry entry : deviceRegistry.getAll()) {
+                deviceIds.add(entry.getDeviceId());
+            }
+            if (deviceIds.isEmpty()) {
+                return;
+            }
+            int loaded = 0;
+            for (SensorDataDTO value : latestSensorCache.getAllData(deviceIds).values()) {
+                if (value != null) {
+                    sensorPushAggregator.preload(value);
+                    loaded++;
+                }
+            }
+            log.info("订阅快照预热完成: {}台设备", loaded);
+        } catch (Exception e) {
+            log.warn("订阅快照预热失败，等待设备上报: {}", e.getMessage());
+        }
+    }
+
+    public long getSnapshotCount() {
+        return snapshotCount.sum();
+    }
+
+    public long getSnapshotReadingCount() {
+        return snapshotReadingCount.sum();
+    }
+}
@@ -0,0 +1,110 @@
+package com.smartoffice.device.push;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebSocket订阅跟踪
+ * <p>
+ * 按STOMP订阅/退订/断开事件维护每个目的地的订阅数，推送前据此跳过无人订阅的目的地。
+ * 订阅通配目的地（如 {@code /topic/sensor-data/**}）的客户端存在时不做过滤。
+ */
+@Slf4j
+@Component
+public class SubscriptionTracker {
+
+    /**
+     * 目的地 -> 订阅数
+     */
+    private final Map<String, Integer> destinations = new ConcurrentHashMap<>();
+
+    /**
+     * 会话ID -> (订阅ID -> 目的地)
+     */
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 通配目的地订阅数
+     */
+    private final AtomicInteger patternSubscriptions = new AtomicInteger();
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        String destination = accessor.getDestination();
+        if (sessionId == null || subscriptionId == null || destination == null) {
+            return;
+        }
+        String previous = sessions.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>())
+                .put(subscriptionId, destination);
+        if (previous != null) {
+            release(previous);
+        }
+        destinations.merge(destination, 1, Integer::sum);
+        if (isPattern(destination)) {
+            patternSubscriptions.incrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = accessor.getSessionId() != null ? sessions.get(accessor.getSessionId()) : null;
+        if (subscriptions == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        String destination = subscriptions.remove(accessor.getSubscriptionId());
+        if (destination != null) {
+            release(destination);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    /**
+     * 目的地当前是否有订阅者
+     */
+    public boolean hasSubscribers(String destination) {
+        return patternSubscriptions.get() > 0 || destinations.containsKey(destination);
+    }
+
+    /**
+     * 各目的地订阅数（按目的地排序）
+     */
+    public Map<String, Integer> snapshot() {
+        return new TreeMap<>(destinations);
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    private void release(String destination) {
+        destinations.computeIfPresent(destination, (k, count) -> count > 1 ? count - 1 : null);
+        if (isPattern(destination)) {
+            patternSubscriptions.decrementAndGet();
+        }
+    }
+
+    private static boolean isPattern(String destination) {
+        return destination.indexOf('*') >= 0 || destination.indexOf('{') >= 0;
+    }
+}
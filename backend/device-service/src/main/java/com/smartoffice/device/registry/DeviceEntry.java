@@ -0,0 +1,152 @@
+package com.smartoffice.device.registry;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 设备注册表条目
+ * <p>
+ * 只保存热路径需要的字段，全部使用基本类型；最后在线时间直接写volatile字段，
+ * 在线状态变化通过CAS判定，只有真正发生状态切换时才需要写库。
+ */
+public class DeviceEntry {
+
+    private static final AtomicIntegerFieldUpdater<DeviceEntry> ONLINE =
+            AtomicIntegerFieldUpdater.newUpdater(DeviceEntry.class, "online");
+
+    private static final AtomicIntegerFieldUpdater<DeviceEntry> QUEUED =
+            AtomicIntegerFieldUpdater.newUpdater(DeviceEntry.class, "queued");
+
+    private final long id;
+
+    private final String deviceId;
+
+    /**
+     * 所属办公室ID，0表示未分配
+     */
+    private volatile long officeId;
+
+    /**
+     * 所属办公区ID，0表示未分配
+     */
+    private volatile long workAreaId;
+
+    /**
+     * 所在楼层（取自所属办公室），0表示未知
+     */
+    private volatile int floor;
+
+    /**
+     * 最后上报时间（毫秒时间戳）
+     */
+    private volatile long lastSeen;
+
+    /**
+     * 已写库的最后在线时间（毫秒时间戳）
+     */
+    private volatile long persistedLastSeen;
+
+    /**
+     * 在线状态：0-离线, 1-在线
+     */
+    private volatile int online;
+
+    /**
+     * 是否已在待写库队列中
+     */
+    private volatile int queued;
+
+    /**
+     * 本实例启动后是否收到过该设备的上报
+     */
+    private volatile boolean seenLocally;
+
+    DeviceEntry(long id, String deviceId) {
+        this.id = id;
+        this.deviceId = deviceId;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public long getOfficeId() {
+        return officeId;
+    }
+
+    public long getWorkAreaId() {
+        return workAreaId;
+    }
+
+    public int getFloor() {
+        return floor;
+    }
+
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    public boolean isOnline() {
+        return online == 1;
+    }
+
+    public boolean isSeenLocally() {
+        return seenLocally;
+    }
+
+    void setLocation(Long officeId, Long workAreaId, Integer floor) {
+        this.officeId = officeId != null ? officeId : 0L;
+        this.workAreaId = workAreaId != null ? workAreaId : 0L;
+        this.floor = floor != null ? floor : 0;
+    }
+
+    void setFloor(int floor) {
+        this.floor = floor;
+    }
+
+    void initState(boolean online, long lastSeen) {
+        this.online = online ? 1 : 0;
+        this.lastSeen = lastSeen;
+        this.persistedLastSeen = lastSeen;
+    }
+
+    void copyStateFrom(DeviceEntry other) {
+        this.online = other.online;
+        this.lastSeen = other.lastSeen;
+        this.persistedLastSeen = other.persistedLastSeen;
+        this.seenLocally = other.seenLocally;
+    }
+
+    void touch(long now) {
+        lastSeen = now;
+        if (!seenLocally) {
+            seenLocally = true;
+        }
+    }
+
+    /**
+     * 尝试切换在线状态，返回是否发生了切换
+     */
+    boolean transition(boolean toOnline) {
+        return toOnline ? ONLINE.compareAndSet(this, 0, 1) : ONLINE.compareAndSet(this, 1, 0);
+    }
+
+    boolean markQueued() {
+        return QUEUED.compareAndSet(this, 0, 1);
+    }
+
+    void clearQueued() {
+        queued = 0;
+    }
+
+    long getPersistedLastSeen() {
+        return persistedLastSeen;
+    }
+
+    void setPersistedLastSeen(long persistedLastSeen) {
+        this.persistedLastSeen = persistedLastSeen;
+    }
+}
@@ -0,0 +1,373 @@
+package com.smartoffice.device.registry;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.smartoffice.common.constants.SystemConstants;
+import com.smartoffice.common.entity.DeviceInfo;
+import com.smartoffice.common.entity.Office;
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.config.MqttProperties;
+import com.smartoffice.device.mapper.DeviceInfoMapper;
+import com.smartoffice.device.mapper.OfficeMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 内存设备注册表
+ * <p>
+ * 启动时从device_info加载，设备增删改时由DeviceController同步维护。
+ * 每条传感器数据只在内存中刷新最后在线时间，在线/离线状态切换才会进入待写库队列，
+ * 由定时任务批量写回device_info，替代原来每条消息一次selectOne加一次updateById。
+ * <p>
+ * 集群模式下每台设备的消息只由一个实例处理，本实例只对自己收到过上报的设备做离线判定和状态覆盖，
+ * 其余设备以数据库为准。
+ */
+@Slf4j
+@Component
+public class DeviceRegistry {
+
+    private static final int UPDATE_BATCH_SIZE = 500;
+
+    @Autowired
+    private DeviceInfoMapper deviceInfoMapper;
+
+    @Autowired
+    private OfficeMapper officeMapper;
+
+    @Autowired
+    private IngestionProperties ingestionProperties;
+
+    @Autowired
+    private MqttProperties mqttProperties;
+
+    private final Map<String, DeviceEntry> devices = new ConcurrentHashMap<>();
+
+    /**
+     * 设备主键 -> 条目，用于识别设备编号被修改的设备
+     */
+    private final Map<Long, DeviceEntry> devicesById = new ConcurrentHashMap<>();
+
+    private final ConcurrentLinkedQueue<DeviceEntry> pendingTransitions = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 办公室ID -> 楼层，用于按楼层推送
+     */
+    private final Map<Long, Integer> officeFloors = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        try {
+            reload();
+            log.info("设备注册表加载完成: {} 台设备", devices.size());
+        } catch (Exception e) {
+            log.error("加载设备注册表失败", e);
+        }
+    }
+
+    /**
+     * 从数据库全量加载设备，保留内存中的在线状态
+     */
+    public synchronized void reload() {
+        List<Office> offices = officeMapper.selectList(
+                new LambdaQueryWrapper<Office>().select(Office::getId, Office::getFloor));
+        officeFloors.clear();
+        for (Office office : offices) {
+            officeFloors.put(office.getId(), office.getFloor() != null ? office.getFloor() : 0);
+        }
+
+        List<DeviceInfo> rows = deviceInfoMapper.selectList(
+                new LambdaQueryWrapper<DeviceInfo>()
+                        .select(DeviceInfo::getId, DeviceInfo::getDeviceId, DeviceInfo::getOfficeId,
+                                DeviceInfo::getWorkAreaId, DeviceInfo::getOnlineStatus, DeviceInfo::getLastOnlineTime)
+        );
+        Set<String> loaded = new HashSet<>(rows.size() * 2);
+        for (DeviceInfo row : rows) {
+            loaded.add(row.getDeviceId());
+            register(row);
+        }
+        for (DeviceEntry entry : devices.values()) {
+            if (!loaded.contains(entry.getDeviceId())) {
+                remove(entry.getDeviceId());
+            }
+        }
+    }
+
+    /**
+     * 注册或刷新设备（新增、修改设备后调用）
+     */
+    public synchronized void register(DeviceInfo deviceInfo) {
+        if (deviceInfo == null || deviceInfo.getId() == null || deviceInfo.getDeviceId() == null) {
+            return;
+        }
+        DeviceEntry existing = devices.get(deviceInfo.getDeviceId());
+        if (existing == null || existing.getId() != deviceInfo.getId()) {
+            if (existing != null) {
+                // 编号已被另一台设备占用（原设备已删除）
+                devicesById.remove(existing.getId(), existing);
+            }
+            // 设备编号被修改时移除旧编号的条目
+            DeviceEntry renamed = devicesById.remove(deviceInfo.getId());
+            if (renamed != null) {
+                devices.remove(renamed.getDeviceId(), renamed);
+            }
+            DeviceEntry entry = new DeviceEntry(deviceInfo.getId(), deviceInfo.getDeviceId());
+            if (renamed != null) {
+                entry.copyStateFrom(renamed);
+            } else {
+                entry.initState(Integer.valueOf(1).equals(deviceInfo.getOnlineStatus()),
+                        toMillis(deviceInfo.getLastOnlineTime()));
+            }
+            existing = entry;
+            devices.put(deviceInfo.getDeviceId(), entry);
+            devicesById.put(entry.getId(), entry);
+        }
+        existing.setLocation(deviceInfo.getOfficeId(), deviceInfo.getWorkAreaId(), floorOf(deviceInfo.getOfficeId()));
+    }
+
+    /**
+     * 办公室楼层变更后刷新所属设备的楼层（修改、删除办公室后调用）
+     */
+    public void refreshOffice(Long officeId) {
+        if (officeId == null) {
+            return;
+        }
+        Office office = officeMapper.selectById(officeId);
+        int floor = office != null && office.getFloor() != null ? office.getFloor() : 0;
+        if (office != null) {
+            officeFloors.put(officeId, floor);
+        } else {
+            officeFloors.remove(officeId);
+        }
+        for (DeviceEntry entry : devices.values()) {
+            if (entry.getOfficeId() == officeId) {
+                entry.setFloor(floor);
+            }
+        }
+    }
+
+    private Integer floorOf(Long officeId) {
+        if (officeId == null) {
+            return null;
+        }
+        Integer floor = officeFloors.get(officeId);
+        if (floor == null) {
+            // 注册表加载之后新建的办公室
+            Office office = officeMapper.selectById(officeId);
+            if (office != null) {
+                floor = office.getFloor() != null ? office.getFloor() : 0;
+                officeFloors.put(officeId, floor);
+            }
+        }
+        return floor;
+    }
+
+    /**
+     * 移除设备（删除设备后调用）
+     */
+    public void remove(String deviceId) {
+        DeviceEntry entry = devices.remove(deviceId);
+        if (entry != null) {
+            devicesById.remove(entry.getId(), entry);
+        }
+    }
+
+    public DeviceEntry get(String deviceId) {
+        return devices.get(deviceId);
+    }
+
+    public Collection<DeviceEntry> getAll() {
+        return devices.values();
+    }
+
+    public int size() {
+        return devices.size();
+    }
+
+    /**
+     * 按办公室、办公区、楼层筛选设备编号（条件为null时不限制）
+     */
+    public List<String> findDeviceIds(Long officeId, Long workAreaId, Integer floor) {
+        List<String> deviceIds = new ArrayList<>();
+        for (DeviceEntry entry : devices.values()) {
+            if ((officeId == null || entry.getOfficeId() == officeId)
+                    && (workAreaId == null || entry.getWorkAreaId() == workAreaId)
+                    && (floor == null || entry.getFloor() == floor)) {
+                deviceIds.add(entry.getDeviceId());
+            }
+        }
+        return deviceIds;
+    }
+
+    /**
+     * 记录设备上报（热路径，无锁、无IO）
+     *
+     * @return 设备是否已注册
+     */
+    public boolean touch(String deviceId) {
+        DeviceEntry entry = devices.get(deviceId);
+        if (entry == null) {
+            return false;
+        }
+        entry.touch(System.currentTimeMillis());
+        if (entry.transition(true)) {
+            enqueue(entry);
+        }
+        return true;
+    }
+
+    /**
+     * 用内存中的实时状态覆盖数据库查询结果中的在线信息
+     */
+    public void applyRuntimeState(DeviceInfo deviceInfo) {
+        if (deviceInfo == null) {
+            return;
+        }
+        DeviceEntry entry = devices.get(deviceInfo.getDeviceId());
+        if (entry == null || !isOwned(entry)) {
+            return;
+        }
+        if (entry.isOnline()) {
+            deviceInfo.setOnlineStatus(1);
+            deviceInfo.setStatus(SystemConstants.DEVICE_STATUS_ONLINE);
+        } else if (SystemConstants.DEVICE_STATUS_ONLINE.equals(deviceInfo.getStatus())) {
+            deviceInfo.setOnlineStatus(0);
+            deviceInfo.setStatus(SystemConstants.DEVICE_STATUS_OFFLINE);
+        }
+        long lastSeen = entry.getLastSeen();
+        if (lastSeen > toMillis(deviceInfo.getLastOnlineTime())) {
+            deviceInfo.setLastOnlineTime(toDateTime(lastSeen));
+        }
+    }
+
+    public void applyRuntimeState(List<DeviceInfo> deviceInfos) {
+        for (DeviceInfo deviceInfo : deviceInfos) {
+            applyRuntimeState(deviceInfo);
+        }
+    }
+
+    /**
+     * 本实例是否掌握该设备的实时状态（单实例时为全部设备）
+     */
+    private boolean isOwned(DeviceEntry entry) {
+        return !mqttProperties.getCluster().isEnabled() || entry.isSeenLocally();
+    }
+
+    private void enqueue(DeviceEntry entry) {
+        if (entry.markQueued()) {
+            pendingTransitions.add(entry);
+        }
+    }
+
+    /**
+     * 离线判定：超时未上报的在线设备切换为离线
+     */
+    @Scheduled(fixedDelay = 30000, initialDelay = 30000)
+    public void detectOffline() {
+        int timeout = ingestionProperties.getRegistry().getOfflineTimeoutSeconds();
+        if (timeout <= 0) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() - timeout * 1000L;
+        for (DeviceEntry entry : devices.values()) {
+            if (entry.isOnline() && entry.getLastSeen() < deadline && isOwned(entry) && entry.transition(false)) {
+                enqueue(entry);
+            }
+        }
+    }
+
+    /**
+     * 批量写回在线状态变更
+     */
+    @Scheduled(fixedDelayString = "${ingestion.registry.flush-interval-ms:1000}")
+    public void flushTransitions() {
+        List<DeviceInfo> batch = new ArrayList<>();
+        DeviceEntry entry;
+        while ((entry = pendingTransitions.poll()) != null) {
+            entry.clearQueued();
+            batch.add(toStateRow(entry));
+            if (batch.size() >= UPDATE_BATCH_SIZE) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    /**
+     * 定期全量校准，同步其他实例或直接改库带来的设备变更
+     */
+    @Scheduled(fixedDelayString = "#{${ingestion.registry.reload-interval-seconds:300} * 1000}",
+            initialDelayString = "#{${ingestion.registry.reload-interval-seconds:300} * 1000}")
+    public void scheduledReload() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("校准设备注册表失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushTransitions();
+        // 停机前把仍在线设备的最后在线时间写回一次
+        List<DeviceInfo> batch = new ArrayList<>();
+        for (DeviceEntry entry : devices.values()) {
+            if (entry.getLastSeen() > entry.getPersistedLastSeen()) {
+                batch.add(toStateRow(entry));
+                if (batch.size() >= UPDATE_BATCH_SIZE) {
+                    writeBatch(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    private DeviceInfo toStateRow(DeviceEntry entry) {
+        boolean online = entry.isOnline();
+        long lastSeen = entry.getLastSeen();
+        entry.setPersistedLastSeen(lastSeen);
+        DeviceInfo row = new DeviceInfo();
+        row.setId(entry.getId());
+        row.setOnlineStatus(online ? 1 : 0);
+        row.setStatus(online ? SystemConstants.DEVICE_STATUS_ONLINE : SystemConstants.DEVICE_STATUS_OFFLINE);
+        row.setLastOnlineTime(lastSeen > 0 ? toDateTime(lastSeen) : null);
+        return row;
+    }
+
+    private void writeBatch(List<DeviceInfo> batch) {
+        try {
+            deviceInfoMapper.batchUpdateOnlineState(batch);
+            log.debug("批量更新设备在线状态: {} 台", batch.size());
+        } catch (Exception e) {
+            log.error("批量更新设备在线状态失败: {} 台", batch.size(), e);
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0L;
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,390 @@
+package com.smartoffice.device.service;
+
+import com.smartoffice.common.constants.SystemConstants;
+import com.smartoffice.common.entity.AlarmLog;
+import com.smartoffice.device.mapper.AlarmLogMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 告警统计服务
+ * <p>
+ * 在内存中按状态、类型、级别及告警日期累计告警数，告警写入、状态变更、删除时增量更新，
+ * 统计接口直接读取计数器，不再查询数据库。启动时以一次分组查询校准，之后定期重新校准，
+ * 以修正其他实例写入的告警造成的偏差。按日期的计数只保留最近 keepDays 天。
+ * <p>
+ * 校准期间的增量同时另行记录，查询结果加上这些增量后再替换，校准查询开始后写入的告警不会丢失；
+ * 替换时持有写锁，增量更新持有读锁，互不阻塞。校准期间清空告警时放弃本次校准结果。
+ * <p>
+ * 分组查询同时返回告警的最大ID作为高水位：校准期间新写入的告警只有ID高于高水位时才补计，
+ * 已在查询快照中的告警不会重复计入。计数不保证绝对精确，以下情况的偏差留到下次校准修正：
+ * 状态变更、删除在查询快照前提交但回调晚于查询开始（会重复计入）；并发写入的告警ID小于高水位、
+ * 但提交晚于查询快照（会漏计）。两者都只发生在校准查询执行的瞬间。
+ */
+@Slf4j
+@Service
+public class AlarmStatisticsService {
+
+    /**
+     * 统计接口中始终返回的告警类型（没有告警时为0）
+     */
+    private static final String[] DEFAULT_TYPES = {
+            SystemConstants.ALARM_TYPE_FIRE, SystemConstants.ALARM_TYPE_TEMP,
+            SystemConstants.ALARM_TYPE_HUMIDITY, SystemConstants.ALARM_TYPE_LIGHT
+    };
+
+    private static final String UNKNOWN = "UNKNOWN";
+
+    @Autowired
+    private AlarmLogMapper alarmLogMapper;
+
+    @Value("${alarm.statistics.keep-days:31}")
+    private int keepDays;
+
+    private volatile Counters counters = new Counters(false);
+
+    /**
+     * 校准期间的增量，未在校准时为null
+     */
+    private volatile Recording recording;
+
+    /**
+     * 清空告警的次数，校准前后不一致时放弃结果
+     */
+    private volatile long clearGeneration;
+
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    private final LongAdder reconcileCount = new LongAdder();
+    private final LongAdder reconcileFailures = new LongAdder();
+    private volatile LocalDateTime lastReconcileTime;
+    private volatile long lastReconcileMillis;
+    private volatile long lastReconcileDrift;
+
+    @PostConstruct
+    public void init() {
+        reconcile();
+    }
+
+    /**
+     * 新告警已写入
+     */
+    public void onCreated(AlarmLog alarm) {
+        swapLock.readLock().lock();
+        try {
+            counters.add(alarm, 1);
+            Recording current = recording;
+            if (current == null) {
+                return;
+            }
+            if (alarm.getId() != null) {
+                // 是否已在查询快照中，校准结束时按高水位判断
+                current.created.put(alarm.getId(), alarm);
+            } else {
+                current.changes.add(alarm, 1);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 告警状态已更新（status为空或未变化时不计），调用方需保证只在状态确实由previousStatus改为status时调用
+     */
+    public void onStatusChanged(String previousStatus, String status) {
+        if (status == null || status.equals(previousStatus)) {
+            return;
+        }
+        update(target -> {
+            increment(target.byStatus, previousStatus, -1);
+            increment(target.byStatus, status, 1);
+        });
+    }
+
+    /**
+     * 告警已删除
+     */
+    public void onDeleted(AlarmLog alarm) {
+        update(target -> target.add(alarm, -1));
+    }
+
+    /**
+     * 告警已全部清空
+     */
+    public void onCleared() {
+        swapLock.writeLock().lock();
+        try {
+            counters = new Counters(false);
+            clearGeneration++;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 告警统计：未处理数、今日告警数、今日按类型的告警数
+     */
+    public Map<String, Object> getStatistics() {
+        Counters current = counters;
+        DayCounters today = current.byDay.get(LocalDate.now());
+        Map<String, Long> typeStats = new LinkedHashMap<>();
+        for (String type : DEFAULT_TYPES) {
+            typeStats.put(type, 0L);
+        }
+        if (today != null) {
+            today.byType.forEach((type, count) -> typeStats.put(type, count.sum()));
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("unhandledCount", sum(current.byStatus, SystemConstants.ALARM_STATUS_UNHANDLED));
+        stats.put("todayCount", today == null ? 0L : today.total.sum());
+        stats.put("typeStats", typeStats);
+        return stats;
+    }
+
+    /**
+     * 以一次分组查询重建全部计数器，失败时保留当前计数
+     */
+    public synchronized void reconcile() {
+        long start = System.nanoTime();
+        long generation = clearGeneration;
+        Recording current = new Recording();
+        recording = current;
+        try {
+            List<Map<String, Object>> rows = alarmLogMapper.countGrouped();
+            LocalDate oldest = LocalDate.now().minusDays(Math.max(1, keepDays) - 1L);
+            Counters rebuilt = new Counters(false);
+            long highWaterMark = 0;
+            for (Map<String, Object> row : rows) {
+                long count = ((Number) row.get("alarmCount")).longValue();
+                Number maxId = (Number) row.get("maxId");
+                if (maxId != null) {
+                    highWaterMark = Math.max(highWaterMark, maxId.longValue());
+                }
+                AlarmLog alarm = new AlarmLog();
+                alarm.setStatus((String) row.get("status"));
+                alarm.setAlarmType((String) row.get("alarmType"));
+                alarm.setAlarmLevel((String) row.get("alarmLevel"));
+                LocalDate date = toLocalDate(row.get("alarmDate"));
+                if (date != null && !date.isBefore(oldest)) {
+                    alarm.setAlarmTime(date.atStartOfDay());
+                }
+                rebuilt.add(alarm, count);
+            }
+            long drift;
+            swapLock.writeLock().lock();
+            try {
+                if (generation != clearGeneration) {
+                    log.info("告警统计校准期间告警被清空，放弃本次校准");
+                    return;
+                }
+                rebuilt.merge(current.changes);
+                for (Map.Entry<Long, AlarmLog> created : current.created.entrySet()) {
+                    if (created.getKey() > highWaterMark) {
+                        rebuilt.add(created.getValue(), 1);
+                    }
+                }
+                drift = rebuilt.total.sum() - counters.total.sum();
+                counters = rebuilt;
+            } finally {
+                recording = null;
+                swapLock.writeLock().unlock();
+            }
+            reconcileCount.increment();
+            lastReconcileTime = LocalDateTime.now();
+            lastReconcileMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            lastReconcileDrift = drift;
+            log.debug("告警统计已校准: 共{}条, {}个分组, 偏差{}", rebuilt.total.sum(), rows.size(), drift);
+        } catch (Exception e) {
+            recording = null;
+            reconcileFailures.increment();
+            log.error("告警统计校准失败，继续使用当前计数", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "#{${alarm.statistics.reconcile-interval-minutes:30} * 60000}",
+            initialDelayString = "#{${alarm.statistics.reconcile-interval-minutes:30} * 60000}")
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    /**
+     * 获取告警统计服务状态及完整计数
+     */
+    public Map<String, Object> getStats() {
+        Counters current = counters;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("total", current.total.sum());
+        stats.put("byStatus", snapshot(current.byStatus));
+        stats.put("byType", snapshot(current.byType));
+        stats.put("byLevel", snapshot(current.byLevel));
+        Map<String, Long> byDay = new TreeMap<>();
+        current.byDay.forEach((date, day) -> byDay.put(date.toString(), day.total.sum()));
+        stats.put("byDay", byDay);
+        stats.put("keepDays", keepDays);
+        stats.put("reconciles", reconcileCount.sum());
+        stats.put("reconcileFailures", reconcileFailures.sum());
+        stats.put("lastReconcileTime", lastReconcileTime);
+        stats.put("lastReconcileMillis", lastReconcileMillis);
+        stats.put("lastReconcileDrift", lastReconcileDrift);
+        return stats;
+    }
+
+    /**
+     * 增量更新当前计数，校准期间同时记入差值
+     */
+    private void update(Consumer<Counters> change) {
+        swapLock.readLock().lock();
+        try {
+            change.accept(counters);
+            Recording current = recording;
+            if (current != null) {
+                change.accept(current.changes);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private static void increment(Map<String, LongAdder> counts, String key, long delta) {
+        counts.computeIfAbsent(key == null ? UNKNOWN : key, k -> new LongAdder()).add(delta);
+    }
+
+    private static void mergeCounts(Map<String, LongAdder> target, Map<String, LongAdder> source) {
+        source.forEach((key, count) -> target.computeIfAbsent(key, k -> new LongAdder()).add(count.sum()));
+    }
+
+    private static long sum(Map<String, LongAdder> counts, String key) {
+        LongAdder count = counts.get(key);
+        return count == null ? 0 : count.sum();
+    }
+
+    private static Map<String, Long> snapshot(Map<String, LongAdder> counts) {
+        Map<String, Long> result = new TreeMap<>();
+        counts.forEach((key, count) -> result.put(key, count.sum()));
+        return result;
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Date) {
+            return ((Date) value).toLocalDate();
+        }
+        if (value instanceof LocalDate) {
+            return (LocalDate) value;
+        }
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).toLocalDate();
+        }
+        return LocalDate.parse(value.toString().substring(0, 10));
+    }
+
+    /**
+     * 一组计数器，校准或清空时整体替换
+     */
+    private static final class Counters {
+
+        private final LongAdder total = new LongAdder();
+
+        private final Map<String, LongAdder> byStatus = new ConcurrentHashMap<>();
+
+        private final Map<String, LongAdder> byType = new ConcurrentHashMap<>();
+
+        private final Map<String, LongAdder> byLevel = new ConcurrentHashMap<>();
+
+        private final Map<LocalDate, DayCounters> byDay = new ConcurrentHashMap<>();
+
+        /**
+         * 是否为校准期间的差值（允许出现负数的日期计数）
+         */
+        private final boolean delta;
+
+        private Counters(boolean delta) {
+            this.delta = delta;
+        }
+
+        /**
+         * 按告警计入count条（告警时间为空时不计入按日期的计数，已不保留的日期不减）
+         */
+        private void add(AlarmLog alarm, long count) {
+            total.add(count);
+            increment(byStatus, alarm.getStatus(), count);
+            increment(byType, alarm.getAlarmType(), count);
+            increment(byLevel, alarm.getAlarmLevel(), count);
+            if (alarm.getAlarmTime() == null) {
+                return;
+            }
+            LocalDate date = alarm.getAlarmTime().toLocalDate();
+            DayCounters day = count > 0 || delta ? byDay.computeIfAbsent(date, k -> new DayCounters()) : byDay.get(date);
+            if (day != null) {
+                day.add(alarm, count);
+            }
+        }
+
+        /**
+         * 加上另一组计数
+         */
+        private void merge(Counters other) {
+            total.add(other.total.sum());
+            mergeCounts(byStatus, other.byStatus);
+            mergeCounts(byType, other.byType);
+            mergeCounts(byLevel, other.byLevel);
+            other.byDay.forEach((date, day) -> {
+                DayCounters target = day.total.sum() > 0 ? byDay.computeIfAbsent(date, k -> new DayCounters()) : byDay.get(date);
+                if (target == null) {
+                    return;
+                }
+                target.total.add(day.total.sum());
+                mergeCounts(target.byType, day.byType);
+                mergeCounts(target.byLevel, day.byLevel);
+            });
+        }
+    }
+
+    /**
+     * 校准期间记录的增量：新告警按ID单独记录，其余变更记入差值计数器
+     */
+    private static final class Recording {
+
+        private final Map<Long, AlarmLog> created = new ConcurrentHashMap<>();
+
+        private final Counters changes = new Counters(true);
+    }
+
+    /**
+     * 单日计数（告警日期不随状态变化，只按类型、级别细分）
+     */
+    private static final class DayCounters {
+
+        private final LongAdder total = new LongAdder();
+
+        private final Map<String, LongAdder> byType = new ConcurrentHashMap<>();
+
+        private final Map<String, LongAdder> byLevel = new ConcurrentHashMap<>();
+
+        private void add(AlarmLog alarm, long delta) {
+            total.add(delta);
+            increment(byType, alarm.getAlarmType(), delta);
+            increment(byLevel, alarm.getAlarmLevel(), delta);
+        }
+    }
+}
@@ -1,32 +1,40 @@
 package com.smartoffice.device.service;
 
 import com.alibaba.fastjson2.JSON;
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.smartoffice.common.constants.SystemConstants;
 import com.smartoffice.common.dto.AlarmMessageDTO;
-import com.smartoffice.common.dto.ControlCommandDTO;
 import com.smartoffice.common.dto.SensorDataDTO;
 import com.smartoffice.common.entity.AlarmLog;
-import com.smartoffice.common.entity.DeviceInfo;
 import com.smartoffice.common.entity.SensorData;
-import com.smartoffice.common.entity.SystemConfig;
+import com.smartoffice.device.cache.LatestSensorCache;
+import com.smartoffice.device.cache.RecentReadingStore;
+import com.smartoffice.device.config.ControlProperties;
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.control.CommandDispatcher;
+import com.smartoffice.device.control.DeviceShadow;
+import com.smartoffice.device.control.DeviceShadowService;
+import com.smartoffice.device.control.ThresholdHolder;
+import com.smartoffice.device.control.ThresholdSnapshot;
+import com.smartoffice.device.ingest.SensorBatch;
+import com.smartoffice.device.ingest.SensorReading;
 import com.smartoffice.device.mapper.AlarmLogMapper;
-import com.smartoffice.device.mapper.DeviceInfoMapper;
-import com.smartoffice.device.mapper.SensorDataMapper;
-import com.smartoffice.device.mapper.SystemConfigMapper;
+import com.smartoffice.device.push.ClusterRelay;
+import com.smartoffice.device.push.PushRouter;
+import com.smartoffice.device.push.SensorPushAggregator;
+import com.smartoffice.device.registry.DeviceRegistry;
+import com.smartoffice.device.storage.SensorDataWriteBuffer;
 import lombok.extern.slf4j.Slf4j;
-import org.eclipse.paho.client.mqttv3.MqttClient;
-import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 设备数据处理服务
@@ -35,23 +43,49 @@ import java.util.concurrent.TimeUnit;
 @Service
 public class DeviceDataService {
 
+    /**
+     * 批量上报中读数自带时间戳允许超前服务器时间的范围（毫秒），超出视为设备时钟异常
+     */
+    private static final long MAX_CLOCK_SKEW_MILLIS = 60_000L;
+
+    @Autowired
+    private SensorDataWriteBuffer sensorDataWriteBuffer;
+
     @Autowired
-    private SensorDataMapper sensorDataMapper;
+    private IngestionProperties ingestionProperties;
 
     @Autowired
-    private DeviceInfoMapper deviceInfoMapper;
+    private DeviceRegistry deviceRegistry;
 
     @Autowired
     private AlarmLogMapper alarmLogMapper;
 
     @Autowired
-    private SystemConfigMapper systemConfigMapper;
+    private AlarmStatisticsService alarmStatisticsService;
 
-    @Autowired(required = false)
-    private MqttClient mqttClient;
+    @Autowired
+    private ThresholdHolder thresholdHolder;
 
-    @Autowired(required = false)
-    private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private DeviceShadowService deviceShadowService;
+
+    @Autowired
+    private CommandDispatcher commandDispatcher;
+
+    @Autowired
+    private SensorPushAggregator sensorPushAggregator;
+
+    @Autowired
+    private PushRouter pushRouter;
+
+    @Autowired
+    private LatestSensorCache latestSensorCache;
+
+    @Autowired
+    private RecentReadingStore recentReadingStore;
+
+    @Autowired
+    private ClusterRelay clusterRelay;
 
     @Autowired(required = false)
     private SimpMessagingTemplate messagingTemplate;
@@ -59,74 +93,135 @@ public class DeviceDataService {
     @Autowired
     private EmailService emailService;
 
+    @PostConstruct
+    public void init() {
+        clusterRelay.subscribe(ClusterRelay.ALARM, json -> pushAlarm(JSON.parseObject(json, AlarmLog.class)));
+    }
+
     /**
-     * 处理传感器数据
+     * 处理传感器数据（兼容DTO入参）
      */
     public void processSensorData(SensorDataDTO sensorDataDTO) {
+        processSensorData(new SensorReading().fill(sensorDataDTO));
+    }
+
+    /**
+     * 处理传感器数据
+     */
+    public void processSensorData(SensorReading reading) {
         try {
-            // 1. 保存传感器数据到数据库
-            SensorData sensorData = new SensorData();
-            sensorData.setDeviceId(sensorDataDTO.getDeviceId());
-            sensorData.setLight(sensorDataDTO.getLight() != null ? BigDecimal.valueOf(sensorDataDTO.getLight()) : null);
-            sensorData.setTemperature(sensorDataDTO.getTemperature() != null ? BigDecimal.valueOf(sensorDataDTO.getTemperature()) : null);
-            sensorData.setHumidity(sensorDataDTO.getHumidity() != null ? BigDecimal.valueOf(sensorDataDTO.getHumidity()) : null);
-            sensorData.setFlame(sensorDataDTO.getFlame() != null && sensorDataDTO.getFlame() ? 1 : 0);
-            sensorData.setRgbStatus(sensorDataDTO.getRgbStatus() != null && sensorDataDTO.getRgbStatus() ? 1 : 0);
-            sensorData.setDataTime(LocalDateTime.now());
-            sensorDataMapper.insert(sensorData);
-
-            // 2. 缓存最新数据到Redis（转换为前端期望的格式）
-            if (redisTemplate != null) {
-                try {
-                    Map<String, Object> cacheData = new HashMap<>();
-                    cacheData.put("deviceId", sensorDataDTO.getDeviceId());
-                    cacheData.put("light", sensorDataDTO.getLight());
-                    cacheData.put("temperature", sensorDataDTO.getTemperature());
-                    cacheData.put("humidity", sensorDataDTO.getHumidity());
-                    cacheData.put("flame", sensorDataDTO.getFlame() != null && sensorDataDTO.getFlame());
-                    cacheData.put("rgbStatus", sensorDataDTO.getRgbStatus() != null && sensorDataDTO.getRgbStatus());
-                    // 使用当前时间作为timestamp（毫秒）
-                    cacheData.put("timestamp", System.currentTimeMillis());
-                    
-                    redisTemplate.opsForValue().set(
-                            "sensor:latest:" + sensorDataDTO.getDeviceId(),
-                            cacheData,
-                            24, TimeUnit.HOURS
-                    );
-                } catch (Exception e) {
-                    log.warn("Redis缓存失败，继续执行: {}", e.getMessage());
-                }
-            }
+            String deviceId = reading.getDeviceId();
+            long now = System.currentTimeMillis();
+
+            // 1. 保存传感器数据到数据库（异步批量写入）
+            sensorDataWriteBuffer.add(toSensorData(reading, now));
+
+            // 2. 缓存最新数据（进程内缓存，合并后批量写Redis）
+            SensorDataDTO latest = toLatest(reading, now);
+            latestSensorCache.put(latest);
 
-            // 3. 更新设备在线状态
-            updateDeviceOnlineStatus(sensorDataDTO.getDeviceId());
+            // 3. 更新设备在线状态（内存注册表，状态切换时批量写库），只为已登记设备保留最近读数
+            if (deviceRegistry.touch(deviceId)) {
+                recentReadingStore.append(reading, now);
+            }
 
             // 4. 检查并触发自动控制逻辑
-            checkAndTriggerAutoControl(sensorDataDTO);
+            checkAndTriggerAutoControl(reading);
 
             // 5. 通过WebSocket推送到前端（使用正确的时间戳）
-            if (messagingTemplate != null) {
-                // 创建一个新的DTO对象，使用正确的时间戳
-                SensorDataDTO pushData = new SensorDataDTO();
-                pushData.setDeviceId(sensorDataDTO.getDeviceId());
-                pushData.setLight(sensorDataDTO.getLight());
-                pushData.setTemperature(sensorDataDTO.getTemperature());
-                pushData.setHumidity(sensorDataDTO.getHumidity());
-                pushData.setFlame(sensorDataDTO.getFlame());
-                pushData.setRgbStatus(sensorDataDTO.getRgbStatus());
-                pushData.setBuzzerStatus(sensorDataDTO.getBuzzerStatus());
-                // 使用当前服务器时间作为时间戳
-                pushData.setTimestamp(System.currentTimeMillis());
-                
-                messagingTemplate.convertAndSend("/topic/sensor-data", pushData);
-            }
+            sensorPushAggregator.offer(latest);
 
-            log.info("成功处理传感器数据: deviceId={}", sensorDataDTO.getDeviceId());
+            log.debug("成功处理传感器数据: deviceId={}", deviceId);
         } catch (Exception e) {
             log.error("处理传感器数据失败", e);
         }
     }
 
+    /**
+     * 批量上报入库：整批一次交给写库缓冲区
+     * <p>
+     * 读数带合理时间戳时以其作为采集时间（网关攒批的读数采集时间各不相同），否则使用服务器时间。
+     */
+    public void persistSensorBatch(SensorBatch batch) {
+        long now = System.currentTimeMillis();
+        List<SensorData> rows = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            SensorReading reading = batch.get(i);
+            if (reading.getDeviceId() != null) {
+                rows.add(toSensorData(reading, readingTime(reading, now)));
+            }
+        }
+        if (!rows.isEmpty()) {
+            sensorDataWriteBuffer.addAll(rows);
+        }
+    }
+
+    /**
+     * 批量上报中同一设备的读数（已入库）：更新在线状态、写入最近读数存储，
+     * 只用采集时间最新的一条执行联动控制、缓存和推送（网关补报的历史读数不再逐条触发控制）
+     */
+    public void applySensorReadings(List<SensorReading> readings) {
+        try {
+            long now = System.currentTimeMillis();
+            boolean registered = deviceRegistry.touch(readings.get(0).getDeviceId());
+            SensorReading newest = null;
+            long newestTime = Long.MIN_VALUE;
+            for (SensorReading reading : readings) {
+                long time = readingTime(reading, now);
+                if (registered) {
+                    recentReadingStore.append(reading, time);
+                }
+                // 时间相同时取列表中靠后的一条
+                if (time >= newestTime) {
+                    newest = reading;
+                    newestTime = time;
+                }
+            }
+            checkAndTriggerAutoControl(newest);
+            SensorDataDTO latest = toLatest(newest, newestTime);
+            latestSensorCache.put(latest);
+            sensorPushAggregator.offer(latest);
+        } catch (Exception e) {
+            log.error("处理批量传感器数据失败", e);
+        }
+    }
+
+    /**
+     * 读数的采集时间：自带时间戳超前服务器时间过多，或早于允许的最大时长（设备时钟复位、重放旧数据）时使用服务器时间
+     */
+    private long readingTime(SensorReading reading, long now) {
+        if (!reading.hasTimestamp() || reading.getTimestamp() <= 0
+                || reading.getTimestamp() > now + MAX_CLOCK_SKEW_MILLIS) {
+            return now;
+        }
+        long maxAgeSeconds = ingestionProperties.getPipeline().getMaxReadingAgeSeconds();
+        if (maxAgeSeconds > 0 && reading.getTimestamp() < now - maxAgeSeconds * 1000L) {
+            return now;
+        }
+        return reading.getTimestamp();
+    }
+
+    private SensorData toSensorData(SensorReading reading, long time) {
+        SensorData sensorData = new SensorData();
+        sensorData.setDeviceId(reading.getDeviceId());
+        sensorData.setLight(reading.hasLight() ? BigDecimal.valueOf(reading.getLight()) : null);
+        sensorData.setTemperature(reading.hasTemperature() ? BigDecimal.valueOf(reading.getTemperature()) : null);
+        sensorData.setHumidity(reading.hasHumidity() ? BigDecimal.valueOf(reading.getHumidity()) : null);
+        sensorData.setFlame(reading.isFlame() ? 1 : 0);
+        sensorData.setRgbStatus(reading.isRgbStatus() ? 1 : 0);
+        sensorData.setDataTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault()));
+        return sensorData;
+    }
+
+    /**
+     * 最新数据（缓存与WebSocket推送共用，生成后不再修改）
+     */
+    private SensorDataDTO toLatest(SensorReading reading, long time) {
+        SensorDataDTO latest = reading.toDTO();
+        latest.setTimestamp(time);
+        return latest;
+    }
+
     /**
      * 处理告警消息
      */
@@ -141,10 +236,12 @@ public class DeviceDataService {
             alarmLog.setStatus(SystemConstants.ALARM_STATUS_UNHANDLED);
             alarmLog.setAlarmTime(LocalDateTime.now());
             alarmLogMapper.insert(alarmLog);
+            alarmStatisticsService.onCreated(alarmLog);
 
-            // 通过WebSocket推送告警到前端
-            if (messagingTemplate != null) {
-                messagingTemplate.convertAndSend("/topic/alarm", alarmLog);
+            // 通过WebSocket推送告警到前端（全局及设备所在分区主题），集群模式下同时转发给其他实例推送
+            pushAlarm(alarmLog);
+            if (clusterRelay.enabled()) {
+                clusterRelay.publish(ClusterRelay.ALARM, JSON.toJSONString(alarmLog));
             }
 
             // 发送邮件通知
@@ -172,78 +269,142 @@ public class DeviceDataService {
         }
     }
 
+    /**
+     * 通过WebSocket推送告警（本实例写入的告警及其他实例转发来的告警）
+     */
+    private void pushAlarm(AlarmLog alarmLog) {
+        if (messagingTemplate != null) {
+            for (String destination : pushRouter.route(PushRouter.ALARM, alarmLog.getDeviceId())) {
+                messagingTemplate.convertAndSend(destination, alarmLog);
+            }
+        }
+    }
+
     /**
      * 检查并触发自动控制逻辑
+     * <p>
+     * 基于设备影子做边沿触发：只有期望状态真正变化时才下发命令，
+     * 温度带回差，同一执行器自动切换之间至少间隔最短驻留时间。
      */
-    private void checkAndTriggerAutoControl(SensorDataDTO sensorData) {
+    private void checkAndTriggerAutoControl(SensorReading reading) {
         try {
-            // 获取阈值配置
-            Map<String, String> thresholds = getThresholds();
-
-            // 1. 光照控制逻辑
-            if (sensorData.getLight() != null) {
-                double lightLow = Double.parseDouble(thresholds.getOrDefault("light.threshold.low", "300"));
-                double lightHigh = Double.parseDouble(thresholds.getOrDefault("light.threshold.high", "350"));
-
-                if (sensorData.getLight() < lightLow && !Boolean.TRUE.equals(sensorData.getRgbStatus())) {
-                    // 光照过低，开灯
-                    sendControlCommand(sensorData.getDeviceId(), SystemConstants.ACTION_RGB_ON);
-                    log.info("自动开灯: deviceId={}, light={}", sensorData.getDeviceId(), sensorData.getLight());
-                } else if (sensorData.getLight() > lightHigh && Boolean.TRUE.equals(sensorData.getRgbStatus())) {
-                    // 光照充足，关灯
-                    sendControlCommand(sensorData.getDeviceId(), SystemConstants.ACTION_RGB_OFF);
-                    log.info("自动关灯: deviceId={}, light={}", sensorData.getDeviceId(), sensorData.getLight());
-                }
+            // 获取阈值快照（进程内，无IO）
+            ThresholdSnapshot thresholds = thresholdHolder.current();
+            ControlProperties.Shadow config = deviceShadowService.getConfig();
+            long minDwellMillis = config.getMinDwellSeconds() * 1000L;
+            long now = System.currentTimeMillis();
+            String deviceId = reading.getDeviceId();
+
+            DeviceShadow shadow = deviceShadowService.getOrCreate(deviceId);
+            if (shadow == null) {
+                // 未登记的设备不做自动控制
+                return;
             }
+            boolean fireDetected;
+            boolean shadowChanged;
+            synchronized (shadow) {
+                int version = shadow.getVersion();
+                if (reading.hasRgbStatus()) {
+                    shadow.report(DeviceShadow.RGB, reading.isRgbStatus());
+                }
+                if (reading.hasBuzzerStatus()) {
+                    shadow.report(DeviceShadow.BUZZER, reading.isBuzzerStatus());
+                }
 
-            // 2. 温度控制逻辑
-            if (sensorData.getTemperature() != null) {
-                double tempLow = Double.parseDouble(thresholds.getOrDefault("temperature.threshold.low", "18"));
-                double tempHigh = Double.parseDouble(thresholds.getOrDefault("temperature.threshold.high", "28"));
-
-                if (sensorData.getTemperature() < tempLow) {
-                    // 温度过低，开启空调制热
-                    sendControlCommand(sensorData.getDeviceId(), SystemConstants.ACTION_AC_HEAT);
-                    log.info("温度过低，已自动开启空调制热: deviceId={}, temp={}",
-                            sensorData.getDeviceId(), sensorData.getTemperature());
-                } else if (sensorData.getTemperature() > tempHigh) {
-                    // 温度过高，开启空调制冷
-                    sendControlCommand(sensorData.getDeviceId(), SystemConstants.ACTION_AC_COOL);
-                    log.info("温度过高，已自动开启空调制冷: deviceId={}, temp={}",
-                            sensorData.getDeviceId(), sensorData.getTemperature());
-                } else {
-                    // 温度正常，关闭空调
-                    sendControlCommand(sensorData.getDeviceId(), SystemConstants.ACTION_AC_OFF);
+                // 1. 光照控制逻辑
+                if (reading.hasLight()) {
+                    double light = reading.getLight();
+                    if (light < thresholds.getLightLow()) {
+                        // 光照过低，开灯
+                        if (shadow.desire(DeviceShadow.RGB, DeviceShadow.ON, now, minDwellMillis)) {
+                            sendControlCommand(deviceId, SystemConstants.ACTION_RGB_ON);
+                            log.info("自动开灯: deviceId={}, light={}", deviceId, light);
+                        }
+                    } else if (light > thresholds.getLightHigh()) {
+                        // 光照充足，关灯
+                        if (shadow.desire(DeviceShadow.RGB, DeviceShadow.OFF, now, minDwellMillis)) {
+                            sendControlCommand(deviceId, SystemConstants.ACTION_RGB_OFF);
+                            log.info("自动关灯: deviceId={}, light={}", deviceId, light);
+                        }
+                    }
+                    // 上报状态与期望不一致（命令丢失或被本地改动）时定期重发
+                    if (shadow.needsResync(DeviceShadow.RGB, now, config.getRgbResyncSeconds() * 1000L)) {
+                        boolean on = shadow.getDesired(DeviceShadow.RGB) == DeviceShadow.ON;
+                        sendControlCommand(deviceId, on ? SystemConstants.ACTION_RGB_ON : SystemConstants.ACTION_RGB_OFF);
+                    }
+                }
+
+                // 2. 温度控制逻辑
+                if (reading.hasTemperature()) {
+                    double temp = reading.getTemperature();
+                    double hysteresis = config.getTemperatureHysteresis();
+                    int current = shadow.getDesired(DeviceShadow.AC);
+                    int target;
+                    if (temp < thresholds.getTempLow()) {
+                        target = DeviceShadow.AC_HEAT;
+                    } else if (temp > thresholds.getTempHigh()) {
+                        target = DeviceShadow.AC_COOL;
+                    } else if (current == DeviceShadow.AC_HEAT && temp < thresholds.getTempLow() + hysteresis) {
+                        target = DeviceShadow.AC_HEAT;
+                    } else if (current == DeviceShadow.AC_COOL && temp > thresholds.getTempHigh() - hysteresis) {
+                        target = DeviceShadow.AC_COOL;
+                    } else {
+                        target = DeviceShadow.OFF;
+                    }
+
+                    if (shadow.desire(DeviceShadow.AC, target, now, minDwellMillis)) {
+                        if (target == DeviceShadow.AC_HEAT) {
+                            // 温度过低，开启空调制热
+                            sendControlCommand(deviceId, SystemConstants.ACTION_AC_HEAT);
+                            log.info("温度过低，已自动开启空调制热: deviceId={}, temp={}", deviceId, temp);
+                        } else if (target == DeviceShadow.AC_COOL) {
+                            // 温度过高，开启空调制冷
+                            sendControlCommand(deviceId, SystemConstants.ACTION_AC_COOL);
+                            log.info("温度过高，已自动开启空调制冷: deviceId={}, temp={}", deviceId, temp);
+                        } else {
+                            // 温度正常，关闭空调
+                            sendControlCommand(deviceId, SystemConstants.ACTION_AC_OFF);
+                            log.info("温度恢复正常，已关闭空调: deviceId={}, temp={}", deviceId, temp);
+                        }
+                    }
                 }
-            }
 
-            // 3. 湿度控制逻辑
-            if (sensorData.getHumidity() != null) {
-                double humidityLow = Double.parseDouble(thresholds.getOrDefault("humidity.threshold.low", "40"));
-                double humidityHigh = Double.parseDouble(thresholds.getOrDefault("humidity.threshold.high", "70"));
-
-                if (sensorData.getHumidity() < humidityLow) {
-                    // 湿度过低，开启加湿器
-                    sendControlCommand(sensorData.getDeviceId(), SystemConstants.ACTION_HUMIDIFIER_ON);
-                    log.info("湿度过低，已自动开启加湿器: deviceId={}, humidity={}",
-                            sensorData.getDeviceId(), sensorData.getHumidity());
-                } else if (sensorData.getHumidity() > humidityHigh) {
-                    // 湿度正常，关闭加湿器
-                    sendControlCommand(sensorData.getDeviceId(), SystemConstants.ACTION_HUMIDIFIER_OFF);
-                    log.info("湿度恢复正常，已关闭加湿器: deviceId={}, humidity={}",
-                            sensorData.getDeviceId(), sensorData.getHumidity());
+                // 3. 湿度控制逻辑
+                if (reading.hasHumidity()) {
+                    double humidity = reading.getHumidity();
+                    if (humidity < thresholds.getHumidityLow()) {
+                        // 湿度过低，开启加湿器
+                        if (shadow.desire(DeviceShadow.HUMIDIFIER, DeviceShadow.ON, now, minDwellMillis)) {
+                            sendControlCommand(deviceId, SystemConstants.ACTION_HUMIDIFIER_ON);
+                            log.info("湿度过低，已自动开启加湿器: deviceId={}, humidity={}", deviceId, humidity);
+                        }
+                    } else if (humidity > thresholds.getHumidityHigh()) {
+                        // 湿度正常，关闭加湿器
+                        if (shadow.desire(DeviceShadow.HUMIDIFIER, DeviceShadow.OFF, now, minDwellMillis)) {
+                            sendControlCommand(deviceId, SystemConstants.ACTION_HUMIDIFIER_OFF);
+                            log.info("湿度恢复正常，已关闭加湿器: deviceId={}, humidity={}", deviceId, humidity);
+                        }
+                    }
                 }
-            }
 
-            // 4. 火焰检测
-            if (Boolean.TRUE.equals(sensorData.getFlame())) {
-                // 触发蜂鸣器
-                sendControlCommand(sensorData.getDeviceId(), SystemConstants.ACTION_BUZZER_ON);
-                log.warn("检测到火焰，已触发蜂鸣器！deviceId={}", sensorData.getDeviceId());
+                // 4. 火焰检测（只在火焰出现的上升沿触发，告警不受驻留时间限制）
+                fireDetected = shadow.reportFlame(reading.isFlame());
+                if (fireDetected) {
+                    shadow.desire(DeviceShadow.BUZZER, DeviceShadow.ON, now, 0);
+                    // 触发蜂鸣器
+                    sendControlCommand(deviceId, SystemConstants.ACTION_BUZZER_ON);
+                    log.warn("检测到火焰，已触发蜂鸣器！deviceId={}", deviceId);
+                }
+                shadowChanged = shadow.getVersion() != version;
+            }
+            if (shadowChanged) {
+                deviceShadowService.publish(shadow, true);
+            }
 
+            if (fireDetected) {
                 // 发送告警
                 AlarmMessageDTO alarmMessage = new AlarmMessageDTO(
-                        sensorData.getDeviceId(),
+                        deviceId,
                         SystemConstants.ALARM_TYPE_FIRE,
                         SystemConstants.ALARM_LEVEL_CRITICAL,
                         "检测到火焰！"
@@ -257,26 +418,10 @@ public class DeviceDataService {
     }
 
     /**
-     * 发送控制命令到设备
+     * 发送控制命令到设备（异步下发，不等待Broker确认）
      */
     private void sendControlCommand(String deviceId, String action) {
-        try {
-            if (mqttClient == null) {
-                log.warn("MQTT客户端未连接，无法发送控制命令: deviceId={}, action={}", deviceId, action);
-                return;
-            }
-            
-            ControlCommandDTO command = new ControlCommandDTO(deviceId, action);
-            String payload = JSON.toJSONString(command);
-
-            MqttMessage message = new MqttMessage(payload.getBytes());
-            message.setQos(1);
-
-            mqttClient.publish("office/control/cmd", message);
-            log.info("发送控制命令成功: deviceId={}, action={}", deviceId, action);
-        } catch (Exception e) {
-            log.error("发送控制命令失败", e);
-        }
+        commandDispatcher.submit(deviceId, action);
     }
 
     /**
@@ -284,67 +429,15 @@ public class DeviceDataService {
      */
     public void sendDeviceCommand(String deviceId, String action) {
         log.info("[后端] 设备控制命令执行: 设备ID={}, 操作={}", deviceId, action);
-        sendControlCommand(deviceId, action);
-        log.info("[后端] 设备控制命令已发送到MQTT: 设备ID={}, 操作={}", deviceId, action);
-    }
-
-    /**
-     * 更新设备在线状态
-     */
-    private void updateDeviceOnlineStatus(String deviceId) {
-        try {
-            DeviceInfo deviceInfo = deviceInfoMapper.selectOne(
-                    new LambdaQueryWrapper<DeviceInfo>()
-                            .eq(DeviceInfo::getDeviceId, deviceId)
-            );
-
-            if (deviceInfo != null) {
-                deviceInfo.setOnlineStatus(1);
-                deviceInfo.setStatus(SystemConstants.DEVICE_STATUS_ONLINE);
-                deviceInfo.setLastOnlineTime(LocalDateTime.now());
-                deviceInfoMapper.updateById(deviceInfo);
-            }
-        } catch (Exception e) {
-            log.error("更新设备在线状态失败", e);
-        }
-    }
-
-    /**
-     * 获取阈值配置
-     */
-    private Map<String, String> getThresholds() {
-        Map<String, String> thresholds = new HashMap<>();
-        try {
-            // 从Redis缓存获取
-            if (redisTemplate != null) {
-                try {
-                    Object cached = redisTemplate.opsForValue().get("system:thresholds");
-                    if (cached != null) {
-                        return (Map<String, String>) cached;
-                    }
-                } catch (Exception e) {
-                    log.warn("Redis获取阈值失败，从数据库获取: {}", e.getMessage());
-                }
+        // 手动命令同步到设备影子，避免自动控制立即反向覆盖
+        DeviceShadow shadow = deviceShadowService.getOrCreate(deviceId);
+        if (shadow != null) {
+            synchronized (shadow) {
+                shadow.applyManual(action, System.currentTimeMillis());
             }
-
-            // 从数据库获取
-            LambdaQueryWrapper<SystemConfig> wrapper = new LambdaQueryWrapper<>();
-            wrapper.eq(SystemConfig::getConfigType, "THRESHOLD");
-            systemConfigMapper.selectList(wrapper).forEach(config -> {
-                thresholds.put(config.getConfigKey(), config.getConfigValue());
-            });
-
-            // 缓存到Redis
-            if (redisTemplate != null) {
-                try {
-                    redisTemplate.opsForValue().set("system:thresholds", thresholds, 1, TimeUnit.HOURS);
-                } catch (Exception e) {
-                    log.warn("Redis缓存阈值失败: {}", e.getMessage());
-                }
-            }
-        } catch (Exception e) {
-            log.error("获取阈值配置失败", e);
+            deviceShadowService.publish(shadow, false);
         }
-        return thresholds;
+        sendControlCommand(deviceId, action);
+        log.info("[后端] 设备控制命令已提交下发: 设备ID={}, 操作={}", deviceId, action);
     }
 }
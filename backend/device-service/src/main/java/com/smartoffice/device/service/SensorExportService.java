@@ -0,0 +1,271 @@
+package com.smartoffice.device.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.smartoffice.common.entity.SensorData;
+import com.smartoffice.device.archive.SensorColdArchive;
+import com.smartoffice.device.config.ExportProperties;
+import com.smartoffice.device.mapper.SensorDataMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 传感器数据流式导出
+ * <p>
+ * 通过MyBatis游标逐行读取，格式化后经固定大小的缓冲直接写入输出流，内存占用与导出行数无关。
+ * 每个导出在整个过程中占用一个数据库连接，用信号量限制并发数，避免耗尽连接池。
+ * 时间范围内已转入冷存储的数据一并导出。
+ */
+@Slf4j
+@Service
+public class SensorExportService {
+
+    public static final String FORMAT_CSV = "csv";
+
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    private static final String CSV_HEADER = "id,deviceId,dataTime,light,temperature,humidity,flame,rgbStatus\n";
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 每导出多少行更新一次统计，使导出过程中也能看到进度
+     */
+    private static final int PROGRESS_ROWS = 1000;
+
+    @Autowired
+    private ExportProperties exportProperties;
+
+    @Autowired
+    private SensorDataMapper sensorDataMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SensorColdArchive sensorColdArchive;
+
+    private Semaphore permits;
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder rowCount = new LongAdder();
+    private final LongAdder byteCount = new LongAdder();
+    private volatile long lastRows;
+    private volatile long lastMillis;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(Math.max(1, exportProperties.getMaxConcurrent()));
+    }
+
+    /**
+     * 占用一个导出名额，已满时返回false
+     */
+    public boolean tryAcquire() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        rejectedCount.increment();
+        return false;
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public static boolean isSupportedFormat(String format) {
+        return FORMAT_CSV.equals(format) || FORMAT_NDJSON.equals(format);
+    }
+
+    /**
+     * 导出数据到输出流（调用方需先通过 {@link #tryAcquire()} 占用名额）
+     *
+     * @param gzip 是否gzip压缩
+     * @return 导出行数
+     */
+    public long export(Collection<String> deviceIds, LocalDateTime from, LocalDateTime to, String format,
+                       boolean gzip, OutputStream out) throws IOException {
+        if (!isSupportedFormat(format)) {
+            throw new IllegalArgumentException("不支持的导出格式: " + format);
+        }
+        activeCount.incrementAndGet();
+        long start = System.nanoTime();
+        CountingOutputStream counting = new CountingOutputStream(out);
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(counting, 8192) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(compressed != null ? compressed : counting,
+                StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        long[] rows = new long[1];
+        boolean success = false;
+        try {
+            boolean csv = FORMAT_CSV.equals(format);
+            if (csv) {
+                writer.write(CSV_HEADER);
+            }
+            StringBuilder line = new StringBuilder(160);
+            Consumer<SensorData> sink = row -> {
+                line.setLength(0);
+                if (csv) {
+                    appendCsv(line, row);
+                } else {
+                    appendJson(line, row);
+                }
+                try {
+                    writer.append(line);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (++rows[0] % PROGRESS_ROWS == 0) {
+                    rowCount.add(PROGRESS_ROWS);
+                }
+            };
+            // 游标只能在打开它的SqlSession内遍历，事务保证整个遍历使用同一连接
+            transactionTemplate.execute(status -> {
+                if (sensorColdArchive.isEmpty()) {
+                    stream(deviceIds, from, to, sink);
+                } else {
+                    // 冷存储中的数据早于数据库，逐台设备先输出冷存储部分，保持按设备、时间排序
+                    for (String deviceId : deviceIds) {
+                        sensorColdArchive.forEach(deviceId, from, to, sink);
+                        stream(Collections.singletonList(deviceId), from, to, sink);
+                    }
+                }
+                return null;
+            });
+            writer.flush();
+            if (compressed != null) {
+                compressed.finish();
+            }
+            out.flush();
+            success = true;
+            return rows[0];
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            rowCount.add(rows[0] % PROGRESS_ROWS);
+            byteCount.add(counting.count);
+            activeCount.decrementAndGet();
+            if (success) {
+                completedCount.increment();
+                lastRows = rows[0];
+                lastMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            } else {
+                failedCount.increment();
+            }
+        }
+    }
+
+    private void stream(Collection<String> deviceIds, LocalDateTime from, LocalDateTime to, Consumer<SensorData> sink) {
+        try (Cursor<SensorData> cursor = sensorDataMapper.streamRange(deviceIds, from, to)) {
+            for (SensorData row : cursor) {
+                sink.accept(row);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 获取导出统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrent", exportProperties.getMaxConcurrent());
+        stats.put("active", activeCount.get());
+        stats.put("completed", completedCount.sum());
+        stats.put("failed", failedCount.sum());
+        stats.put("rejected", rejectedCount.sum());
+        stats.put("rows", rowCount.sum());
+        stats.put("bytes", byteCount.sum());
+        stats.put("lastRows", lastRows);
+        stats.put("lastMillis", lastMillis);
+        stats.put("lastRowsPerSecond", lastMillis > 0 ? lastRows * 1000 / lastMillis : lastRows);
+        return stats;
+    }
+
+    private static void appendCsv(StringBuilder line, SensorData row) {
+        line.append(row.getId()).append(',');
+        String deviceId = row.getDeviceId();
+        if (deviceId.indexOf(',') >= 0 || deviceId.indexOf('"') >= 0) {
+            line.append('"').append(deviceId.replace("\"", "\"\"")).append('"');
+        } else {
+            line.append(deviceId);
+        }
+        line.append(',').append(TIME_FORMAT.format(row.getDataTime()));
+        line.append(',').append(plain(row.getLight()));
+        line.append(',').append(plain(row.getTemperature()));
+        line.append(',').append(plain(row.getHumidity()));
+        line.append(',').append(row.getFlame() == null ? "" : row.getFlame());
+        line.append(',').append(row.getRgbStatus() == null ? "" : row.getRgbStatus());
+        line.append('\n');
+    }
+
+    private static void appendJson(StringBuilder line, SensorData row) {
+        line.append("{\"id\":").append(row.getId());
+        line.append(",\"deviceId\":").append(JSON.toJSONString(row.getDeviceId()));
+        line.append(",\"dataTime\":\"").append(TIME_FORMAT.format(row.getDataTime())).append('"');
+        line.append(",\"light\":").append(row.getLight() == null ? "null" : row.getLight().toPlainString());
+        line.append(",\"temperature\":").append(row.getTemperature() == null ? "null" : row.getTemperature().toPlainString());
+        line.append(",\"humidity\":").append(row.getHumidity() == null ? "null" : row.getHumidity().toPlainString());
+        line.append(",\"flame\":").append(row.getFlame());
+        line.append(",\"rgbStatus\":").append(row.getRgbStatus());
+        line.append("}\n");
+    }
+
+    private static String plain(BigDecimal value) {
+        return value == null ? "" : value.toPlainString();
+    }
+
+    /**
+     * 统计实际写出的字节数（压缩后）
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
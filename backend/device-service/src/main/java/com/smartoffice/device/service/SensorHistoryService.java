@@ -0,0 +1,144 @@
+package com.smartoffice.device.service;
+
+import com.smartoffice.common.entity.SensorData;
+import com.smartoffice.device.archive.SensorColdArchive;
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.mapper.SensorDataMapper;
+import com.smartoffice.device.mapper.SensorRollupMapper;
+import com.smartoffice.device.storage.PartitionRetentionPolicy;
+import com.smartoffice.device.storage.RollupGranularity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 传感器历史数据游标翻页
+ * <p>
+ * 按 (data_time, id) 倒序，游标为上一页最后一行的采集时间和ID，每页都从索引直接定位，
+ * 翻到第N页的代价与第一页相同。总数可选：none-不统计，approx-读汇总表样本数，exact-COUNT(*)，
+ * 只在第一页统计，带游标的后续页不再重复统计。
+ * 已转入冷存储的数据都早于数据库中的数据，数据库取完后接着从冷存储读取，对调用方透明。
+ */
+@Service
+public class SensorHistoryService {
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final DateTimeFormatter CURSOR_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private static final Pattern CURSOR = Pattern.compile("(\\d{14})_(\\d+)");
+
+    @Autowired
+    private SensorDataMapper sensorDataMapper;
+
+    @Autowired
+    private SensorRollupMapper sensorRollupMapper;
+
+    @Autowired
+    private IngestionProperties ingestionProperties;
+
+    @Autowired
+    private SensorColdArchive sensorColdArchive;
+
+    /**
+     * 查询一页历史数据
+     *
+     * @param cursor    上一页返回的 nextCursor，为空时查询第一页
+     * @param countMode none / approx / exact
+     */
+    public Map<String, Object> query(String deviceId, LocalDateTime from, LocalDateTime to,
+                                     String cursor, int pageSize, String countMode) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("每页数量范围为1-" + MAX_PAGE_SIZE);
+        }
+        if (from != null && to != null && !to.isAfter(from)) {
+            throw new IllegalArgumentException("结束时间必须晚于开始时间");
+        }
+        String mode = countMode == null ? "approx" : countMode.toLowerCase();
+        if (!"none".equals(mode) && !"approx".equals(mode) && !"exact".equals(mode)) {
+            throw new IllegalArgumentException("不支持的总数模式: " + countMode);
+        }
+        boolean firstPage = cursor == null || cursor.isEmpty();
+        LocalDateTime afterTime = null;
+        Long afterId = null;
+        if (!firstPage) {
+            Matcher matcher = CURSOR.matcher(cursor);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("无效的游标: " + cursor);
+            }
+            try {
+                afterTime = LocalDateTime.parse(matcher.group(1), CURSOR_TIME);
+                afterId = Long.parseLong(matcher.group(2));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("无效的游标: " + cursor);
+            }
+        }
+
+        // 多取一行判断是否还有下一页；数据库不足一页时接着从冷存储取更早的数据
+        List<SensorData> rows = sensorDataMapper.selectHistoryPage(deviceId, from, to, afterTime, afterId, pageSize + 1);
+        if (rows.size() <= pageSize && !sensorColdArchive.isEmpty()) {
+            if (!rows.isEmpty()) {
+                SensorData last = rows.get(rows.size() - 1);
+                afterTime = last.getDataTime();
+                afterId = last.getId();
+            }
+            List<SensorData> merged = new ArrayList<>(rows);
+            merged.addAll(sensorColdArchive.selectPage(deviceId, from, to, afterTime, afterId, pageSize + 1 - rows.size()));
+            rows = merged;
+        }
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            SensorData last = rows.get(rows.size() - 1);
+            nextCursor = last.getDataTime().format(CURSOR_TIME) + "_" + last.getId();
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("records", rows);
+        result.put("size", pageSize);
+        result.put("hasMore", hasMore);
+        result.put("nextCursor", nextCursor);
+        result.put("countMode", mode);
+        result.put("total", firstPage ? count(deviceId, from, to, mode) : null);
+        return result;
+    }
+
+    private Long count(String deviceId, LocalDateTime from, LocalDateTime to, String mode) {
+        if ("exact".equals(mode)) {
+            return sensorDataMapper.countHistory(deviceId, from, to) + sensorColdArchive.count(deviceId, from, to);
+        }
+        if (!"approx".equals(mode) || !ingestionProperties.getRollup().isEnabled()) {
+            return null;
+        }
+        // 汇总表不随原始数据分区清理，只统计原始数据保留期内的部分（转入冷存储的数据仍可查询，不限制）
+        IngestionProperties.Partition partition = ingestionProperties.getPartition();
+        if (partition.isEnabled() && partition.getRetentionDays() > 0
+                && partition.getRetentionPolicy() != PartitionRetentionPolicy.COLD) {
+            LocalDateTime retained = LocalDate.now().minusDays(partition.getRetentionDays()).atStartOfDay();
+            if (from == null || from.isBefore(retained)) {
+                from = retained;
+            }
+        }
+        RollupGranularity granularity = isMidnight(from) && isMidnight(to) ? RollupGranularity.DAY : RollupGranularity.HOUR;
+        return sensorRollupMapper.sumSampleCount(granularity.getTable(), deviceId,
+                from == null ? null : granularity.truncate(from), to);
+    }
+
+    private static boolean isMidnight(LocalDateTime time) {
+        return time == null || time.toLocalTime().equals(LocalTime.MIDNIGHT);
+    }
+}
@@ -0,0 +1,186 @@
+package com.smartoffice.device.service;
+
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.mapper.SensorRollupMapper;
+import com.smartoffice.device.storage.RollupGranularity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 传感器数据时间序列查询
+ * <p>
+ * 按目标步长选择能整除步长的最粗汇总表（天 > 小时 > 分钟），在数据库中按步长合并为对齐的桶，
+ * 读取行数只与时间范围和步长有关，与原始数据量无关。桶数上限 {@link #MAX_POINTS}。
+ * <p>
+ * 分钟汇总只保留 {@code ingestion.rollup.minute-retention-days} 天，开始时间早于保留期时
+ * 自动选择的步长取整小时，显式指定的非整小时步长直接拒绝。
+ */
+@Service
+public class SensorSeriesService {
+
+    public static final int MAX_POINTS = 2000;
+
+    private static final int DEFAULT_POINTS = 500;
+
+    private static final Set<String> METRICS = new HashSet<>(Arrays.asList("temperature", "humidity", "light"));
+
+    /**
+     * 未指定步长时的候选步长（秒）
+     */
+    private static final long[] STEPS = {60, 300, 900, 1800, 3600, 3 * 3600, 6 * 3600, 12 * 3600,
+            86400, 7 * 86400, 30 * 86400};
+
+    private static final Pattern INTERVAL = Pattern.compile("(\\d+)([mhd])");
+
+    @Autowired
+    private SensorRollupMapper sensorRollupMapper;
+
+    @Autowired
+    private IngestionProperties ingestionProperties;
+
+    /**
+     * 查询时间序列
+     *
+     * @param interval  步长，如 5m、1h、1d；为空时按 maxPoints 自动选择
+     * @param maxPoints 自动选择步长时的最大桶数
+     */
+    public Map<String, Object> query(Collection<String> deviceIds, String metric, LocalDateTime from, LocalDateTime to,
+                                     String interval, Integer maxPoints) {
+        if (!METRICS.contains(metric)) {
+            throw new IllegalArgumentException("不支持的指标: " + metric);
+        }
+        if (!to.isAfter(from)) {
+            throw new IllegalArgumentException("结束时间必须晚于开始时间");
+        }
+        boolean minutesRetained = minutesRetained(from);
+        long step;
+        if (interval != null && !interval.isEmpty()) {
+            step = parseInterval(interval);
+            if (!minutesRetained && step % 3600 != 0) {
+                throw new IllegalArgumentException("分钟汇总只保留" + ingestionProperties.getRollup().getMinuteRetentionDays()
+                        + "天，更早的时间范围请使用整小时步长（如1h、1d）");
+            }
+        } else {
+            int points = maxPoints != null ? Math.max(1, Math.min(maxPoints, MAX_POINTS)) : DEFAULT_POINTS;
+            step = chooseStep(Duration.between(from, to).getSeconds(), points, minutesRetained);
+        }
+        RollupGranularity granularity = granularityOf(step);
+        LocalDateTime alignedFrom = align(from, step);
+        long bucketCount = (Duration.between(alignedFrom, to).getSeconds() + step - 1) / step;
+        if (bucketCount > MAX_POINTS) {
+            throw new IllegalArgumentException("桶数超过" + MAX_POINTS + "，请缩小时间范围或增大步长");
+        }
+
+        List<Map<String, Object>> rows = deviceIds.isEmpty()
+                ? Collections.<Map<String, Object>>emptyList()
+                : sensorRollupMapper.selectSeries(granularity.getTable(), metric, deviceIds, alignedFrom, to, step);
+        Map<Long, Map<String, Object>> byIndex = new LinkedHashMap<>(rows.size() * 2);
+        for (Map<String, Object> row : rows) {
+            byIndex.put(((Number) row.get("idx")).longValue(), row);
+        }
+        List<Map<String, Object>> points = new ArrayList<>((int) bucketCount);
+        for (long i = 0; i < bucketCount; i++) {
+            points.add(toPoint(alignedFrom.plusSeconds(i * step), byIndex.get(i)));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("metric", metric);
+        result.put("deviceCount", deviceIds.size());
+        result.put("granularity", granularity.name());
+        result.put("stepSeconds", step);
+        result.put("from", alignedFrom);
+        result.put("to", to);
+        result.put("points", points);
+        return result;
+    }
+
+    private static Map<String, Object> toPoint(LocalDateTime time, Map<String, Object> row) {
+        Map<String, Object> point = new LinkedHashMap<>();
+        point.put("time", time);
+        long count = row != null && row.get("valueCount") != null ? ((Number) row.get("valueCount")).longValue() : 0;
+        if (count == 0) {
+            point.put("min", null);
+            point.put("max", null);
+            point.put("avg", null);
+        } else {
+            BigDecimal sum = new BigDecimal(row.get("sumValue").toString());
+            point.put("min", row.get("minValue"));
+            point.put("max", row.get("maxValue"));
+            point.put("avg", sum.divide(BigDecimal.valueOf(count), 2, RoundingMode.HALF_UP));
+        }
+        point.put("count", count);
+        return point;
+    }
+
+    private static long parseInterval(String interval) {
+        Matcher matcher = INTERVAL.matcher(interval.trim());
+        if (!matcher.matches() || Long.parseLong(matcher.group(1)) <= 0) {
+            throw new IllegalArgumentException("步长格式错误: " + interval + "（示例：5m、1h、1d）");
+        }
+        long value = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "d":
+                return value * 86400;
+            case "h":
+                return value * 3600;
+            default:
+                return value * 60;
+        }
+    }
+
+    private static long chooseStep(long rangeSeconds, int points, boolean minutesRetained) {
+        for (long step : STEPS) {
+            if ((minutesRetained || step % 3600 == 0) && rangeSeconds / step <= points) {
+                return step;
+            }
+        }
+        // 超长范围：按天取整
+        return ((rangeSeconds / points) / 86400 + 1) * 86400;
+    }
+
+    /**
+     * 开始时间是否仍在分钟汇总的保留期内
+     */
+    private boolean minutesRetained(LocalDateTime from) {
+        int retentionDays = ingestionProperties.getRollup().getMinuteRetentionDays();
+        return retentionDays <= 0 || !from.isBefore(LocalDateTime.now().minusDays(retentionDays));
+    }
+
+    /**
+     * 能整除步长的最粗粒度
+     */
+    private static RollupGranularity granularityOf(long step) {
+        if (step % 86400 == 0) {
+            return RollupGranularity.DAY;
+        }
+        if (step % 3600 == 0) {
+            return RollupGranularity.HOUR;
+        }
+        return RollupGranularity.MINUTE;
+    }
+
+    /**
+     * 开始时间向下对齐到步长的整数倍（按本地时间）
+     */
+    private static LocalDateTime align(LocalDateTime time, long step) {
+        long seconds = time.toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.ofEpochSecond(seconds - Math.floorMod(seconds, step), 0, ZoneOffset.UTC);
+    }
+}
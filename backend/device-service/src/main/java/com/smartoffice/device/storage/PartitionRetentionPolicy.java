@@ -0,0 +1,22 @@
+package com.smartoffice.device.storage;
+
+/**
+ * sensor_data 过期分区的处理方式
+ */
+public enum PartitionRetentionPolicy {
+
+    /**
+     * 直接删除分区（DROP PARTITION，只删除分区文件，不逐行DELETE）
+     */
+    DROP,
+
+    /**
+     * 把分区交换到独立的归档表 sensor_data_archive_{分区名} 后删除空分区，数据保留在归档表中
+     */
+    ARCHIVE,
+
+    /**
+     * 把分区数据压缩写入本地冷存储后删除分区，历史查询和导出仍可读到这些数据
+     */
+    COLD
+}
@@ -0,0 +1,41 @@
+package com.smartoffice.device.storage;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * sensor_data 分区粒度
+ */
+public enum PartitionUnit {
+
+    DAY(DateTimeFormatter.ofPattern("yyyyMMdd")),
+    MONTH(DateTimeFormatter.ofPattern("yyyyMM"));
+
+    /**
+     * 分区名中的日期格式，分区名为 p + 分区内数据的起始日期
+     */
+    private final DateTimeFormatter nameFormat;
+
+    PartitionUnit(DateTimeFormatter nameFormat) {
+        this.nameFormat = nameFormat;
+    }
+
+    /**
+     * 日期所在分区的起始日期
+     */
+    public LocalDate start(LocalDate date) {
+        return this == DAY ? date : date.with(TemporalAdjusters.firstDayOfMonth());
+    }
+
+    public LocalDate plus(LocalDate start, long amount) {
+        return this == DAY ? start.plusDays(amount) : start.plusMonths(amount);
+    }
+
+    /**
+     * 上界（不含）为 bound 的分区名
+     */
+    public String partitionName(LocalDate bound) {
+        return "p" + plus(bound, -1).format(nameFormat);
+    }
+}
@@ -0,0 +1,46 @@
+package com.smartoffice.device.storage;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 传感器数据汇总粒度
+ */
+public enum RollupGranularity {
+
+    MINUTE("sensor_rollup_minute", ChronoUnit.MINUTES, "%Y-%m-%d %H:%i:00"),
+    HOUR("sensor_rollup_hour", ChronoUnit.HOURS, "%Y-%m-%d %H:00:00"),
+    DAY("sensor_rollup_day", ChronoUnit.DAYS, "%Y-%m-%d 00:00:00");
+
+    private final String table;
+
+    private final ChronoUnit unit;
+
+    /**
+     * MySQL DATE_FORMAT格式，把时间截断到桶起始时间
+     */
+    private final String bucketFormat;
+
+    RollupGranularity(String table, ChronoUnit unit, String bucketFormat) {
+        this.table = table;
+        this.unit = unit;
+        this.bucketFormat = bucketFormat;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getBucketFormat() {
+        return bucketFormat;
+    }
+
+    public Duration getDuration() {
+        return unit.getDuration();
+    }
+
+    public LocalDateTime truncate(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+}
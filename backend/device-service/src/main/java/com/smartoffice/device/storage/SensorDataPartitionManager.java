@@ -0,0 +1,278 @@
+package com.smartoffice.device.storage;
+
+import com.smartoffice.device.archive.SensorColdArchive;
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.mapper.SensorDataPartitionMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * sensor_data 分区维护
+ * <p>
+ * 表按 TO_DAYS(data_time) 做RANGE分区，末尾是兜底分区 p_future。启动时和每天凌晨从 p_future 中提前拆出后续分区，
+ * 并按保留期整分区删除、交换到归档表或转入冷存储，不执行逐行DELETE。多实例通过MySQL命名锁保证只有一个实例执行。
+ */
+@Slf4j
+@Component
+public class SensorDataPartitionManager {
+
+    public static final String FUTURE_PARTITION = "p_future";
+
+    public static final String ARCHIVE_TABLE_PREFIX = "sensor_data_archive_";
+
+    private static final String LOCK_NAME = "smart_office:sensor_data:partition";
+
+    /**
+     * TO_DAYS('1970-01-01')
+     */
+    private static final long EPOCH_TO_DAYS = 719528L;
+
+    @Autowired
+    private IngestionProperties ingestionProperties;
+
+    @Autowired
+    private SensorDataPartitionMapper sensorDataPartitionMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SensorColdArchive sensorColdArchive;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder archivedCount = new LongAdder();
+    private final LongAdder coldCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private volatile boolean partitioned;
+    private volatile LocalDateTime lastRunAt;
+    private volatile String lastError;
+    private volatile List<Map<String, Object>> lastPartitions = Collections.emptyList();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        maintain();
+    }
+
+    @Scheduled(cron = "0 10 0 * * ?")
+    public void maintain() {
+        if (!ingestionProperties.getPartition().isEnabled() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // 命名锁属于数据库会话，在事务模板内执行保证加锁、DDL、解锁使用同一连接
+            transactionTemplate.execute(status -> {
+                Integer locked = sensorDataPartitionMapper.getLock(LOCK_NAME);
+                if (locked == null || locked == 0) {
+                    log.info("其他实例正在维护sensor_data分区，跳过");
+                    return null;
+                }
+                try {
+                    doMaintain();
+                } finally {
+                    sensorDataPartitionMapper.releaseLock(LOCK_NAME);
+                }
+                return null;
+            });
+            lastError = null;
+        } catch (Exception e) {
+            failureCount.increment();
+            lastError = e.getMessage();
+            log.error("维护sensor_data分区失败", e);
+        } finally {
+            lastRunAt = LocalDateTime.now();
+            running.set(false);
+        }
+    }
+
+    private void doMaintain() {
+        List<PartitionInfo> partitions = loadPartitions();
+        if (partitions.isEmpty()) {
+            if (partitioned || lastRunAt == null) {
+                log.warn("sensor_data未分区，跳过分区维护（执行 database/sensor_data_partition.sql 迁移后生效）");
+            }
+            partitioned = false;
+            return;
+        }
+        partitioned = true;
+        if (!FUTURE_PARTITION.equals(partitions.get(partitions.size() - 1).name)) {
+            log.warn("sensor_data缺少兜底分区{}，跳过创建新分区", FUTURE_PARTITION);
+        } else {
+            createAhead(partitions);
+        }
+        purgeExpired(partitions);
+        lastPartitions = describe(loadPartitions());
+    }
+
+    private void createAhead(List<PartitionInfo> partitions) {
+        IngestionProperties.Partition config = ingestionProperties.getPartition();
+        PartitionUnit unit = config.getUnit();
+        LocalDate current = unit.start(LocalDate.now());
+        LocalDate target = unit.plus(current, Math.max(0, config.getAheadPartitions()) + 1L);
+        LocalDate lastBound = null;
+        for (PartitionInfo partition : partitions) {
+            if (partition.bound != null) {
+                lastBound = partition.bound;
+            }
+        }
+        // 第一个新分区同时容纳上一个分区上界到当前周期之间的数据，中间不补建空分区
+        LocalDate bound = lastBound == null || lastBound.isBefore(current) ? current : lastBound;
+        StringBuilder definitions = new StringBuilder();
+        int created = 0;
+        while (bound.isBefore(target)) {
+            bound = unit.plus(unit.start(bound), 1);
+            definitions.append("PARTITION ").append(unit.partitionName(bound))
+                    .append(" VALUES LESS THAN (TO_DAYS('").append(bound).append("')), ");
+            created++;
+        }
+        if (created == 0) {
+            return;
+        }
+        definitions.append("PARTITION ").append(FUTURE_PARTITION).append(" VALUES LESS THAN MAXVALUE");
+        sensorDataPartitionMapper.reorganizeFuture(definitions.toString());
+        createdCount.add(created);
+        log.info("sensor_data新建分区{}个，最新分区上界{}", created, bound);
+    }
+
+    private void purgeExpired(List<PartitionInfo> partitions) {
+        IngestionProperties.Partition config = ingestionProperties.getPartition();
+        if (config.getRetentionDays() <= 0) {
+            return;
+        }
+        LocalDate cutoff = LocalDate.now().minusDays(config.getRetentionDays());
+        for (PartitionInfo partition : partitions) {
+            // 上界不晚于截止日期，说明分区内全部数据都已过期
+            if (partition.bound == null || partition.bound.isAfter(cutoff)) {
+                continue;
+            }
+            if (config.getRetentionPolicy() == PartitionRetentionPolicy.ARCHIVE) {
+                archive(partition.name);
+            } else if (config.getRetentionPolicy() == PartitionRetentionPolicy.COLD) {
+                archiveCold(partition.name);
+            } else {
+                sensorDataPartitionMapper.dropPartition(partition.name);
+                droppedCount.increment();
+                log.info("删除过期分区sensor_data.{}（上界{}）", partition.name, partition.bound);
+            }
+        }
+    }
+
+    private void archive(String partition) {
+        String table = ARCHIVE_TABLE_PREFIX + partition;
+        if (sensorDataPartitionMapper.countTable(table) == 0) {
+            sensorDataPartitionMapper.createArchiveTable(table);
+            sensorDataPartitionMapper.removePartitioning(table);
+        }
+        if (sensorDataPartitionMapper.tableHasRows(table) == 0) {
+            sensorDataPartitionMapper.exchangePartition(partition, table);
+        } else if (sensorDataPartitionMapper.partitionHasRows(partition) > 0) {
+            // 归档表已有数据且分区也不为空，不能确定哪份是完整的，留给人工处理
+            failureCount.increment();
+            log.error("归档表{}已有数据，分区sensor_data.{}未归档", table, partition);
+            return;
+        }
+        // 交换后分区为空，删除只是去掉分区定义（上次交换成功但删除失败时直接删除）
+        sensorDataPartitionMapper.dropPartition(partition);
+        archivedCount.increment();
+        log.info("过期分区sensor_data.{}已归档到{}", partition, table);
+    }
+
+    private void archiveCold(String partition) {
+        long rows;
+        try {
+            rows = sensorColdArchive.archivePartition(partition);
+        } catch (IOException e) {
+            // 写冷存储失败时保留分区，下次维护重试
+            failureCount.increment();
+            log.error("分区sensor_data.{}写入冷存储失败，保留分区", partition, e);
+            return;
+        }
+        sensorDataPartitionMapper.dropPartition(partition);
+        coldCount.increment();
+        log.info("过期分区sensor_data.{}已转入冷存储（{}行）", partition, rows < 0 ? "此前已写入" : rows);
+    }
+
+    private List<PartitionInfo> loadPartitions() {
+        List<PartitionInfo> partitions = new ArrayList<>();
+        for (Map<String, Object> row : sensorDataPartitionMapper.selectPartitions()) {
+            Object name = row.get("name");
+            if (name == null) {
+                continue;
+            }
+            PartitionInfo partition = new PartitionInfo();
+            partition.name = name.toString();
+            Object description = row.get("description");
+            if (description != null && !"MAXVALUE".equalsIgnoreCase(description.toString())) {
+                partition.bound = LocalDate.ofEpochDay(Long.parseLong(description.toString().trim()) - EPOCH_TO_DAYS);
+            }
+            Object rows = row.get("tableRows");
+            partition.rows = rows instanceof Number ? ((Number) rows).longValue() : 0L;
+            partitions.add(partition);
+        }
+        return partitions;
+    }
+
+    private List<Map<String, Object>> describe(List<PartitionInfo> partitions) {
+        List<Map<String, Object>> result = new ArrayList<>(partitions.size());
+        for (PartitionInfo partition : partitions) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("name", partition.name);
+            item.put("lessThan", partition.bound);
+            item.put("estimatedRows", partition.rows);
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * 获取分区维护统计
+     */
+    public Map<String, Object> getStats() {
+        IngestionProperties.Partition config = ingestionProperties.getPartition();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isEnabled());
+        stats.put("partitioned", partitioned);
+        stats.put("unit", config.getUnit());
+        stats.put("retentionDays", config.getRetentionDays());
+        stats.put("retentionPolicy", config.getRetentionPolicy());
+        stats.put("created", createdCount.sum());
+        stats.put("dropped", droppedCount.sum());
+        stats.put("archived", archivedCount.sum());
+        stats.put("coldArchived", coldCount.sum());
+        stats.put("failures", failureCount.sum());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastError", lastError);
+        stats.put("partitions", lastPartitions);
+        return stats;
+    }
+
+    private static final class PartitionInfo {
+
+        private String name;
+
+        /**
+         * 分区上界（不含），兜底分区为null
+         */
+        private LocalDate bound;
+
+        private long rows;
+    }
+}
@@ -0,0 +1,197 @@
+package com.smartoffice.device.storage;
+
+import com.smartoffice.common.entity.SensorData;
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.mapper.SensorDataMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 传感器数据异步批量写库缓冲区（write-behind）
+ * <p>
+ * 处理线程只把行放入缓冲区，写库线程攒够一批或到达最长攒批时间后用一条多行INSERT写入，
+ * 把每条数据一次往返一次提交降为每批一次。写库成功的行交给 {@link SensorRollupAggregator} 累计汇总。
+ */
+@Slf4j
+@Component
+public class SensorDataWriteBuffer {
+
+    @Autowired
+    private IngestionProperties ingestionProperties;
+
+    @Autowired
+    private SensorDataMapper sensorDataMapper;
+
+    @Autowired
+    private SensorRollupAggregator sensorRollupAggregator;
+
+    private BlockingQueue<SensorData> buffer;
+
+    private List<Thread> flushers;
+
+    private volatile boolean running;
+
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder rowCount = new LongAdder();
+    private final LongAdder failedRowCount = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+    private volatile int lastBatchSize;
+
+    @PostConstruct
+    public void start() {
+        IngestionProperties.WriteBehind config = ingestionProperties.getWriteBehind();
+        buffer = new ArrayBlockingQueue<>(config.getCapacity());
+        running = true;
+        flushers = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, config.getFlushThreads()); i++) {
+            Thread thread = new Thread(this::flushLoop, "sensor-data-flusher-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            flushers.add(thread);
+        }
+        log.info("传感器数据批量写库已启动: batchSize={}, flushIntervalMs={}, flushThreads={}",
+                config.getBatchSize(), config.getFlushIntervalMs(), flushers.size());
+    }
+
+    /**
+     * 加入待写库数据，缓冲区满时阻塞（压力传导回接入流水线）
+     */
+    public void add(SensorData sensorData) {
+        try {
+            buffer.put(sensorData);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failedRowCount.increment();
+            log.warn("写入缓冲区被中断，丢弃数据: deviceId={}", sensorData.getDeviceId());
+        }
+    }
+
+    /**
+     * 批量加入一次上报的全部数据（连续写入，通常落在同一次多行INSERT中）
+     */
+    public void addAll(List<SensorData> rows) {
+        for (int i = 0; i < rows.size(); i++) {
+            try {
+                buffer.put(rows.get(i));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failedRowCount.add(rows.size() - i);
+                log.warn("写入缓冲区被中断，丢弃本批剩余数据: {} 行", rows.size() - i);
+                return;
+            }
+        }
+    }
+
+    private void flushLoop() {
+        IngestionProperties.WriteBehind config = ingestionProperties.getWriteBehind();
+        int batchSize = config.getBatchSize();
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getFlushIntervalMs());
+        List<SensorData> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                SensorData first = buffer.poll(config.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + intervalNanos;
+                while (batch.size() < batchSize) {
+                    buffer.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    SensorData next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<SensorData> batch) {
+        long start = System.nanoTime();
+        try {
+            sensorDataMapper.insertBatch(batch);
+            sensorRollupAggregator.addAll(batch);
+        } catch (Exception e) {
+            log.error("批量写入传感器数据失败({}行)，改为逐行写入", batch.size(), e);
+            for (SensorData row : batch) {
+                try {
+                    sensorDataMapper.insert(row);
+                    sensorRollupAggregator.add(row);
+                } catch (Exception rowEx) {
+                    failedRowCount.increment();
+                    log.error("写入传感器数据失败: deviceId={}", row.getDeviceId(), rowEx);
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        batchCount.increment();
+        rowCount.add(batch.size());
+        flushNanos.add(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        lastFlushNanos = elapsed;
+        lastBatchSize = batch.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("传感器数据批量写库停止中，剩余待写入: {}", buffer.size());
+        running = false;
+        for (Thread flusher : flushers) {
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (!buffer.isEmpty()) {
+            log.warn("传感器数据未能全部写库，丢弃: {}", buffer.size());
+        }
+    }
+
+    /**
+     * 获取写库统计
+     */
+    public Map<String, Object> getStats() {
+        long batches = batchCount.sum();
+        long rows = rowCount.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", buffer.size());
+        stats.put("batches", batches);
+        stats.put("rows", rows);
+        stats.put("failedRows", failedRowCount.sum());
+        stats.put("avgBatchSize", batches > 0 ? (double) rows / batches : 0);
+        stats.put("lastBatchSize", lastBatchSize);
+        stats.put("avgFlushMillis", batches > 0 ? flushNanos.sum() / batches / 1_000_000.0 : 0);
+        stats.put("lastFlushMillis", lastFlushNanos / 1_000_000.0);
+        stats.put("maxFlushMillis", maxFlushNanos.get() / 1_000_000.0);
+        return stats;
+    }
+}
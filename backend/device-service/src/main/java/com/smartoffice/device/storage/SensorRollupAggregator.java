@@ -0,0 +1,352 @@
+package com.smartoffice.device.storage;
+
+import com.smartoffice.common.entity.SensorData;
+import com.smartoffice.common.entity.SensorRollup;
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.mapper.SensorRollupMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 传感器数据增量汇总
+ * <p>
+ * 写库成功的行按设备、分钟在内存中累计最小值、最大值、累加值、样本数和最后值，
+ * 定时合并出小时、天的增量，分别以 INSERT ... ON DUPLICATE KEY UPDATE 累加到三张汇总表。
+ * 写汇总失败只影响汇总表，可用回填从原始数据重算。
+ */
+@Slf4j
+@Component
+public class SensorRollupAggregator {
+
+    @Autowired
+    private IngestionProperties ingestionProperties;
+
+    @Autowired
+    private SensorRollupMapper sensorRollupMapper;
+
+    /**
+     * 设备+分钟 -> 尚未写库的增量
+     */
+    private final Map<BucketKey, Partial> partials = new ConcurrentHashMap<>();
+
+    /**
+     * 写汇总与回填互斥（回填重算期间跳过定时写入，增量留在内存中）
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final LongAdder rowCount = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder upsertRowCount = new LongAdder();
+    private final LongAdder failedUpsertCount = new LongAdder();
+    private volatile long lastFlushNanos;
+
+    /**
+     * 累计写库成功的行
+     */
+    public void addAll(List<SensorData> rows) {
+        if (!ingestionProperties.getRollup().isEnabled()) {
+            return;
+        }
+        for (SensorData row : rows) {
+            add(row);
+        }
+    }
+
+    public void add(SensorData row) {
+        if (!ingestionProperties.getRollup().isEnabled() || row.getDeviceId() == null || row.getDataTime() == null) {
+            return;
+        }
+        BucketKey key = new BucketKey(row.getDeviceId(), RollupGranularity.MINUTE.truncate(row.getDataTime()));
+        partials.compute(key, (k, partial) -> {
+            if (partial == null) {
+                partial = new Partial();
+            }
+            partial.add(row);
+            return partial;
+        });
+        rowCount.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${ingestion.rollup.flush-interval-ms:10000}")
+    public void flush() {
+        if (partials.isEmpty() || !flushLock.tryLock()) {
+            return;
+        }
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 持有写汇总锁执行（回填使用）
+     */
+    public void runExclusive(Runnable task) {
+        flushLock.lock();
+        try {
+            task.run();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 持有写汇总锁，先写入内存中的增量再执行（回填使用）
+     * <p>
+     * 增量对应的行都已写入原始表，先写入再按原始表覆盖重算，重算后不会再有这些行的增量被累加一次。
+     */
+    public void flushAndRunExclusive(Runnable task) {
+        runExclusive(() -> {
+            doFlush();
+            task.run();
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runExclusive(this::doFlush);
+    }
+
+    private void doFlush() {
+        if (partials.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        Map<BucketKey, Partial> minutes = new HashMap<>(partials.size() * 2);
+        for (BucketKey key : partials.keySet()) {
+            // 逐个原子取出，取出后到达的行留到下一次
+            Partial partial = partials.remove(key);
+            if (partial != null) {
+                minutes.put(key, partial);
+            }
+        }
+        Map<BucketKey, Partial> hours = rollUp(minutes, RollupGranularity.HOUR);
+        Map<BucketKey, Partial> days = rollUp(hours, RollupGranularity.DAY);
+        upsert(RollupGranularity.MINUTE, minutes);
+        upsert(RollupGranularity.HOUR, hours);
+        upsert(RollupGranularity.DAY, days);
+        flushCount.increment();
+        lastFlushNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * 清理过期的分钟汇总
+     */
+    @Scheduled(cron = "0 20 3 * * ?")
+    public void purgeExpiredMinutes() {
+        int retentionDays = ingestionProperties.getRollup().getMinuteRetentionDays();
+        if (retentionDays <= 0) {
+            return;
+        }
+        LocalDateTime before = LocalDateTime.now().minusDays(retentionDays);
+        try {
+            int deleted;
+            int total = 0;
+            do {
+                deleted = sensorRollupMapper.deleteBefore(RollupGranularity.MINUTE.getTable(), before, 5000);
+                total += deleted;
+            } while (deleted >= 5000);
+            log.info("清理过期分钟汇总: {}行, before={}", total, before);
+        } catch (Exception e) {
+            log.error("清理过期分钟汇总失败", e);
+        }
+    }
+
+    /**
+     * 获取汇总统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", ingestionProperties.getRollup().isEnabled());
+        stats.put("pendingBuckets", partials.size());
+        stats.put("rows", rowCount.sum());
+        stats.put("flushes", flushCount.sum());
+        stats.put("upsertedRows", upsertRowCount.sum());
+        stats.put("failedUpserts", failedUpsertCount.sum());
+        stats.put("lastFlushMillis", TimeUnit.NANOSECONDS.toMillis(lastFlushNanos));
+        return stats;
+    }
+
+    private Map<BucketKey, Partial> rollUp(Map<BucketKey, Partial> source, RollupGranularity granularity) {
+        Map<BucketKey, Partial> target = new HashMap<>();
+        for (Map.Entry<BucketKey, Partial> entry : source.entrySet()) {
+            BucketKey key = new BucketKey(entry.getKey().deviceId, granularity.truncate(entry.getKey().bucketTime));
+            target.computeIfAbsent(key, k -> new Partial()).merge(entry.getValue());
+        }
+        return target;
+    }
+
+    private void upsert(RollupGranularity granularity, Map<BucketKey, Partial> buckets) {
+        int batchSize = Math.max(1, ingestionProperties.getRollup().getUpsertBatchSize());
+        List<SensorRollup> batch = new ArrayList<>(Math.min(batchSize, buckets.size()));
+        for (Map.Entry<BucketKey, Partial> entry : buckets.entrySet()) {
+            batch.add(entry.getValue().toRollup(entry.getKey()));
+            if (batch.size() >= batchSize) {
+                upsertBatch(granularity, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            upsertBatch(granularity, batch);
+        }
+    }
+
+    private void upsertBatch(RollupGranularity granularity, List<SensorRollup> batch) {
+        try {
+            sensorRollupMapper.upsertBatch(granularity.getTable(), batch);
+            upsertRowCount.add(batch.size());
+        } catch (Exception e) {
+            failedUpsertCount.add(batch.size());
+            log.error("写入{}汇总失败({}行)，可通过回填重算", granularity, batch.size(), e);
+        }
+    }
+
+    private static final class BucketKey {
+
+        private final String deviceId;
+
+        private final LocalDateTime bucketTime;
+
+        private BucketKey(String deviceId, LocalDateTime bucketTime) {
+            this.deviceId = deviceId;
+            this.bucketTime = bucketTime;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BucketKey)) {
+                return false;
+            }
+            BucketKey other = (BucketKey) o;
+            return deviceId.equals(other.deviceId) && bucketTime.equals(other.bucketTime);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(deviceId, bucketTime);
+        }
+    }
+
+    /**
+     * 单个时间桶的增量
+     */
+    private static final class Partial {
+
+        private int count;
+
+        private final Metric temperature = new Metric();
+
+        private final Metric humidity = new Metric();
+
+        private final Metric light = new Metric();
+
+        private BigDecimal lastTemperature;
+
+        private BigDecimal lastHumidity;
+
+        private BigDecimal lastLight;
+
+        private LocalDateTime lastTime;
+
+        private void add(SensorData row) {
+            count++;
+            temperature.add(row.getTemperature());
+            humidity.add(row.getHumidity());
+            light.add(row.getLight());
+            if (lastTime == null || !row.getDataTime().isBefore(lastTime)) {
+                lastTemperature = row.getTemperature();
+                lastHumidity = row.getHumidity();
+                lastLight = row.getLight();
+                lastTime = row.getDataTime();
+            }
+        }
+
+        private void merge(Partial other) {
+            count += other.count;
+            temperature.merge(other.temperature);
+            humidity.merge(other.humidity);
+            light.merge(other.light);
+            if (lastTime == null || !other.lastTime.isBefore(lastTime)) {
+                lastTemperature = other.lastTemperature;
+                lastHumidity = other.lastHumidity;
+                lastLight = other.lastLight;
+                lastTime = other.lastTime;
+            }
+        }
+
+        private SensorRollup toRollup(BucketKey key) {
+            SensorRollup rollup = new SensorRollup();
+            rollup.setDeviceId(key.deviceId);
+            rollup.setBucketTime(key.bucketTime);
+            rollup.setSampleCount(count);
+            rollup.setTemperatureMin(temperature.min);
+            rollup.setTemperatureMax(temperature.max);
+            rollup.setTemperatureSum(temperature.sum);
+            rollup.setTemperatureCount(temperature.count);
+            rollup.setHumidityMin(humidity.min);
+            rollup.setHumidityMax(humidity.max);
+            rollup.setHumiditySum(humidity.sum);
+            rollup.setHumidityCount(humidity.count);
+            rollup.setLightMin(light.min);
+            rollup.setLightMax(light.max);
+            rollup.setLightSum(light.sum);
+            rollup.setLightCount(light.count);
+            rollup.setLastTemperature(lastTemperature);
+            rollup.setLastHumidity(lastHumidity);
+            rollup.setLastLight(lastLight);
+            rollup.setLastTime(lastTime);
+            return rollup;
+        }
+    }
+
+    private static final class Metric {
+
+        private BigDecimal min;
+
+        private BigDecimal max;
+
+        private BigDecimal sum = BigDecimal.ZERO;
+
+        private int count;
+
+        private void add(BigDecimal value) {
+            if (value == null) {
+                return;
+            }
+            min = min == null || value.compareTo(min) < 0 ? value : min;
+            max = max == null || value.compareTo(max) > 0 ? value : max;
+            sum = sum.add(value);
+            count++;
+        }
+
+        private void merge(Metric other) {
+            if (other.count == 0) {
+                return;
+            }
+            min = min == null || other.min.compareTo(min) < 0 ? other.min : min;
+            max = max == null || other.max.compareTo(max) > 0 ? other.max : max;
+            sum = sum.add(other.sum);
+            count += other.count;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.smartoffice.device.storage;
+
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.mapper.SensorRollupMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 汇总表回填
+ * <p>
+ * 按天从原始数据重算分钟汇总，再由分钟汇总重算当天的小时、天汇总（覆盖写入，可重复执行）。
+ * 最近几分钟的原始数据可能还有增量未写入汇总表，分钟重算截止到该时间之前，避免重复计入；
+ * 每天重算前先在同一把锁内写入内存中的增量，之后覆盖重算，带旧时间戳的延迟数据也不会重复计入。
+ */
+@Slf4j
+@Component
+public class SensorRollupBackfill {
+
+    @Autowired
+    private SensorRollupMapper sensorRollupMapper;
+
+    @Autowired
+    private SensorRollupAggregator sensorRollupAggregator;
+
+    @Autowired
+    private IngestionProperties ingestionProperties;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile LocalDate rangeFrom;
+    private volatile LocalDate rangeTo;
+    private volatile LocalDate currentDay;
+    private volatile int completedDays;
+    private volatile long minuteRows;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String lastError;
+
+    /**
+     * 启动回填（后台执行），已有回填在运行时返回false
+     */
+    public boolean start(LocalDate from, LocalDate to) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        rangeFrom = from;
+        rangeTo = to;
+        currentDay = null;
+        completedDays = 0;
+        minuteRows = 0;
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        lastError = null;
+        Thread thread = new Thread(() -> run(from, to), "rollup-backfill");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    private void run(LocalDate from, LocalDate to) {
+        try {
+            // 两个写汇总间隔再加一分钟之前的原始数据都已完成增量写入
+            long lagMillis = ingestionProperties.getRollup().getFlushIntervalMs() * 2 + 60_000L;
+            LocalDateTime cutoff = RollupGranularity.MINUTE.truncate(LocalDateTime.now().minusNanos(lagMillis * 1_000_000L));
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                LocalDateTime dayStart = day.atStartOfDay();
+                if (!dayStart.isBefore(cutoff)) {
+                    break;
+                }
+                currentDay = day;
+                LocalDateTime dayEnd = dayStart.plusDays(1);
+                LocalDateTime rawEnd = dayEnd.isBefore(cutoff) ? dayEnd : cutoff;
+                sensorRollupAggregator.flushAndRunExclusive(() -> {
+                    minuteRows += sensorRollupMapper.rebuildMinuteFromRaw(dayStart, rawEnd);
+                    sensorRollupMapper.rebuildFrom(RollupGranularity.HOUR.getTable(), RollupGranularity.MINUTE.getTable(),
+                            RollupGranularity.HOUR.getBucketFormat(), dayStart, dayEnd);
+                    sensorRollupMapper.rebuildFrom(RollupGranularity.DAY.getTable(), RollupGranularity.HOUR.getTable(),
+                            RollupGranularity.DAY.getBucketFormat(), dayStart, dayEnd);
+                });
+                completedDays++;
+                log.info("汇总回填完成: {}", day);
+            }
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            log.error("汇总回填失败: day={}", currentDay, e);
+        } finally {
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+    }
+
+    /**
+     * 获取回填进度
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("from", rangeFrom);
+        status.put("to", rangeTo);
+        status.put("currentDay", currentDay);
+        status.put("completedDays", completedDays);
+        status.put("minuteRows", minuteRows);
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        status.put("lastError", lastError);
+        return status;
+    }
+}
@@ -0,0 +1,184 @@
+package com.smartoffice.device.archive;
+
+import com.smartoffice.common.entity.SensorData;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ColdBlockTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Test
+    void bitsRoundTripAtEveryWidth() {
+        Random random = new Random(42);
+        long[] values = new long[2000];
+        int[] widths = new int[values.length];
+        BitWriter writer = new BitWriter();
+        for (int i = 0; i < values.length; i++) {
+            widths[i] = i % 64 + 1;
+            values[i] = widths[i] == 64 ? random.nextLong() : random.nextLong() & ((1L << widths[i]) - 1);
+            writer.writeBits(values[i], widths[i]);
+        }
+        writer.writeBit(true);
+
+        BitReader reader = new BitReader(ByteBuffer.wrap(writer.buffer()), 0);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], reader.readBits(widths[i]), "width " + widths[i]);
+        }
+        assertEquals(true, reader.readBit());
+    }
+
+    @Test
+    void readerHonoursOffsetAndWriterResets() {
+        BitWriter writer = new BitWriter();
+        writer.writeBits(0x5A5A, 16);
+        writer.reset();
+        writer.writeBits(0b101, 3);
+        assertEquals(1, writer.length());
+
+        byte[] shifted = new byte[4];
+        shifted[2] = writer.buffer()[0];
+        assertEquals(0b101, new BitReader(ByteBuffer.wrap(shifted), 2).readBits(3));
+        assertEquals((byte) 0b1010_0000, writer.buffer()[0]);
+    }
+
+    @Test
+    void deltaOfDeltaBoundariesRoundTrip() {
+        long[] deltas = {0, -63, 64, -64, 65, -255, 256, -256, 257, -2047, 2048, -2048, 2049,
+                Integer.MIN_VALUE, Integer.MAX_VALUE, (long) Integer.MIN_VALUE - 1, (long) Integer.MAX_VALUE + 1};
+        ColdBlock block = new ColdBlock(deltas.length * 2 + 1);
+        long time = ColdBlock.toEpochSecond(START);
+        long id = 1000;
+        long timeDelta = 0;
+        long idDelta = 0;
+        block.add(row(time, id, 1.0));
+        // 前半段每个值依次作为时间的二阶差分出现，后半段作为ID的二阶差分出现
+        for (long dod : deltas) {
+            timeDelta += dod;
+            time += timeDelta;
+            block.add(row(time, ++id, 1.0));
+        }
+        for (long dod : deltas) {
+            idDelta += dod;
+            id += idDelta;
+            block.add(row(++time, id, 1.0));
+        }
+
+        assertRoundTrip(block);
+    }
+
+    @Test
+    void extremeIdsOverflowSixtyFourBitDeltas() {
+        ColdBlock block = new ColdBlock(4);
+        block.add(row(0, Long.MIN_VALUE, 1.0));
+        block.add(row(1, Long.MAX_VALUE, 1.0));
+        block.add(row(2, Long.MIN_VALUE, 1.0));
+        block.add(row(Integer.MAX_VALUE * 4L, 0, 1.0));
+
+        assertRoundTrip(block);
+    }
+
+    @Test
+    void nullColumnsAndFlagsRoundTrip() {
+        ColdBlock block = new ColdBlock(5);
+        block.add(row(100, 1, null));
+        block.add(row(110, 2, 25.5));
+        block.add(row(120, 3, null));
+        block.add(row(130, 4, null));
+        SensorData flags = row(140, 5, 26.0);
+        flags.setFlame(null);
+        flags.setRgbStatus(0);
+        block.add(flags);
+
+        ColdBlock decoded = assertRoundTrip(block);
+
+        SensorData target = new SensorData();
+        decoded.copyTo(0, "W601_001", target);
+        assertNull(target.getTemperature());
+        assertNull(target.getHumidity());
+        decoded.copyTo(4, "W601_001", target);
+        assertEquals(new BigDecimal("26.00"), target.getTemperature());
+        assertNull(target.getFlame());
+        assertEquals(0, target.getRgbStatus());
+        assertEquals(ColdBlock.toDateTime(140), target.getDataTime());
+    }
+
+    @Test
+    void fullSixtyFourBitXorWindowRoundTrips() {
+        // 符号位和最低位同时变化时异或有效位为64位，之后沿用同一窗口
+        double a = Double.longBitsToDouble(0x3FF0000000000001L);
+        double b = Double.longBitsToDouble(0xBFF0000000000000L);
+        double[] values = {a, b, a, b, 1.0, -1.0, 1e-300, -1e300, Double.MIN_VALUE, Double.MAX_VALUE, 0.0, -0.0};
+        ColdBlock block = new ColdBlock(values.length);
+        for (int i = 0; i < values.length; i++) {
+            SensorData data = row(i, i, null);
+            block.add(data);
+            block.temperature[i] = values[i];
+            block.humidity[i] = -values[i];
+            block.light[i] = values[values.length - 1 - i];
+        }
+
+        assertRoundTrip(block);
+    }
+
+    @Test
+    void singlePointBlockRoundTrips() {
+        ColdBlock block = new ColdBlock(1);
+        SensorData data = row(ColdBlock.toEpochSecond(START), 7, 21.35);
+        data.setHumidity(null);
+        block.add(data);
+
+        ColdBlock decoded = assertRoundTrip(block);
+        SensorData target = new SensorData();
+        decoded.copyTo(0, "W601_001", target);
+        assertEquals(START, target.getDataTime());
+        assertEquals(7L, target.getId());
+        assertEquals(new BigDecimal("21.35"), target.getTemperature());
+        assertNull(target.getHumidity());
+        assertEquals(1, target.getFlame());
+    }
+
+    private static ColdBlock assertRoundTrip(ColdBlock block) {
+        BitWriter writer = new BitWriter();
+        block.encode(writer);
+        ColdBlock decoded = ColdBlock.decode(new BitReader(ByteBuffer.wrap(writer.buffer()), 0), block.count);
+
+        assertEquals(block.count, decoded.count);
+        for (int i = 0; i < block.count; i++) {
+            assertEquals(block.times[i], decoded.times[i], "time " + i);
+            assertEquals(block.ids[i], decoded.ids[i], "id " + i);
+            assertEquals(Double.doubleToLongBits(block.temperature[i]), Double.doubleToLongBits(decoded.temperature[i]), "temperature " + i);
+            assertEquals(Double.doubleToLongBits(block.humidity[i]), Double.doubleToLongBits(decoded.humidity[i]), "humidity " + i);
+            assertEquals(Double.doubleToLongBits(block.light[i]), Double.doubleToLongBits(decoded.light[i]), "light " + i);
+        }
+        assertArrayEquals(slice(block.flame, block.count), slice(decoded.flame, block.count));
+        assertArrayEquals(slice(block.rgbStatus, block.count), slice(decoded.rgbStatus, block.count));
+        return decoded;
+    }
+
+    private static byte[] slice(byte[] values, int count) {
+        byte[] result = new byte[count];
+        System.arraycopy(values, 0, result, 0, count);
+        return result;
+    }
+
+    private static SensorData row(long epochSecond, long id, Double temperature) {
+        SensorData data = new SensorData();
+        data.setId(id);
+        data.setDataTime(ColdBlock.toDateTime(epochSecond));
+        data.setTemperature(temperature == null ? null : BigDecimal.valueOf(temperature));
+        data.setHumidity(temperature == null ? null : BigDecimal.valueOf(temperature + 30));
+        data.setLight(new BigDecimal("456.78"));
+        data.setFlame(1);
+        data.setRgbStatus(null);
+        return data;
+    }
+}
@@ -0,0 +1,56 @@
+package com.smartoffice.device.archive;
+
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.config.MqttProperties;
+import com.smartoffice.device.mapper.SensorDataPartitionMapper;
+import com.smartoffice.device.storage.PartitionRetentionPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class SensorColdArchiveTest {
+
+    @TempDir
+    File dir;
+
+    private final SensorColdArchive archive = new SensorColdArchive();
+    private final IngestionProperties ingestionProperties = new IngestionProperties();
+    private final MqttProperties mqttProperties = new MqttProperties();
+    private final SensorDataPartitionMapper mapper = mock(SensorDataPartitionMapper.class);
+
+    @BeforeEach
+    void setUp() {
+        ingestionProperties.getColdArchive().setDir(dir.getAbsolutePath());
+        mqttProperties.getCluster().setEnabled(true);
+        ReflectionTestUtils.setField(archive, "ingestionProperties", ingestionProperties);
+        ReflectionTestUtils.setField(archive, "mqttProperties", mqttProperties);
+        ReflectionTestUtils.setField(archive, "sensorDataPartitionMapper", mapper);
+    }
+
+    @Test
+    void coldPolicyIsRejectedAtStartupInClusterMode() {
+        ingestionProperties.getPartition().setRetentionPolicy(PartitionRetentionPolicy.COLD);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, archive::init);
+        assertTrue(e.getMessage().contains("COLD"));
+    }
+
+    @Test
+    void clusterModeNeverWritesLocalSegments() {
+        archive.init();
+
+        assertThrows(IOException.class, () -> archive.archivePartition("p20240101"));
+        assertThrows(IllegalArgumentException.class, () -> archive.importTable("sensor_data_archive_p20240101"));
+        verifyNoInteractions(mapper);
+        assertTrue(archive.isEmpty());
+    }
+}
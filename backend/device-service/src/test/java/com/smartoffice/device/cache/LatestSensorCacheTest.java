@@ -0,0 +1,66 @@
+package com.smartoffice.device.cache;
+
+import com.smartoffice.common.dto.SensorDataDTO;
+import com.smartoffice.device.config.CacheProperties;
+import com.smartoffice.device.config.MqttProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class LatestSensorCacheTest {
+
+    private final LatestSensorCache cache = new LatestSensorCache();
+    private final CacheProperties cacheProperties = new CacheProperties();
+
+    @BeforeEach
+    void setUp() {
+        cacheProperties.getLatest().setMaxEntries(2);
+        ReflectionTestUtils.setField(cache, "cacheProperties", cacheProperties);
+        ReflectionTestUtils.setField(cache, "mqttProperties", new MqttProperties());
+    }
+
+    @Test
+    void rejectsNewDevicesOnceFull() {
+        cache.put(reading("A", 1.0));
+        cache.put(reading("B", 2.0));
+        cache.put(reading("C", 3.0));
+        cache.put(reading("A", 4.0));
+
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(2, stats.get("entries"));
+        assertEquals(3L, stats.get("puts"));
+        assertEquals(1L, stats.get("rejectedPuts"));
+        assertEquals(4.0, cache.getAllData(Arrays.asList("A")).get("A").getTemperature());
+    }
+
+    @Test
+    void bulkGetterReturnsCachedDtosInOrder() {
+        SensorDataDTO a = reading("A", 1.0);
+        cache.put(a);
+        cache.put(reading("B", 2.0));
+
+        Map<String, SensorDataDTO> data = cache.getAllData(Arrays.asList("B", "X", "A"));
+
+        assertEquals(Arrays.asList("B", "X", "A"), Arrays.asList(data.keySet().toArray()));
+        assertSame(a, data.get("A"));
+        assertNull(data.get("X"));
+        Map<String, Object> view = cache.getAll(Arrays.asList("A"));
+        assertNotNull(view.get("A"));
+        assertEquals(false, ((Map<?, ?>) view.get("A")).get("flame"));
+    }
+
+    private static SensorDataDTO reading(String deviceId, Double temperature) {
+        SensorDataDTO data = new SensorDataDTO();
+        data.setDeviceId(deviceId);
+        data.setTemperature(temperature);
+        return data;
+    }
+}
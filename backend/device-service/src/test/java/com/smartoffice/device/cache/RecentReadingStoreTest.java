@@ -0,0 +1,106 @@
+package com.smartoffice.device.cache;
+
+import com.smartoffice.device.config.CacheProperties;
+import com.smartoffice.device.ingest.SensorReading;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecentReadingStoreTest {
+
+    @TempDir
+    File dir;
+
+    private RecentReadingStore store;
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void devicesShareLargeMappedChunksAndSurviveRestart() {
+        // 每台设备约518MB，每个1GB数据块放2台，5台设备分布在3个数据块
+        CacheProperties properties = new CacheProperties();
+        properties.getRecent().setDir(dir.getAbsolutePath());
+        properties.getRecent().setWindowHours(6000);
+        properties.getRecent().setResolutionSeconds(1);
+        properties.getRecent().setMaxDevices(5);
+        store = open(properties);
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < 5; i++) {
+            store.append(reading("D" + i, 20 + i), now - i * 1000L);
+        }
+        store.append(reading("D5", 30), now);
+
+        Map<String, Object> stats = store.getStats();
+        assertEquals(5, stats.get("devices"));
+        assertEquals(3, stats.get("mappedChunks"));
+        assertEquals(1L, stats.get("rejected"));
+        assertReadings(now);
+
+        store.close();
+        store = open(properties);
+        assertEquals(5, store.getStats().get("devices"));
+        assertReadings(now);
+        assertTrue(store.range("D5", now - 10_000L, now + 1).isEmpty());
+    }
+
+    @Test
+    void reclaimsDevicesWithoutRecentDataOnLoad() {
+        CacheProperties properties = new CacheProperties();
+        properties.getRecent().setDir(dir.getAbsolutePath());
+        properties.getRecent().setWindowHours(1);
+        properties.getRecent().setMaxDevices(2);
+        store = open(properties);
+        long now = System.currentTimeMillis();
+        store.append(reading("active", 21), now);
+        // 最后一条读数已超出一小时的保留时长（如停止上报的设备）
+        store.append(reading("gone", 22), now - 2 * 3_600_000L);
+        store.close();
+
+        store = open(properties);
+        Map<String, Object> stats = store.getStats();
+        assertEquals(1, stats.get("devices"));
+        assertEquals(1, stats.get("reclaimedOnLoad"));
+        assertTrue(store.range("gone", 0, Long.MAX_VALUE).isEmpty());
+
+        // 空出的区域可给新设备使用
+        store.append(reading("new", 23), now);
+        assertEquals(2, store.getStats().get("devices"));
+        assertEquals(0L, store.getStats().get("rejected"));
+    }
+
+    private void assertReadings(long now) {
+        for (int i = 0; i < 5; i++) {
+            List<Map<String, Object>> readings = store.range("D" + i, now - 10_000L, now + 1);
+            assertEquals(1, readings.size());
+            assertEquals(now - i * 1000L, readings.get(0).get("timestamp"));
+            assertEquals(20.0 + i, readings.get(0).get("temperature"));
+        }
+    }
+
+    private static RecentReadingStore open(CacheProperties properties) {
+        RecentReadingStore store = new RecentReadingStore();
+        ReflectionTestUtils.setField(store, "cacheProperties", properties);
+        store.init();
+        assertTrue(store.isAvailable());
+        return store;
+    }
+
+    private static SensorReading reading(String deviceId, double temperature) {
+        SensorReading reading = new SensorReading();
+        reading.setDeviceId(deviceId);
+        reading.setTemperature(temperature);
+        return reading;
+    }
+}
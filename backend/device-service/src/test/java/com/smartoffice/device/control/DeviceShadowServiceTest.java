@@ -0,0 +1,37 @@
+package com.smartoffice.device.control;
+
+import com.smartoffice.device.registry.DeviceEntry;
+import com.smartoffice.device.registry.DeviceRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DeviceShadowServiceTest {
+
+    private final DeviceShadowService service = new DeviceShadowService();
+    private final DeviceRegistry deviceRegistry = mock(DeviceRegistry.class);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "deviceRegistry", deviceRegistry);
+    }
+
+    @Test
+    void shadowIsCreatedOnlyForRegisteredDevices() {
+        when(deviceRegistry.get("W601_001")).thenReturn(mock(DeviceEntry.class));
+
+        DeviceShadow shadow = service.getOrCreate("W601_001");
+        assertNotNull(shadow);
+        assertSame(shadow, service.getOrCreate("W601_001"));
+
+        assertNull(service.getOrCreate("rogue-id"));
+        assertNull(service.get("rogue-id"));
+        assertNull(service.getOrCreate(null));
+    }
+}
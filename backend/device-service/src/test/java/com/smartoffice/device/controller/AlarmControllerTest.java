@@ -0,0 +1,83 @@
+package com.smartoffice.device.controller;
+
+import com.smartoffice.common.constants.SystemConstants;
+import com.smartoffice.common.entity.AlarmLog;
+import com.smartoffice.device.mapper.AlarmLogMapper;
+import com.smartoffice.device.service.AlarmStatisticsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AlarmControllerTest {
+
+    private final AlarmController controller = new AlarmController();
+    private final AlarmLogMapper mapper = mock(AlarmLogMapper.class);
+    private final AlarmStatisticsService statistics = mock(AlarmStatisticsService.class);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(controller, "alarmLogMapper", mapper);
+        ReflectionTestUtils.setField(controller, "alarmStatisticsService", statistics);
+    }
+
+    @Test
+    void countsStatusChangeOnlyWhenRowWasUpdated() {
+        when(mapper.selectById(1L)).thenReturn(alarm(SystemConstants.ALARM_STATUS_UNHANDLED));
+        when(mapper.updateStatusIfUnchanged(eq(1L), eq(SystemConstants.ALARM_STATUS_UNHANDLED),
+                eq(SystemConstants.ALARM_STATUS_HANDLED), eq("ok"), any(), anyLong())).thenReturn(1);
+
+        assertEquals(200, controller.handleAlarm(1L, params(SystemConstants.ALARM_STATUS_HANDLED)).getCode());
+
+        verify(statistics).onStatusChanged(SystemConstants.ALARM_STATUS_UNHANDLED, SystemConstants.ALARM_STATUS_HANDLED);
+    }
+
+    @Test
+    void concurrentChangeIsRereadInsteadOfDoubleCounted() {
+        // 第一次读到UNHANDLED，但另一请求已先改为HANDLED，条件更新不生效
+        when(mapper.selectById(1L)).thenReturn(alarm(SystemConstants.ALARM_STATUS_UNHANDLED),
+                alarm(SystemConstants.ALARM_STATUS_HANDLED));
+        when(mapper.updateStatusIfUnchanged(eq(1L), eq(SystemConstants.ALARM_STATUS_UNHANDLED), anyString(), any(), any(), anyLong()))
+                .thenReturn(0);
+        when(mapper.updateStatusIfUnchanged(eq(1L), eq(SystemConstants.ALARM_STATUS_HANDLED), anyString(), any(), any(), anyLong()))
+                .thenReturn(1);
+
+        assertEquals(200, controller.updateAlarmStatus(1L, params(SystemConstants.ALARM_STATUS_IGNORED)).getCode());
+
+        verify(statistics, never()).onStatusChanged(eq(SystemConstants.ALARM_STATUS_UNHANDLED), anyString());
+        verify(statistics, times(1)).onStatusChanged(SystemConstants.ALARM_STATUS_HANDLED, SystemConstants.ALARM_STATUS_IGNORED);
+    }
+
+    @Test
+    void missingAlarmIsReported() {
+        assertEquals("告警记录不存在", controller.handleAlarm(2L, params(SystemConstants.ALARM_STATUS_HANDLED)).getMessage());
+        verify(statistics, never()).onStatusChanged(any(), any());
+    }
+
+    private static AlarmLog alarm(String status) {
+        AlarmLog alarm = new AlarmLog();
+        alarm.setId(1L);
+        alarm.setStatus(status);
+        return alarm;
+    }
+
+    private static Map<String, Object> params(String status) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("status", status);
+        params.put("handleRemark", "ok");
+        return params;
+    }
+}
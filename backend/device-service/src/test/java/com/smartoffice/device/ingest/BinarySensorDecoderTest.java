@@ -0,0 +1,127 @@
+package com.smartoffice.device.ingest;
+
+import com.smartoffice.common.codec.BinaryPayloadCodec;
+import com.smartoffice.common.dto.AlarmMessageDTO;
+import com.smartoffice.common.dto.SensorDataDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinarySensorDecoderTest {
+
+    private final SensorBatch batch = new SensorBatch();
+
+    @Test
+    void decodesSingleReadingLikeCodec() {
+        SensorDataDTO data = reading("W601_001", 456.78, -3.25, 58.2, 1704074400000L);
+        data.setFlame(true);
+        data.setRgbStatus(false);
+        data.setBuzzerStatus(true);
+
+        BinarySensorDecoder.decode(BinaryPayloadCodec.encodeSensorData(data), batch);
+
+        assertTrue(batch.isSingle());
+        assertEquals(data, batch.getSingle().toDTO());
+    }
+
+    @Test
+    void decodesBatchLikeCodec() {
+        List<SensorDataDTO> readings = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            SensorDataDTO data = reading("W601_" + i, i % 2 == 0 ? i * 10.0 : null, (2000 + i) / 100.0, null,
+                    i % 3 == 0 ? null : 1704074400000L + i);
+            data.setFlame(i % 5 == 0);
+            readings.add(data);
+        }
+        byte[] payload = BinaryPayloadCodec.encodeSensorBatch(readings);
+
+        BinarySensorDecoder.decode(payload, batch);
+
+        assertFalse(batch.isSingle());
+        assertEquals(readings.size(), batch.size());
+        List<SensorDataDTO> decoded = BinaryPayloadCodec.decodeSensorData(payload);
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(readings.get(i), batch.get(i).toDTO());
+            assertEquals(decoded.get(i), batch.get(i).toDTO());
+        }
+    }
+
+    @Test
+    void pooledReadingsDoNotLeakFieldsBetweenFrames() {
+        SensorDataDTO full = reading("A", 1.0, 2.0, 3.0, 4L);
+        full.setRgbStatus(true);
+        BinarySensorDecoder.decode(BinaryPayloadCodec.encodeSensorBatch(Arrays.asList(full, full)), batch);
+
+        BinarySensorDecoder.decode(BinaryPayloadCodec.encodeSensorBatch(Arrays.asList(reading("B", null, null, null, null))), batch);
+
+        assertEquals(1, batch.size());
+        SensorReading reading = batch.get(0);
+        assertEquals("B", reading.getDeviceId());
+        assertFalse(reading.hasLight());
+        assertFalse(reading.hasTemperature());
+        assertFalse(reading.hasRgbStatus());
+        assertFalse(reading.hasTimestamp());
+
+        BinarySensorDecoder.decode(BinaryPayloadCodec.encodeSensorData(reading("C", null, 21.0, null, null)), batch);
+        assertTrue(batch.isSingle());
+        assertFalse(batch.getSingle().hasLight());
+        assertNull(batch.getGatewayId());
+    }
+
+    @Test
+    void rejectsEveryTruncation() {
+        byte[] single = BinaryPayloadCodec.encodeSensorData(reading("W601_001", 1.5, 2.5, 3.5, 1704074400000L));
+        byte[] frames = BinaryPayloadCodec.encodeSensorBatch(Arrays.asList(
+                reading("W601_001", 1.5, null, null, 1L), reading("W601_002", null, 2.5, null, null)));
+
+        for (byte[] payload : Arrays.asList(single, frames)) {
+            for (int length = 0; length < payload.length; length++) {
+                byte[] truncated = Arrays.copyOf(payload, length);
+                assertThrows(IllegalArgumentException.class, () -> BinarySensorDecoder.decode(truncated, batch));
+            }
+        }
+    }
+
+    @Test
+    void rejectsMalformedFrames() {
+        byte[] payload = BinaryPayloadCodec.encodeSensorData(reading("W601_001", 1.0, null, null, null));
+
+        byte[] padded = Arrays.copyOf(payload, payload.length + 2);
+        assertThrows(IllegalArgumentException.class, () -> BinarySensorDecoder.decode(padded, batch));
+
+        byte[] newerVersion = payload.clone();
+        newerVersion[1] = 2;
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> BinarySensorDecoder.decode(newerVersion, batch));
+        assertTrue(e.getMessage().contains("版本"));
+
+        byte[] notBinary = payload.clone();
+        notBinary[0] = '{';
+        assertThrows(IllegalArgumentException.class, () -> BinarySensorDecoder.decode(notBinary, batch));
+
+        byte[] alarm = BinaryPayloadCodec.encodeAlarm(new AlarmMessageDTO("W601_001", "FIRE", "CRITICAL", "火焰"));
+        assertThrows(IllegalArgumentException.class, () -> BinarySensorDecoder.decode(alarm, batch));
+
+        byte[] overstated = BinaryPayloadCodec.encodeSensorBatch(Arrays.asList(reading("A", null, null, null, null)));
+        overstated[4] = 3;
+        assertThrows(IllegalArgumentException.class, () -> BinarySensorDecoder.decode(overstated, batch));
+    }
+
+    private static SensorDataDTO reading(String deviceId, Double light, Double temperature, Double humidity, Long timestamp) {
+        SensorDataDTO data = new SensorDataDTO();
+        data.setDeviceId(deviceId);
+        data.setLight(light);
+        data.setTemperature(temperature);
+        data.setHumidity(humidity);
+        data.setTimestamp(timestamp);
+        return data;
+    }
+}
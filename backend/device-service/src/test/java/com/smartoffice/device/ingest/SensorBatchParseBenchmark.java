@@ -0,0 +1,79 @@
+package com.smartoffice.device.ingest;
+
+import com.alibaba.fastjson2.JSON;
+import com.smartoffice.common.dto.SensorDataDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 传感器数据JSON解析基准（附带gc分析，gc.alloc.rate.norm为每条消息分配的字节数）
+ * <p>
+ * 在IDE中运行main方法，或 {@code mvn test-compile} 后以测试classpath执行本类。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class SensorBatchParseBenchmark {
+
+    private final byte[] single = ("{\"deviceId\":\"W601_001\",\"light\":456.78,\"temperature\":26.3,"
+            + "\"humidity\":58.2,\"flame\":false,\"rgbStatus\":true,\"buzzerStatus\":false,"
+            + "\"timestamp\":1704074400000}").getBytes(StandardCharsets.UTF_8);
+
+    private final byte[] envelope = ("{\"gatewayId\":\"GW_6F\",\"timestamp\":1704074400000,\"readings\":["
+            + "{\"deviceId\":\"W601_001\",\"light\":456.78,\"temperature\":26.3,\"humidity\":58.2,\"flame\":false},"
+            + "{\"deviceId\":\"W601_002\",\"light\":301.5,\"temperature\":25.1,\"humidity\":55.0,\"flame\":false},"
+            + "{\"deviceId\":\"W601_003\",\"light\":512.0,\"temperature\":27.9,\"humidity\":61.4,\"flame\":true}]}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final SensorBatch batch = new SensorBatch();
+
+    /**
+     * 当前实现：单条上报
+     */
+    @Benchmark
+    public double parseSingle() {
+        batch.parse(single);
+        return batch.getSingle().getTemperature();
+    }
+
+    /**
+     * 当前实现：3条读数的网关信封
+     */
+    @Benchmark
+    public int parseEnvelope() {
+        batch.parse(envelope);
+        return batch.size();
+    }
+
+    /**
+     * 基线（改造前）：负载先转String，再由fastjson解析为DTO
+     */
+    @Benchmark
+    public Double baselineString() {
+        SensorDataDTO dto = JSON.parseObject(new String(single, StandardCharsets.UTF_8), SensorDataDTO.class);
+        return dto.getTemperature();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SensorBatchParseBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
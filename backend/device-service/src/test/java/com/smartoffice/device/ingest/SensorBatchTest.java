@@ -0,0 +1,116 @@
+package com.smartoffice.device.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorBatchTest {
+
+    private final SensorBatch batch = new SensorBatch();
+
+    @Test
+    void parsesSingleReading() {
+        batch.parse(bytes("{\"deviceId\":\"W601_001\",\"light\":456.78,\"temperature\":26.3,\"humidity\":58.2,"
+                + "\"flame\":false,\"rgbStatus\":true,\"buzzerStatus\":false,\"timestamp\":1704074400000}"));
+
+        assertTrue(batch.isSingle());
+        SensorReading reading = batch.getSingle();
+        assertEquals("W601_001", reading.getDeviceId());
+        assertEquals(456.78, reading.getLight());
+        assertEquals(26.3, reading.getTemperature());
+        assertEquals(58.2, reading.getHumidity());
+        assertFalse(reading.isFlame());
+        assertTrue(reading.isRgbStatus());
+        assertFalse(reading.isBuzzerStatus());
+        assertEquals(1704074400000L, reading.getTimestamp());
+    }
+
+    @Test
+    void missingAndNullFieldsAreAbsent() {
+        batch.parse(bytes("{\"deviceId\":\"W601_001\",\"temperature\":null,\"flame\":true}"));
+
+        SensorReading reading = batch.getSingle();
+        assertFalse(reading.hasLight());
+        assertFalse(reading.hasTemperature());
+        assertFalse(reading.hasHumidity());
+        assertTrue(reading.hasFlame());
+        assertFalse(reading.hasRgbStatus());
+        assertFalse(reading.hasTimestamp());
+    }
+
+    @Test
+    void acceptsEscapesQuotedNumbersAndNumericBooleans() {
+        batch.parse(bytes(" {\"deviceId\":\"W601\\u005f001\",\"temperature\":\"26.5\",\"light\":\"1e2\","
+                + "\"flame\":1,\"rgbStatus\":0,\"timestamp\":\"1704074400000\",\"note\":\"a\\\"b\"} "));
+
+        SensorReading reading = batch.getSingle();
+        assertEquals("W601_001", reading.getDeviceId());
+        assertEquals(26.5, reading.getTemperature());
+        assertEquals(100.0, reading.getLight());
+        assertTrue(reading.isFlame());
+        assertFalse(reading.isRgbStatus());
+        assertEquals(1704074400000L, reading.getTimestamp());
+    }
+
+    @Test
+    void ignoresUnknownNestedFields() {
+        batch.parse(bytes("{\"meta\":{\"fw\":\"1.2\",\"tags\":[1,2,{\"x\":null}]},\"deviceId\":\"W601_001\",\"humidity\":40}"));
+
+        assertEquals("W601_001", batch.getSingle().getDeviceId());
+        assertEquals(40.0, batch.getSingle().getHumidity());
+    }
+
+    @Test
+    void parsesArrayOfReadings() {
+        batch.parse(bytes("\n[{\"deviceId\":\"A\",\"temperature\":20},null,{\"deviceId\":\"B\",\"temperature\":21.5}]"));
+
+        assertFalse(batch.isSingle());
+        assertEquals(2, batch.size());
+        assertEquals("A", batch.get(0).getDeviceId());
+        assertEquals(21.5, batch.get(1).getTemperature());
+    }
+
+    @Test
+    void envelopeFillsDeviceIdAndTimestampDefaults() {
+        batch.parse(bytes("{\"gatewayId\":\"GW\",\"deviceId\":\"W601_001\",\"timestamp\":1000,\"readings\":["
+                + "{\"temperature\":20},{\"deviceId\":\"W601_002\",\"timestamp\":2000,\"temperature\":21}]}"));
+
+        assertFalse(batch.isSingle());
+        assertEquals("GW", batch.getGatewayId());
+        assertEquals(2, batch.size());
+        assertEquals("W601_001", batch.get(0).getDeviceId());
+        assertEquals(1000L, batch.get(0).getTimestamp());
+        assertEquals("W601_002", batch.get(1).getDeviceId());
+        assertEquals(2000L, batch.get(1).getTimestamp());
+    }
+
+    @Test
+    void reusesPooledReadingsAcrossMessages() {
+        batch.parse(bytes("[{\"deviceId\":\"A\",\"light\":1},{\"deviceId\":\"B\",\"light\":2}]"));
+        SensorReading first = batch.get(0);
+        batch.parse(bytes("[{\"deviceId\":\"C\"}]"));
+
+        assertEquals(1, batch.size());
+        assertEquals(first, batch.get(0));
+        assertEquals("C", first.getDeviceId());
+        assertFalse(first.hasLight());
+        assertNull(batch.getGatewayId());
+    }
+
+    @Test
+    void rejectsMalformedPayloads() {
+        assertThrows(RuntimeException.class, () -> batch.parse(bytes("{\"deviceId\":\"A\",")));
+        assertThrows(RuntimeException.class, () -> batch.parse(bytes("{\"temperature\":\"hot\"}")));
+        assertThrows(RuntimeException.class, () -> batch.parse(bytes("null")));
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
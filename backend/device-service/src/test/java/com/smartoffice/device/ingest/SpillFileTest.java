@@ -0,0 +1,139 @@
+package com.smartoffice.device.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillFileTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void replaysInOrderAcrossRestart() throws IOException {
+        SpillFile spill = new SpillFile(dir.getAbsolutePath(), 1024 * 1024);
+        assertTrue(spill.append(message("a", "1")));
+        assertTrue(spill.append(message("b", "22")));
+        assertEquals("a", spill.poll().getTopic());
+        spill.close();
+
+        spill = new SpillFile(dir.getAbsolutePath(), 1024 * 1024);
+        InboundMessage next = spill.poll();
+        assertEquals("b", next.getTopic());
+        assertArrayEquals("22".getBytes(StandardCharsets.UTF_8), next.getPayload());
+        assertNull(spill.poll());
+        assertTrue(spill.isEmpty());
+        spill.close();
+    }
+
+    @Test
+    void truncatesTornRecordOnOpen() throws IOException {
+        SpillFile spill = new SpillFile(dir.getAbsolutePath(), 1024 * 1024);
+        spill.append(message("a", "payload-a"));
+        spill.append(message("b", "payload-b"));
+        long complete = spill.fileSize();
+        spill.close();
+        // 模拟追加到一半时崩溃：只写了记录头和一部分主题
+        try (RandomAccessFile raf = new RandomAccessFile(new File(dir, SpillFile.FILE_NAME), "rw")) {
+            raf.seek(complete);
+            raf.writeLong(System.currentTimeMillis());
+            raf.writeInt(100);
+            raf.write(new byte[3]);
+        }
+
+        spill = new SpillFile(dir.getAbsolutePath(), 1024 * 1024);
+        assertEquals(complete, spill.fileSize());
+        assertEquals("a", spill.poll().getTopic());
+        assertEquals("b", spill.poll().getTopic());
+        assertNull(spill.poll());
+        assertTrue(spill.append(message("c", "payload-c")));
+        assertEquals("c", spill.poll().getTopic());
+        spill.close();
+    }
+
+    @Test
+    void quarantinesCorruptRecordInsteadOfAllocatingIt() throws IOException {
+        SpillFile spill = new SpillFile(dir.getAbsolutePath(), 1024 * 1024);
+        spill.append(message("a", "payload-a"));
+        spill.append(message("b", "payload-b"));
+        // 运行中第一条记录的负载长度被改坏
+        try (RandomAccessFile raf = new RandomAccessFile(new File(dir, SpillFile.FILE_NAME), "rw")) {
+            raf.seek(16 + 8 + 4 + 1);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+
+        assertNull(spill.poll());
+        assertTrue(spill.isEmpty());
+        assertEquals(1, spill.getQuarantinedCount());
+        File[] quarantined = dir.listFiles((d, name) -> name.startsWith(SpillFile.FILE_NAME + ".corrupt-"));
+        assertEquals(1, quarantined.length);
+
+        assertTrue(spill.append(message("c", "payload-c")));
+        assertEquals("c", spill.poll().getTopic());
+        spill.close();
+    }
+
+    @Test
+    void quarantinesUnknownFormatOnOpen() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(new File(dir, SpillFile.FILE_NAME), "rw")) {
+            raf.writeLong(8);
+            raf.writeInt(5);
+        }
+        SpillFile spill = new SpillFile(dir.getAbsolutePath(), 1024 * 1024);
+        assertTrue(spill.isEmpty());
+        assertEquals(1, spill.getQuarantinedCount());
+        spill.close();
+    }
+
+    @Test
+    void capsUnreadBytesAndCompactsReplayedPrefix() throws IOException {
+        byte[] payload = new byte[1024 * 1024 - 20];
+        long maxBytes = 4L * 1024 * 1024;
+        SpillFile spill = new SpillFile(dir.getAbsolutePath(), maxBytes);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(spill.append(new InboundMessage("t" + i, payload, System.nanoTime())));
+        }
+        assertFalse(spill.append(new InboundMessage("t4", payload, System.nanoTime())));
+
+        // 回放腾出空间后可以继续追加，容量按未回放数据计算
+        assertEquals("t0", spill.poll().getTopic());
+        assertTrue(spill.append(new InboundMessage("t4", payload, System.nanoTime())));
+        assertEquals("t1", spill.poll().getTopic());
+        assertEquals("t2", spill.poll().getTopic());
+        assertEquals(1, spill.getCompactedCount());
+        assertEquals(spill.size(), spill.fileSize() - 16);
+        spill.close();
+
+        spill = new SpillFile(dir.getAbsolutePath(), maxBytes);
+        assertEquals("t3", spill.poll().getTopic());
+        assertEquals("t4", spill.poll().getTopic());
+        assertTrue(spill.isEmpty());
+        spill.close();
+    }
+
+    @Test
+    void keepsOriginalReceiveTime() throws IOException {
+        SpillFile spill = new SpillFile(dir.getAbsolutePath(), 1024 * 1024);
+        long receivedNanos = System.nanoTime() - TimeUnit.SECONDS.toNanos(5);
+        spill.append(new InboundMessage("a", new byte[1], receivedNanos));
+
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - spill.poll().getReceivedNanos());
+        assertTrue(waitedMillis >= 4900 && waitedMillis < 10000, "waited " + waitedMillis);
+        spill.close();
+    }
+
+    private static InboundMessage message(String topic, String payload) {
+        return new InboundMessage(topic, payload.getBytes(StandardCharsets.UTF_8), System.nanoTime());
+    }
+}
@@ -0,0 +1,351 @@
+package com.smartoffice.device.mqtt;
+
+import com.smartoffice.common.constants.MqttTopicConstants;
+import com.smartoffice.common.dto.AlarmMessageDTO;
+import com.smartoffice.device.config.ControlProperties;
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.config.MqttConfig;
+import com.smartoffice.device.config.MqttProperties;
+import com.smartoffice.device.ingest.IngestionPipeline;
+import com.smartoffice.device.ingest.SensorReading;
+import com.smartoffice.device.service.DeviceDataService;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 集群接入（共享订阅）测试
+ * <p>
+ * 使用嵌入式ActiveMQ Artemis作为MQTT Broker（共享订阅在组内轮询投递），每个实例按生产代码组装 {@link MqttConfig} 客户端、{@link MqttMessageCallback}、
+ * {@link IngestionPipeline} 和 {@link MqttMessageDispatcher}，只把 {@link DeviceDataService} 换成记录调用的模拟对象。
+ * 需要JDK 11+（见pom.xml中的embedded-broker profile）。
+ */
+class SharedSubscriptionClusterTest {
+
+    private static final int DEVICES = 12;
+
+    private static EmbeddedActiveMQ broker;
+
+    private static String brokerUrl;
+
+    private static final AtomicInteger GROUPS = new AtomicInteger();
+
+    @BeforeAll
+    static void startBroker() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        ConfigurationImpl configuration = new ConfigurationImpl();
+        configuration.setPersistenceEnabled(false);
+        configuration.setSecurityEnabled(false);
+        configuration.addAcceptorConfiguration("mqtt", "tcp://127.0.0.1:" + port + "?protocols=MQTT");
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(configuration);
+        broker.start();
+        brokerUrl = "tcp://127.0.0.1:" + port;
+    }
+
+    @AfterAll
+    static void stopBroker() throws Exception {
+        if (broker != null) {
+            broker.stop();
+        }
+    }
+
+    @Test
+    void clusterModeProcessesEveryMessageExactlyOnce() throws Exception {
+        for (int instanceCount = 1; instanceCount <= 3; instanceCount++) {
+            List<Instance> instances = startInstances(instanceCount, true, 1, 0);
+            try {
+                int rounds = 20;
+                publish(rounds, 1, true);
+
+                int expectedReadings = DEVICES * rounds;
+                awaitCount(() -> sum(instances, true), expectedReadings);
+                awaitCount(() -> sum(instances, false), DEVICES);
+                // 等待可能的重复投递到达
+                Thread.sleep(500);
+
+                List<String> readings = collect(instances, true);
+                List<String> alarms = collect(instances, false);
+                assertEquals(expectedReadings, readings.size(), "实例数 " + instanceCount);
+                assertEquals(expectedReadings, new HashSet<>(readings).size(), "重复处理读数");
+                assertEquals(DEVICES, alarms.size(), "实例数 " + instanceCount);
+                assertEquals(DEVICES, new HashSet<>(alarms).size(), "重复处理告警");
+            } finally {
+                close(instances);
+            }
+        }
+    }
+
+    @Test
+    void withoutClusterModeEveryInstanceProcessesEveryMessage() throws Exception {
+        List<Instance> instances = startInstances(2, false, 1, 0);
+        try {
+            int rounds = 5;
+            publish(rounds, 1, true);
+
+            awaitCount(() -> sum(instances, true), 2 * DEVICES * rounds);
+            awaitCount(() -> sum(instances, false), 2 * DEVICES);
+            for (Instance instance : instances) {
+                assertEquals(DEVICES * rounds, instance.readings.size());
+                assertEquals(DEVICES, instance.alarms.size());
+            }
+        } finally {
+            close(instances);
+        }
+    }
+
+    /**
+     * 每条读数模拟4ms写库开销、每个实例一个处理通道，比较1到3个实例处理同一批消息的耗时。
+     * <p>
+     * 测试Broker在组内轮询投递，各实例分到的消息数相同；生产环境的分配由EMQX的 {@code hash_clientid}
+     * 策略按设备决定（见docker-compose.yml），设备足够多时同样接近均分。
+     */
+    @Test
+    void throughputScalesWithInstances() throws Exception {
+        int rounds = 50;
+        int total = DEVICES * rounds;
+        long[] elapsed = new long[4];
+        for (int instanceCount = 1; instanceCount <= 3; instanceCount++) {
+            List<Instance> instances = startInstances(instanceCount, true, 1, 4);
+            List<MqttClient> devices = connectDevices();
+            try {
+                long start = System.nanoTime();
+                publish(devices, rounds, 1, false);
+                awaitCount(() -> sum(instances, true), total);
+                elapsed[instanceCount] = System.nanoTime() - start;
+
+                List<Integer> counts = perInstance(instances);
+                System.out.printf("instances=%d elapsed=%dms readings/s=%.0f perInstance=%s%n", instanceCount,
+                        TimeUnit.NANOSECONDS.toMillis(elapsed[instanceCount]),
+                        total * 1e9 / elapsed[instanceCount], counts);
+                assertEquals(total, collect(instances, true).size());
+                for (int count : counts) {
+                    assertEquals(total / instanceCount, count, total / instanceCount / 5, "实例分到的消息不均");
+                }
+                // 线性扩展：N个实例的耗时接近单实例的1/N
+                assertTrue(elapsed[instanceCount] < elapsed[1] / instanceCount * 1.4,
+                        instanceCount + "个实例未线性提升吞吐");
+            } finally {
+                disconnect(devices);
+                close(instances);
+            }
+        }
+    }
+
+    private static List<Instance> startInstances(int count, boolean clustered, int qos, long costMillis) throws Exception {
+        String group = "device-service-" + GROUPS.incrementAndGet();
+        List<Instance> instances = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            instances.add(new Instance(group + "-" + i, group, clustered, qos, costMillis));
+        }
+        return instances;
+    }
+
+    /**
+     * 每台设备用自己的客户端按轮次上报读数（timestamp为轮次），最后每台设备上报一条告警
+     */
+    private static void publish(int rounds, int qos, boolean withAlarms) throws Exception {
+        List<MqttClient> devices = connectDevices();
+        try {
+            publish(devices, rounds, qos, withAlarms);
+        } finally {
+            disconnect(devices);
+        }
+    }
+
+    private static void publish(List<MqttClient> devices, int rounds, int qos, boolean withAlarms) throws Exception {
+        for (int round = 0; round < rounds; round++) {
+            for (int d = 0; d < DEVICES; d++) {
+                String json = "{\"deviceId\":\"W601_" + d + "\",\"temperature\":25.5,\"timestamp\":" + round + "}";
+                devices.get(d).publish(MqttTopicConstants.TOPIC_SENSOR_DATA,
+                        json.getBytes(StandardCharsets.UTF_8), qos, false);
+            }
+        }
+        if (withAlarms) {
+            for (int d = 0; d < DEVICES; d++) {
+                String json = "{\"deviceId\":\"W601_" + d + "\",\"alarmType\":\"FIRE\",\"level\":\"CRITICAL\","
+                        + "\"message\":\"alarm-" + d + "\"}";
+                devices.get(d).publish(MqttTopicConstants.TOPIC_ALARM,
+                        json.getBytes(StandardCharsets.UTF_8), qos, false);
+            }
+        }
+    }
+
+    private static List<MqttClient> connectDevices() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(DEVICES);
+        try {
+            List<Future<MqttClient>> futures = new ArrayList<>();
+            for (int d = 0; d < DEVICES; d++) {
+                String clientId = "W601_" + d + "-" + GROUPS.get();
+                futures.add(executor.submit(() -> {
+                    MqttClient client = new MqttClient(brokerUrl, clientId, new MemoryPersistence());
+                    client.connect();
+                    return client;
+                }));
+            }
+            List<MqttClient> devices = new ArrayList<>();
+            for (Future<MqttClient> future : futures) {
+                devices.add(future.get());
+            }
+            return devices;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void disconnect(List<MqttClient> devices) throws Exception {
+        for (MqttClient client : devices) {
+            if (client.isConnected()) {
+                client.disconnect();
+            }
+            client.close();
+        }
+    }
+
+    private static void awaitCount(IntSupplier count, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (count.getAsInt() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(count.getAsInt() >= expected, "超时: " + count.getAsInt() + "/" + expected);
+    }
+
+    private static int sum(List<Instance> instances, boolean readings) {
+        int sum = 0;
+        for (Instance instance : instances) {
+            sum += readings ? instance.readings.size() : instance.alarms.size();
+        }
+        return sum;
+    }
+
+    private static List<String> collect(List<Instance> instances, boolean readings) {
+        List<String> keys = new ArrayList<>();
+        for (Instance instance : instances) {
+            keys.addAll(readings ? instance.readings : instance.alarms);
+        }
+        return keys;
+    }
+
+    private static List<Integer> perInstance(List<Instance> instances) {
+        List<Integer> counts = new ArrayList<>();
+        for (Instance instance : instances) {
+            counts.add(instance.readings.size());
+        }
+        return counts;
+    }
+
+    private static void close(List<Instance> instances) {
+        for (Instance instance : instances) {
+            instance.close();
+        }
+    }
+
+    /**
+     * 一个device-service实例的接入链路
+     */
+    private static final class Instance {
+
+        private final Queue<String> readings = new ConcurrentLinkedQueue<>();
+
+        private final Queue<String> alarms = new ConcurrentLinkedQueue<>();
+
+        private final IngestionPipeline pipeline = new IngestionPipeline();
+
+        private final MqttClient client;
+
+        Instance(String clientId, String group, boolean clustered, int qos, long costMillis) throws IOException {
+            DeviceDataService deviceDataService = mock(DeviceDataService.class);
+            doAnswer(invocation -> {
+                SensorReading reading = invocation.getArgument(0);
+                readings.add(reading.getDeviceId() + "@" + reading.getTimestamp());
+                if (costMillis > 0) {
+                    Thread.sleep(costMillis);
+                }
+                return null;
+            }).when(deviceDataService).processSensorData(any(SensorReading.class));
+            doAnswer(invocation -> {
+                AlarmMessageDTO alarm = invocation.getArgument(0);
+                alarms.add(alarm.getDeviceId() + "@" + alarm.getMessage());
+                return null;
+            }).when(deviceDataService).processAlarm(any(AlarmMessageDTO.class));
+
+            IngestionProperties ingestionProperties = new IngestionProperties();
+            ingestionProperties.getPipeline().setWorkers(1);
+            ingestionProperties.getPipeline().setSpillDir(Files.createTempDirectory("spill").toString());
+
+            MqttMessageDispatcher dispatcher = new MqttMessageDispatcher();
+            ReflectionTestUtils.setField(dispatcher, "deviceDataService", deviceDataService);
+            ReflectionTestUtils.setField(dispatcher, "ingestionPipeline", pipeline);
+            ReflectionTestUtils.setField(dispatcher, "ingestionProperties", ingestionProperties);
+            ReflectionTestUtils.setField(pipeline, "ingestionProperties", ingestionProperties);
+            ReflectionTestUtils.setField(pipeline, "messageDispatcher", dispatcher);
+            pipeline.start();
+
+            MqttMessageCallback callback = new MqttMessageCallback();
+            ReflectionTestUtils.setField(callback, "ingestionPipeline", pipeline);
+            ApplicationContext applicationContext = mock(ApplicationContext.class);
+            when(applicationContext.getBean(MqttMessageCallback.class)).thenReturn(callback);
+
+            MqttProperties mqttProperties = new MqttProperties();
+            mqttProperties.setBrokerUrl(brokerUrl);
+            mqttProperties.setClientId(clientId);
+            MqttProperties.Topics topics = new MqttProperties.Topics();
+            topics.setSensorData(MqttTopicConstants.TOPIC_SENSOR_DATA);
+            topics.setAlarm(MqttTopicConstants.TOPIC_ALARM);
+            topics.setDeviceStatus(MqttTopicConstants.TOPIC_DEVICE_STATUS);
+            mqttProperties.setTopics(topics);
+            mqttProperties.setQos(qos);
+            mqttProperties.getCluster().setEnabled(clustered);
+            mqttProperties.getCluster().setGroup(group);
+
+            MqttConfig mqttConfig = new MqttConfig();
+            ReflectionTestUtils.setField(mqttConfig, "mqttProperties", mqttProperties);
+            ReflectionTestUtils.setField(mqttConfig, "controlProperties", new ControlProperties());
+            ReflectionTestUtils.setField(mqttConfig, "applicationContext", applicationContext);
+            client = mqttConfig.mqttClient();
+            assertTrue(client != null && client.isConnected(), "实例未连接到Broker");
+        }
+
+        void close() {
+            try {
+                client.disconnect();
+                client.close();
+            } catch (Exception ignored) {
+                // 测试结束时的断开失败不影响结果
+            }
+            pipeline.shutdown();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.smartoffice.device.service;
+
+import com.smartoffice.common.constants.SystemConstants;
+import com.smartoffice.common.entity.AlarmLog;
+import com.smartoffice.device.mapper.AlarmLogMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AlarmStatisticsServiceTest {
+
+    private final AlarmStatisticsService service = new AlarmStatisticsService();
+    private final AlarmLogMapper mapper = mock(AlarmLogMapper.class);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "alarmLogMapper", mapper);
+        ReflectionTestUtils.setField(service, "keepDays", 31);
+    }
+
+    @Test
+    void statisticsHaveStableShapeWhenEmpty() {
+        Map<String, Object> stats = service.getStatistics();
+
+        assertEquals(Arrays.asList("unhandledCount", "todayCount", "typeStats"), new ArrayList<>(stats.keySet()));
+        assertEquals(0L, stats.get("unhandledCount"));
+        assertEquals(0L, stats.get("todayCount"));
+        Map<String, Long> typeStats = new LinkedHashMap<>();
+        typeStats.put(SystemConstants.ALARM_TYPE_FIRE, 0L);
+        typeStats.put(SystemConstants.ALARM_TYPE_TEMP, 0L);
+        typeStats.put(SystemConstants.ALARM_TYPE_HUMIDITY, 0L);
+        typeStats.put(SystemConstants.ALARM_TYPE_LIGHT, 0L);
+        assertEquals(typeStats, stats.get("typeStats"));
+    }
+
+    @Test
+    void countersFollowCreateStatusChangeAndDelete() {
+        AlarmLog fire = alarm(SystemConstants.ALARM_TYPE_FIRE, LocalDateTime.now());
+        AlarmLog temp = alarm(SystemConstants.ALARM_TYPE_TEMP, LocalDateTime.now());
+        AlarmLog old = alarm(SystemConstants.ALARM_TYPE_TEMP, LocalDateTime.now().minusDays(3));
+        service.onCreated(fire);
+        service.onCreated(temp);
+        service.onCreated(old);
+
+        assertStatistics(3, 2, 1, 1);
+
+        service.onStatusChanged(SystemConstants.ALARM_STATUS_UNHANDLED, SystemConstants.ALARM_STATUS_HANDLED);
+        service.onStatusChanged(SystemConstants.ALARM_STATUS_HANDLED, SystemConstants.ALARM_STATUS_HANDLED);
+        service.onStatusChanged(SystemConstants.ALARM_STATUS_UNHANDLED, null);
+        assertStatistics(2, 2, 1, 1);
+
+        temp.setStatus(SystemConstants.ALARM_STATUS_HANDLED);
+        service.onDeleted(temp);
+        assertStatistics(2, 1, 1, 0);
+        assertEquals(2L, service.getStats().get("total"));
+
+        service.onCleared();
+        assertStatistics(0, 0, 0, 0);
+    }
+
+    @Test
+    void deletingAlarmOlderThanKeptDaysDoesNotCreateNegativeDay() {
+        service.onDeleted(alarm(SystemConstants.ALARM_TYPE_FIRE, LocalDateTime.now().minusDays(90)));
+
+        assertEquals(Collections.emptyMap(), service.getStats().get("byDay"));
+    }
+
+    @Test
+    void reconcileRebuildsFromGroupedCounts() {
+        service.onCreated(alarm(SystemConstants.ALARM_TYPE_FIRE, LocalDateTime.now()));
+        when(mapper.countGrouped()).thenReturn(Arrays.asList(
+                row(SystemConstants.ALARM_STATUS_UNHANDLED, SystemConstants.ALARM_TYPE_LIGHT, LocalDate.now(), 4),
+                row(SystemConstants.ALARM_STATUS_HANDLED, SystemConstants.ALARM_TYPE_LIGHT, LocalDate.now(), 2),
+                row(SystemConstants.ALARM_STATUS_UNHANDLED, SystemConstants.ALARM_TYPE_FIRE, LocalDate.now().minusDays(60), 5)));
+
+        service.reconcile();
+
+        Map<String, Object> stats = service.getStatistics();
+        assertEquals(9L, stats.get("unhandledCount"));
+        assertEquals(6L, stats.get("todayCount"));
+        assertEquals(6L, typeStats(stats).get(SystemConstants.ALARM_TYPE_LIGHT));
+        assertEquals(0L, typeStats(stats).get(SystemConstants.ALARM_TYPE_FIRE));
+        assertEquals(11L, service.getStats().get("total"));
+        assertEquals(10L, service.getStats().get("lastReconcileDrift"));
+    }
+
+    @Test
+    void updatesDuringReconcileQueryAreKept() {
+        AlarmLog handled = alarm(SystemConstants.ALARM_TYPE_TEMP, LocalDateTime.now());
+        when(mapper.countGrouped()).thenAnswer(invocation -> {
+            // 查询快照之后写入的告警和状态变更
+            service.onCreated(alarm(SystemConstants.ALARM_TYPE_FIRE, LocalDateTime.now()));
+            service.onStatusChanged(SystemConstants.ALARM_STATUS_UNHANDLED, SystemConstants.ALARM_STATUS_HANDLED);
+            service.onDeleted(handled);
+            return Collections.singletonList(
+                    row(SystemConstants.ALARM_STATUS_UNHANDLED, SystemConstants.ALARM_TYPE_TEMP, LocalDate.now(), 3));
+        });
+        handled.setStatus(SystemConstants.ALARM_STATUS_HANDLED);
+
+        service.reconcile();
+
+        Map<String, Object> stats = service.getStatistics();
+        assertEquals(3L, stats.get("unhandledCount"));
+        assertEquals(3L, stats.get("todayCount"));
+        assertEquals(2L, typeStats(stats).get(SystemConstants.ALARM_TYPE_TEMP));
+        assertEquals(1L, typeStats(stats).get(SystemConstants.ALARM_TYPE_FIRE));
+
+        // 差值只在校准期间记录
+        service.onCreated(alarm(SystemConstants.ALARM_TYPE_FIRE, LocalDateTime.now()));
+        when(mapper.countGrouped()).thenReturn(Collections.emptyList());
+        service.reconcile();
+        assertEquals(0L, service.getStatistics().get("todayCount"));
+    }
+
+    @Test
+    void alarmAlreadyInSnapshotIsNotCountedTwice() {
+        AlarmLog committedBefore = alarm(SystemConstants.ALARM_TYPE_FIRE, LocalDateTime.now());
+        committedBefore.setId(7L);
+        AlarmLog committedAfter = alarm(SystemConstants.ALARM_TYPE_FIRE, LocalDateTime.now());
+        committedAfter.setId(8L);
+        when(mapper.countGrouped()).thenAnswer(invocation -> {
+            // 7号在查询快照前已提交、回调晚到，8号在快照之后写入
+            service.onCreated(committedBefore);
+            service.onCreated(committedAfter);
+            Map<String, Object> row = row(SystemConstants.ALARM_STATUS_UNHANDLED, SystemConstants.ALARM_TYPE_FIRE, LocalDate.now(), 3);
+            row.put("maxId", 7L);
+            return Collections.singletonList(row);
+        });
+
+        service.reconcile();
+
+        assertStatistics(4, 4, 4, 0);
+        assertEquals(4L, service.getStats().get("total"));
+    }
+
+    @Test
+    void clearDuringReconcileDiscardsResult() {
+        when(mapper.countGrouped()).thenAnswer(invocation -> {
+            service.onCleared();
+            return Collections.singletonList(
+                    row(SystemConstants.ALARM_STATUS_UNHANDLED, SystemConstants.ALARM_TYPE_TEMP, LocalDate.now(), 3));
+        });
+
+        service.reconcile();
+
+        assertStatistics(0, 0, 0, 0);
+        assertEquals(0L, service.getStats().get("reconciles"));
+    }
+
+    @Test
+    void failedReconcileKeepsCounters() {
+        service.onCreated(alarm(SystemConstants.ALARM_TYPE_FIRE, LocalDateTime.now()));
+        when(mapper.countGrouped()).thenThrow(new IllegalStateException("db down"));
+
+        service.reconcile();
+        service.onCreated(alarm(SystemConstants.ALARM_TYPE_FIRE, LocalDateTime.now()));
+
+        assertStatistics(2, 2, 2, 0);
+        assertEquals(1L, service.getStats().get("reconcileFailures"));
+    }
+
+    private void assertStatistics(long unhandled, long today, long todayFire, long todayTemp) {
+        Map<String, Object> stats = service.getStatistics();
+        assertEquals(unhandled, stats.get("unhandledCount"));
+        assertEquals(today, stats.get("todayCount"));
+        assertEquals(todayFire, typeStats(stats).get(SystemConstants.ALARM_TYPE_FIRE));
+        assertEquals(todayTemp, typeStats(stats).get(SystemConstants.ALARM_TYPE_TEMP));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Long> typeStats(Map<String, Object> stats) {
+        return (Map<String, Long>) stats.get("typeStats");
+    }
+
+    private static AlarmLog alarm(String type, LocalDateTime time) {
+        AlarmLog alarm = new AlarmLog();
+        alarm.setAlarmType(type);
+        alarm.setAlarmLevel(SystemConstants.ALARM_LEVEL_WARNING);
+        alarm.setStatus(SystemConstants.ALARM_STATUS_UNHANDLED);
+        alarm.setAlarmTime(time);
+        return alarm;
+    }
+
+    private static Map<String, Object> row(String status, String type, LocalDate date, long count) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("status", status);
+        row.put("alarmType", type);
+        row.put("alarmLevel", SystemConstants.ALARM_LEVEL_WARNING);
+        row.put("alarmDate", Date.valueOf(date));
+        row.put("alarmCount", count);
+        return row;
+    }
+}
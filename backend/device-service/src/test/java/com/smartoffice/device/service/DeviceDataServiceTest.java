@@ -0,0 +1,139 @@
+package com.smartoffice.device.service;
+
+import com.smartoffice.common.constants.SystemConstants;
+import com.smartoffice.common.dto.SensorDataDTO;
+import com.smartoffice.common.entity.SensorData;
+import com.smartoffice.device.cache.LatestSensorCache;
+import com.smartoffice.device.cache.RecentReadingStore;
+import com.smartoffice.device.config.ControlProperties;
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.control.CommandDispatcher;
+import com.smartoffice.device.control.DeviceShadow;
+import com.smartoffice.device.control.DeviceShadowService;
+import com.smartoffice.device.control.ThresholdHolder;
+import com.smartoffice.device.control.ThresholdSnapshot;
+import com.smartoffice.device.ingest.SensorBatch;
+import com.smartoffice.device.ingest.SensorReading;
+import com.smartoffice.device.push.SensorPushAggregator;
+import com.smartoffice.device.registry.DeviceRegistry;
+import com.smartoffice.device.storage.SensorDataWriteBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DeviceDataServiceTest {
+
+    private final DeviceDataService service = new DeviceDataService();
+    private final SensorDataWriteBuffer sensorDataWriteBuffer = mock(SensorDataWriteBuffer.class);
+    private final DeviceRegistry deviceRegistry = mock(DeviceRegistry.class);
+    private final DeviceShadowService deviceShadowService = mock(DeviceShadowService.class);
+    private final CommandDispatcher commandDispatcher = mock(CommandDispatcher.class);
+    private final LatestSensorCache latestSensorCache = mock(LatestSensorCache.class);
+    private final RecentReadingStore recentReadingStore = mock(RecentReadingStore.class);
+    private final DeviceShadow shadow = new DeviceShadow("W601_001");
+
+    @BeforeEach
+    void setUp() {
+        ThresholdHolder thresholdHolder = mock(ThresholdHolder.class);
+        when(thresholdHolder.current()).thenReturn(new ThresholdSnapshot(100, 500, 20, 26, 30, 70));
+        when(deviceShadowService.getConfig()).thenReturn(new ControlProperties.Shadow());
+        when(deviceShadowService.getOrCreate("W601_001")).thenReturn(shadow);
+        when(deviceRegistry.touch("W601_001")).thenReturn(true);
+        ReflectionTestUtils.setField(service, "sensorDataWriteBuffer", sensorDataWriteBuffer);
+        ReflectionTestUtils.setField(service, "ingestionProperties", new IngestionProperties());
+        ReflectionTestUtils.setField(service, "deviceRegistry", deviceRegistry);
+        ReflectionTestUtils.setField(service, "thresholdHolder", thresholdHolder);
+        ReflectionTestUtils.setField(service, "deviceShadowService", deviceShadowService);
+        ReflectionTestUtils.setField(service, "commandDispatcher", commandDispatcher);
+        ReflectionTestUtils.setField(service, "latestSensorCache", latestSensorCache);
+        ReflectionTestUtils.setField(service, "recentReadingStore", recentReadingStore);
+        ReflectionTestUtils.setField(service, "sensorPushAggregator", mock(SensorPushAggregator.class));
+    }
+
+    @Test
+    void batchControlsCachesAndPushesOnlyTheNewestReading() {
+        long now = System.currentTimeMillis();
+        // 网关补报顺序与采集顺序不一致：最新的一条在中间
+        List<SensorReading> readings = Arrays.asList(
+                reading(10, now - 120_000L), reading(30, now - 10_000L), reading(12, now - 60_000L));
+
+        service.applySensorReadings(readings);
+
+        verify(deviceShadowService, times(1)).getOrCreate("W601_001");
+        assertEquals(DeviceShadow.AC_COOL, shadow.getDesired(DeviceShadow.AC));
+        verify(commandDispatcher).submit("W601_001", SystemConstants.ACTION_AC_COOL);
+        verify(commandDispatcher, never()).submit("W601_001", SystemConstants.ACTION_AC_HEAT);
+        ArgumentCaptor<SensorDataDTO> latest = ArgumentCaptor.forClass(SensorDataDTO.class);
+        verify(latestSensorCache).put(latest.capture());
+        assertEquals(now - 10_000L, latest.getValue().getTimestamp());
+        assertEquals(30.0, latest.getValue().getTemperature());
+        verify(recentReadingStore, times(3)).append(any(), anyLong());
+    }
+
+    @Test
+    void unregisteredDeviceIsNotKeptInRecentStore() {
+        when(deviceRegistry.touch("W601_001")).thenReturn(false);
+
+        service.applySensorReadings(Arrays.asList(reading(22, System.currentTimeMillis())));
+
+        verify(recentReadingStore, never()).append(any(), anyLong());
+    }
+
+    @Test
+    void timestampsTooOldOrTooFarAheadUseServerTime() {
+        long start = System.currentTimeMillis();
+        SensorReading valid = reading(22, start - 3_600_000L);
+        SensorReading reset = reading(22, 86_400_000L);
+        SensorReading replayed = reading(22, start - 2 * 86_400_000L);
+        SensorReading ahead = reading(22, start + 3_600_000L);
+
+        service.persistSensorBatch(batchOf(valid, reset, replayed, ahead));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SensorData>> rows = ArgumentCaptor.forClass(List.class);
+        verify(sensorDataWriteBuffer).addAll(rows.capture());
+        assertEquals(toDateTime(start - 3_600_000L), rows.getValue().get(0).getDataTime());
+        for (SensorData row : rows.getValue().subList(1, 4)) {
+            assertTrue(!row.getDataTime().isBefore(toDateTime(start))
+                    && !row.getDataTime().isAfter(toDateTime(System.currentTimeMillis())), row.getDataTime().toString());
+        }
+    }
+
+    private static SensorBatch batchOf(SensorReading... readings) {
+        SensorBatch batch = mock(SensorBatch.class);
+        when(batch.size()).thenReturn(readings.length);
+        for (int i = 0; i < readings.length; i++) {
+            when(batch.get(i)).thenReturn(readings[i]);
+        }
+        return batch;
+    }
+
+    private static SensorReading reading(double temperature, long timestamp) {
+        SensorReading reading = new SensorReading();
+        reading.setDeviceId("W601_001");
+        reading.setTemperature(temperature);
+        reading.setTimestamp(timestamp);
+        return reading;
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,70 @@
+package com.smartoffice.device.service;
+
+import com.smartoffice.common.entity.SensorData;
+import com.smartoffice.device.archive.SensorColdArchive;
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.mapper.SensorDataMapper;
+import com.smartoffice.device.mapper.SensorRollupMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SensorHistoryServiceTest {
+
+    private final SensorHistoryService service = new SensorHistoryService();
+    private final SensorDataMapper sensorDataMapper = mock(SensorDataMapper.class);
+    private final SensorColdArchive sensorColdArchive = mock(SensorColdArchive.class);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "sensorDataMapper", sensorDataMapper);
+        ReflectionTestUtils.setField(service, "sensorRollupMapper", mock(SensorRollupMapper.class));
+        ReflectionTestUtils.setField(service, "ingestionProperties", new IngestionProperties());
+        ReflectionTestUtils.setField(service, "sensorColdArchive", sensorColdArchive);
+        when(sensorColdArchive.isEmpty()).thenReturn(true);
+        when(sensorDataMapper.countHistory(eq("W601_001"), any(), any())).thenReturn(5L);
+    }
+
+    @Test
+    void totalIsCountedOnlyOnFirstPage() {
+        when(sensorDataMapper.selectHistoryPage(eq("W601_001"), any(), any(), any(), any(), anyInt()))
+                .thenReturn(rows(3), rows(2));
+
+        Map<String, Object> first = service.query("W601_001", null, null, null, 2, "exact");
+        assertEquals(5L, first.get("total"));
+        assertTrue((Boolean) first.get("hasMore"));
+
+        Map<String, Object> second = service.query("W601_001", null, null, (String) first.get("nextCursor"), 2, "exact");
+        assertNull(second.get("total"));
+        assertEquals("exact", second.get("countMode"));
+        verify(sensorDataMapper, times(1)).countHistory(any(), any(), any());
+    }
+
+    private static List<SensorData> rows(int count) {
+        List<SensorData> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            SensorData row = new SensorData();
+            row.setId(100L - i);
+            row.setDeviceId("W601_001");
+            row.setDataTime(LocalDateTime.of(2024, 1, 1, 10, 0).minusMinutes(i));
+            rows.add(row);
+        }
+        return rows;
+    }
+}
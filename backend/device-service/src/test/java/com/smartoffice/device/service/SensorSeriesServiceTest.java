@@ -0,0 +1,81 @@
+package com.smartoffice.device.service;
+
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.mapper.SensorRollupMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SensorSeriesServiceTest {
+
+    private static final List<String> DEVICES = Collections.singletonList("W601_001");
+
+    private final SensorSeriesService service = new SensorSeriesService();
+    private final SensorRollupMapper mapper = mock(SensorRollupMapper.class);
+    private final IngestionProperties properties = new IngestionProperties();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "sensorRollupMapper", mapper);
+        ReflectionTestUtils.setField(service, "ingestionProperties", properties);
+        when(mapper.selectSeries(anyString(), anyString(), anyCollection(), any(), any(), anyLong()))
+                .thenReturn(Collections.emptyList());
+    }
+
+    @Test
+    void recentRangeUsesMinuteRollup() {
+        LocalDateTime to = LocalDateTime.now();
+
+        Map<String, Object> result = service.query(DEVICES, "temperature", to.minusDays(1), to, null, 500);
+
+        assertEquals("MINUTE", result.get("granularity"));
+        assertEquals(300L, result.get("stepSeconds"));
+    }
+
+    @Test
+    void rangeBeforeMinuteRetentionFallsBackToWholeHours() {
+        LocalDateTime to = LocalDateTime.now().minusDays(20);
+
+        Map<String, Object> result = service.query(DEVICES, "temperature", to.minusDays(1), to, null, 500);
+
+        assertEquals("HOUR", result.get("granularity"));
+        assertEquals(3600L, result.get("stepSeconds"));
+        verify(mapper).selectSeries(eq("sensor_rollup_hour"), eq("temperature"), anyCollection(), any(), any(), eq(3600L));
+    }
+
+    @Test
+    void explicitSubHourStepBeforeRetentionIsRejected() {
+        LocalDateTime to = LocalDateTime.now().minusDays(20);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> service.query(DEVICES, "temperature", to.minusHours(6), to, "5m", null));
+        assertTrue(e.getMessage().contains("14天"));
+
+        assertEquals("HOUR", service.query(DEVICES, "temperature", to.minusHours(6), to, "1h", null).get("granularity"));
+    }
+
+    @Test
+    void disabledRetentionKeepsMinuteRollup() {
+        properties.getRollup().setMinuteRetentionDays(0);
+        LocalDateTime to = LocalDateTime.now().minusDays(200);
+
+        assertEquals("MINUTE", service.query(DEVICES, "humidity", to.minusHours(6), to, "5m", null).get("granularity"));
+    }
+}
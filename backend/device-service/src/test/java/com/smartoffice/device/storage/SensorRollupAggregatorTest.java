@@ -0,0 +1,50 @@
+package com.smartoffice.device.storage;
+
+import com.smartoffice.common.entity.SensorData;
+import com.smartoffice.device.config.IngestionProperties;
+import com.smartoffice.device.mapper.SensorRollupMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class SensorRollupAggregatorTest {
+
+    @Test
+    void pendingPartialsAreWrittenBeforeBackfillRebuild() {
+        SensorRollupMapper mapper = mock(SensorRollupMapper.class);
+        SensorRollupAggregator aggregator = new SensorRollupAggregator();
+        ReflectionTestUtils.setField(aggregator, "ingestionProperties", new IngestionProperties());
+        ReflectionTestUtils.setField(aggregator, "sensorRollupMapper", mapper);
+
+        // 已写入原始表、增量还在内存中的旧数据
+        LocalDateTime dayStart = LocalDateTime.of(2026, 10, 1, 0, 0);
+        SensorData row = new SensorData();
+        row.setDeviceId("dev-1");
+        row.setDataTime(dayStart.plusMinutes(5));
+        row.setTemperature(new BigDecimal("21.5"));
+        aggregator.add(row);
+
+        aggregator.flushAndRunExclusive(() -> mapper.rebuildMinuteFromRaw(dayStart, dayStart.plusDays(1)));
+
+        InOrder order = inOrder(mapper);
+        order.verify(mapper).upsertBatch(eq(RollupGranularity.MINUTE.getTable()), anyList());
+        order.verify(mapper).rebuildMinuteFromRaw(dayStart, dayStart.plusDays(1));
+        assertEquals(0, aggregator.getStats().get("pendingBuckets"));
+
+        // 重算之后不会再累加同一批增量
+        aggregator.flush();
+        verify(mapper, times(1)).upsertBatch(eq(RollupGranularity.MINUTE.getTable()), any());
+    }
+}
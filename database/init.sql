@@ -65,7 +65,7 @@ VALUES
 -- 3. 传感器数据表
 -- ====================================
 CREATE TABLE IF NOT EXISTS sensor_data (
-    id BIGINT PRIMARY KEY AUTO_INCREMENT COMMENT '数据ID',
+    id BIGINT NOT NULL AUTO_INCREMENT COMMENT '数据ID',
     device_id VARCHAR(50) NOT NULL COMMENT '设备编号',
     light DECIMAL(10,2) COMMENT '光照强度（lux）',
     temperature DECIMAL(5,2) COMMENT '温度（℃）',
@@ -74,10 +74,84 @@ CREATE TABLE IF NOT EXISTS sensor_data (
     rgb_status TINYINT COMMENT 'RGB灯状态：0-关闭, 1-开启',
     data_time DATETIME NOT NULL COMMENT '数据采集时间',
     create_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '记录创建时间',
-    INDEX idx_device_id (device_id),
-    INDEX idx_data_time (data_time),
-    INDEX idx_create_time (create_time)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='传感器数据表';
+    PRIMARY KEY (id, data_time),
+    INDEX idx_device_time (device_id, data_time, id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='传感器数据表'
+-- 按天分区，后续分区由服务启动时和每天凌晨提前创建，过期分区整体删除或归档（ingestion.partition）
+PARTITION BY RANGE (TO_DAYS(data_time)) (
+    PARTITION p_history VALUES LESS THAN (TO_DAYS('2024-01-01')),
+    PARTITION p_future VALUES LESS THAN MAXVALUE
+);
+
+-- 传感器数据汇总表（由服务随写库增量维护，平均值 = *_sum / *_count）
+CREATE TABLE IF NOT EXISTS sensor_rollup_minute (
+    device_id VARCHAR(50) NOT NULL COMMENT '设备编号',
+    bucket_time DATETIME NOT NULL COMMENT '时间桶起始时间',
+    sample_count INT NOT NULL DEFAULT 0 COMMENT '样本数',
+    temperature_min DECIMAL(5,2) COMMENT '最低温度',
+    temperature_max DECIMAL(5,2) COMMENT '最高温度',
+    temperature_sum DECIMAL(16,2) NOT NULL DEFAULT 0 COMMENT '温度累加值',
+    temperature_count INT NOT NULL DEFAULT 0 COMMENT '有温度值的样本数',
+    humidity_min DECIMAL(5,2) COMMENT '最低湿度',
+    humidity_max DECIMAL(5,2) COMMENT '最高湿度',
+    humidity_sum DECIMAL(16,2) NOT NULL DEFAULT 0 COMMENT '湿度累加值',
+    humidity_count INT NOT NULL DEFAULT 0 COMMENT '有湿度值的样本数',
+    light_min DECIMAL(10,2) COMMENT '最低光照',
+    light_max DECIMAL(10,2) COMMENT '最高光照',
+    light_sum DECIMAL(20,2) NOT NULL DEFAULT 0 COMMENT '光照累加值',
+    light_count INT NOT NULL DEFAULT 0 COMMENT '有光照值的样本数',
+    last_temperature DECIMAL(5,2) COMMENT '桶内最后一个样本的温度',
+    last_humidity DECIMAL(5,2) COMMENT '桶内最后一个样本的湿度',
+    last_light DECIMAL(10,2) COMMENT '桶内最后一个样本的光照',
+    last_time DATETIME COMMENT '桶内最后一个样本的采集时间',
+    PRIMARY KEY (device_id, bucket_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='传感器数据分钟汇总表';
+
+CREATE TABLE IF NOT EXISTS sensor_rollup_hour (
+    device_id VARCHAR(50) NOT NULL COMMENT '设备编号',
+    bucket_time DATETIME NOT NULL COMMENT '时间桶起始时间',
+    sample_count INT NOT NULL DEFAULT 0 COMMENT '样本数',
+    temperature_min DECIMAL(5,2) COMMENT '最低温度',
+    temperature_max DECIMAL(5,2) COMMENT '最高温度',
+    temperature_sum DECIMAL(16,2) NOT NULL DEFAULT 0 COMMENT '温度累加值',
+    temperature_count INT NOT NULL DEFAULT 0 COMMENT '有温度值的样本数',
+    humidity_min DECIMAL(5,2) COMMENT '最低湿度',
+    humidity_max DECIMAL(5,2) COMMENT '最高湿度',
+    humidity_sum DECIMAL(16,2) NOT NULL DEFAULT 0 COMMENT '湿度累加值',
+    humidity_count INT NOT NULL DEFAULT 0 COMMENT '有湿度值的样本数',
+    light_min DECIMAL(10,2) COMMENT '最低光照',
+    light_max DECIMAL(10,2) COMMENT '最高光照',
+    light_sum DECIMAL(20,2) NOT NULL DEFAULT 0 COMMENT '光照累加值',
+    light_count INT NOT NULL DEFAULT 0 COMMENT '有光照值的样本数',
+    last_temperature DECIMAL(5,2) COMMENT '桶内最后一个样本的温度',
+    last_humidity DECIMAL(5,2) COMMENT '桶内最后一个样本的湿度',
+    last_light DECIMAL(10,2) COMMENT '桶内最后一个样本的光照',
+    last_time DATETIME COMMENT '桶内最后一个样本的采集时间',
+    PRIMARY KEY (device_id, bucket_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='传感器数据小时汇总表';
+
+CREATE TABLE IF NOT EXISTS sensor_rollup_day (
+    device_id VARCHAR(50) NOT NULL COMMENT '设备编号',
+    bucket_time DATETIME NOT NULL COMMENT '时间桶起始时间',
+    sample_count INT NOT NULL DEFAULT 0 COMMENT '样本数',
+    temperature_min DECIMAL(5,2) COMMENT '最低温度',
+    temperature_max DECIMAL(5,2) COMMENT '最高温度',
+    temperature_sum DECIMAL(16,2) NOT NULL DEFAULT 0 COMMENT '温度累加值',
+    temperature_count INT NOT NULL DEFAULT 0 COMMENT '有温度值的样本数',
+    humidity_min DECIMAL(5,2) COMMENT '最低湿度',
+    humidity_max DECIMAL(5,2) COMMENT '最高湿度',
+    humidity_sum DECIMAL(16,2) NOT NULL DEFAULT 0 COMMENT '湿度累加值',
+    humidity_count INT NOT NULL DEFAULT 0 COMMENT '有湿度值的样本数',
+    light_min DECIMAL(10,2) COMMENT '最低光照',
+    light_max DECIMAL(10,2) COMMENT '最高光照',
+    light_sum DECIMAL(20,2) NOT NULL DEFAULT 0 COMMENT '光照累加值',
+    light_count INT NOT NULL DEFAULT 0 COMMENT '有光照值的样本数',
+    last_temperature DECIMAL(5,2) COMMENT '桶内最后一个样本的温度',
+    last_humidity DECIMAL(5,2) COMMENT '桶内最后一个样本的湿度',
+    last_light DECIMAL(10,2) COMMENT '桶内最后一个样本的光照',
+    last_time DATETIME COMMENT '桶内最后一个样本的采集时间',
+    PRIMARY KEY (device_id, bucket_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='传感器数据天汇总表';
 
 -- ====================================
 -- 4. 告警日志表
@@ -0,0 +1,25 @@
+-- 把已有的 sensor_data 改为按天分区
+-- 1. 主键改为 (id, data_time)：MySQL要求分区列包含在每个唯一索引中
+-- 2. 三个单列索引合并为 (device_id, data_time, id)，覆盖按设备查最新、游标翻页查历史，按时间范围的扫描由分区裁剪代替
+-- 3. 已有数据全部放入 p_history（上界为执行当天的次日），之后的分区由服务提前创建；
+--    p_history 在保留期过后整体删除或归档（ingestion.partition.retention-days / retention-policy）
+-- ALTER 会重建整张表，数据量大时请在低峰期执行，或使用 pt-online-schema-change / gh-ost
+
+USE smart_office;
+
+ALTER TABLE sensor_data
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, data_time),
+    DROP INDEX idx_device_id,
+    DROP INDEX idx_data_time,
+    DROP INDEX idx_create_time,
+    ADD INDEX idx_device_time (device_id, data_time, id);
+
+-- 分区上界必须是常量，用动态SQL计算执行当天的次日
+SET @partition_sql = CONCAT(
+    'ALTER TABLE sensor_data PARTITION BY RANGE (TO_DAYS(data_time)) (',
+    'PARTITION p_history VALUES LESS THAN (', TO_DAYS(CURDATE() + INTERVAL 1 DAY), '), ',
+    'PARTITION p_future VALUES LESS THAN MAXVALUE)');
+PREPARE partition_stmt FROM @partition_sql;
+EXECUTE partition_stmt;
+DEALLOCATE PREPARE partition_stmt;
@@ -0,0 +1,74 @@
+-- 传感器数据汇总表（分钟/小时/天）
+-- 已有数据库执行本脚本后，调用 POST /monitor/rollup/backfill?from=yyyy-MM-dd&to=yyyy-MM-dd 从原始数据回填历史汇总
+-- 平均值 = *_sum / *_count
+
+USE smart_office;
+
+CREATE TABLE IF NOT EXISTS sensor_rollup_minute (
+    device_id VARCHAR(50) NOT NULL COMMENT '设备编号',
+    bucket_time DATETIME NOT NULL COMMENT '时间桶起始时间',
+    sample_count INT NOT NULL DEFAULT 0 COMMENT '样本数',
+    temperature_min DECIMAL(5,2) COMMENT '最低温度',
+    temperature_max DECIMAL(5,2) COMMENT '最高温度',
+    temperature_sum DECIMAL(16,2) NOT NULL DEFAULT 0 COMMENT '温度累加值',
+    temperature_count INT NOT NULL DEFAULT 0 COMMENT '有温度值的样本数',
+    humidity_min DECIMAL(5,2) COMMENT '最低湿度',
+    humidity_max DECIMAL(5,2) COMMENT '最高湿度',
+    humidity_sum DECIMAL(16,2) NOT NULL DEFAULT 0 COMMENT '湿度累加值',
+    humidity_count INT NOT NULL DEFAULT 0 COMMENT '有湿度值的样本数',
+    light_min DECIMAL(10,2) COMMENT '最低光照',
+    light_max DECIMAL(10,2) COMMENT '最高光照',
+    light_sum DECIMAL(20,2) NOT NULL DEFAULT 0 COMMENT '光照累加值',
+    light_count INT NOT NULL DEFAULT 0 COMMENT '有光照值的样本数',
+    last_temperature DECIMAL(5,2) COMMENT '桶内最后一个样本的温度',
+    last_humidity DECIMAL(5,2) COMMENT '桶内最后一个样本的湿度',
+    last_light DECIMAL(10,2) COMMENT '桶内最后一个样本的光照',
+    last_time DATETIME COMMENT '桶内最后一个样本的采集时间',
+    PRIMARY KEY (device_id, bucket_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='传感器数据分钟汇总表';
+
+CREATE TABLE IF NOT EXISTS sensor_rollup_hour (
+    device_id VARCHAR(50) NOT NULL COMMENT '设备编号',
+    bucket_time DATETIME NOT NULL COMMENT '时间桶起始时间',
+    sample_count INT NOT NULL DEFAULT 0 COMMENT '样本数',
+    temperature_min DECIMAL(5,2) COMMENT '最低温度',
+    temperature_max DECIMAL(5,2) COMMENT '最高温度',
+    temperature_sum DECIMAL(16,2) NOT NULL DEFAULT 0 COMMENT '温度累加值',
+    temperature_count INT NOT NULL DEFAULT 0 COMMENT '有温度值的样本数',
+    humidity_min DECIMAL(5,2) COMMENT '最低湿度',
+    humidity_max DECIMAL(5,2) COMMENT '最高湿度',
+    humidity_sum DECIMAL(16,2) NOT NULL DEFAULT 0 COMMENT '湿度累加值',
+    humidity_count INT NOT NULL DEFAULT 0 COMMENT '有湿度值的样本数',
+    light_min DECIMAL(10,2) COMMENT '最低光照',
+    light_max DECIMAL(10,2) COMMENT '最高光照',
+    light_sum DECIMAL(20,2) NOT NULL DEFAULT 0 COMMENT '光照累加值',
+    light_count INT NOT NULL DEFAULT 0 COMMENT '有光照值的样本数',
+    last_temperature DECIMAL(5,2) COMMENT '桶内最后一个样本的温度',
+    last_humidity DECIMAL(5,2) COMMENT '桶内最后一个样本的湿度',
+    last_light DECIMAL(10,2) COMMENT '桶内最后一个样本的光照',
+    last_time DATETIME COMMENT '桶内最后一个样本的采集时间',
+    PRIMARY KEY (device_id, bucket_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='传感器数据小时汇总表';
+
+CREATE TABLE IF NOT EXISTS sensor_rollup_day (
+    device_id VARCHAR(50) NOT NULL COMMENT '设备编号',
+    bucket_time DATETIME NOT NULL COMMENT '时间桶起始时间',
+    sample_count INT NOT NULL DEFAULT 0 COMMENT '样本数',
+    temperature_min DECIMAL(5,2) COMMENT '最低温度',
+    temperature_max DECIMAL(5,2) COMMENT '最高温度',
+    temperature_sum DECIMAL(16,2) NOT NULL DEFAULT 0 COMMENT '温度累加值',
+    temperature_count INT NOT NULL DEFAULT 0 COMMENT '有温度值的样本数',
+    humidity_min DECIMAL(5,2) COMMENT '最低湿度',
+    humidity_max DECIMAL(5,2) COMMENT '最高湿度',
+    humidity_sum DECIMAL(16,2) NOT NULL DEFAULT 0 COMMENT '湿度累加值',
+    humidity_count INT NOT NULL DEFAULT 0 COMMENT '有湿度值的样本数',
+    light_min DECIMAL(10,2) COMMENT '最低光照',
+    light_max DECIMAL(10,2) COMMENT '最高光照',
+    light_sum DECIMAL(20,2) NOT NULL DEFAULT 0 COMMENT '光照累加值',
+    light_count INT NOT NULL DEFAULT 0 COMMENT '有光照值的样本数',
+    last_temperature DECIMAL(5,2) COMMENT '桶内最后一个样本的温度',
+    last_humidity DECIMAL(5,2) COMMENT '桶内最后一个样本的湿度',
+    last_light DECIMAL(10,2) COMMENT '桶内最后一个样本的光照',
+    last_time DATETIME COMMENT '桶内最后一个样本的采集时间',
+    PRIMARY KEY (device_id, bucket_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='传感器数据天汇总表';
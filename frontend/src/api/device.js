@@ -24,12 +24,12 @@ export function getLatestSensorData(deviceId) {
   })
 }
 
-// 获取传感器历史数据
-export function getSensorDataHistory(deviceId, pageNum = 1, pageSize = 20) {
+// 获取传感器历史数据（cursor传上一页返回的nextCursor，第一页不传）
+export function getSensorDataHistory(deviceId, cursor, pageSize = 20, count = 'approx') {
   return request({
     url: `/api/device/${deviceId}/history`,
     method: 'get',
-    params: { pageNum, pageSize }
+    params: { cursor, pageSize, count }
   })
 }
 